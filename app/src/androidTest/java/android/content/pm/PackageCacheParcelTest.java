@@ -0,0 +1,173 @@
+package android.content.pm;
+
+import android.content.pm.PackageParser.Activity;
+import android.content.pm.PackageParser.ActivityIntentInfo;
+import android.content.pm.PackageParser.Package;
+import android.content.pm.PackageParser.Permission;
+import android.content.pm.PackageParser.PermissionGroup;
+import android.content.pm.PackageParser.Provider;
+import android.content.pm.PackageParser.Service;
+import android.os.Parcel;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+/**
+ * Writes packages through PackageCache.writePackage and reads them back with readPackage. Needs
+ * a real Parcel, so it runs on a device.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PackageCacheParcelTest {
+    @Test
+    public void roundTrip_keepsPackageFields() {
+        Package pkg = newPackage("com.example.app");
+        pkg.mVersionCode = 42;
+        pkg.mVersionName = "4.2";
+        pkg.mSharedUserId = "com.example.shared";
+        pkg.requestedPermissions.add("android.permission.INTERNET");
+        pkg.splitNames = new String[] {"config.en"};
+        pkg.splitCodePaths = new String[] {"/data/app/com.example.app-1/split_config.en.apk"};
+
+        Package read = roundTrip(pkg);
+
+        assertEquals("com.example.app", read.packageName);
+        assertEquals("com.example.app", read.applicationInfo.packageName);
+        assertEquals(42, read.mVersionCode);
+        assertEquals("4.2", read.mVersionName);
+        assertEquals("com.example.shared", read.mSharedUserId);
+        assertEquals(pkg.requestedPermissions, read.requestedPermissions);
+        assertArrayEquals(pkg.splitNames, read.splitNames);
+        assertArrayEquals(pkg.splitCodePaths, read.splitCodePaths);
+        assertEquals(pkg.codePath, read.codePath);
+    }
+
+    @Test
+    public void roundTrip_relinksComponentsToTheirOwners() {
+        Package pkg = newPackage("com.example.app");
+        addActivity(pkg, pkg.activities, "com.example.app.Main", "android.intent.action.MAIN");
+        addActivity(pkg, pkg.receivers, "com.example.app.Boot", "android.intent.action.BOOT_COMPLETED");
+        ProviderInfo providerInfo = new ProviderInfo();
+        providerInfo.name = "com.example.app.Provider";
+        providerInfo.authority = "com.example.app";
+        pkg.providers.add(new Provider(pkg, providerInfo, true));
+        ServiceInfo serviceInfo = new ServiceInfo();
+        serviceInfo.name = "com.example.app.Service";
+        pkg.services.add(new Service(pkg, serviceInfo));
+
+        Package read = roundTrip(pkg);
+
+        Activity main = (Activity) read.activities.get(0);
+        assertSame(read, main.owner);
+        assertSame(read.applicationInfo, main.info.applicationInfo);
+        assertEquals("com.example.app.Main", main.className);
+        assertSame(main, ((ActivityIntentInfo) main.intents.get(0)).activity);
+        assertTrue(((ActivityIntentInfo) main.intents.get(0)).hasAction("android.intent.action.MAIN"));
+        Activity boot = (Activity) read.receivers.get(0);
+        assertSame(read, boot.owner);
+        assertTrue(((ActivityIntentInfo) boot.intents.get(0)).hasAction("android.intent.action.BOOT_COMPLETED"));
+        Provider provider = (Provider) read.providers.get(0);
+        assertSame(read, provider.owner);
+        assertTrue(provider.syncable);
+        assertEquals("com.example.app", provider.info.authority);
+        assertSame(read.applicationInfo, ((Service) read.services.get(0)).info.applicationInfo);
+    }
+
+    @Test
+    public void roundTrip_keepsPermissionGroups() {
+        Package pkg = newPackage("com.example.app");
+        PermissionGroupInfo groupInfo = new PermissionGroupInfo();
+        groupInfo.name = "com.example.permission-group.STORAGE";
+        PermissionGroup group = new PermissionGroup(pkg, groupInfo);
+        pkg.permissionGroups.add(group);
+        PermissionInfo permissionInfo = new PermissionInfo();
+        permissionInfo.name = "com.example.permission.READ";
+        Permission permission = new Permission(pkg, permissionInfo);
+        permission.group = group;
+        pkg.permissions.add(permission);
+
+        Package read = roundTrip(pkg);
+
+        Permission readPermission = (Permission) read.permissions.get(0);
+        assertEquals("com.example.permission.READ", readPermission.info.name);
+        assertSame(read.permissionGroups.get(0), readPermission.group);
+    }
+
+    @Test
+    public void roundTrip_keepsPreferredFiltersSharedWithIntents() {
+        Package pkg = newPackage("com.example.app");
+        Activity activity = addActivity(pkg, pkg.activities, "com.example.app.Main", "android.intent.action.VIEW");
+        ActivityIntentInfo separate = new ActivityIntentInfo(activity);
+        separate.addAction("android.intent.action.SEND");
+        pkg.preferredActivityFilters = new ArrayList();
+        pkg.preferredActivityFilters.add((ActivityIntentInfo) activity.intents.get(0));
+        pkg.preferredActivityFilters.add(separate);
+
+        Package read = roundTrip(pkg);
+
+        Activity readActivity = (Activity) read.activities.get(0);
+        assertEquals(2, read.preferredActivityFilters.size());
+        assertSame(readActivity.intents.get(0), read.preferredActivityFilters.get(0));
+        ActivityIntentInfo readSeparate = (ActivityIntentInfo) read.preferredActivityFilters.get(1);
+        assertFalse(readActivity.intents.contains(readSeparate));
+        assertSame(readActivity, readSeparate.activity);
+        assertTrue(readSeparate.hasAction("android.intent.action.SEND"));
+    }
+
+    @Test
+    public void roundTrip_keepsChildPackages() {
+        Package pkg = newPackage("com.example.app");
+        pkg.childPackages = new ArrayList();
+        pkg.childPackages.add(newPackage("com.example.app.child"));
+
+        Package read = roundTrip(pkg);
+
+        Package child = (Package) read.childPackages.get(0);
+        assertEquals("com.example.app.child", child.packageName);
+        assertSame(read, child.parentPackage);
+        assertNull(child.childPackages);
+    }
+
+    private static Package newPackage(String name) {
+        Package pkg = new Package(name);
+        pkg.codePath = "/data/app/" + name + "-1";
+        pkg.baseCodePath = pkg.codePath + "/base.apk";
+        return pkg;
+    }
+
+    private static Activity addActivity(Package pkg, ArrayList<Activity> list, String name, String action) {
+        ActivityInfo info = new ActivityInfo();
+        info.name = name;
+        info.packageName = pkg.packageName;
+        Activity activity = new Activity(pkg, info);
+        ActivityIntentInfo intent = new ActivityIntentInfo(activity);
+        intent.addAction(action);
+        activity.intents.add(intent);
+        list.add(activity);
+        return activity;
+    }
+
+    private static Package roundTrip(Package pkg) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            PackageCache.writePackage(parcel, pkg);
+            byte[] bytes = parcel.marshall();
+            Parcel in = Parcel.obtain();
+            try {
+                in.unmarshall(bytes, 0, bytes.length);
+                in.setDataPosition(0);
+                Package read = PackageCache.readPackage(in);
+                assertEquals(bytes.length, in.dataPosition());
+                return read;
+            } finally {
+                in.recycle();
+            }
+        } finally {
+            parcel.recycle();
+        }
+    }
+}
@@ -1094,7 +1094,7 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
         return true;
     }
 
-    private IntentFilter(Parcel source) {
+    protected IntentFilter(Parcel source) {
         int i;
         boolean z = true;
         this.mCategories = null;
@@ -0,0 +1,545 @@
+package android.content.pm;
+
+import android.content.pm.PackageParser.Activity;
+import android.content.pm.PackageParser.ActivityIntentInfo;
+import android.content.pm.PackageParser.Instrumentation;
+import android.content.pm.PackageParser.IntentInfo;
+import android.content.pm.PackageParser.Package;
+import android.content.pm.PackageParser.Permission;
+import android.content.pm.PackageParser.PermissionGroup;
+import android.content.pm.PackageParser.Provider;
+import android.content.pm.PackageParser.ProviderIntentInfo;
+import android.content.pm.PackageParser.Service;
+import android.content.pm.PackageParser.ServiceIntentInfo;
+import android.os.Build;
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.text.TextUtils;
+import android.util.ArrayMap;
+import android.util.ArraySet;
+import android.util.Base64;
+import android.util.Slog;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent cache of parsed packages, so a boot scan can skip manifest parsing for APKs that
+ * did not change since the previous boot.
+ *
+ * <p>Every package is stored in its own file, named after the flags it was parsed with and its
+ * code path. The file starts with a magic, the length and the CRC of the payload; the payload is
+ * a marshalled Parcel holding the format version, the build fingerprint, the parse arguments, a
+ * stamp made of the name, size and modification time of every APK of the package, and the
+ * package itself. An entry is only used when all of them match, anything else is a miss and the
+ * entry is replaced after parsing. Packages with collected certificates are not cached.
+ */
+final class PackageCache {
+    private static final int CACHE_VERSION = 2;
+    private static final int MAGIC = 1346585409;
+    private static final String TAG = "PackageCache";
+
+    private PackageCache() {
+    }
+
+    /**
+     * Returns the name, size and modification time of every APK of the package, or null if the
+     * package can not be listed.
+     */
+    static String getStamp(File packageFile) {
+        StringBuilder sb = new StringBuilder();
+        if (packageFile.isDirectory()) {
+            File[] files = packageFile.listFiles();
+            if (files == null) {
+                return null;
+            }
+            Arrays.sort(files);
+            for (File file : files) {
+                if (file.getName().endsWith(".apk")) {
+                    appendStamp(sb, file);
+                }
+            }
+        } else if (packageFile.isFile()) {
+            appendStamp(sb, packageFile);
+        } else {
+            return null;
+        }
+        return sb.toString();
+    }
+
+    private static void appendStamp(StringBuilder sb, File file) {
+        sb.append(file.getName()).append(':').append(file.length()).append(':').append(file.lastModified()).append('/');
+    }
+
+    /**
+     * Returns the cached package for packageFile, or null on a miss. A corrupt entry is deleted.
+     */
+    static Package read(File cacheDir, File packageFile, int flags, int hwFlags, String stamp) {
+        if (stamp == null) {
+            return null;
+        }
+        File cacheFile = getCacheFile(cacheDir, packageFile, flags, hwFlags);
+        if (!cacheFile.exists()) {
+            return null;
+        }
+        Parcel in = Parcel.obtain();
+        try {
+            byte[] payload = readPayload(cacheFile);
+            if (payload == null) {
+                cacheFile.delete();
+                return null;
+            }
+            in.unmarshall(payload, 0, payload.length);
+            in.setDataPosition(0);
+            if (in.readInt() == CACHE_VERSION && TextUtils.equals(in.readString(), Build.FINGERPRINT) && packageFile.getAbsolutePath().equals(in.readString()) && in.readInt() == flags && in.readInt() == hwFlags && stamp.equals(in.readString())) {
+                return readPackage(in);
+            }
+            return null;
+        } catch (IOException e) {
+            Slog.w(TAG, "Failed to read cached package " + cacheFile, e);
+            cacheFile.delete();
+            return null;
+        } catch (RuntimeException e2) {
+            Slog.w(TAG, "Discarding corrupt cached package " + cacheFile, e2);
+            cacheFile.delete();
+            return null;
+        } finally {
+            in.recycle();
+        }
+    }
+
+    /**
+     * Stores pkg for packageFile. stamp must have been taken before pkg was parsed, so an APK
+     * replaced during parsing invalidates the entry. Failures are logged and otherwise ignored.
+     */
+    static void write(File cacheDir, File packageFile, int flags, int hwFlags, String stamp, Package pkg) {
+        if (stamp == null || pkg == null || pkg.mSignatures != null || pkg.mCertificates != null || pkg.mSigningKeys != null) {
+            return;
+        }
+        File cacheFile = getCacheFile(cacheDir, packageFile, flags, hwFlags);
+        File tempFile = new File(cacheDir, cacheFile.getName() + ".tmp");
+        Parcel out = Parcel.obtain();
+        try {
+            out.writeInt(CACHE_VERSION);
+            out.writeString(Build.FINGERPRINT);
+            out.writeString(packageFile.getAbsolutePath());
+            out.writeInt(flags);
+            out.writeInt(hwFlags);
+            out.writeString(stamp);
+            writePackage(out, pkg);
+            byte[] payload = out.marshall();
+            DataOutputStream stream = new DataOutputStream(new FileOutputStream(tempFile));
+            try {
+                stream.writeInt(MAGIC);
+                stream.writeInt(payload.length);
+                stream.writeLong(crc(payload));
+                stream.write(payload);
+            } finally {
+                stream.close();
+            }
+            if (!tempFile.renameTo(cacheFile)) {
+                throw new IOException("Failed to rename " + tempFile + " to " + cacheFile);
+            }
+        } catch (IOException e) {
+            Slog.w(TAG, "Failed to cache package " + packageFile, e);
+            tempFile.delete();
+        } catch (RuntimeException e2) {
+            Slog.w(TAG, "Failed to cache package " + packageFile, e2);
+            tempFile.delete();
+        } finally {
+            out.recycle();
+        }
+    }
+
+    /**
+     * Deletes the entries of packages whose code path no longer exists.
+     */
+    static void prune(File cacheDir) {
+        File[] files = cacheDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                int start = name.indexOf('_', name.indexOf('_') + 1);
+                if (start < 0 || name.endsWith(".tmp") || !new File(name.substring(start + 1).replace('@', '/')).exists()) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    private static File getCacheFile(File cacheDir, File packageFile, int flags, int hwFlags) {
+        return new File(cacheDir, Integer.toHexString(flags) + "_" + Integer.toHexString(hwFlags) + "_" + packageFile.getAbsolutePath().replace('/', '@'));
+    }
+
+    private static byte[] readPayload(File cacheFile) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+        try {
+            if (in.readInt() != MAGIC) {
+                return null;
+            }
+            int length = in.readInt();
+            long expectedCrc = in.readLong();
+            if (length < 0 || ((long) length) != cacheFile.length() - 16) {
+                return null;
+            }
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            if (crc(payload) != expectedCrc) {
+                return null;
+            }
+            return payload;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static long crc(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length);
+        return crc.getValue();
+    }
+
+    /**
+     * Writes everything of pkg that parsing sets, except the certificates. Preferred filters
+     * that are also one of the intents of their activity are written as a reference to it, so
+     * {@link #readPackage} gives back the same sharing.
+     */
+    static void writePackage(Parcel dest, Package pkg) {
+        int i;
+        dest.writeString(pkg.packageName);
+        pkg.applicationInfo.writeToParcel(dest, 0);
+        dest.writeString(pkg.baseCodePath);
+        dest.writeInt(pkg.baseHardwareAccelerated ? 1 : 0);
+        dest.writeInt(pkg.baseRevisionCode);
+        dest.writeString(pkg.codePath);
+        dest.writeTypedList(pkg.configPreferences);
+        dest.writeInt(pkg.coreApp ? 1 : 0);
+        dest.writeString(pkg.cpuAbiOverride);
+        dest.writeTypedList(pkg.featureGroups);
+        dest.writeInt(pkg.installLocation);
+        dest.writeStringList(pkg.libraryNames);
+        dest.writeStringList(pkg.mAdoptPermissions);
+        dest.writeBundle(pkg.mAppMetaData);
+        writeKeySetMapping(dest, pkg.mKeySetMapping);
+        dest.writeStringList(pkg.mOriginalPackages);
+        dest.writeInt(pkg.mOverlayPriority);
+        dest.writeString(pkg.mOverlayTarget);
+        dest.writeInt(pkg.mPreferredOrder);
+        dest.writeString(pkg.mRealPackage);
+        dest.writeTypedArray(pkg.mRealSignatures, 0);
+        dest.writeString(pkg.mRequiredAccountType);
+        dest.writeInt(pkg.mRequiredForAllUsers ? 1 : 0);
+        dest.writeString(pkg.mRestrictedAccountType);
+        dest.writeString(pkg.mSharedUserId);
+        dest.writeInt(pkg.mSharedUserLabel);
+        dest.writeInt(pkg.mTrustedOverlay ? 1 : 0);
+        if (pkg.mUpgradeKeySets == null) {
+            dest.writeInt(-1);
+        } else {
+            dest.writeInt(pkg.mUpgradeKeySets.size());
+            for (i = 0; i < pkg.mUpgradeKeySets.size(); i++) {
+                dest.writeString((String) pkg.mUpgradeKeySets.valueAt(i));
+            }
+        }
+        dest.writeInt(pkg.mVersionCode);
+        dest.writeString(pkg.mVersionName);
+        dest.writeStringList(pkg.protectedBroadcasts);
+        dest.writeTypedList(pkg.reqFeatures);
+        dest.writeStringList(pkg.requestedPermissions);
+        dest.writeByteArray(pkg.restrictUpdateHash);
+        dest.writeStringArray(pkg.splitCodePaths);
+        dest.writeIntArray(pkg.splitFlags);
+        dest.writeStringArray(pkg.splitNames);
+        dest.writeIntArray(pkg.splitPrivateFlags);
+        dest.writeIntArray(pkg.splitRevisionCodes);
+        dest.writeInt(pkg.use32bitAbi ? 1 : 0);
+        dest.writeStringList(pkg.usesLibraries);
+        dest.writeStringArray(pkg.usesLibraryFiles);
+        dest.writeStringList(pkg.usesOptionalLibraries);
+        dest.writeString(pkg.volumeUuid);
+        dest.writeInt(pkg.permissionGroups.size());
+        for (i = 0; i < pkg.permissionGroups.size(); i++) {
+            PermissionGroup group = (PermissionGroup) pkg.permissionGroups.get(i);
+            group.info.writeToParcel(dest, 0);
+            dest.writeBundle(group.metaData);
+        }
+        dest.writeInt(pkg.permissions.size());
+        for (i = 0; i < pkg.permissions.size(); i++) {
+            Permission perm = (Permission) pkg.permissions.get(i);
+            perm.info.writeToParcel(dest, 0);
+            dest.writeInt(perm.tree ? 1 : 0);
+            dest.writeBundle(perm.metaData);
+            dest.writeInt(pkg.permissionGroups.indexOf(perm.group));
+        }
+        writeActivities(dest, pkg.activities);
+        writeActivities(dest, pkg.receivers);
+        dest.writeInt(pkg.providers.size());
+        for (i = 0; i < pkg.providers.size(); i++) {
+            Provider provider = (Provider) pkg.providers.get(i);
+            provider.info.writeToParcel(dest, Parcelable.PARCELABLE_ELIDE_DUPLICATES);
+            dest.writeInt(provider.syncable ? 1 : 0);
+            dest.writeBundle(provider.metaData);
+            writeIntents(dest, provider.intents);
+        }
+        dest.writeInt(pkg.services.size());
+        for (i = 0; i < pkg.services.size(); i++) {
+            Service service = (Service) pkg.services.get(i);
+            service.info.writeToParcel(dest, Parcelable.PARCELABLE_ELIDE_DUPLICATES);
+            dest.writeBundle(service.metaData);
+            writeIntents(dest, service.intents);
+        }
+        dest.writeInt(pkg.instrumentation.size());
+        for (i = 0; i < pkg.instrumentation.size(); i++) {
+            Instrumentation instrumentation = (Instrumentation) pkg.instrumentation.get(i);
+            instrumentation.info.writeToParcel(dest, 0);
+            dest.writeBundle(instrumentation.metaData);
+            writeIntents(dest, instrumentation.intents);
+        }
+        if (pkg.preferredActivityFilters == null) {
+            dest.writeInt(-1);
+        } else {
+            dest.writeInt(pkg.preferredActivityFilters.size());
+            for (i = 0; i < pkg.preferredActivityFilters.size(); i++) {
+                ActivityIntentInfo intent = (ActivityIntentInfo) pkg.preferredActivityFilters.get(i);
+                int index = pkg.activities.indexOf(intent.activity);
+                if (index >= 0) {
+                    dest.writeInt(index);
+                } else {
+                    index = pkg.receivers.indexOf(intent.activity);
+                    if (index < 0) {
+                        throw new IllegalStateException("Preferred filter of unknown activity " + intent.activity);
+                    }
+                    dest.writeInt((-index) - 1);
+                }
+                int intentIndex = intent.activity.intents.indexOf(intent);
+                if (intentIndex < 0) {
+                    dest.writeInt(-1);
+                    intent.writeIntentInfoToParcel(dest);
+                } else {
+                    dest.writeInt(intentIndex);
+                }
+            }
+        }
+        if (pkg.childPackages == null) {
+            dest.writeInt(-1);
+            return;
+        }
+        dest.writeInt(pkg.childPackages.size());
+        for (i = 0; i < pkg.childPackages.size(); i++) {
+            writePackage(dest, (Package) pkg.childPackages.get(i));
+        }
+    }
+
+    static Package readPackage(Parcel in) {
+        int i;
+        Package pkg = new Package(in.readString(), (ApplicationInfo) ApplicationInfo.CREATOR.createFromParcel(in));
+        pkg.baseCodePath = in.readString();
+        pkg.baseHardwareAccelerated = in.readInt() != 0;
+        pkg.baseRevisionCode = in.readInt();
+        pkg.codePath = in.readString();
+        pkg.configPreferences = in.createTypedArrayList(ConfigurationInfo.CREATOR);
+        pkg.coreApp = in.readInt() != 0;
+        pkg.cpuAbiOverride = in.readString();
+        pkg.featureGroups = in.createTypedArrayList(FeatureGroupInfo.CREATOR);
+        pkg.installLocation = in.readInt();
+        pkg.libraryNames = in.createStringArrayList();
+        pkg.mAdoptPermissions = in.createStringArrayList();
+        pkg.mAppMetaData = in.readBundle();
+        pkg.mKeySetMapping = readKeySetMapping(in);
+        pkg.mOriginalPackages = in.createStringArrayList();
+        pkg.mOverlayPriority = in.readInt();
+        pkg.mOverlayTarget = in.readString();
+        pkg.mPreferredOrder = in.readInt();
+        pkg.mRealPackage = in.readString();
+        pkg.mRealSignatures = (Signature[]) in.createTypedArray(Signature.CREATOR);
+        pkg.mRequiredAccountType = in.readString();
+        pkg.mRequiredForAllUsers = in.readInt() != 0;
+        pkg.mRestrictedAccountType = in.readString();
+        pkg.mSharedUserId = in.readString();
+        pkg.mSharedUserLabel = in.readInt();
+        pkg.mTrustedOverlay = in.readInt() != 0;
+        int count = in.readInt();
+        if (count >= 0) {
+            pkg.mUpgradeKeySets = new ArraySet(count);
+            for (i = 0; i < count; i++) {
+                pkg.mUpgradeKeySets.add(in.readString());
+            }
+        }
+        pkg.mVersionCode = in.readInt();
+        pkg.mVersionName = in.readString();
+        pkg.protectedBroadcasts = in.createStringArrayList();
+        pkg.reqFeatures = in.createTypedArrayList(FeatureInfo.CREATOR);
+        pkg.requestedPermissions.addAll(in.createStringArrayList());
+        pkg.restrictUpdateHash = in.createByteArray();
+        pkg.splitCodePaths = in.createStringArray();
+        pkg.splitFlags = in.createIntArray();
+        pkg.splitNames = in.createStringArray();
+        pkg.splitPrivateFlags = in.createIntArray();
+        pkg.splitRevisionCodes = in.createIntArray();
+        pkg.use32bitAbi = in.readInt() != 0;
+        pkg.usesLibraries = in.createStringArrayList();
+        pkg.usesLibraryFiles = in.createStringArray();
+        pkg.usesOptionalLibraries = in.createStringArrayList();
+        pkg.volumeUuid = in.readString();
+        count = in.readInt();
+        for (i = 0; i < count; i++) {
+            PermissionGroup group = new PermissionGroup(pkg, (PermissionGroupInfo) PermissionGroupInfo.CREATOR.createFromParcel(in));
+            group.metaData = in.readBundle();
+            pkg.permissionGroups.add(group);
+        }
+        count = in.readInt();
+        for (i = 0; i < count; i++) {
+            Permission perm = new Permission(pkg, (PermissionInfo) PermissionInfo.CREATOR.createFromParcel(in));
+            perm.tree = in.readInt() != 0;
+            perm.metaData = in.readBundle();
+            int group = in.readInt();
+            if (group >= 0) {
+                perm.group = (PermissionGroup) pkg.permissionGroups.get(group);
+            }
+            pkg.permissions.add(perm);
+        }
+        readActivities(in, pkg, pkg.activities);
+        readActivities(in, pkg, pkg.receivers);
+        count = in.readInt();
+        for (i = 0; i < count; i++) {
+            Provider provider = new Provider(pkg, (ProviderInfo) ProviderInfo.CREATOR.createFromParcel(in), in.readInt() != 0);
+            provider.metaData = in.readBundle();
+            int intentCount = in.readInt();
+            for (int j = 0; j < intentCount; j++) {
+                provider.intents.add(new ProviderIntentInfo(provider, in));
+            }
+            pkg.providers.add(provider);
+        }
+        count = in.readInt();
+        for (i = 0; i < count; i++) {
+            Service service = new Service(pkg, (ServiceInfo) ServiceInfo.CREATOR.createFromParcel(in));
+            service.metaData = in.readBundle();
+            int intentCount = in.readInt();
+            for (int j = 0; j < intentCount; j++) {
+                service.intents.add(new ServiceIntentInfo(service, in));
+            }
+            pkg.services.add(service);
+        }
+        count = in.readInt();
+        for (i = 0; i < count; i++) {
+            Instrumentation instrumentation = new Instrumentation(pkg, (InstrumentationInfo) InstrumentationInfo.CREATOR.createFromParcel(in));
+            instrumentation.metaData = in.readBundle();
+            int intentCount = in.readInt();
+            for (int j = 0; j < intentCount; j++) {
+                instrumentation.intents.add(new IntentInfo(in));
+            }
+            pkg.instrumentation.add(instrumentation);
+        }
+        count = in.readInt();
+        if (count >= 0) {
+            pkg.preferredActivityFilters = new ArrayList(count);
+            for (i = 0; i < count; i++) {
+                int index = in.readInt();
+                Activity activity = (Activity) (index >= 0 ? pkg.activities.get(index) : pkg.receivers.get((-index) - 1));
+                int intentIndex = in.readInt();
+                if (intentIndex >= 0) {
+                    pkg.preferredActivityFilters.add((ActivityIntentInfo) activity.intents.get(intentIndex));
+                } else {
+                    pkg.preferredActivityFilters.add(new ActivityIntentInfo(activity, in));
+                }
+            }
+        }
+        count = in.readInt();
+        if (count >= 0) {
+            pkg.childPackages = new ArrayList(count);
+            for (i = 0; i < count; i++) {
+                Package child = readPackage(in);
+                child.parentPackage = pkg;
+                pkg.childPackages.add(child);
+            }
+        }
+        return pkg;
+    }
+
+    private static void writeActivities(Parcel dest, ArrayList<Activity> activities) {
+        dest.writeInt(activities.size());
+        for (int i = 0; i < activities.size(); i++) {
+            Activity activity = (Activity) activities.get(i);
+            activity.info.writeToParcel(dest, Parcelable.PARCELABLE_ELIDE_DUPLICATES);
+            dest.writeBundle(activity.metaData);
+            writeIntents(dest, activity.intents);
+        }
+    }
+
+    private static void readActivities(Parcel in, Package pkg, ArrayList<Activity> activities) {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            Activity activity = new Activity(pkg, (ActivityInfo) ActivityInfo.CREATOR.createFromParcel(in));
+            activity.metaData = in.readBundle();
+            int intentCount = in.readInt();
+            for (int j = 0; j < intentCount; j++) {
+                activity.intents.add(new ActivityIntentInfo(activity, in));
+            }
+            activities.add(activity);
+        }
+    }
+
+    private static void writeIntents(Parcel dest, ArrayList<? extends IntentInfo> intents) {
+        dest.writeInt(intents.size());
+        for (int i = 0; i < intents.size(); i++) {
+            ((IntentInfo) intents.get(i)).writeIntentInfoToParcel(dest);
+        }
+    }
+
+    /**
+     * Public keys are stored in their X.509 encoding, the same form the manifest declares them
+     * in, and decoded again with {@link PackageParser#parsePublicKey}.
+     */
+    private static void writeKeySetMapping(Parcel dest, ArrayMap<String, ArraySet<PublicKey>> mapping) {
+        if (mapping == null) {
+            dest.writeInt(-1);
+            return;
+        }
+        dest.writeInt(mapping.size());
+        for (int i = 0; i < mapping.size(); i++) {
+            dest.writeString((String) mapping.keyAt(i));
+            ArraySet<PublicKey> keys = (ArraySet) mapping.valueAt(i);
+            if (keys == null) {
+                dest.writeInt(-1);
+            } else {
+                dest.writeInt(keys.size());
+                for (int j = 0; j < keys.size(); j++) {
+                    dest.writeString(Base64.encodeToString(((PublicKey) keys.valueAt(j)).getEncoded(), 2));
+                }
+            }
+        }
+    }
+
+    private static ArrayMap<String, ArraySet<PublicKey>> readKeySetMapping(Parcel in) {
+        int count = in.readInt();
+        if (count < 0) {
+            return null;
+        }
+        ArrayMap<String, ArraySet<PublicKey>> mapping = new ArrayMap(count);
+        for (int i = 0; i < count; i++) {
+            String name = in.readString();
+            int keyCount = in.readInt();
+            ArraySet<PublicKey> keys = null;
+            if (keyCount >= 0) {
+                keys = new ArraySet(keyCount);
+                for (int j = 0; j < keyCount; j++) {
+                    PublicKey key = PackageParser.parsePublicKey(in.readString());
+                    if (key == null) {
+                        throw new IllegalStateException("Unable to decode public key of key set " + name);
+                    }
+                    keys.add(key);
+                }
+            }
+            mapping.put(name, keys);
+        }
+        return mapping;
+    }
+}
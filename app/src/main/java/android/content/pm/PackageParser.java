@@ -21,6 +21,7 @@ import android.os.BatteryStats.HistoryItem;
 import android.os.Build.VERSION;
 import android.os.Bundle;
 import android.os.FileUtils;
+import android.os.Parcel;
 import android.os.PatternMatcher;
 import android.os.Process;
 import android.os.StrictMode;
@@ -144,6 +145,7 @@ public class PackageParser {
     private static final Comparator<String> sSplitNameComparator = null;
     @Deprecated
     private String mArchiveSourcePath;
+    private File mCacheDir;
     private DisplayMetrics mMetrics;
     private boolean mOnlyCoreApps;
     private ParseComponentArgs mParseActivityAliasArgs;
@@ -168,6 +170,12 @@ public class PackageParser {
             this.className = null;
         }
 
+        Component(Package _owner, String _className) {
+            this.owner = _owner;
+            this.intents = new ArrayList(PackageParser.SDK_VERSION);
+            this.className = _className;
+        }
+
         public Component(ParsePackageItemArgs args, PackageItemInfo outInfo) {
             this.owner = args.owner;
             this.intents = new ArrayList(PackageParser.SDK_VERSION);
@@ -268,6 +276,12 @@ public class PackageParser {
             this.info.applicationInfo = args.owner.applicationInfo;
         }
 
+        Activity(Package _owner, ActivityInfo _info) {
+            super(_owner, _info.name);
+            this.info = _info;
+            this.info.applicationInfo = _owner.applicationInfo;
+        }
+
         public void setPackageName(String packageName) {
             super.setPackageName(packageName);
             this.info.packageName = packageName;
@@ -292,6 +306,31 @@ public class PackageParser {
         public int logo;
         public CharSequence nonLocalizedLabel;
         public int preferred;
+
+        public IntentInfo() {
+        }
+
+        IntentInfo(Parcel in) {
+            super(in);
+            this.hasDefault = in.readInt() != 0;
+            this.labelRes = in.readInt();
+            this.nonLocalizedLabel = (CharSequence) TextUtils.CHAR_SEQUENCE_CREATOR.createFromParcel(in);
+            this.icon = in.readInt();
+            this.logo = in.readInt();
+            this.banner = in.readInt();
+            this.preferred = in.readInt();
+        }
+
+        void writeIntentInfoToParcel(Parcel dest) {
+            writeToParcel(dest, PackageParser.SDK_VERSION);
+            dest.writeInt(this.hasDefault ? PackageParser.PARSE_IS_SYSTEM : PackageParser.SDK_VERSION);
+            dest.writeInt(this.labelRes);
+            TextUtils.writeToParcel(this.nonLocalizedLabel, dest, PackageParser.SDK_VERSION);
+            dest.writeInt(this.icon);
+            dest.writeInt(this.logo);
+            dest.writeInt(this.banner);
+            dest.writeInt(this.preferred);
+        }
     }
 
     public static final class ActivityIntentInfo extends IntentInfo {
@@ -301,6 +340,11 @@ public class PackageParser {
             this.activity = _activity;
         }
 
+        ActivityIntentInfo(Activity _activity, Parcel in) {
+            super(in);
+            this.activity = _activity;
+        }
+
         public String toString() {
             StringBuilder sb = new StringBuilder(PackageParser.PARSE_IS_PRIVILEGED);
             sb.append("ActivityIntentInfo{");
@@ -352,6 +396,11 @@ public class PackageParser {
             this.info = _info;
         }
 
+        Instrumentation(Package _owner, InstrumentationInfo _info) {
+            super(_owner, _info.name);
+            this.info = _info;
+        }
+
         public void setPackageName(String packageName) {
             super.setPackageName(packageName);
             this.info.packageName = packageName;
@@ -467,7 +516,13 @@ Caused by: jadx.core.utils.exceptions.DecodeException: Unknown instruction: not-
         }
 
         public Package(String packageName) {
-            this.applicationInfo = new ApplicationInfo();
+            this(packageName, new ApplicationInfo());
+            this.applicationInfo.packageName = packageName;
+            this.applicationInfo.uid = PackageParser.PARSE_DEFAULT_INSTALL_LOCATION;
+        }
+
+        Package(String packageName, ApplicationInfo applicationInfo) {
+            this.applicationInfo = applicationInfo;
             this.permissions = new ArrayList(PackageParser.SDK_VERSION);
             this.permissionGroups = new ArrayList(PackageParser.SDK_VERSION);
             this.activities = new ArrayList(PackageParser.SDK_VERSION);
@@ -492,8 +547,6 @@ Caused by: jadx.core.utils.exceptions.DecodeException: Unknown instruction: not-
             this.reqFeatures = null;
             this.featureGroups = null;
             this.packageName = packageName;
-            this.applicationInfo.packageName = packageName;
-            this.applicationInfo.uid = PackageParser.PARSE_DEFAULT_INSTALL_LOCATION;
         }
 
         public void setApplicationVolumeUuid(String volumeUuid) {
@@ -918,6 +971,13 @@ Caused by: jadx.core.utils.exceptions.DecodeException: Unknown instruction: not-
             this.syncable = PackageParser.RIGID_PARSER;
         }
 
+        Provider(Package _owner, ProviderInfo _info, boolean _syncable) {
+            super(_owner, _info.name);
+            this.info = _info;
+            this.info.applicationInfo = _owner.applicationInfo;
+            this.syncable = _syncable;
+        }
+
         public Provider(Provider existingProvider) {
             super((Component) existingProvider);
             this.info = existingProvider.info;
@@ -947,6 +1007,11 @@ Caused by: jadx.core.utils.exceptions.DecodeException: Unknown instruction: not-
             this.provider = provider;
         }
 
+        ProviderIntentInfo(Provider provider, Parcel in) {
+            super(in);
+            this.provider = provider;
+        }
+
         public String toString() {
             StringBuilder sb = new StringBuilder(PackageParser.PARSE_IS_PRIVILEGED);
             sb.append("ProviderIntentInfo{");
@@ -967,6 +1032,12 @@ Caused by: jadx.core.utils.exceptions.DecodeException: Unknown instruction: not-
             this.info.applicationInfo = args.owner.applicationInfo;
         }
 
+        Service(Package _owner, ServiceInfo _info) {
+            super(_owner, _info.name);
+            this.info = _info;
+            this.info.applicationInfo = _owner.applicationInfo;
+        }
+
         public void setPackageName(String packageName) {
             super.setPackageName(packageName);
             this.info.packageName = packageName;
@@ -990,6 +1061,11 @@ Caused by: jadx.core.utils.exceptions.DecodeException: Unknown instruction: not-
             this.service = _service;
         }
 
+        ServiceIntentInfo(Service _service, Parcel in) {
+            super(in);
+            this.service = _service;
+        }
+
         public String toString() {
             StringBuilder sb = new StringBuilder(PackageParser.PARSE_IS_PRIVILEGED);
             sb.append("ServiceIntentInfo{");
@@ -1075,6 +1151,21 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
         this.mMetrics = metrics;
     }
 
+    /**
+     * Sets the directory where parsed packages are cached between boots, or null to always
+     * parse the manifest. See {@link PackageCache}.
+     */
+    public void setCacheDir(File cacheDir) {
+        this.mCacheDir = cacheDir;
+    }
+
+    /**
+     * Deletes the cached packages whose code path no longer exists.
+     */
+    public static void pruneCache(File cacheDir) {
+        PackageCache.prune(cacheDir);
+    }
+
     public static final boolean isApkFile(File file) {
         return isApkPath(file.getName());
     }
@@ -1376,10 +1467,26 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
     }
 
     public Package parsePackage(File packageFile, int flags, int hwFlags) throws PackageParserException {
+        boolean useCache = this.mCacheDir != null && !this.mOnlyCoreApps && this.mSeparateProcesses == null;
+        String stamp = null;
+        if (useCache) {
+            stamp = PackageCache.getStamp(packageFile);
+            Package pkg = PackageCache.read(this.mCacheDir, packageFile, flags, hwFlags, stamp);
+            if (pkg != null) {
+                HwFrameworkFactory.getHwPackageParser().needStopApp(pkg.packageName, packageFile);
+                return pkg;
+            }
+        }
+        Package parsed;
         if (packageFile.isDirectory()) {
-            return parseClusterPackage(packageFile, flags, hwFlags);
+            parsed = parseClusterPackage(packageFile, flags, hwFlags);
+        } else {
+            parsed = parseMonolithicPackage(packageFile, flags, hwFlags);
+        }
+        if (useCache) {
+            PackageCache.write(this.mCacheDir, packageFile, flags, hwFlags, stamp, parsed);
         }
-        return parseMonolithicPackage(packageFile, flags, hwFlags);
+        return parsed;
     }
 
     private Package parseClusterPackage(File packageDir, int flags) throws PackageParserException {
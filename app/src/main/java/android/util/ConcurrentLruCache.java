@@ -0,0 +1,276 @@
+package android.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A cache with the same hooks as {@link LruCache} ({@link #sizeOf}, {@link #entryRemoved} and
+ * {@link #create}) that can be read and written from many threads without a cache-wide monitor.
+ *
+ * <p>Lookups go straight to a {@link ConcurrentHashMap} and only mark the entry as recently used.
+ * Eviction approximates LRU with the CLOCK algorithm: entries are queued in insertion order and an
+ * entry that was read since it was last examined gets a second chance instead of being evicted.
+ * Only eviction itself is serialized.
+ */
+public class ConcurrentLruCache<K, V> {
+    private final LongAdder createCount;
+    private final ReentrantLock evictionLock;
+    private final LongAdder evictionCount;
+    private final LongAdder hitCount;
+    private final ConcurrentHashMap<K, Node<K, V>> map;
+    private volatile int maxSize;
+    private final LongAdder missCount;
+    private final LongAdder putCount;
+    private final ConcurrentLinkedQueue<Node<K, V>> queue;
+    private final AtomicInteger retiredCount;
+    private final AtomicInteger size;
+
+    private static final class Node<K, V> {
+        volatile boolean accessed;
+        final K key;
+        volatile boolean retired;
+        final int size;
+        final V value;
+
+        Node(K key, V value, int size) {
+            this.key = key;
+            this.value = value;
+            this.size = size;
+        }
+    }
+
+    public ConcurrentLruCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+        this.maxSize = maxSize;
+        this.map = new ConcurrentHashMap();
+        this.queue = new ConcurrentLinkedQueue();
+        this.evictionLock = new ReentrantLock();
+        this.size = new AtomicInteger();
+        this.retiredCount = new AtomicInteger();
+        this.hitCount = new LongAdder();
+        this.missCount = new LongAdder();
+        this.putCount = new LongAdder();
+        this.createCount = new LongAdder();
+        this.evictionCount = new LongAdder();
+    }
+
+    public void resize(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+        this.maxSize = maxSize;
+        trimToSize(maxSize);
+    }
+
+    public final V get(K key) {
+        if (key == null) {
+            throw new NullPointerException("key == null");
+        }
+        Node<K, V> node = (Node) this.map.get(key);
+        if (node != null) {
+            if (!node.accessed) {
+                node.accessed = true;
+            }
+            this.hitCount.increment();
+            return node.value;
+        }
+        this.missCount.increment();
+        V createdValue = create(key);
+        if (createdValue == null) {
+            return null;
+        }
+        this.createCount.increment();
+        Node<K, V> created = new Node(key, createdValue, safeSizeOf(key, createdValue));
+        Node<K, V> existing = (Node) this.map.putIfAbsent(key, created);
+        if (existing != null) {
+            entryRemoved(false, key, createdValue, existing.value);
+            return existing.value;
+        }
+        this.size.addAndGet(created.size);
+        this.queue.offer(created);
+        trimIfNeeded();
+        return createdValue;
+    }
+
+    public final V put(K key, V value) {
+        if (key == null || value == null) {
+            throw new NullPointerException("key == null || value == null");
+        }
+        this.putCount.increment();
+        Node<K, V> node = new Node(key, value, safeSizeOf(key, value));
+        this.size.addAndGet(node.size);
+        Node<K, V> previous = (Node) this.map.put(key, node);
+        this.queue.offer(node);
+        if (previous == null) {
+            trimIfNeeded();
+            return null;
+        }
+        retire(previous);
+        entryRemoved(false, key, previous.value, value);
+        trimIfNeeded();
+        return previous.value;
+    }
+
+    public final V remove(K key) {
+        if (key == null) {
+            throw new NullPointerException("key == null");
+        }
+        Node<K, V> previous = (Node) this.map.remove(key);
+        if (previous == null) {
+            return null;
+        }
+        retire(previous);
+        entryRemoved(false, key, previous.value, null);
+        return previous.value;
+    }
+
+    /**
+     * Evicts entries until the cache is no larger than maxSize. Each call gives at most one
+     * sweep of the live entries a second chance, so readers that keep marking entries as used
+     * cannot keep it spinning.
+     */
+    public void trimToSize(int maxSize) {
+        int secondChances = this.map.size();
+        while (this.size.get() > maxSize) {
+            Node<K, V> victim = null;
+            this.evictionLock.lock();
+            try {
+                while (this.size.get() > maxSize) {
+                    Node<K, V> candidate = (Node) this.queue.poll();
+                    if (candidate == null) {
+                        break;
+                    } else if (candidate.retired) {
+                        this.retiredCount.decrementAndGet();
+                    } else if (candidate.accessed && maxSize >= 0 && secondChances > 0) {
+                        secondChances--;
+                        candidate.accessed = false;
+                        this.queue.offer(candidate);
+                    } else if (this.map.remove(candidate.key, candidate)) {
+                        this.size.addAndGet(-candidate.size);
+                        this.evictionCount.increment();
+                        victim = candidate;
+                        break;
+                    } else {
+                        this.retiredCount.decrementAndGet();
+                    }
+                }
+            } finally {
+                this.evictionLock.unlock();
+            }
+            if (victim == null) {
+                return;
+            }
+            entryRemoved(true, victim.key, victim.value, null);
+        }
+    }
+
+    private void trimIfNeeded() {
+        int max = this.maxSize;
+        if (this.size.get() > max) {
+            trimToSize(max);
+        }
+    }
+
+    /**
+     * Marks a node that is no longer mapped. Retired nodes are skipped by eviction and purged from
+     * the queue once they outnumber the live entries.
+     */
+    private void retire(Node<K, V> node) {
+        node.retired = true;
+        this.size.addAndGet(-node.size);
+        if (this.retiredCount.incrementAndGet() > this.map.size() + 64 && this.evictionLock.tryLock()) {
+            try {
+                int purged = 0;
+                Iterator<Node<K, V>> it = this.queue.iterator();
+                while (it.hasNext()) {
+                    if (((Node) it.next()).retired) {
+                        it.remove();
+                        purged++;
+                    }
+                }
+                this.retiredCount.addAndGet(-purged);
+            } finally {
+                this.evictionLock.unlock();
+            }
+        }
+    }
+
+    protected void entryRemoved(boolean evicted, K key, V oldValue, V newValue) {
+    }
+
+    protected V create(K key) {
+        return null;
+    }
+
+    private int safeSizeOf(K key, V value) {
+        int result = sizeOf(key, value);
+        if (result >= 0) {
+            return result;
+        }
+        throw new IllegalStateException("Negative size: " + key + PtmLog.KEY_VAL_SEP + value);
+    }
+
+    protected int sizeOf(K key, V value) {
+        return 1;
+    }
+
+    public final void evictAll() {
+        trimToSize(-1);
+    }
+
+    public final int size() {
+        return this.size.get();
+    }
+
+    public final int maxSize() {
+        return this.maxSize;
+    }
+
+    public final int hitCount() {
+        return this.hitCount.intValue();
+    }
+
+    public final int missCount() {
+        return this.missCount.intValue();
+    }
+
+    public final int createCount() {
+        return this.createCount.intValue();
+    }
+
+    public final int putCount() {
+        return this.putCount.intValue();
+    }
+
+    public final int evictionCount() {
+        return this.evictionCount.intValue();
+    }
+
+    /**
+     * Returns a copy of the live entries, oldest insertion first.
+     */
+    public final Map<K, V> snapshot() {
+        Map<K, V> snapshot = new LinkedHashMap();
+        for (Node<K, V> node : this.queue) {
+            if (!node.retired && this.map.get(node.key) == node) {
+                snapshot.put(node.key, node.value);
+            }
+        }
+        return snapshot;
+    }
+
+    public final String toString() {
+        int hits = hitCount();
+        int accesses = hits + missCount();
+        int hitPercent = accesses != 0 ? (hits * 100) / accesses : 0;
+        return String.format("ConcurrentLruCache[maxSize=%d,hits=%d,misses=%d,hitRate=%d%%]", new Object[]{Integer.valueOf(this.maxSize), Integer.valueOf(hits), Integer.valueOf(accesses - hits), Integer.valueOf(hitPercent)});
+    }
+}
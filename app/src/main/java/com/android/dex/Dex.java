@@ -14,9 +14,11 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.io.UTFDataFormatException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.FileChannel.MapMode;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.AbstractList;
@@ -33,14 +35,22 @@ import libcore.icu.DateUtilsBridge;
 public final class Dex {
     private static final int CHECKSUM_OFFSET = 8;
     private static final int CHECKSUM_SIZE = 4;
-    static final short[] EMPTY_SHORT_ARRAY = null;
+    static final short[] EMPTY_SHORT_ARRAY;
+    private static final int METHOD_ID_CACHE_SIZE = 1024;
+    private static final int METHOD_ID_ITEM_SIZE = 8;
+    private static final int METHOD_ID_NAME_OFFSET = 4;
+    private static final int METHOD_ID_PROTO_OFFSET = 2;
     private static final int SIGNATURE_OFFSET = 12;
     private static final int SIGNATURE_SIZE = 20;
+    private static final int STRING_CACHE_SIZE = 2048;
+    private static final int STRING_ID_ITEM_SIZE = 4;
     private ByteBuffer data;
     private final FieldIdTable fieldIds;
+    private final IdCache<MethodId> methodIdCache;
     private final MethodIdTable methodIds;
     private int nextSectionStart;
     private final ProtoIdTable protoIds;
+    private final IdCache<String> stringCache;
     private final StringTable strings;
     private final TableOfContents tableOfContents;
     private final TypeIndexToDescriptorIndexTable typeIds;
@@ -52,9 +62,9 @@ public final class Dex {
 
         public Iterator<ClassDef> iterator() {
             if (Dex.this.tableOfContents.classDefs.exists()) {
-                return new ClassDefIterator(null);
+                return new ClassDefIterator();
             }
-            return Collections.emptySet().iterator();
+            return Collections.<ClassDef>emptySet().iterator();
         }
     }
 
@@ -98,13 +108,59 @@ public final class Dex {
         }
     }
 
+    /**
+     * Direct mapped cache of decoded table entries, used by mapped dex files. A colliding entry
+     * simply replaces the previous one, so the cache never holds more than its size. Entries are
+     * immutable, so lookups need no locking.
+     */
+    private static final class IdCache<T> {
+        private final Entry<T>[] entries;
+
+        private static final class Entry<T> {
+            final int index;
+            final T value;
+
+            Entry(int index, T value) {
+                this.index = index;
+                this.value = value;
+            }
+        }
+
+        IdCache(int size) {
+            this.entries = new Entry[size];
+        }
+
+        T get(int index) {
+            Entry<T> entry = this.entries[(this.entries.length - 1) & index];
+            return (entry == null || entry.index != index) ? null : entry.value;
+        }
+
+        void put(int index, T value) {
+            this.entries[(this.entries.length - 1) & index] = new Entry(index, value);
+        }
+    }
+
     private final class MethodIdTable extends AbstractList<MethodId> implements RandomAccess {
         private MethodIdTable() {
         }
 
         public MethodId get(int index) {
             Dex.checkBounds(index, Dex.this.tableOfContents.methodIds.size);
-            return Dex.this.open(Dex.this.tableOfContents.methodIds.off + (index * Dex.CHECKSUM_OFFSET)).readMethodId();
+            if (Dex.this.methodIdCache != null) {
+                MethodId cached = (MethodId) Dex.this.methodIdCache.get(index);
+                if (cached != null) {
+                    return cached;
+                }
+            }
+            int position = Dex.this.tableOfContents.methodIds.off + (index * Dex.METHOD_ID_ITEM_SIZE);
+            if (position < 0 || position > Dex.this.data.capacity() - Dex.METHOD_ID_ITEM_SIZE) {
+                throw new IllegalArgumentException("position=" + position + " length=" + Dex.this.data.capacity());
+            }
+            MethodId result = new MethodId(Dex.this, Dex.this.data.getShort(position) & 0xffff, Dex.this.data.getShort(position + Dex.METHOD_ID_PROTO_OFFSET) & 0xffff, Dex.this.data.getInt(position + Dex.METHOD_ID_NAME_OFFSET));
+            if (Dex.this.methodIdCache != null) {
+                Dex.this.methodIdCache.put(index, result);
+            }
+            return result;
         }
 
         public int size() {
@@ -208,12 +264,10 @@ public final class Dex {
                 if (result.length() != expectedLength) {
                     throw new DexException("Declared length " + expectedLength + " doesn't match decoded length of " + result.length());
                 }
-                this.data.position(savedPosition);
-                this.data.limit(savedLimit);
                 return result;
-            } catch (Throwable e) {
+            } catch (UTFDataFormatException e) {
                 throw new DexException(e);
-            } catch (Throwable th) {
+            } finally {
                 this.data.position(savedPosition);
                 this.data.limit(savedLimit);
             }
@@ -445,7 +499,15 @@ public final class Dex {
 
         public String get(int index) {
             Dex.checkBounds(index, Dex.this.tableOfContents.stringIds.size);
-            return Dex.this.open(Dex.this.tableOfContents.stringIds.off + (index * Dex.CHECKSUM_SIZE)).readString();
+            if (Dex.this.stringCache == null) {
+                return Dex.this.open(Dex.this.tableOfContents.stringIds.off + (index * Dex.STRING_ID_ITEM_SIZE)).readString();
+            }
+            String result = (String) Dex.this.stringCache.get(index);
+            if (result == null) {
+                result = Dex.this.open(Dex.this.tableOfContents.stringIds.off + (index * Dex.STRING_ID_ITEM_SIZE)).readString();
+                Dex.this.stringCache.put(index, result);
+            }
+            return result;
         }
 
         public int size() {
@@ -480,32 +542,7 @@ public final class Dex {
     }
 
     static {
-        /* JADX: method processing error */
-/*
-        Error: jadx.core.utils.exceptions.DecodeException: Load method exception in method: com.android.dex.Dex.<clinit>():void
-	at jadx.core.dex.nodes.MethodNode.load(MethodNode.java:113)
-	at jadx.core.dex.nodes.ClassNode.load(ClassNode.java:256)
-	at jadx.core.ProcessClass.process(ProcessClass.java:34)
-	at jadx.core.ProcessClass.processDependencies(ProcessClass.java:59)
-	at jadx.core.ProcessClass.process(ProcessClass.java:42)
-	at jadx.api.JadxDecompiler.processClass(JadxDecompiler.java:281)
-	at jadx.api.JavaClass.decompile(JavaClass.java:59)
-	at jadx.api.JadxDecompiler$1.run(JadxDecompiler.java:161)
-Caused by: jadx.core.utils.exceptions.DecodeException:  in method: com.android.dex.Dex.<clinit>():void
-	at jadx.core.dex.instructions.InsnDecoder.decodeInsns(InsnDecoder.java:46)
-	at jadx.core.dex.nodes.MethodNode.load(MethodNode.java:98)
-	... 7 more
-Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
-	at com.android.dx.io.OpcodeInfo.get(OpcodeInfo.java:1197)
-	at com.android.dx.io.OpcodeInfo.getFormat(OpcodeInfo.java:1212)
-	at com.android.dx.io.instructions.DecodedInstruction.decode(DecodedInstruction.java:72)
-	at jadx.core.dex.instructions.InsnDecoder.decodeInsns(InsnDecoder.java:43)
-	... 8 more
-*/
-        /*
-        // Can't load method instructions.
-        */
-        throw new UnsupportedOperationException("Method not decompiled: com.android.dex.Dex.<clinit>():void");
+        EMPTY_SHORT_ARRAY = new short[0];
     }
 
     public Dex(byte[] data) throws IOException {
@@ -513,6 +550,10 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
     }
 
     private Dex(ByteBuffer data) throws IOException {
+        this(data, false);
+    }
+
+    private Dex(ByteBuffer data, boolean mapped) throws IOException {
         this.tableOfContents = new TableOfContents();
         this.nextSectionStart = 0;
         this.strings = new StringTable();
@@ -521,6 +562,8 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
         this.protoIds = new ProtoIdTable();
         this.fieldIds = new FieldIdTable();
         this.methodIds = new MethodIdTable();
+        this.stringCache = mapped ? new IdCache(STRING_CACHE_SIZE) : null;
+        this.methodIdCache = mapped ? new IdCache(METHOD_ID_CACHE_SIZE) : null;
         this.data = data;
         this.data.order(ByteOrder.LITTLE_ENDIAN);
         this.tableOfContents.readFrom(this);
@@ -535,6 +578,8 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
         this.protoIds = new ProtoIdTable();
         this.fieldIds = new FieldIdTable();
         this.methodIds = new MethodIdTable();
+        this.stringCache = null;
+        this.methodIdCache = null;
         this.data = ByteBuffer.wrap(new byte[byteCount]);
         this.data.order(ByteOrder.LITTLE_ENDIAN);
     }
@@ -548,6 +593,8 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
         this.protoIds = new ProtoIdTable();
         this.fieldIds = new FieldIdTable();
         this.methodIds = new MethodIdTable();
+        this.stringCache = null;
+        this.methodIdCache = null;
         loadFrom(in);
     }
 
@@ -560,6 +607,8 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
         this.protoIds = new ProtoIdTable();
         this.fieldIds = new FieldIdTable();
         this.methodIds = new MethodIdTable();
+        this.stringCache = null;
+        this.methodIdCache = null;
         if (FileUtils.hasArchiveSuffix(file.getName())) {
             ZipFile zipFile = new ZipFile(file);
             ZipEntry entry = zipFile.getEntry(DexFormat.DEX_IN_JAR_NAME);
@@ -576,6 +625,26 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
         }
     }
 
+    /**
+     * Maps a .dex file read-only instead of copying it into the heap. Strings and method ids
+     * are decoded on first use and kept in small bounded caches. The returned dex can not be
+     * written to. Archives are loaded like {@link #Dex(File)}, their entries are compressed.
+     */
+    public static Dex map(File file) throws IOException {
+        if (FileUtils.hasArchiveSuffix(file.getName())) {
+            return new Dex(file);
+        } else if (file.getName().endsWith(".dex")) {
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                return new Dex(raf.getChannel().map(MapMode.READ_ONLY, 0, raf.length()), true);
+            } finally {
+                raf.close();
+            }
+        } else {
+            throw new DexException("unknown output extension: " + file);
+        }
+    }
+
     public static Dex create(ByteBuffer data) throws IOException {
         data.order(ByteOrder.LITTLE_ENDIAN);
         if (data.get(0) == 100 && data.get(1) == 101 && data.get(2) == 121 && data.get(3) == 10) {
@@ -641,7 +710,7 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
         sectionData.order(ByteOrder.LITTLE_ENDIAN);
         sectionData.position(position);
         sectionData.limit(this.data.capacity());
-        return new Section("section", sectionData, null);
+        return new Section("section", sectionData);
     }
 
     public Section appendSection(int maxByteCount, String name) {
@@ -653,7 +722,7 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
         sectionData.order(ByteOrder.LITTLE_ENDIAN);
         sectionData.position(this.nextSectionStart);
         sectionData.limit(limit);
-        Section result = new Section(name, sectionData, null);
+        Section result = new Section(name, sectionData);
         this.nextSectionStart = limit;
         return result;
     }
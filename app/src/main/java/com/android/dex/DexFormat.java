@@ -18,7 +18,7 @@ public final class DexFormat {
     }
 
     public static int magicToApi(byte[] magic) {
-        if (magic.length != 8 || magic[0] != 100 || magic[1] != 101 || magic[2] != 120 || magic[3] != 10 || magic[7] != null) {
+        if (magic.length != 8 || magic[0] != 100 || magic[1] != 101 || magic[2] != 120 || magic[3] != 10 || magic[7] != 0) {
             return -1;
         }
         String version = XmlPullParser.NO_NAMESPACE + ((char) magic[4]) + ((char) magic[5]) + ((char) magic[6]);
@@ -38,8 +38,9 @@ public final class Leb128 {
         int result = 0;
         int count = 0;
         int signBits = -1;
+        int cur;
         do {
-            int cur = in.readByte() & Opcodes.OP_CONST_CLASS_JUMBO;
+            cur = in.readByte() & Opcodes.OP_CONST_CLASS_JUMBO;
             result |= (cur & Opcodes.OP_NEG_FLOAT) << (count * 7);
             signBits <<= 7;
             count++;
@@ -59,8 +60,9 @@ public final class Leb128 {
     public static int readUnsignedLeb128(ByteInput in) {
         int result = 0;
         int count = 0;
+        int cur;
         do {
-            int cur = in.readByte() & Opcodes.OP_CONST_CLASS_JUMBO;
+            cur = in.readByte() & Opcodes.OP_CONST_CLASS_JUMBO;
             result |= (cur & Opcodes.OP_NEG_FLOAT) << (count * 7);
             count++;
             if ((cur & NodeFilter.SHOW_COMMENT) != NodeFilter.SHOW_COMMENT) {
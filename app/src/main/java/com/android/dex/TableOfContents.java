@@ -155,8 +155,9 @@ public final class TableOfContents {
                 } else {
                     throw new DexException("Map is unsorted at " + previous + ", " + section);
                 }
+            } else {
+                throw new DexException("Unexpected map value for 0x" + Integer.toHexString(type));
             }
-            throw new DexException("Unexpected map value for 0x" + Integer.toHexString(type));
         }
         Arrays.sort(this.sections);
     }
@@ -27,10 +27,7 @@ public class ExceptionWithContext extends RuntimeException {
     }
 
     public ExceptionWithContext(String message, Throwable cause) {
-        if (message == null) {
-            message = cause != null ? cause.getMessage() : null;
-        }
-        super(message, cause);
+        super(message != null ? message : cause != null ? cause.getMessage() : null, cause);
         if (cause instanceof ExceptionWithContext) {
             String ctx = ((ExceptionWithContext) cause).context.toString();
             this.context = new StringBuffer(ctx.length() + Opcodes.OP_MUL_FLOAT_2ADDR);
@@ -81,6 +81,7 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
@@ -237,6 +238,7 @@ public class BatteryStatsImpl extends BatteryStats {
     StopwatchTimer mInteractiveTimer;
     final SparseIntArray mIsolatedUids;
     private boolean mIteratingHistory;
+    private final BatteryStatsJournal mJournal;
     private KernelCpuSpeedReader[] mKernelCpuSpeedReaders;
     private final KernelUidCpuTimeReader mKernelUidCpuTimeReader;
     private final KernelWakelockReader mKernelWakelockReader;
@@ -293,6 +295,7 @@ public class BatteryStatsImpl extends BatteryStats {
     protected final TimeBase mOnBatteryTimeBase;
     final ArrayList<StopwatchTimer> mPartialTimers;
     Parcel mPendingWrite;
+    boolean mPendingWriteIsDelta;
     int mPhoneDataConnectionType;
     final StopwatchTimer[] mPhoneDataConnectionsTimer;
     boolean mPhoneOn;
@@ -1474,6 +1477,9 @@ public class BatteryStatsImpl extends BatteryStats {
                 }
                 this.mCount += BatteryStatsImpl.NUM_WIFI_TX_LEVELS;
                 this.mAcquireTime = this.mTotalTime;
+                if (this.mUid != null) {
+                    this.mUid.noteTimerRunningLocked(true);
+                }
             }
         }
 
@@ -1486,6 +1492,9 @@ public class BatteryStatsImpl extends BatteryStats {
                 int i = this.mNesting - 1;
                 this.mNesting = i;
                 if (i == 0) {
+                    if (this.mUid != null) {
+                        this.mUid.noteTimerRunningLocked(false);
+                    }
                     long batteryRealtime = this.mTimeBase.getRealtime(1000 * elapsedRealtimeMs);
                     if (this.mTimerPool != null) {
                         refreshTimersLocked(batteryRealtime, this.mTimerPool, null);
@@ -1835,6 +1844,7 @@ public class BatteryStatsImpl extends BatteryStats {
         int mProcessState;
         StopwatchTimer[] mProcessStateTimer;
         final ArrayMap<String, Proc> mProcessStats;
+        int mRunningTimers;
         final SparseArray<Sensor> mSensorStats;
         final OverflowArrayMap<StopwatchTimer> mSyncStats;
         LongSamplingCounter mSystemCpuTime;
@@ -4736,6 +4746,15 @@ public class BatteryStatsImpl extends BatteryStats {
             throw new UnsupportedOperationException("Method not decompiled: com.android.internal.os.BatteryStatsImpl.Uid.<init>(com.android.internal.os.BatteryStatsImpl, int):void");
         }
 
+        /**
+         * Called by this uid's stopwatch timers when they start or stop. A uid with a running
+         * timer is carried by every journal delta, since its times grow without further calls.
+         */
+        void noteTimerRunningLocked(boolean running) {
+            this.mRunningTimers += running ? 1 : -1;
+            this.mBsi.noteUidChangedLocked(this.mUid);
+        }
+
         public android.util.ArrayMap<java.lang.String, ? extends android.os.BatteryStats.Uid.Wakelock> getWakelockStats() {
             /* JADX: method processing error */
 /*
@@ -11068,6 +11087,7 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
         this.mWriteLock = new ReentrantLock();
         init(clocks);
         this.mFile = null;
+        this.mJournal = null;
         this.mCheckinFile = null;
         this.mDailyFile = null;
         this.mHandler = null;
@@ -11964,6 +11984,7 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
         Uid u = (Uid) this.mUidStats.get(mapUid(uid));
         if (u != null) {
             u.reportExcessiveWakeLocked(proc, overTime, usedTime);
+            noteUidChangedLocked(u.mUid);
         }
     }
 
@@ -11971,6 +11992,7 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
         Uid u = (Uid) this.mUidStats.get(mapUid(uid));
         if (u != null) {
             u.reportExcessiveCpuLocked(proc, overTime, usedTime);
+            noteUidChangedLocked(u.mUid);
         }
     }
 
@@ -13436,8 +13458,10 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
         init(clocks);
         if (systemDir != null) {
             this.mFile = new JournaledFile(new File(systemDir, "batterystats.bin"), new File(systemDir, "batterystats.bin.tmp"));
+            this.mJournal = new BatteryStatsJournal(new File(systemDir, "batterystats-journal.bin"));
         } else {
             this.mFile = null;
+            this.mJournal = null;
         }
         this.mCheckinFile = new AtomicFile(new File(systemDir, "batterystats-checkin.bin"));
         this.mDailyFile = new AtomicFile(new File(systemDir, "batterystats-daily.xml"));
@@ -13617,6 +13641,7 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
         this.mWriteLock = new ReentrantLock();
         init(clocks);
         this.mFile = null;
+        this.mJournal = null;
         this.mCheckinFile = null;
         this.mDailyFile = null;
         this.mHandler = null;
@@ -14158,6 +14183,9 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
 
     private void resetAllStatsLocked() {
         int i;
+        if (this.mJournal != null) {
+            this.mJournal.requestCompaction();
+        }
         long uptimeMillis = this.mClocks.uptimeMillis();
         long elapsedRealtimeMillis = this.mClocks.elapsedRealtime();
         this.mStartCount = NETWORK_STATS_LAST;
@@ -14383,6 +14411,7 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
                         long scanTimeSinceMarkMs = uid.mWifiScanTimer.getTimeSinceMarkLocked(1000 * elapsedRealtimeMs) / 1000;
                         if (scanTimeSinceMarkMs > 0) {
                             uid.mWifiScanTimer.setMark(elapsedRealtimeMs);
+                            noteUidChangedLocked(uid.mUid);
                             long scanRxTimeSinceMarkMs = scanTimeSinceMarkMs;
                             long scanTxTimeSinceMarkMs = scanTimeSinceMarkMs;
                             if (totalScanTimeMs > rxTimeMs) {
@@ -14400,6 +14429,7 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
                         long wifiLockTimeSinceMarkMs = uid.mFullWifiLockTimer.getTimeSinceMarkLocked(1000 * elapsedRealtimeMs) / 1000;
                         if (wifiLockTimeSinceMarkMs > 0) {
                             uid.mFullWifiLockTimer.setMark(elapsedRealtimeMs);
+                            noteUidChangedLocked(uid.mUid);
                             uid.getOrCreateWifiControllerActivityLocked().getIdleTimeCounter().addCountLocked((wifiLockTimeSinceMarkMs * idleTimeMs) / totalWifiLockTimeMs);
                         }
                     }
@@ -14532,6 +14562,7 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
                     long scanTimeSinceMarkMs = u.mBluetoothScanTimer.getTimeSinceMarkLocked(1000 * elapsedRealtimeMs) / 1000;
                     if (scanTimeSinceMarkMs > 0) {
                         u.mBluetoothScanTimer.setMark(elapsedRealtimeMs);
+                        noteUidChangedLocked(u.mUid);
                         long scanTimeRxSinceMarkMs = scanTimeSinceMarkMs;
                         long scanTimeTxSinceMarkMs = scanTimeSinceMarkMs;
                         if (normalizeScanRxTime) {
@@ -15236,7 +15267,12 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
         return val;
     }
 
+    /**
+     * Returns the stats of uid for updating, creating them if needed. Every caller is assumed to
+     * change them, so the uid is carried by the next journal delta.
+     */
     public Uid getUidStatsLocked(int uid) {
+        noteUidChangedLocked(uid);
         Uid u = (Uid) this.mUidStats.get(uid);
         if (u != null) {
             return u;
@@ -15246,9 +15282,22 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
         return u;
     }
 
+    /**
+     * Notes that the summary of uid changed, for updates that do not go through
+     * getUidStatsLocked.
+     */
+    void noteUidChangedLocked(int uid) {
+        if (this.mJournal != null) {
+            this.mJournal.noteUidChanged(uid);
+        }
+    }
+
     public void removeUidStatsLocked(int uid) {
         this.mKernelUidCpuTimeReader.removeUid(uid);
         this.mUidStats.remove(uid);
+        if (this.mJournal != null) {
+            this.mJournal.noteUidRemoved(uid);
+        }
     }
 
     public Proc getProcessStatsLocked(int uid, String name) {
@@ -15281,13 +15330,23 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
         if (this.mFile == null) {
             Slog.w("BatteryStats", "writeLocked: no file associated with this instance");
         } else if (!this.mShuttingDown) {
+            long startCpuMicros = SystemClock.currentThreadTimeMicro();
             Parcel out = Parcel.obtain();
-            writeSummaryToParcel(out, true);
+            boolean delta = this.mJournal != null && this.mPendingWrite == null && !this.mJournal.needsCompaction();
+            if (delta) {
+                writeDeltaToParcelLocked(out);
+            } else {
+                writeSummaryToParcel(out, true, this.mJournal);
+            }
+            if (this.mJournal != null) {
+                this.mJournal.noteWrite(SystemClock.currentThreadTimeMicro() - startCpuMicros);
+            }
             this.mLastWriteTime = this.mClocks.elapsedRealtime();
             if (this.mPendingWrite != null) {
                 this.mPendingWrite.recycle();
             }
             this.mPendingWrite = out;
+            this.mPendingWriteIsDelta = delta;
             if (sync) {
                 commitPendingDataToDisk();
             } else {
@@ -15303,28 +15362,65 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
     public void commitPendingDataToDisk() {
         synchronized (this) {
             Parcel next = this.mPendingWrite;
+            boolean delta = this.mPendingWriteIsDelta;
             this.mPendingWrite = null;
             if (next == null) {
                 return;
             }
             this.mWriteLock.lock();
+            long startCpuMicros = SystemClock.currentThreadTimeMicro();
             try {
-                FileOutputStream stream = new FileOutputStream(this.mFile.chooseForWrite());
-                stream.write(next.marshall());
-                stream.flush();
-                FileUtils.sync(stream);
-                stream.close();
-                this.mFile.commit();
-            } catch (IOException e) {
-                Slog.w("BatteryStats", "Error writing battery statistics", e);
-                this.mFile.rollback();
+                byte[] data = next.marshall();
+                if (delta) {
+                    commitDeltaLocked(data);
+                } else {
+                    commitSummaryLocked(data);
+                }
             } finally {
+                if (this.mJournal != null) {
+                    this.mJournal.noteCommit(SystemClock.currentThreadTimeMicro() - startCpuMicros);
+                }
                 next.recycle();
                 this.mWriteLock.unlock();
             }
         }
     }
 
+    private void commitSummaryLocked(byte[] data) {
+        try {
+            FileOutputStream stream = new FileOutputStream(this.mFile.chooseForWrite());
+            stream.write(data);
+            stream.flush();
+            FileUtils.sync(stream);
+            stream.close();
+            this.mFile.commit();
+        } catch (IOException e) {
+            Slog.w("BatteryStats", "Error writing battery statistics", e);
+            this.mFile.rollback();
+            if (this.mJournal != null) {
+                this.mJournal.requestCompaction();
+            }
+            return;
+        }
+        if (this.mJournal != null) {
+            try {
+                this.mJournal.reset(data);
+            } catch (IOException e2) {
+                Slog.w("BatteryStats", "Error resetting battery statistics journal", e2);
+                this.mJournal.requestCompaction();
+            }
+        }
+    }
+
+    private void commitDeltaLocked(byte[] data) {
+        try {
+            this.mJournal.append(data);
+        } catch (IOException e) {
+            Slog.w("BatteryStats", "Error appending to battery statistics journal", e);
+            this.mJournal.requestCompaction();
+        }
+    }
+
     public void readLocked() {
         if (this.mDailyFile != null) {
             readDailyStatsLocked();
@@ -15344,6 +15440,10 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
                 in.setDataPosition(NETWORK_STATS_LAST);
                 stream.close();
                 readSummaryFromParcel(in);
+                in.recycle();
+                if (this.mJournal != null) {
+                    replayJournalLocked(raw);
+                }
                 this.mEndPlatformVersion = Build.ID;
                 if (this.mHistoryBuffer.dataPosition() > 0) {
                     this.mRecordingHistory = true;
@@ -15360,6 +15460,72 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
         }
     }
 
+    /**
+     * Applies the journal written since the summary in base was stored. Only the newest global
+     * section and the newest operation on each uid are applied: a record of the uid replaces its
+     * stats and a removal drops them, whichever came last. A record never both changes and
+     * removes one uid. History stays as stored in the summary. The next write folds everything
+     * back into a full summary.
+     */
+    private void replayJournalLocked(byte[] base) throws ParcelFormatException {
+        List<byte[]> records = this.mJournal.readRecords(base);
+        this.mJournal.requestCompaction();
+        int NR = records.size();
+        Parcel[] parcels = new Parcel[NR];
+        SparseIntArray uidRecords = new SparseIntArray();
+        SparseIntArray uidOffsets = new SparseIntArray();
+        int globalRecord = -1;
+        int globalOffset = 0;
+        int i;
+        try {
+            for (int ir = 0; ir < NR; ir++) {
+                byte[] data = (byte[]) records.get(ir);
+                Parcel in = Parcel.obtain();
+                parcels[ir] = in;
+                in.unmarshall(data, 0, data.length);
+                in.setDataPosition(0);
+                if (in.readInt() != VERSION) {
+                    break;
+                }
+                int globalSize = in.readInt();
+                globalRecord = ir;
+                globalOffset = in.dataPosition();
+                in.setDataPosition(globalOffset + globalSize);
+                int NU = in.readInt();
+                for (i = 0; i < NU; i++) {
+                    int uid = in.readInt();
+                    int size = in.readInt();
+                    uidRecords.put(uid, ir);
+                    uidOffsets.put(uid, in.dataPosition());
+                    in.setDataPosition(in.dataPosition() + size);
+                }
+                for (int uid2 : in.createIntArray()) {
+                    uidRecords.put(uid2, -1);
+                }
+            }
+            if (globalRecord >= 0) {
+                parcels[globalRecord].setDataPosition(globalOffset);
+                readGlobalSummaryFromParcelLocked(parcels[globalRecord]);
+            }
+            for (i = 0; i < uidRecords.size(); i++) {
+                int uid3 = uidRecords.keyAt(i);
+                int record = uidRecords.valueAt(i);
+                if (record < 0) {
+                    this.mUidStats.remove(uid3);
+                } else {
+                    parcels[record].setDataPosition(uidOffsets.get(uid3));
+                    readUidSummaryFromParcelLocked(parcels[record], uid3);
+                }
+            }
+        } finally {
+            for (Parcel parcel : parcels) {
+                if (parcel != null) {
+                    parcel.recycle();
+                }
+            }
+        }
+    }
+
     public int describeContents() {
         return NETWORK_STATS_LAST;
     }
@@ -15441,8 +15607,22 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
             Slog.w("BatteryStats", "readFromParcel: version got " + version + ", expected " + VERSION + "; erasing old stats");
             return;
         }
-        int i;
         readHistory(in, true);
+        readGlobalSummaryFromParcelLocked(in);
+        int NU = in.readInt();
+        if (NU > 10000) {
+            throw new ParcelFormatException("File corrupt: too many uids " + NU);
+        }
+        for (int iu = NETWORK_STATS_LAST; iu < NU; iu += NUM_WIFI_TX_LEVELS) {
+            readUidSummaryFromParcelLocked(in, in.readInt());
+        }
+    }
+
+    /**
+     * Reads the part of the summary written by {@link #writeGlobalSummaryToParcelLocked}.
+     */
+    void readGlobalSummaryFromParcelLocked(Parcel in) throws ParcelFormatException {
+        int i;
         this.mStartCount = in.readInt();
         this.mUptime = in.readLong();
         this.mRealtime = in.readLong();
@@ -15564,223 +15744,331 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
                 getWakeupReasonTimerLocked(in.readString()).readSummaryFromParcelLocked(in);
             }
         }
-        int NU = in.readInt();
-        if (NU > 10000) {
-            throw new ParcelFormatException("File corrupt: too many uids " + NU);
-        }
-        for (int iu = NETWORK_STATS_LAST; iu < NU; iu += NUM_WIFI_TX_LEVELS) {
-            int uid = in.readInt();
-            Uid uid2 = new Uid(this, uid);
-            this.mUidStats.put(uid, uid2);
-            uid2.mWifiRunning = USE_OLD_HISTORY;
-            if (in.readInt() != 0) {
-                uid2.mWifiRunningTimer.readSummaryFromParcelLocked(in);
-            }
-            uid2.mFullWifiLockOut = USE_OLD_HISTORY;
-            if (in.readInt() != 0) {
-                uid2.mFullWifiLockTimer.readSummaryFromParcelLocked(in);
-            }
-            uid2.mWifiScanStarted = USE_OLD_HISTORY;
-            if (in.readInt() != 0) {
-                uid2.mWifiScanTimer.readSummaryFromParcelLocked(in);
-            }
-            uid2.mWifiBatchedScanBinStarted = -1;
-            for (i = NETWORK_STATS_LAST; i < 5; i += NUM_WIFI_TX_LEVELS) {
-                if (in.readInt() != 0) {
-                    uid2.makeWifiBatchedScanBin(i, null);
-                    uid2.mWifiBatchedScanTimer[i].readSummaryFromParcelLocked(in);
-                }
-            }
-            uid2.mWifiMulticastEnabled = USE_OLD_HISTORY;
-            if (in.readInt() != 0) {
-                uid2.mWifiMulticastTimer.readSummaryFromParcelLocked(in);
-            }
-            if (in.readInt() != 0) {
-                uid2.createAudioTurnedOnTimerLocked().readSummaryFromParcelLocked(in);
-            }
+    }
+
+    /**
+     * Reads one uid written by {@link #writeUidSummaryToParcelLocked}, replacing any existing
+     * stats for that uid. The timers of the replaced stats are reset first so that they stop
+     * observing the time bases.
+     */
+    Uid readUidSummaryFromParcelLocked(Parcel in, int uid) throws ParcelFormatException {
+        int i;
+        int readInt;
+        Uid old = (Uid) this.mUidStats.get(uid);
+        if (old != null) {
+            old.reset();
+        }
+        Uid uid2 = new Uid(this, uid);
+        this.mUidStats.put(uid, uid2);
+        uid2.mWifiRunning = USE_OLD_HISTORY;
+        if (in.readInt() != 0) {
+            uid2.mWifiRunningTimer.readSummaryFromParcelLocked(in);
+        }
+        uid2.mFullWifiLockOut = USE_OLD_HISTORY;
+        if (in.readInt() != 0) {
+            uid2.mFullWifiLockTimer.readSummaryFromParcelLocked(in);
+        }
+        uid2.mWifiScanStarted = USE_OLD_HISTORY;
+        if (in.readInt() != 0) {
+            uid2.mWifiScanTimer.readSummaryFromParcelLocked(in);
+        }
+        uid2.mWifiBatchedScanBinStarted = -1;
+        for (i = NETWORK_STATS_LAST; i < 5; i += NUM_WIFI_TX_LEVELS) {
             if (in.readInt() != 0) {
-                uid2.createVideoTurnedOnTimerLocked().readSummaryFromParcelLocked(in);
+                uid2.makeWifiBatchedScanBin(i, null);
+                uid2.mWifiBatchedScanTimer[i].readSummaryFromParcelLocked(in);
             }
+        }
+        uid2.mWifiMulticastEnabled = USE_OLD_HISTORY;
+        if (in.readInt() != 0) {
+            uid2.mWifiMulticastTimer.readSummaryFromParcelLocked(in);
+        }
+        if (in.readInt() != 0) {
+            uid2.createAudioTurnedOnTimerLocked().readSummaryFromParcelLocked(in);
+        }
+        if (in.readInt() != 0) {
+            uid2.createVideoTurnedOnTimerLocked().readSummaryFromParcelLocked(in);
+        }
+        if (in.readInt() != 0) {
+            uid2.createFlashlightTurnedOnTimerLocked().readSummaryFromParcelLocked(in);
+        }
+        if (in.readInt() != 0) {
+            uid2.createCameraTurnedOnTimerLocked().readSummaryFromParcelLocked(in);
+        }
+        if (in.readInt() != 0) {
+            uid2.createForegroundActivityTimerLocked().readSummaryFromParcelLocked(in);
+        }
+        if (in.readInt() != 0) {
+            uid2.createBluetoothScanTimerLocked().readSummaryFromParcelLocked(in);
+        }
+        uid2.mProcessState = -1;
+        for (i = NETWORK_STATS_LAST; i < 6; i += NUM_WIFI_TX_LEVELS) {
             if (in.readInt() != 0) {
-                uid2.createFlashlightTurnedOnTimerLocked().readSummaryFromParcelLocked(in);
+                uid2.makeProcessState(i, null);
+                uid2.mProcessStateTimer[i].readSummaryFromParcelLocked(in);
             }
-            if (in.readInt() != 0) {
-                uid2.createCameraTurnedOnTimerLocked().readSummaryFromParcelLocked(in);
+        }
+        if (in.readInt() != 0) {
+            uid2.createVibratorOnTimerLocked().readSummaryFromParcelLocked(in);
+        }
+        if (in.readInt() != 0) {
+            if (uid2.mUserActivityCounters == null) {
+                uid2.initUserActivityLocked();
             }
-            if (in.readInt() != 0) {
-                uid2.createForegroundActivityTimerLocked().readSummaryFromParcelLocked(in);
+            for (i = NETWORK_STATS_LAST; i < 4; i += NUM_WIFI_TX_LEVELS) {
+                uid2.mUserActivityCounters[i].readSummaryFromParcelLocked(in);
             }
-            if (in.readInt() != 0) {
-                uid2.createBluetoothScanTimerLocked().readSummaryFromParcelLocked(in);
+        }
+        if (in.readInt() != 0) {
+            if (uid2.mNetworkByteActivityCounters == null) {
+                uid2.initNetworkActivityLocked();
             }
-            uid2.mProcessState = -1;
             for (i = NETWORK_STATS_LAST; i < 6; i += NUM_WIFI_TX_LEVELS) {
-                if (in.readInt() != 0) {
-                    uid2.makeProcessState(i, null);
-                    uid2.mProcessStateTimer[i].readSummaryFromParcelLocked(in);
+                uid2.mNetworkByteActivityCounters[i].readSummaryFromParcelLocked(in);
+                uid2.mNetworkPacketActivityCounters[i].readSummaryFromParcelLocked(in);
+            }
+            uid2.mMobileRadioActiveTime.readSummaryFromParcelLocked(in);
+            uid2.mMobileRadioActiveCount.readSummaryFromParcelLocked(in);
+        }
+        uid2.mUserCpuTime.readSummaryFromParcelLocked(in);
+        uid2.mSystemCpuTime.readSummaryFromParcelLocked(in);
+        uid2.mCpuPower.readSummaryFromParcelLocked(in);
+        if (in.readInt() != 0) {
+            int numClusters = in.readInt();
+            if (this.mPowerProfile != null) {
+                if (this.mPowerProfile.getNumCpuClusters() != numClusters) {
+                    throw new ParcelFormatException("Incompatible cpu cluster arrangement");
                 }
             }
-            if (in.readInt() != 0) {
-                uid2.createVibratorOnTimerLocked().readSummaryFromParcelLocked(in);
-            }
-            if (in.readInt() != 0) {
-                if (uid2.mUserActivityCounters == null) {
-                    uid2.initUserActivityLocked();
-                }
-                for (i = NETWORK_STATS_LAST; i < 4; i += NUM_WIFI_TX_LEVELS) {
-                    uid2.mUserActivityCounters[i].readSummaryFromParcelLocked(in);
-                }
-            }
-            if (in.readInt() != 0) {
-                if (uid2.mNetworkByteActivityCounters == null) {
-                    uid2.initNetworkActivityLocked();
-                }
-                for (i = NETWORK_STATS_LAST; i < 6; i += NUM_WIFI_TX_LEVELS) {
-                    uid2.mNetworkByteActivityCounters[i].readSummaryFromParcelLocked(in);
-                    uid2.mNetworkPacketActivityCounters[i].readSummaryFromParcelLocked(in);
-                }
-                uid2.mMobileRadioActiveTime.readSummaryFromParcelLocked(in);
-                uid2.mMobileRadioActiveCount.readSummaryFromParcelLocked(in);
-            }
-            uid2.mUserCpuTime.readSummaryFromParcelLocked(in);
-            uid2.mSystemCpuTime.readSummaryFromParcelLocked(in);
-            uid2.mCpuPower.readSummaryFromParcelLocked(in);
-            if (in.readInt() != 0) {
-                int numClusters = in.readInt();
-                if (this.mPowerProfile != null) {
-                    if (this.mPowerProfile.getNumCpuClusters() != numClusters) {
-                        throw new ParcelFormatException("Incompatible cpu cluster arrangement");
-                    }
-                }
-                uid2.mCpuClusterSpeed = new LongSamplingCounter[numClusters][];
-                for (int cluster = NETWORK_STATS_LAST; cluster < numClusters; cluster += NUM_WIFI_TX_LEVELS) {
-                    if (in.readInt() != 0) {
-                        int NSB = in.readInt();
-                        if (this.mPowerProfile != null) {
-                            if (this.mPowerProfile.getNumSpeedStepsInCpuCluster(cluster) != NSB) {
-                                throw new ParcelFormatException("File corrupt: too many speed bins " + NSB);
-                            }
+            uid2.mCpuClusterSpeed = new LongSamplingCounter[numClusters][];
+            for (int cluster = NETWORK_STATS_LAST; cluster < numClusters; cluster += NUM_WIFI_TX_LEVELS) {
+                if (in.readInt() != 0) {
+                    int NSB = in.readInt();
+                    if (this.mPowerProfile != null) {
+                        if (this.mPowerProfile.getNumSpeedStepsInCpuCluster(cluster) != NSB) {
+                            throw new ParcelFormatException("File corrupt: too many speed bins " + NSB);
                         }
-                        uid2.mCpuClusterSpeed[cluster] = new LongSamplingCounter[NSB];
-                        for (int speed = NETWORK_STATS_LAST; speed < NSB; speed += NUM_WIFI_TX_LEVELS) {
-                            if (in.readInt() != 0) {
-                                uid2.mCpuClusterSpeed[cluster][speed] = new LongSamplingCounter(this.mOnBatteryTimeBase);
-                                uid2.mCpuClusterSpeed[cluster][speed].readSummaryFromParcelLocked(in);
-                            }
+                    }
+                    uid2.mCpuClusterSpeed[cluster] = new LongSamplingCounter[NSB];
+                    for (int speed = NETWORK_STATS_LAST; speed < NSB; speed += NUM_WIFI_TX_LEVELS) {
+                        if (in.readInt() != 0) {
+                            uid2.mCpuClusterSpeed[cluster][speed] = new LongSamplingCounter(this.mOnBatteryTimeBase);
+                            uid2.mCpuClusterSpeed[cluster][speed].readSummaryFromParcelLocked(in);
                         }
-                    } else {
-                        uid2.mCpuClusterSpeed[cluster] = null;
                     }
+                } else {
+                    uid2.mCpuClusterSpeed[cluster] = null;
                 }
-            } else {
-                uid2.mCpuClusterSpeed = null;
             }
-            int NW = in.readInt();
-            if (NW > MAX_WAKELOCKS_PER_UID) {
-                Slog.i(TAG, "NW > 100, uid: " + uid);
-                throw new ParcelFormatException("File corrupt: too many wake locks " + NW);
-            }
-            for (int iw = NETWORK_STATS_LAST; iw < NW; iw += NUM_WIFI_TX_LEVELS) {
-                uid2.readWakeSummaryFromParcelLocked(in.readString(), in);
+        } else {
+            uid2.mCpuClusterSpeed = null;
+        }
+        int NW = in.readInt();
+        if (NW > MAX_WAKELOCKS_PER_UID) {
+            Slog.i(TAG, "NW > 100, uid: " + uid);
+            throw new ParcelFormatException("File corrupt: too many wake locks " + NW);
+        }
+        for (int iw = NETWORK_STATS_LAST; iw < NW; iw += NUM_WIFI_TX_LEVELS) {
+            uid2.readWakeSummaryFromParcelLocked(in.readString(), in);
+        }
+        int NS = in.readInt();
+        if (NS > MAX_WAKELOCKS_PER_UID) {
+            throw new ParcelFormatException("File corrupt: too many syncs " + NS);
+        }
+        int is;
+        for (is = NETWORK_STATS_LAST; is < NS; is += NUM_WIFI_TX_LEVELS) {
+            uid2.readSyncSummaryFromParcelLocked(in.readString(), in);
+        }
+        int NJ = in.readInt();
+        if (NJ > MAX_WAKELOCKS_PER_UID) {
+            throw new ParcelFormatException("File corrupt: too many job timers " + NJ);
+        }
+        for (int ij = NETWORK_STATS_LAST; ij < NJ; ij += NUM_WIFI_TX_LEVELS) {
+            uid2.readJobSummaryFromParcelLocked(in.readString(), in);
+        }
+        int NP = in.readInt();
+        if (NP > 1000) {
+            throw new ParcelFormatException("File corrupt: too many sensors " + NP);
+        }
+        for (is = NETWORK_STATS_LAST; is < NP; is += NUM_WIFI_TX_LEVELS) {
+            int seNumber = in.readInt();
+            if (in.readInt() != 0) {
+                uid2.getSensorTimerLocked(seNumber, true).readSummaryFromParcelLocked(in);
             }
-            int NS = in.readInt();
-            if (NS > MAX_WAKELOCKS_PER_UID) {
-                throw new ParcelFormatException("File corrupt: too many syncs " + NS);
+        }
+        NP = in.readInt();
+        if (NP > 1000) {
+            throw new ParcelFormatException("File corrupt: too many processes " + NP);
+        }
+        int ip;
+        for (ip = NETWORK_STATS_LAST; ip < NP; ip += NUM_WIFI_TX_LEVELS) {
+            Proc p = uid2.getProcessStatsLocked(in.readString());
+            long readLong = in.readLong();
+            p.mLoadedUserTime = readLong;
+            p.mUserTime = readLong;
+            readLong = in.readLong();
+            p.mLoadedSystemTime = readLong;
+            p.mSystemTime = readLong;
+            readLong = in.readLong();
+            p.mLoadedForegroundTime = readLong;
+            p.mForegroundTime = readLong;
+            readInt = in.readInt();
+            p.mLoadedStarts = readInt;
+            p.mStarts = readInt;
+            readInt = in.readInt();
+            p.mLoadedNumCrashes = readInt;
+            p.mNumCrashes = readInt;
+            readInt = in.readInt();
+            p.mLoadedNumAnrs = readInt;
+            p.mNumAnrs = readInt;
+            p.readExcessivePowerFromParcelLocked(in);
+        }
+        NP = in.readInt();
+        if (NP > 10000) {
+            throw new ParcelFormatException("File corrupt: too many packages " + NP);
+        }
+        for (ip = NETWORK_STATS_LAST; ip < NP; ip += NUM_WIFI_TX_LEVELS) {
+            String pkgName = in.readString();
+            Pkg p2 = uid2.getPackageStatsLocked(pkgName);
+            int NWA = in.readInt();
+            if (NWA > 1000) {
+                throw new ParcelFormatException("File corrupt: too many wakeup alarms " + NWA);
+            }
+            p2.mWakeupAlarms.clear();
+            for (int iwa = NETWORK_STATS_LAST; iwa < NWA; iwa += NUM_WIFI_TX_LEVELS) {
+                String tag = in.readString();
+                Counter c = new Counter(this.mOnBatteryTimeBase);
+                c.readSummaryFromParcelLocked(in);
+                p2.mWakeupAlarms.put(tag, c);
+            }
+            NS = in.readInt();
+            if (NS > 1000) {
+                throw new ParcelFormatException("File corrupt: too many services " + NS);
             }
-            int is;
             for (is = NETWORK_STATS_LAST; is < NS; is += NUM_WIFI_TX_LEVELS) {
-                uid2.readSyncSummaryFromParcelLocked(in.readString(), in);
-            }
-            int NJ = in.readInt();
-            if (NJ > MAX_WAKELOCKS_PER_UID) {
-                throw new ParcelFormatException("File corrupt: too many job timers " + NJ);
-            }
-            for (int ij = NETWORK_STATS_LAST; ij < NJ; ij += NUM_WIFI_TX_LEVELS) {
-                uid2.readJobSummaryFromParcelLocked(in.readString(), in);
-            }
-            int NP = in.readInt();
-            if (NP > 1000) {
-                throw new ParcelFormatException("File corrupt: too many sensors " + NP);
-            }
-            for (is = NETWORK_STATS_LAST; is < NP; is += NUM_WIFI_TX_LEVELS) {
-                int seNumber = in.readInt();
-                if (in.readInt() != 0) {
-                    uid2.getSensorTimerLocked(seNumber, true).readSummaryFromParcelLocked(in);
-                }
-            }
-            NP = in.readInt();
-            if (NP > 1000) {
-                throw new ParcelFormatException("File corrupt: too many processes " + NP);
-            }
-            int ip;
-            for (ip = NETWORK_STATS_LAST; ip < NP; ip += NUM_WIFI_TX_LEVELS) {
-                Proc p = uid2.getProcessStatsLocked(in.readString());
-                long readLong = in.readLong();
-                p.mLoadedUserTime = readLong;
-                p.mUserTime = readLong;
-                readLong = in.readLong();
-                p.mLoadedSystemTime = readLong;
-                p.mSystemTime = readLong;
+                Serv s = uid2.getServiceStatsLocked(pkgName, in.readString());
                 readLong = in.readLong();
-                p.mLoadedForegroundTime = readLong;
-                p.mForegroundTime = readLong;
+                s.mLoadedStartTime = readLong;
+                s.mStartTime = readLong;
                 readInt = in.readInt();
-                p.mLoadedStarts = readInt;
-                p.mStarts = readInt;
+                s.mLoadedStarts = readInt;
+                s.mStarts = readInt;
                 readInt = in.readInt();
-                p.mLoadedNumCrashes = readInt;
-                p.mNumCrashes = readInt;
-                readInt = in.readInt();
-                p.mLoadedNumAnrs = readInt;
-                p.mNumAnrs = readInt;
-                p.readExcessivePowerFromParcelLocked(in);
-            }
-            NP = in.readInt();
-            if (NP > 10000) {
-                throw new ParcelFormatException("File corrupt: too many packages " + NP);
-            }
-            for (ip = NETWORK_STATS_LAST; ip < NP; ip += NUM_WIFI_TX_LEVELS) {
-                String pkgName = in.readString();
-                Pkg p2 = uid2.getPackageStatsLocked(pkgName);
-                int NWA = in.readInt();
-                if (NWA > 1000) {
-                    throw new ParcelFormatException("File corrupt: too many wakeup alarms " + NWA);
-                }
-                p2.mWakeupAlarms.clear();
-                for (int iwa = NETWORK_STATS_LAST; iwa < NWA; iwa += NUM_WIFI_TX_LEVELS) {
-                    String tag = in.readString();
-                    Counter c = new Counter(this.mOnBatteryTimeBase);
-                    c.readSummaryFromParcelLocked(in);
-                    p2.mWakeupAlarms.put(tag, c);
-                }
-                NS = in.readInt();
-                if (NS > 1000) {
-                    throw new ParcelFormatException("File corrupt: too many services " + NS);
-                }
-                for (is = NETWORK_STATS_LAST; is < NS; is += NUM_WIFI_TX_LEVELS) {
-                    Serv s = uid2.getServiceStatsLocked(pkgName, in.readString());
-                    readLong = in.readLong();
-                    s.mLoadedStartTime = readLong;
-                    s.mStartTime = readLong;
-                    readInt = in.readInt();
-                    s.mLoadedStarts = readInt;
-                    s.mStarts = readInt;
-                    readInt = in.readInt();
-                    s.mLoadedLaunches = readInt;
-                    s.mLaunches = readInt;
-                }
+                s.mLoadedLaunches = readInt;
+                s.mLaunches = readInt;
             }
         }
+        return uid2;
     }
 
     public void writeSummaryToParcel(Parcel out, boolean inclHistory) {
-        int i;
+        writeSummaryToParcel(out, inclHistory, null);
+    }
+
+    /**
+     * Writes the full summary. If journal is non-null the fingerprint of every uid record is
+     * stored in it, so later deltas only carry the uids that changed after this summary.
+     */
+    private void writeSummaryToParcel(Parcel out, boolean inclHistory, BatteryStatsJournal journal) {
         pullPendingStateUpdatesLocked();
         long startClockTime = getStartClockTime();
         long NOW_SYS = this.mClocks.uptimeMillis() * 1000;
         long NOWREAL_SYS = this.mClocks.elapsedRealtime() * 1000;
         out.writeInt(VERSION);
         writeHistory(out, inclHistory, true);
+        writeGlobalSummaryToParcelLocked(out, startClockTime, NOW_SYS, NOWREAL_SYS);
+        int NU = this.mUidStats.size();
+        out.writeInt(NU);
+        if (journal == null) {
+            for (int iu = NETWORK_STATS_LAST; iu < NU; iu += NUM_WIFI_TX_LEVELS) {
+                out.writeInt(this.mUidStats.keyAt(iu));
+                writeUidSummaryToParcelLocked(out, (Uid) this.mUidStats.valueAt(iu), NOW_SYS, NOWREAL_SYS);
+            }
+            return;
+        }
+        journal.beginCompaction();
+        Parcel uidOut = Parcel.obtain();
+        try {
+            for (int iu2 = NETWORK_STATS_LAST; iu2 < NU; iu2 += NUM_WIFI_TX_LEVELS) {
+                int uid = this.mUidStats.keyAt(iu2);
+                uidOut.setDataSize(NETWORK_STATS_LAST);
+                uidOut.setDataPosition(NETWORK_STATS_LAST);
+                writeUidSummaryToParcelLocked(uidOut, (Uid) this.mUidStats.valueAt(iu2), NOW_SYS, NOWREAL_SYS);
+                journal.setFingerprint(uid, uidOut.marshall());
+                out.writeInt(uid);
+                out.appendFrom(uidOut, NETWORK_STATS_LAST, uidOut.dataSize());
+            }
+        } finally {
+            uidOut.recycle();
+        }
+    }
+
+    /**
+     * Writes a journal record: the global part of the summary without history, the uids changed
+     * since the last record whose summary differs from the one last stored for them, and the
+     * uids removed since the last record. Sections are length prefixed so that replay can skip
+     * records superseded by later ones. History is only stored by full summaries.
+     *
+     * <p>Uids with running timers, processes or packages are always compared against their
+     * fingerprint: the Proc, Pkg and Serv objects are updated through references the callers
+     * keep, which does not go through getUidStatsLocked.
+     */
+    private void writeDeltaToParcelLocked(Parcel out) {
+        pullPendingStateUpdatesLocked();
+        long startClockTime = getStartClockTime();
+        long NOW_SYS = this.mClocks.uptimeMillis() * 1000;
+        long NOWREAL_SYS = this.mClocks.elapsedRealtime() * 1000;
+        Parcel section = Parcel.obtain();
+        try {
+            out.writeInt(VERSION);
+            writeGlobalSummaryToParcelLocked(section, startClockTime, NOW_SYS, NOWREAL_SYS);
+            appendSection(out, section);
+            int countPosition = out.dataPosition();
+            out.writeInt(0);
+            int changed = 0;
+            int NU = this.mUidStats.size();
+            for (int iu = 0; iu < NU; iu++) {
+                Uid u = (Uid) this.mUidStats.valueAt(iu);
+                if (u.mRunningTimers > 0 || u.mProcessStats.size() > 0 || u.mPackageStats.size() > 0) {
+                    this.mJournal.noteUidChanged(u.mUid);
+                }
+            }
+            for (int uid : this.mJournal.takeChangedUids()) {
+                Uid u2 = (Uid) this.mUidStats.get(uid);
+                if (u2 == null) {
+                    this.mJournal.noteUidRemoved(uid);
+                    continue;
+                }
+                section.setDataSize(0);
+                section.setDataPosition(0);
+                writeUidSummaryToParcelLocked(section, u2, NOW_SYS, NOWREAL_SYS);
+                if (this.mJournal.updateFingerprint(uid, section.marshall())) {
+                    out.writeInt(uid);
+                    appendSection(out, section);
+                    changed++;
+                }
+            }
+            int endPosition = out.dataPosition();
+            out.setDataPosition(countPosition);
+            out.writeInt(changed);
+            out.setDataPosition(endPosition);
+            out.writeIntArray(this.mJournal.takeRemovedUids());
+        } finally {
+            section.recycle();
+        }
+    }
+
+    private static void appendSection(Parcel out, Parcel section) {
+        int size = section.dataSize();
+        out.writeInt(size);
+        out.appendFrom(section, NETWORK_STATS_LAST, size);
+    }
+
+    /**
+     * Writes everything in the summary that is neither history nor per uid.
+     */
+    void writeGlobalSummaryToParcelLocked(Parcel out, long startClockTime, long NOW_SYS, long NOWREAL_SYS) {
+        int i;
         out.writeInt(this.mStartCount);
         out.writeLong(computeUptime(NOW_SYS, NETWORK_STATS_LAST));
         out.writeLong(computeRealtime(NOWREAL_SYS, NETWORK_STATS_LAST));
@@ -15891,234 +16179,232 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
                 out.writeInt(NETWORK_STATS_LAST);
             }
         }
-        int NU = this.mUidStats.size();
-        out.writeInt(NU);
-        for (int iu = NETWORK_STATS_LAST; iu < NU; iu += NUM_WIFI_TX_LEVELS) {
-            int is;
-            out.writeInt(this.mUidStats.keyAt(iu));
-            Uid u = (Uid) this.mUidStats.valueAt(iu);
-            if (u.mWifiRunningTimer != null) {
+    }
+
+    void writeUidSummaryToParcelLocked(Parcel out, Uid u, long NOW_SYS, long NOWREAL_SYS) {
+        int i;
+        int is;
+        if (u.mWifiRunningTimer != null) {
+            out.writeInt(NUM_WIFI_TX_LEVELS);
+            u.mWifiRunningTimer.writeSummaryFromParcelLocked(out, NOWREAL_SYS);
+        } else {
+            out.writeInt(NETWORK_STATS_LAST);
+        }
+        if (u.mFullWifiLockTimer != null) {
+            out.writeInt(NUM_WIFI_TX_LEVELS);
+            u.mFullWifiLockTimer.writeSummaryFromParcelLocked(out, NOWREAL_SYS);
+        } else {
+            out.writeInt(NETWORK_STATS_LAST);
+        }
+        if (u.mWifiScanTimer != null) {
+            out.writeInt(NUM_WIFI_TX_LEVELS);
+            u.mWifiScanTimer.writeSummaryFromParcelLocked(out, NOWREAL_SYS);
+        } else {
+            out.writeInt(NETWORK_STATS_LAST);
+        }
+        for (i = NETWORK_STATS_LAST; i < 5; i += NUM_WIFI_TX_LEVELS) {
+            if (u.mWifiBatchedScanTimer[i] != null) {
                 out.writeInt(NUM_WIFI_TX_LEVELS);
-                u.mWifiRunningTimer.writeSummaryFromParcelLocked(out, NOWREAL_SYS);
+                u.mWifiBatchedScanTimer[i].writeSummaryFromParcelLocked(out, NOWREAL_SYS);
             } else {
                 out.writeInt(NETWORK_STATS_LAST);
             }
-            if (u.mFullWifiLockTimer != null) {
+        }
+        if (u.mWifiMulticastTimer != null) {
+            out.writeInt(NUM_WIFI_TX_LEVELS);
+            u.mWifiMulticastTimer.writeSummaryFromParcelLocked(out, NOWREAL_SYS);
+        } else {
+            out.writeInt(NETWORK_STATS_LAST);
+        }
+        if (u.mAudioTurnedOnTimer != null) {
+            out.writeInt(NUM_WIFI_TX_LEVELS);
+            u.mAudioTurnedOnTimer.writeSummaryFromParcelLocked(out, NOWREAL_SYS);
+        } else {
+            out.writeInt(NETWORK_STATS_LAST);
+        }
+        if (u.mVideoTurnedOnTimer != null) {
+            out.writeInt(NUM_WIFI_TX_LEVELS);
+            u.mVideoTurnedOnTimer.writeSummaryFromParcelLocked(out, NOWREAL_SYS);
+        } else {
+            out.writeInt(NETWORK_STATS_LAST);
+        }
+        if (u.mFlashlightTurnedOnTimer != null) {
+            out.writeInt(NUM_WIFI_TX_LEVELS);
+            u.mFlashlightTurnedOnTimer.writeSummaryFromParcelLocked(out, NOWREAL_SYS);
+        } else {
+            out.writeInt(NETWORK_STATS_LAST);
+        }
+        if (u.mCameraTurnedOnTimer != null) {
+            out.writeInt(NUM_WIFI_TX_LEVELS);
+            u.mCameraTurnedOnTimer.writeSummaryFromParcelLocked(out, NOWREAL_SYS);
+        } else {
+            out.writeInt(NETWORK_STATS_LAST);
+        }
+        if (u.mForegroundActivityTimer != null) {
+            out.writeInt(NUM_WIFI_TX_LEVELS);
+            u.mForegroundActivityTimer.writeSummaryFromParcelLocked(out, NOWREAL_SYS);
+        } else {
+            out.writeInt(NETWORK_STATS_LAST);
+        }
+        if (u.mBluetoothScanTimer != null) {
+            out.writeInt(NUM_WIFI_TX_LEVELS);
+            u.mBluetoothScanTimer.writeSummaryFromParcelLocked(out, NOWREAL_SYS);
+        } else {
+            out.writeInt(NETWORK_STATS_LAST);
+        }
+        for (i = NETWORK_STATS_LAST; i < 6; i += NUM_WIFI_TX_LEVELS) {
+            if (u.mProcessStateTimer[i] != null) {
                 out.writeInt(NUM_WIFI_TX_LEVELS);
-                u.mFullWifiLockTimer.writeSummaryFromParcelLocked(out, NOWREAL_SYS);
+                u.mProcessStateTimer[i].writeSummaryFromParcelLocked(out, NOWREAL_SYS);
             } else {
                 out.writeInt(NETWORK_STATS_LAST);
             }
-            if (u.mWifiScanTimer != null) {
-                out.writeInt(NUM_WIFI_TX_LEVELS);
-                u.mWifiScanTimer.writeSummaryFromParcelLocked(out, NOWREAL_SYS);
-            } else {
-                out.writeInt(NETWORK_STATS_LAST);
+        }
+        if (u.mVibratorOnTimer != null) {
+            out.writeInt(NUM_WIFI_TX_LEVELS);
+            u.mVibratorOnTimer.writeSummaryFromParcelLocked(out, NOWREAL_SYS);
+        } else {
+            out.writeInt(NETWORK_STATS_LAST);
+        }
+        if (u.mUserActivityCounters == null) {
+            out.writeInt(NETWORK_STATS_LAST);
+        } else {
+            out.writeInt(NUM_WIFI_TX_LEVELS);
+            for (i = NETWORK_STATS_LAST; i < 4; i += NUM_WIFI_TX_LEVELS) {
+                u.mUserActivityCounters[i].writeSummaryFromParcelLocked(out);
             }
-            for (i = NETWORK_STATS_LAST; i < 5; i += NUM_WIFI_TX_LEVELS) {
-                if (u.mWifiBatchedScanTimer[i] != null) {
+        }
+        if (u.mNetworkByteActivityCounters == null) {
+            out.writeInt(NETWORK_STATS_LAST);
+        } else {
+            out.writeInt(NUM_WIFI_TX_LEVELS);
+            for (i = NETWORK_STATS_LAST; i < 6; i += NUM_WIFI_TX_LEVELS) {
+                u.mNetworkByteActivityCounters[i].writeSummaryFromParcelLocked(out);
+                u.mNetworkPacketActivityCounters[i].writeSummaryFromParcelLocked(out);
+            }
+            u.mMobileRadioActiveTime.writeSummaryFromParcelLocked(out);
+            u.mMobileRadioActiveCount.writeSummaryFromParcelLocked(out);
+        }
+        u.mUserCpuTime.writeSummaryFromParcelLocked(out);
+        u.mSystemCpuTime.writeSummaryFromParcelLocked(out);
+        u.mCpuPower.writeSummaryFromParcelLocked(out);
+        if (u.mCpuClusterSpeed != null) {
+            out.writeInt(NUM_WIFI_TX_LEVELS);
+            out.writeInt(u.mCpuClusterSpeed.length);
+            LongSamplingCounter[][] longSamplingCounterArr = u.mCpuClusterSpeed;
+            int length = longSamplingCounterArr.length;
+            for (int i2 = NETWORK_STATS_LAST; i2 < length; i2 += NUM_WIFI_TX_LEVELS) {
+                LongSamplingCounter[] cpuSpeeds = longSamplingCounterArr[i2];
+                if (cpuSpeeds != null) {
                     out.writeInt(NUM_WIFI_TX_LEVELS);
-                    u.mWifiBatchedScanTimer[i].writeSummaryFromParcelLocked(out, NOWREAL_SYS);
+                    out.writeInt(cpuSpeeds.length);
+                    int length2 = cpuSpeeds.length;
+                    for (int i3 = NETWORK_STATS_LAST; i3 < length2; i3 += NUM_WIFI_TX_LEVELS) {
+                        LongSamplingCounter c = cpuSpeeds[i3];
+                        if (c != null) {
+                            out.writeInt(NUM_WIFI_TX_LEVELS);
+                            c.writeSummaryFromParcelLocked(out);
+                        } else {
+                            out.writeInt(NETWORK_STATS_LAST);
+                        }
+                    }
                 } else {
                     out.writeInt(NETWORK_STATS_LAST);
                 }
             }
-            if (u.mWifiMulticastTimer != null) {
-                out.writeInt(NUM_WIFI_TX_LEVELS);
-                u.mWifiMulticastTimer.writeSummaryFromParcelLocked(out, NOWREAL_SYS);
-            } else {
-                out.writeInt(NETWORK_STATS_LAST);
-            }
-            if (u.mAudioTurnedOnTimer != null) {
-                out.writeInt(NUM_WIFI_TX_LEVELS);
-                u.mAudioTurnedOnTimer.writeSummaryFromParcelLocked(out, NOWREAL_SYS);
-            } else {
-                out.writeInt(NETWORK_STATS_LAST);
-            }
-            if (u.mVideoTurnedOnTimer != null) {
-                out.writeInt(NUM_WIFI_TX_LEVELS);
-                u.mVideoTurnedOnTimer.writeSummaryFromParcelLocked(out, NOWREAL_SYS);
-            } else {
-                out.writeInt(NETWORK_STATS_LAST);
-            }
-            if (u.mFlashlightTurnedOnTimer != null) {
-                out.writeInt(NUM_WIFI_TX_LEVELS);
-                u.mFlashlightTurnedOnTimer.writeSummaryFromParcelLocked(out, NOWREAL_SYS);
-            } else {
-                out.writeInt(NETWORK_STATS_LAST);
-            }
-            if (u.mCameraTurnedOnTimer != null) {
+        } else {
+            out.writeInt(NETWORK_STATS_LAST);
+        }
+        ArrayMap<String, Wakelock> wakeStats = u.mWakelockStats.getMap();
+        int NW = wakeStats.size();
+        out.writeInt(NW);
+        for (int iw = NETWORK_STATS_LAST; iw < NW; iw += NUM_WIFI_TX_LEVELS) {
+            out.writeString((String) wakeStats.keyAt(iw));
+            Wakelock wl = (Wakelock) wakeStats.valueAt(iw);
+            if (wl.mTimerFull != null) {
                 out.writeInt(NUM_WIFI_TX_LEVELS);
-                u.mCameraTurnedOnTimer.writeSummaryFromParcelLocked(out, NOWREAL_SYS);
+                wl.mTimerFull.writeSummaryFromParcelLocked(out, NOWREAL_SYS);
             } else {
                 out.writeInt(NETWORK_STATS_LAST);
             }
-            if (u.mForegroundActivityTimer != null) {
+            if (wl.mTimerPartial != null) {
                 out.writeInt(NUM_WIFI_TX_LEVELS);
-                u.mForegroundActivityTimer.writeSummaryFromParcelLocked(out, NOWREAL_SYS);
+                wl.mTimerPartial.writeSummaryFromParcelLocked(out, NOWREAL_SYS);
             } else {
                 out.writeInt(NETWORK_STATS_LAST);
             }
-            if (u.mBluetoothScanTimer != null) {
+            if (wl.mTimerWindow != null) {
                 out.writeInt(NUM_WIFI_TX_LEVELS);
-                u.mBluetoothScanTimer.writeSummaryFromParcelLocked(out, NOWREAL_SYS);
+                wl.mTimerWindow.writeSummaryFromParcelLocked(out, NOWREAL_SYS);
             } else {
                 out.writeInt(NETWORK_STATS_LAST);
             }
-            for (i = NETWORK_STATS_LAST; i < 6; i += NUM_WIFI_TX_LEVELS) {
-                if (u.mProcessStateTimer[i] != null) {
-                    out.writeInt(NUM_WIFI_TX_LEVELS);
-                    u.mProcessStateTimer[i].writeSummaryFromParcelLocked(out, NOWREAL_SYS);
-                } else {
-                    out.writeInt(NETWORK_STATS_LAST);
-                }
-            }
-            if (u.mVibratorOnTimer != null) {
+            if (wl.mTimerDraw != null) {
                 out.writeInt(NUM_WIFI_TX_LEVELS);
-                u.mVibratorOnTimer.writeSummaryFromParcelLocked(out, NOWREAL_SYS);
+                wl.mTimerDraw.writeSummaryFromParcelLocked(out, NOWREAL_SYS);
             } else {
                 out.writeInt(NETWORK_STATS_LAST);
             }
-            if (u.mUserActivityCounters == null) {
-                out.writeInt(NETWORK_STATS_LAST);
-            } else {
-                out.writeInt(NUM_WIFI_TX_LEVELS);
-                for (i = NETWORK_STATS_LAST; i < 4; i += NUM_WIFI_TX_LEVELS) {
-                    u.mUserActivityCounters[i].writeSummaryFromParcelLocked(out);
-                }
-            }
-            if (u.mNetworkByteActivityCounters == null) {
-                out.writeInt(NETWORK_STATS_LAST);
-            } else {
-                out.writeInt(NUM_WIFI_TX_LEVELS);
-                for (i = NETWORK_STATS_LAST; i < 6; i += NUM_WIFI_TX_LEVELS) {
-                    u.mNetworkByteActivityCounters[i].writeSummaryFromParcelLocked(out);
-                    u.mNetworkPacketActivityCounters[i].writeSummaryFromParcelLocked(out);
-                }
-                u.mMobileRadioActiveTime.writeSummaryFromParcelLocked(out);
-                u.mMobileRadioActiveCount.writeSummaryFromParcelLocked(out);
-            }
-            u.mUserCpuTime.writeSummaryFromParcelLocked(out);
-            u.mSystemCpuTime.writeSummaryFromParcelLocked(out);
-            u.mCpuPower.writeSummaryFromParcelLocked(out);
-            if (u.mCpuClusterSpeed != null) {
+        }
+        ArrayMap<String, StopwatchTimer> syncStats = u.mSyncStats.getMap();
+        int NS = syncStats.size();
+        out.writeInt(NS);
+        for (is = NETWORK_STATS_LAST; is < NS; is += NUM_WIFI_TX_LEVELS) {
+            out.writeString((String) syncStats.keyAt(is));
+            ((StopwatchTimer) syncStats.valueAt(is)).writeSummaryFromParcelLocked(out, NOWREAL_SYS);
+        }
+        ArrayMap<String, StopwatchTimer> jobStats = u.mJobStats.getMap();
+        int NJ = jobStats.size();
+        out.writeInt(NJ);
+        for (int ij = NETWORK_STATS_LAST; ij < NJ; ij += NUM_WIFI_TX_LEVELS) {
+            out.writeString((String) jobStats.keyAt(ij));
+            ((StopwatchTimer) jobStats.valueAt(ij)).writeSummaryFromParcelLocked(out, NOWREAL_SYS);
+        }
+        int NSE = u.mSensorStats.size();
+        out.writeInt(NSE);
+        for (int ise = NETWORK_STATS_LAST; ise < NSE; ise += NUM_WIFI_TX_LEVELS) {
+            out.writeInt(u.mSensorStats.keyAt(ise));
+            Sensor se = (Sensor) u.mSensorStats.valueAt(ise);
+            if (se.mTimer != null) {
                 out.writeInt(NUM_WIFI_TX_LEVELS);
-                out.writeInt(u.mCpuClusterSpeed.length);
-                LongSamplingCounter[][] longSamplingCounterArr = u.mCpuClusterSpeed;
-                int length = longSamplingCounterArr.length;
-                for (int i2 = NETWORK_STATS_LAST; i2 < length; i2 += NUM_WIFI_TX_LEVELS) {
-                    LongSamplingCounter[] cpuSpeeds = longSamplingCounterArr[i2];
-                    if (cpuSpeeds != null) {
-                        out.writeInt(NUM_WIFI_TX_LEVELS);
-                        out.writeInt(cpuSpeeds.length);
-                        int length2 = cpuSpeeds.length;
-                        for (int i3 = NETWORK_STATS_LAST; i3 < length2; i3 += NUM_WIFI_TX_LEVELS) {
-                            LongSamplingCounter c = cpuSpeeds[i3];
-                            if (c != null) {
-                                out.writeInt(NUM_WIFI_TX_LEVELS);
-                                c.writeSummaryFromParcelLocked(out);
-                            } else {
-                                out.writeInt(NETWORK_STATS_LAST);
-                            }
-                        }
-                    } else {
-                        out.writeInt(NETWORK_STATS_LAST);
-                    }
-                }
+                se.mTimer.writeSummaryFromParcelLocked(out, NOWREAL_SYS);
             } else {
                 out.writeInt(NETWORK_STATS_LAST);
             }
-            ArrayMap<String, Wakelock> wakeStats = u.mWakelockStats.getMap();
-            int NW = wakeStats.size();
-            out.writeInt(NW);
-            for (int iw = NETWORK_STATS_LAST; iw < NW; iw += NUM_WIFI_TX_LEVELS) {
-                out.writeString((String) wakeStats.keyAt(iw));
-                Wakelock wl = (Wakelock) wakeStats.valueAt(iw);
-                if (wl.mTimerFull != null) {
-                    out.writeInt(NUM_WIFI_TX_LEVELS);
-                    wl.mTimerFull.writeSummaryFromParcelLocked(out, NOWREAL_SYS);
-                } else {
-                    out.writeInt(NETWORK_STATS_LAST);
-                }
-                if (wl.mTimerPartial != null) {
-                    out.writeInt(NUM_WIFI_TX_LEVELS);
-                    wl.mTimerPartial.writeSummaryFromParcelLocked(out, NOWREAL_SYS);
-                } else {
-                    out.writeInt(NETWORK_STATS_LAST);
-                }
-                if (wl.mTimerWindow != null) {
-                    out.writeInt(NUM_WIFI_TX_LEVELS);
-                    wl.mTimerWindow.writeSummaryFromParcelLocked(out, NOWREAL_SYS);
-                } else {
-                    out.writeInt(NETWORK_STATS_LAST);
-                }
-                if (wl.mTimerDraw != null) {
-                    out.writeInt(NUM_WIFI_TX_LEVELS);
-                    wl.mTimerDraw.writeSummaryFromParcelLocked(out, NOWREAL_SYS);
-                } else {
-                    out.writeInt(NETWORK_STATS_LAST);
-                }
-            }
-            ArrayMap<String, StopwatchTimer> syncStats = u.mSyncStats.getMap();
-            int NS = syncStats.size();
-            out.writeInt(NS);
-            for (is = NETWORK_STATS_LAST; is < NS; is += NUM_WIFI_TX_LEVELS) {
-                out.writeString((String) syncStats.keyAt(is));
-                ((StopwatchTimer) syncStats.valueAt(is)).writeSummaryFromParcelLocked(out, NOWREAL_SYS);
-            }
-            ArrayMap<String, StopwatchTimer> jobStats = u.mJobStats.getMap();
-            int NJ = jobStats.size();
-            out.writeInt(NJ);
-            for (int ij = NETWORK_STATS_LAST; ij < NJ; ij += NUM_WIFI_TX_LEVELS) {
-                out.writeString((String) jobStats.keyAt(ij));
-                ((StopwatchTimer) jobStats.valueAt(ij)).writeSummaryFromParcelLocked(out, NOWREAL_SYS);
-            }
-            int NSE = u.mSensorStats.size();
-            out.writeInt(NSE);
-            for (int ise = NETWORK_STATS_LAST; ise < NSE; ise += NUM_WIFI_TX_LEVELS) {
-                out.writeInt(u.mSensorStats.keyAt(ise));
-                Sensor se = (Sensor) u.mSensorStats.valueAt(ise);
-                if (se.mTimer != null) {
-                    out.writeInt(NUM_WIFI_TX_LEVELS);
-                    se.mTimer.writeSummaryFromParcelLocked(out, NOWREAL_SYS);
-                } else {
-                    out.writeInt(NETWORK_STATS_LAST);
+        }
+        int NP = u.mProcessStats.size();
+        out.writeInt(NP);
+        for (int ip = NETWORK_STATS_LAST; ip < NP; ip += NUM_WIFI_TX_LEVELS) {
+            out.writeString((String) u.mProcessStats.keyAt(ip));
+            Proc ps = (Proc) u.mProcessStats.valueAt(ip);
+            out.writeLong(ps.mUserTime);
+            out.writeLong(ps.mSystemTime);
+            out.writeLong(ps.mForegroundTime);
+            out.writeInt(ps.mStarts);
+            out.writeInt(ps.mNumCrashes);
+            out.writeInt(ps.mNumAnrs);
+            ps.writeExcessivePowerToParcelLocked(out);
+        }
+        NP = u.mPackageStats.size();
+        out.writeInt(NP);
+        if (NP > 0) {
+            for (Map.Entry<String, Pkg> ent3 : u.mPackageStats.entrySet()) {
+                out.writeString((String) ent3.getKey());
+                Pkg ps2 = (Pkg) ent3.getValue();
+                int NWA = ps2.mWakeupAlarms.size();
+                out.writeInt(NWA);
+                for (int iwa = NETWORK_STATS_LAST; iwa < NWA; iwa += NUM_WIFI_TX_LEVELS) {
+                    out.writeString((String) ps2.mWakeupAlarms.keyAt(iwa));
+                    ((Counter) ps2.mWakeupAlarms.valueAt(iwa)).writeSummaryFromParcelLocked(out);
                 }
-            }
-            int NP = u.mProcessStats.size();
-            out.writeInt(NP);
-            for (int ip = NETWORK_STATS_LAST; ip < NP; ip += NUM_WIFI_TX_LEVELS) {
-                out.writeString((String) u.mProcessStats.keyAt(ip));
-                Proc ps = (Proc) u.mProcessStats.valueAt(ip);
-                out.writeLong(ps.mUserTime);
-                out.writeLong(ps.mSystemTime);
-                out.writeLong(ps.mForegroundTime);
-                out.writeInt(ps.mStarts);
-                out.writeInt(ps.mNumCrashes);
-                out.writeInt(ps.mNumAnrs);
-                ps.writeExcessivePowerToParcelLocked(out);
-            }
-            NP = u.mPackageStats.size();
-            out.writeInt(NP);
-            if (NP > 0) {
-                for (Map.Entry<String, Pkg> ent3 : u.mPackageStats.entrySet()) {
-                    out.writeString((String) ent3.getKey());
-                    Pkg ps2 = (Pkg) ent3.getValue();
-                    int NWA = ps2.mWakeupAlarms.size();
-                    out.writeInt(NWA);
-                    for (int iwa = NETWORK_STATS_LAST; iwa < NWA; iwa += NUM_WIFI_TX_LEVELS) {
-                        out.writeString((String) ps2.mWakeupAlarms.keyAt(iwa));
-                        ((Counter) ps2.mWakeupAlarms.valueAt(iwa)).writeSummaryFromParcelLocked(out);
-                    }
-                    NS = ps2.mServiceStats.size();
-                    out.writeInt(NS);
-                    for (is = NETWORK_STATS_LAST; is < NS; is += NUM_WIFI_TX_LEVELS) {
-                        out.writeString((String) ps2.mServiceStats.keyAt(is));
-                        Serv ss = (Serv) ps2.mServiceStats.valueAt(is);
-                        out.writeLong(ss.getStartTimeToNowLocked(this.mOnBatteryTimeBase.getUptime(NOW_SYS)));
-                        out.writeInt(ss.mStarts);
-                        out.writeInt(ss.mLaunches);
-                    }
+                NS = ps2.mServiceStats.size();
+                out.writeInt(NS);
+                for (is = NETWORK_STATS_LAST; is < NS; is += NUM_WIFI_TX_LEVELS) {
+                    out.writeString((String) ps2.mServiceStats.keyAt(is));
+                    Serv ss = (Serv) ps2.mServiceStats.valueAt(is);
+                    out.writeLong(ss.getStartTimeToNowLocked(this.mOnBatteryTimeBase.getUptime(NOW_SYS)));
+                    out.writeInt(ss.mStarts);
+                    out.writeInt(ss.mLaunches);
                 }
             }
         }
@@ -16407,5 +16693,16 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
 
     public void dumpLocked(Context context, PrintWriter pw, int flags, int reqUid, long histStart) {
         super.dumpLocked(context, pw, flags, reqUid, histStart);
+        if (this.mJournal != null) {
+            pw.print("  Summary writes: ");
+            pw.print(this.mJournal.getWriteCount());
+            pw.print(" (");
+            pw.print(this.mJournal.getCompactionCount());
+            pw.print(" full), ");
+            pw.print(this.mJournal.getBytesWritten());
+            pw.print(" bytes, ");
+            pw.print(this.mJournal.getWriteCpuMicros() / 1000);
+            pw.println(" ms cpu");
+        }
     }
 }
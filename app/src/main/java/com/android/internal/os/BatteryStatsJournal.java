@@ -0,0 +1,267 @@
+package com.android.internal.os;
+
+import android.os.FileUtils;
+import android.util.Slog;
+import android.util.SparseIntArray;
+import android.util.SparseLongArray;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of battery stats summary deltas, stored next to batterystats.bin.
+ *
+ * <p>The journal starts with a header naming the length and CRC of the summary file it applies
+ * to, so records left over from an older summary are ignored. Each record is length and CRC
+ * framed; a torn record at the end of the file ends the replay. The journal collects the last
+ * operation, change or removal, on each uid since the last record, and remembers a fingerprint
+ * of the last stored record of every uid, so a delta only encodes the changed uids and only
+ * stores those whose summary differs. A uid removed and created again before the next record is
+ * recorded as changed, so replay keeps it. All methods must be called with the stats lock held.
+ */
+final class BatteryStatsJournal {
+    private static final int HEADER_MAGIC = 1112754738;
+    private static final int MAX_RECORDS = 64;
+    private static final int MIN_COMPACTION_BYTES = 65536;
+    private static final int OP_CHANGED = 1;
+    private static final int OP_REMOVED = 2;
+    private static final String TAG = "BatteryStatsJournal";
+    private long mBaseLength;
+    private long mBytesWritten;
+    private boolean mCompactionRequested;
+    private long mCompactionCount;
+    private final File mFile;
+    private final SparseLongArray mFingerprints;
+    private long mJournalLength;
+    private long mLastRecordLength;
+    private int mRecordCount;
+    private final SparseIntArray mUidOps;
+    private long mWriteCount;
+    private long mWriteCpuMicros;
+
+    BatteryStatsJournal(File file) {
+        this.mFile = file;
+        this.mFingerprints = new SparseLongArray();
+        this.mUidOps = new SparseIntArray();
+        this.mBaseLength = -1;
+    }
+
+    /**
+     * Returns true if the next write should store a full summary instead of a delta: once the
+     * journal plus another delta the size of the last one would outgrow the summary, rewriting
+     * the summary costs less than replaying and extending the journal.
+     */
+    boolean needsCompaction() {
+        if (this.mCompactionRequested || this.mBaseLength < 0 || this.mRecordCount >= MAX_RECORDS) {
+            return true;
+        }
+        return this.mJournalLength + this.mLastRecordLength > Math.max(this.mBaseLength, (long) MIN_COMPACTION_BYTES);
+    }
+
+    void requestCompaction() {
+        this.mCompactionRequested = true;
+    }
+
+    /**
+     * Starts a full summary write: forgets all fingerprints, changes and pending removals, since
+     * the new summary will contain every uid that still exists.
+     */
+    void beginCompaction() {
+        this.mFingerprints.clear();
+        this.mUidOps.clear();
+        this.mCompactionRequested = false;
+    }
+
+    void noteUidChanged(int uid) {
+        this.mUidOps.put(uid, OP_CHANGED);
+    }
+
+    /**
+     * Returns the uids whose last operation was a change and forgets them. Removals stay until
+     * takeRemovedUids.
+     */
+    int[] takeChangedUids() {
+        return takeUids(OP_CHANGED);
+    }
+
+    void setFingerprint(int uid, byte[] record) {
+        this.mFingerprints.put(uid, fingerprint(record));
+    }
+
+    /**
+     * Remembers the fingerprint of a uid record and returns true if it differs from the one
+     * last stored for that uid.
+     */
+    boolean updateFingerprint(int uid, byte[] record) {
+        long value = fingerprint(record);
+        int index = this.mFingerprints.indexOfKey(uid);
+        if (index >= 0 && this.mFingerprints.valueAt(index) == value) {
+            return false;
+        }
+        this.mFingerprints.put(uid, value);
+        return true;
+    }
+
+    void noteUidRemoved(int uid) {
+        this.mFingerprints.delete(uid);
+        this.mUidOps.put(uid, OP_REMOVED);
+    }
+
+    int[] takeRemovedUids() {
+        return takeUids(OP_REMOVED);
+    }
+
+    private int[] takeUids(int op) {
+        int count = 0;
+        for (int i = 0; i < this.mUidOps.size(); i++) {
+            if (this.mUidOps.valueAt(i) == op) {
+                count++;
+            }
+        }
+        int[] uids = new int[count];
+        for (int i = this.mUidOps.size() - 1; i >= 0; i--) {
+            if (this.mUidOps.valueAt(i) == op) {
+                count--;
+                uids[count] = this.mUidOps.keyAt(i);
+                this.mUidOps.removeAt(i);
+            }
+        }
+        return uids;
+    }
+
+    /**
+     * Rebinds the journal to a newly committed summary, dropping all earlier records.
+     */
+    void reset(byte[] base) throws IOException {
+        this.mBaseLength = -1;
+        FileOutputStream stream = new FileOutputStream(this.mFile, false);
+        try {
+            DataOutputStream out = new DataOutputStream(stream);
+            out.writeInt(HEADER_MAGIC);
+            out.writeLong((long) base.length);
+            out.writeLong(crc(base, 0, base.length));
+            out.flush();
+            FileUtils.sync(stream);
+        } finally {
+            stream.close();
+        }
+        this.mBaseLength = (long) base.length;
+        this.mJournalLength = 20;
+        this.mLastRecordLength = 0;
+        this.mRecordCount = 0;
+        this.mCompactionCount++;
+        this.mBytesWritten += (long) base.length;
+    }
+
+    void append(byte[] record) throws IOException {
+        FileOutputStream stream = new FileOutputStream(this.mFile, true);
+        try {
+            DataOutputStream out = new DataOutputStream(stream);
+            out.writeInt(record.length);
+            out.writeLong(crc(record, 0, record.length));
+            out.write(record);
+            out.flush();
+            FileUtils.sync(stream);
+        } finally {
+            stream.close();
+        }
+        this.mJournalLength += (long) (record.length + 12);
+        this.mLastRecordLength = (long) (record.length + 12);
+        this.mRecordCount++;
+        this.mBytesWritten += (long) (record.length + 12);
+    }
+
+    /**
+     * Returns the intact records written since base was stored, oldest first, or an empty list
+     * if the journal belongs to a different summary.
+     */
+    List<byte[]> readRecords(byte[] base) {
+        List<byte[]> records = new ArrayList();
+        if (!this.mFile.exists()) {
+            return records;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(this.mFile)));
+            if (in.readInt() != HEADER_MAGIC || in.readLong() != ((long) base.length) || in.readLong() != crc(base, 0, base.length)) {
+                return records;
+            }
+            long remaining = this.mFile.length() - 20;
+            while (remaining >= 12) {
+                int length = in.readInt();
+                long expectedCrc = in.readLong();
+                if (length < 0 || ((long) length) > remaining - 12) {
+                    break;
+                }
+                byte[] record = new byte[length];
+                in.readFully(record);
+                if (crc(record, 0, length) != expectedCrc) {
+                    break;
+                }
+                records.add(record);
+                remaining -= (long) (length + 12);
+            }
+        } catch (EOFException e) {
+        } catch (IOException e2) {
+            Slog.w(TAG, "Error reading battery stats journal", e2);
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e3) {
+                }
+            }
+        }
+        return records;
+    }
+
+    void noteWrite(long cpuMicros) {
+        this.mWriteCount++;
+        this.mWriteCpuMicros += cpuMicros;
+    }
+
+    void noteCommit(long cpuMicros) {
+        this.mWriteCpuMicros += cpuMicros;
+    }
+
+    long getBytesWritten() {
+        return this.mBytesWritten;
+    }
+
+    long getWriteCount() {
+        return this.mWriteCount;
+    }
+
+    long getWriteCpuMicros() {
+        return this.mWriteCpuMicros;
+    }
+
+    long getCompactionCount() {
+        return this.mCompactionCount;
+    }
+
+    private static long crc(byte[] data, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(data, offset, length);
+        return crc.getValue();
+    }
+
+    /**
+     * 64-bit FNV-1a; only used to detect that a uid record changed between writes.
+     */
+    private static long fingerprint(byte[] data) {
+        long hash = -3750763034362895579L;
+        for (byte b : data) {
+            hash = (hash ^ ((long) (b & 255))) * 1099511628211L;
+        }
+        return hash;
+    }
+}
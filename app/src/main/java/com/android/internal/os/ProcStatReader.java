@@ -0,0 +1,321 @@
+package com.android.internal.os;
+
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+import java.io.FileDescriptor;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import libcore.io.IoUtils;
+
+/**
+ * Reads the stat, loadavg and per-pid stat files of a proc tree into primitive arrays. Every
+ * file is read into one direct buffer that is reused between calls and the numeric fields are
+ * parsed in place, so a sample does not allocate beyond the file descriptor. The root defaults
+ * to /proc but can point at any directory laid out the same way, e.g. a fake tree on disk.
+ * Files are opened through a {@link Source}, which tests can replace to read without the platform
+ * I/O classes. An instance must only be used by one thread at a time.
+ */
+public final class ProcStatReader {
+    private static final int BUFFER_SIZE = 1024;
+    public static final int FULL_STAT_MAJOR_FAULTS = 2;
+    public static final int FULL_STAT_MINOR_FAULTS = 1;
+    public static final int FULL_STAT_STIME = 4;
+    public static final int FULL_STAT_UTIME = 3;
+    public static final int FULL_STAT_VSIZE = 5;
+    private static final int FIELD_MAJOR_FAULTS = 12;
+    private static final int FIELD_MINOR_FAULTS = 10;
+    private static final int FIELD_STIME = 15;
+    private static final int FIELD_UTIME = 14;
+    private static final int FIELD_VSIZE = 23;
+    public static final int STAT_MAJOR_FAULTS = 1;
+    public static final int STAT_MINOR_FAULTS = 0;
+    public static final int STAT_STIME = 3;
+    public static final int STAT_UTIME = 2;
+    private final ByteBuffer mBuffer;
+    private int mLength;
+    private final String mLoadAvgFile;
+    private int mPosition;
+    private final String mRoot;
+    private final Source mSource;
+    private final String mStatFile;
+
+    /**
+     * Reads a whole file into a buffer.
+     */
+    interface Source {
+        /**
+         * Reads from the start of file into buffer until the file ends or the buffer is full.
+         * Returns false if the file cannot be opened or read.
+         */
+        boolean read(String file, ByteBuffer buffer);
+    }
+
+    /**
+     * Reads files with the platform's file descriptor calls, which do not allocate streams.
+     */
+    private static final class OsSource implements Source {
+        public boolean read(String file, ByteBuffer buffer) {
+            FileDescriptor fd = null;
+            try {
+                fd = Os.open(file, OsConstants.O_RDONLY | OsConstants.O_CLOEXEC, 0);
+                while (buffer.hasRemaining()) {
+                    if (Os.read(fd, buffer) <= 0) {
+                        break;
+                    }
+                }
+                return true;
+            } catch (ErrnoException e) {
+                return false;
+            } catch (InterruptedIOException e2) {
+                return false;
+            } finally {
+                IoUtils.closeQuietly(fd);
+            }
+        }
+    }
+
+    public ProcStatReader() {
+        this("/proc");
+    }
+
+    public ProcStatReader(String root) {
+        this(root, new OsSource());
+    }
+
+    ProcStatReader(String root, Source source) {
+        this.mRoot = root;
+        this.mSource = source;
+        this.mStatFile = root + "/stat";
+        this.mLoadAvgFile = root + "/loadavg";
+        this.mBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    public String getRoot() {
+        return this.mRoot;
+    }
+
+    /**
+     * Reads the aggregate cpu line of the root stat file: user, nice, system, idle, iowait, irq
+     * and softirq jiffies, in that order.
+     */
+    public boolean readSystemCpu(long[] out) {
+        if (!read(this.mStatFile) || !skipToken()) {
+            return false;
+        }
+        for (int i = 0; i < out.length; i++) {
+            if (!skipSpaces()) {
+                return false;
+            }
+            out[i] = parseLong();
+        }
+        return true;
+    }
+
+    public boolean readLoadAverage(float[] out) {
+        if (!read(this.mLoadAvgFile)) {
+            return false;
+        }
+        for (int i = 0; i < out.length; i++) {
+            if (!skipSpaces()) {
+                return false;
+            }
+            out[i] = parseFloat();
+        }
+        return true;
+    }
+
+    /**
+     * Reads minor faults, major faults, utime and stime of a pid or task stat file into the
+     * STAT_* slots of out.
+     */
+    public boolean readProcessStats(String statFile, long[] out) {
+        if (!read(statFile) || !skipName()) {
+            return false;
+        }
+        int field = 3;
+        while (field <= FIELD_STIME) {
+            if (!skipSpaces()) {
+                return false;
+            }
+            switch (field) {
+                case FIELD_MINOR_FAULTS:
+                    out[STAT_MINOR_FAULTS] = parseLong();
+                    break;
+                case FIELD_MAJOR_FAULTS:
+                    out[STAT_MAJOR_FAULTS] = parseLong();
+                    break;
+                case FIELD_UTIME:
+                    out[STAT_UTIME] = parseLong();
+                    break;
+                case FIELD_STIME:
+                    out[STAT_STIME] = parseLong();
+                    break;
+                default:
+                    skipToken();
+                    break;
+            }
+            field++;
+        }
+        return true;
+    }
+
+    /**
+     * Like {@link #readProcessStats} but also reads the vsize into the FULL_STAT_* slots of out
+     * and the command name into outName[0]. Only the name allocates.
+     */
+    public boolean readFullProcessStats(String statFile, String[] outName, long[] out) {
+        if (!read(statFile)) {
+            return false;
+        }
+        int open = indexOf((byte) 40, 0);
+        int close = lastIndexOf((byte) 41);
+        if (open < 0 || close < open) {
+            return false;
+        }
+        this.mPosition = close + 1;
+        int field = 3;
+        while (field <= FIELD_VSIZE) {
+            if (!skipSpaces()) {
+                return false;
+            }
+            switch (field) {
+                case FIELD_MINOR_FAULTS:
+                    out[FULL_STAT_MINOR_FAULTS] = parseLong();
+                    break;
+                case FIELD_MAJOR_FAULTS:
+                    out[FULL_STAT_MAJOR_FAULTS] = parseLong();
+                    break;
+                case FIELD_UTIME:
+                    out[FULL_STAT_UTIME] = parseLong();
+                    break;
+                case FIELD_STIME:
+                    out[FULL_STAT_STIME] = parseLong();
+                    break;
+                case FIELD_VSIZE:
+                    out[FULL_STAT_VSIZE] = parseLong();
+                    break;
+                default:
+                    skipToken();
+                    break;
+            }
+            field++;
+        }
+        byte[] name = new byte[((close - open) - 1)];
+        for (int i = 0; i < name.length; i++) {
+            name[i] = this.mBuffer.get((open + 1) + i);
+        }
+        outName[0] = new String(name, StandardCharsets.UTF_8);
+        return true;
+    }
+
+    private boolean read(String file) {
+        ByteBuffer buffer = this.mBuffer;
+        buffer.clear();
+        this.mLength = 0;
+        this.mPosition = 0;
+        if (!this.mSource.read(file, buffer)) {
+            return false;
+        }
+        this.mLength = buffer.position();
+        return this.mLength > 0;
+    }
+
+    /**
+     * Moves past the "pid (comm)" prefix. The command name may itself contain spaces and
+     * parentheses, so the last closing parenthesis ends it.
+     */
+    private boolean skipName() {
+        int close = lastIndexOf((byte) 41);
+        if (close < 0) {
+            return false;
+        }
+        this.mPosition = close + 1;
+        return true;
+    }
+
+    private boolean skipSpaces() {
+        while (this.mPosition < this.mLength) {
+            byte b = this.mBuffer.get(this.mPosition);
+            if (b != 32 && b != 10) {
+                return true;
+            }
+            this.mPosition++;
+        }
+        return false;
+    }
+
+    private boolean skipToken() {
+        int start = this.mPosition;
+        while (this.mPosition < this.mLength) {
+            byte b = this.mBuffer.get(this.mPosition);
+            if (b == 32 || b == 10) {
+                break;
+            }
+            this.mPosition++;
+        }
+        return this.mPosition > start;
+    }
+
+    private long parseLong() {
+        boolean negative = false;
+        if (this.mBuffer.get(this.mPosition) == 45) {
+            negative = true;
+            this.mPosition++;
+        }
+        long value = 0;
+        while (this.mPosition < this.mLength) {
+            int digit = this.mBuffer.get(this.mPosition) - 48;
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            value = (10 * value) + ((long) digit);
+            this.mPosition++;
+        }
+        skipToken();
+        return negative ? -value : value;
+    }
+
+    private float parseFloat() {
+        long value = 0;
+        long scale = 1;
+        boolean fraction = false;
+        while (this.mPosition < this.mLength) {
+            byte b = this.mBuffer.get(this.mPosition);
+            if (b == 46 && !fraction) {
+                fraction = true;
+            } else {
+                int digit = b - 48;
+                if (digit < 0 || digit > 9) {
+                    break;
+                }
+                value = (10 * value) + ((long) digit);
+                if (fraction) {
+                    scale *= 10;
+                }
+            }
+            this.mPosition++;
+        }
+        skipToken();
+        return (float) (((double) value) / ((double) scale));
+    }
+
+    private int indexOf(byte b, int from) {
+        for (int i = from; i < this.mLength; i++) {
+            if (this.mBuffer.get(i) == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int lastIndexOf(byte b) {
+        for (int i = this.mLength - 1; i >= 0; i--) {
+            if (this.mBuffer.get(i) == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
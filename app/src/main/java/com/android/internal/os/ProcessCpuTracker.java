@@ -11,7 +11,6 @@ import com.android.internal.os.BatteryStatsImpl.Uid.Proc;
 import com.android.internal.util.FastPrintWriter;
 import com.huawei.hwperformance.HwPerformance;
 import com.huawei.pgmng.log.LogPower;
-import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -29,19 +28,15 @@ import libcore.io.Libcore;
 
 public class ProcessCpuTracker {
     private static final boolean DEBUG = false;
-    private static final int[] LOAD_AVERAGE_FORMAT = null;
-    private static final int[] PROCESS_FULL_STATS_FORMAT = null;
     static final int PROCESS_FULL_STAT_MAJOR_FAULTS = 2;
     static final int PROCESS_FULL_STAT_MINOR_FAULTS = 1;
     static final int PROCESS_FULL_STAT_STIME = 4;
     static final int PROCESS_FULL_STAT_UTIME = 3;
     static final int PROCESS_FULL_STAT_VSIZE = 5;
-    private static final int[] PROCESS_STATS_FORMAT = null;
     static final int PROCESS_STAT_MAJOR_FAULTS = 1;
     static final int PROCESS_STAT_MINOR_FAULTS = 0;
     static final int PROCESS_STAT_STIME = 3;
     static final int PROCESS_STAT_UTIME = 2;
-    private static final int[] SYSTEM_CPU_FORMAT = null;
     private static final String TAG = "ProcessCpuTracker";
     private static final boolean localLOGV = false;
     private static final Comparator<Stats> sLoadComparator = null;
@@ -78,7 +73,9 @@ public class ProcessCpuTracker {
     private boolean mRelStatsAreGood;
     private int mRelSystemTime;
     private int mRelUserTime;
+    private final ProcStatReader mSinglePidReader;
     private final long[] mSinglePidStatsData;
+    private final ProcStatReader mStatReader;
     private final long[] mSystemCpuData;
     private final ArrayList<Stats> mWorkingProcs;
     private boolean mWorkingProcsSorted;
@@ -112,13 +109,13 @@ public class ProcessCpuTracker {
         public boolean working;
         final ArrayList<Stats> workingThreads;
 
-        Stats(int _pid, int parentPid, boolean includeThreads) {
+        Stats(int _pid, int parentPid, boolean includeThreads, String procRoot) {
             this.pid = _pid;
             if (parentPid < 0) {
-                File procDir = new File("/proc", Integer.toString(this.pid));
-                this.statFile = new File(procDir, "stat").toString();
-                this.cmdlineFile = new File(procDir, "cmdline").toString();
-                this.threadsDir = new File(procDir, "task").toString();
+                String procDir = procRoot + "/" + this.pid;
+                this.statFile = procDir + "/stat";
+                this.cmdlineFile = procDir + "/cmdline";
+                this.threadsDir = procDir + "/task";
                 if (includeThreads) {
                     this.threadStats = new ArrayList();
                     this.workingThreads = new ArrayList();
@@ -127,13 +124,13 @@ public class ProcessCpuTracker {
                     this.workingThreads = null;
                 }
             } else {
-                this.statFile = new File(new File(new File(new File("/proc", Integer.toString(parentPid)), "task"), Integer.toString(this.pid)), "stat").toString();
+                this.statFile = procRoot + "/" + parentPid + "/task/" + this.pid + "/stat";
                 this.cmdlineFile = null;
                 this.threadsDir = null;
                 this.threadStats = null;
                 this.workingThreads = null;
             }
-            this.uid = FileUtils.getUid(this.statFile.toString());
+            this.uid = FileUtils.getUid(this.statFile);
         }
     }
 
@@ -165,6 +162,13 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
     }
 
     public ProcessCpuTracker(boolean includeThreads) {
+        this(includeThreads, "/proc");
+    }
+
+    /**
+     * Samples the proc tree under procRoot instead of /proc, e.g. a fake tree written to disk.
+     */
+    ProcessCpuTracker(boolean includeThreads, String procRoot) {
         this.mProcessStatsData = new long[PROCESS_FULL_STAT_STIME];
         this.mSinglePidStatsData = new long[PROCESS_FULL_STAT_STIME];
         this.mProcessFullStatsStringData = new String[6];
@@ -179,6 +183,8 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
         this.mFirst = true;
         this.mBuffer = new byte[HwPerformance.PERF_EVENT_RAW_REQ];
         this.mIncludeThreads = includeThreads;
+        this.mStatReader = new ProcStatReader(procRoot);
+        this.mSinglePidReader = new ProcStatReader(procRoot);
         this.mJiffyMillis = 1000 / Libcore.os.sysconf(OsConstants._SC_CLK_TCK);
     }
 
@@ -199,7 +205,7 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
         long nowRealtime = SystemClock.elapsedRealtime();
         long nowWallTime = System.currentTimeMillis();
         long[] sysCpu = this.mSystemCpuData;
-        if (Process.readProcFile("/proc/stat", SYSTEM_CPU_FORMAT, null, sysCpu, null)) {
+        if (this.mStatReader.readSystemCpu(sysCpu)) {
             long usertime = (sysCpu[PROCESS_STAT_MINOR_FAULTS] + sysCpu[PROCESS_STAT_MAJOR_FAULTS]) * this.mJiffyMillis;
             long systemtime = sysCpu[PROCESS_STAT_UTIME] * this.mJiffyMillis;
             long idletime = sysCpu[PROCESS_STAT_STIME] * this.mJiffyMillis;
@@ -228,9 +234,9 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
         this.mCurrentSampleWallTime = nowWallTime;
         ThreadPolicy savedPolicy = StrictMode.allowThreadDiskReads();
         try {
-            this.mCurPids = collectStats("/proc", -1, this.mFirst, this.mCurPids, this.mProcStats);
+            this.mCurPids = collectStats(this.mStatReader.getRoot(), -1, this.mFirst, this.mCurPids, this.mProcStats);
             float[] loadAverages = this.mLoadAverageData;
-            if (Process.readProcFile("/proc/loadavg", LOAD_AVERAGE_FORMAT, null, null, loadAverages)) {
+            if (this.mStatReader.readLoadAverage(loadAverages)) {
                 float load1 = loadAverages[PROCESS_STAT_MINOR_FAULTS];
                 float load5 = loadAverages[PROCESS_STAT_MAJOR_FAULTS];
                 float load15 = loadAverages[PROCESS_STAT_UTIME];
@@ -271,7 +277,7 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
                 if (st.interesting) {
                     long uptime = SystemClock.uptimeMillis();
                     procStats = this.mProcessStatsData;
-                    if (Process.readProcFile(st.statFile.toString(), PROCESS_STATS_FORMAT, null, procStats, null)) {
+                    if (this.mStatReader.readProcessStats(st.statFile, procStats)) {
                         long minfaults = procStats[PROCESS_STAT_MINOR_FAULTS];
                         long majfaults = procStats[PROCESS_STAT_MAJOR_FAULTS];
                         long utime = procStats[PROCESS_STAT_UTIME] * this.mJiffyMillis;
@@ -309,14 +315,14 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
                     }
                 }
             } else if (st == null || st.pid > pid) {
-                Stats stats = new Stats(pid, parentPid, this.mIncludeThreads);
+                Stats stats = new Stats(pid, parentPid, this.mIncludeThreads, this.mStatReader.getRoot());
                 allProcs.add(curStatsIndex, stats);
                 curStatsIndex += PROCESS_STAT_MAJOR_FAULTS;
                 NS += PROCESS_STAT_MAJOR_FAULTS;
                 String[] procStatsString = this.mProcessFullStatsStringData;
                 procStats = this.mProcessFullStatsData;
                 stats.base_uptime = SystemClock.uptimeMillis();
-                if (Process.readProcFile(stats.statFile.toString(), PROCESS_FULL_STATS_FORMAT, procStatsString, procStats, null)) {
+                if (this.mStatReader.readFullProcessStats(stats.statFile, procStatsString, procStats)) {
                     stats.vsize = procStats[PROCESS_FULL_STAT_VSIZE];
                     stats.interesting = true;
                     stats.baseName = procStatsString[PROCESS_STAT_MINOR_FAULTS];
@@ -378,9 +384,9 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
 
     public long getCpuTimeForPid(int pid) {
         synchronized (this.mSinglePidStatsData) {
-            String statFile = "/proc/" + pid + "/stat";
+            String statFile = this.mSinglePidReader.getRoot() + "/" + pid + "/stat";
             long[] statsData = this.mSinglePidStatsData;
-            if (Process.readProcFile(statFile, PROCESS_STATS_FORMAT, null, statsData, null)) {
+            if (this.mSinglePidReader.readProcessStats(statFile, statsData)) {
                 long j = this.mJiffyMillis * (statsData[PROCESS_STAT_UTIME] + statsData[PROCESS_STAT_STIME]);
                 return j;
             }
@@ -33,6 +33,7 @@ public final class Connection {
     private Handshake handshake;
     private HttpConnection httpConnection;
     private long idleStartTimeNs;
+    private long leaseTimeNs;
     private Object owner;
     private final ConnectionPool pool;
     private Protocol protocol;
@@ -313,6 +314,18 @@ public final class Connection {
         return this.framedConnection == null ? this.idleStartTimeNs : this.framedConnection.getIdleStartTimeNs();
     }
 
+    /**
+     * Returns when the pool last handed out this framed connection, or 0 if it never did. Read
+     * and written by the pool while holding this connection's monitor.
+     */
+    long getLeaseTimeNs() {
+        return this.leaseTimeNs;
+    }
+
+    void setLeaseTimeNs(long leaseTimeNs) {
+        this.leaseTimeNs = leaseTimeNs;
+    }
+
     public Handshake getHandshake() {
         return this.handshake;
     }
@@ -328,6 +341,14 @@ public final class Connection {
         return this.framedConnection != null;
     }
 
+    /**
+     * Returns the number of streams open on a framed connection, or 0 for an HTTP/1
+     * connection.
+     */
+    int openStreamCount() {
+        return this.framedConnection != null ? this.framedConnection.openStreamCount() : 0;
+    }
+
     public Protocol getProtocol() {
         return this.protocol;
     }
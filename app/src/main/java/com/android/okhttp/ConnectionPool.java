@@ -2,57 +2,103 @@ package com.android.okhttp;
 
 import com.android.okhttp.internal.Platform;
 import com.android.okhttp.internal.Util;
-import com.squareup.okhttp.Connection;
 import java.net.SocketException;
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
-import java.util.ListIterator;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.Executor;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Keeps idle HTTP/1 connections and shared framed connections for reuse, grouped in one bucket
+ * per Address. Acquiring and releasing a connection only touches the concurrent deques of its
+ * bucket, and the monitor of a framed connection while it is leased; the pool monitor is used by
+ * the cleanup thread alone, to wait for the next eviction. The cleanup thread removes buckets
+ * that have become empty.
+ */
 public final class ConnectionPool {
     private static final long DEFAULT_KEEP_ALIVE_DURATION_MS = 300000;
-    private static final ConnectionPool systemDefault = null;
-    private final LinkedList<Connection> connections;
+    private static final ConnectionPool systemDefault;
+    private final ConcurrentHashMap<Address, Bucket> buckets;
+    private final AtomicBoolean cleanupRunning;
+    private final AtomicInteger connectionCount;
     private final Runnable connectionsCleanupRunnable;
+    private final AtomicBoolean evictionRequested;
     private Executor executor;
+    private final AtomicLong hitCount;
     private final long keepAliveDurationNs;
     private final int maxIdleConnections;
+    private final AtomicLong missCount;
+    private final AtomicLong waitCount;
+    private final AtomicLong waitTimeNs;
+
+    /**
+     * The pooled connections to one address. Idle HTTP/1 connections are taken from the head,
+     * most recently used first; framed connections stay in the bucket while they carry streams.
+     * A retired bucket has been removed from the map: a connection added to it must be moved to
+     * the address's current bucket.
+     */
+    private static final class Bucket {
+        final ConcurrentLinkedDeque<Connection> framed;
+        final ConcurrentLinkedDeque<Connection> idle;
+        volatile boolean retired;
+
+        private Bucket() {
+            this.idle = new ConcurrentLinkedDeque();
+            this.framed = new ConcurrentLinkedDeque();
+        }
+
+        boolean isEmpty() {
+            return this.idle.isEmpty() && this.framed.isEmpty();
+        }
+    }
+
+    private static final class IdleStartOrder implements Comparator<Connection> {
+        private IdleStartOrder() {
+        }
+
+        public int compare(Connection a, Connection b) {
+            long x = ConnectionPool.idleSinceNs(a);
+            long y = ConnectionPool.idleSinceNs(b);
+            if (x < y) {
+                return -1;
+            }
+            return x == y ? 0 : 1;
+        }
+    }
 
     static {
-        /* JADX: method processing error */
-/*
-        Error: jadx.core.utils.exceptions.DecodeException: Load method exception in method: com.android.okhttp.ConnectionPool.<clinit>():void
-	at jadx.core.dex.nodes.MethodNode.load(MethodNode.java:113)
-	at jadx.core.dex.nodes.ClassNode.load(ClassNode.java:256)
-	at jadx.core.ProcessClass.process(ProcessClass.java:34)
-	at jadx.core.ProcessClass.processDependencies(ProcessClass.java:59)
-	at jadx.core.ProcessClass.process(ProcessClass.java:42)
-	at jadx.api.JadxDecompiler.processClass(JadxDecompiler.java:281)
-	at jadx.api.JavaClass.decompile(JavaClass.java:59)
-	at jadx.api.JadxDecompiler$1.run(JadxDecompiler.java:161)
-Caused by: jadx.core.utils.exceptions.DecodeException:  in method: com.android.okhttp.ConnectionPool.<clinit>():void
-	at jadx.core.dex.instructions.InsnDecoder.decodeInsns(InsnDecoder.java:46)
-	at jadx.core.dex.nodes.MethodNode.load(MethodNode.java:98)
-	... 7 more
-Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
-	at com.android.dx.io.OpcodeInfo.get(OpcodeInfo.java:1197)
-	at com.android.dx.io.OpcodeInfo.getFormat(OpcodeInfo.java:1212)
-	at com.android.dx.io.instructions.DecodedInstruction.decode(DecodedInstruction.java:72)
-	at jadx.core.dex.instructions.InsnDecoder.decodeInsns(InsnDecoder.java:43)
-	... 8 more
-*/
-        /*
-        // Can't load method instructions.
-        */
-        throw new UnsupportedOperationException("Method not decompiled: com.android.okhttp.ConnectionPool.<clinit>():void");
+        String keepAlive = System.getProperty("http.keepAlive");
+        String keepAliveDuration = System.getProperty("http.keepAliveDuration");
+        String maxIdleConnections = System.getProperty("http.maxConnections");
+        long keepAliveDurationMs = keepAliveDuration != null ? Long.parseLong(keepAliveDuration) : DEFAULT_KEEP_ALIVE_DURATION_MS;
+        if (keepAlive != null && !Boolean.parseBoolean(keepAlive)) {
+            systemDefault = new ConnectionPool(0, keepAliveDurationMs);
+        } else if (maxIdleConnections != null) {
+            systemDefault = new ConnectionPool(Integer.parseInt(maxIdleConnections), keepAliveDurationMs);
+        } else {
+            systemDefault = new ConnectionPool(5, keepAliveDurationMs);
+        }
     }
 
     public ConnectionPool(int maxIdleConnections, long keepAliveDurationMs) {
-        this.connections = new LinkedList();
+        this.buckets = new ConcurrentHashMap();
+        this.cleanupRunning = new AtomicBoolean();
+        this.connectionCount = new AtomicInteger();
+        this.evictionRequested = new AtomicBoolean();
+        this.hitCount = new AtomicLong();
+        this.missCount = new AtomicLong();
+        this.waitCount = new AtomicLong();
+        this.waitTimeNs = new AtomicLong();
         this.executor = new ThreadPoolExecutor(0, 1, 60, TimeUnit.SECONDS, new LinkedBlockingQueue(), Util.threadFactory("OkHttp ConnectionPool", true));
         this.connectionsCleanupRunnable = new Runnable() {
             public void run() {
@@ -67,58 +113,148 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
         return systemDefault;
     }
 
-    public synchronized int getConnectionCount() {
-        return this.connections.size();
+    public int getConnectionCount() {
+        return this.connectionCount.get();
     }
 
     @Deprecated
-    public synchronized int getSpdyConnectionCount() {
+    public int getSpdyConnectionCount() {
         return getMultiplexedConnectionCount();
     }
 
-    public synchronized int getMultiplexedConnectionCount() {
-        int total;
-        total = 0;
-        for (Connection connection : this.connections) {
-            if (connection.isFramed()) {
-                total++;
-            }
+    public int getMultiplexedConnectionCount() {
+        int total = 0;
+        for (Bucket bucket : this.buckets.values()) {
+            total += bucket.framed.size();
         }
         return total;
     }
 
-    public synchronized int getHttpConnectionCount() {
-        return this.connections.size() - getMultiplexedConnectionCount();
-    }
-
-    /* JADX WARNING: inconsistent code. */
-    /* Code decompiled incorrectly, please refer to instructions dump. */
-    public synchronized Connection get(Address address) {
-        Connection foundConnection;
-        foundConnection = null;
-        ListIterator<Connection> i = this.connections.listIterator(this.connections.size());
-        while (i.hasPrevious()) {
-            Connection connection = (Connection) i.previous();
-            if (connection.getRoute().getAddress().equals(address) && connection.isAlive() && System.nanoTime() - connection.getIdleStartTimeNs() < this.keepAliveDurationNs) {
-                i.remove();
-                if (!connection.isFramed()) {
-                    try {
-                        Platform.get().tagSocket(connection.getSocket());
-                    } catch (SocketException e) {
-                        Util.closeQuietly(connection.getSocket());
-                        Platform.get().logW("Unable to tagSocket(): " + e);
+    public int getHttpConnectionCount() {
+        int total = 0;
+        for (Bucket bucket : this.buckets.values()) {
+            total += bucket.idle.size();
+        }
+        return total;
+    }
+
+    /**
+     * Returns the number of calls to get that found a pooled connection.
+     */
+    public long getHitCount() {
+        return this.hitCount.get();
+    }
+
+    public long getMissCount() {
+        return this.missCount.get();
+    }
+
+    /**
+     * Returns the number of calls that obtained a connection, pooled or new.
+     */
+    public long getWaitCount() {
+        return this.waitCount.get();
+    }
+
+    /**
+     * Returns the total time, in nanoseconds, calls waited to obtain a connected connection:
+     * the lookup in this pool, plus the connect when nothing could be reused.
+     */
+    public long getTotalWaitTimeNs() {
+        return this.waitTimeNs.get();
+    }
+
+    /**
+     * Records that a call waited waitNs to obtain a connected connection. Called by HttpEngine.
+     */
+    public void recordWait(long waitNs) {
+        this.waitCount.incrementAndGet();
+        this.waitTimeNs.addAndGet(waitNs);
+    }
+
+    /**
+     * Returns a pooled connection to address, or null if there is none. An idle HTTP/1
+     * connection is removed from the pool; a framed connection is shared, and the one with the
+     * fewest open streams is returned.
+     */
+    public Connection get(Address address) {
+        long now = System.nanoTime();
+        Connection foundConnection = null;
+        Bucket bucket = (Bucket) this.buckets.get(address);
+        if (bucket != null) {
+            foundConnection = getFramed(bucket, now);
+            if (foundConnection == null) {
+                foundConnection = getIdle(bucket, now);
+            }
+        }
+        if (foundConnection != null) {
+            this.hitCount.incrementAndGet();
+        } else {
+            this.missCount.incrementAndGet();
+        }
+        return foundConnection;
+    }
+
+    /**
+     * Returns the framed connection with the fewest open streams. It is leased under its
+     * monitor, once it is known to still be pooled, so that cleanup does not close it before the
+     * caller opens a stream on it.
+     */
+    private Connection getFramed(Bucket bucket, long now) {
+        while (true) {
+            Connection best = null;
+            int bestStreams = Integer.MAX_VALUE;
+            for (Connection connection : bucket.framed) {
+                if (connection.isAlive() && isWithinKeepAlive(connection, now)) {
+                    int streams = connection.openStreamCount();
+                    if (streams < bestStreams) {
+                        best = connection;
+                        bestStreams = streams;
                     }
                 }
-                foundConnection = connection;
-                break;
+            }
+            if (best == null) {
+                return null;
+            }
+            synchronized (best) {
+                if (bucket.framed.contains(best)) {
+                    best.setLeaseTimeNs(System.nanoTime());
+                    return best;
+                }
             }
         }
-        if (foundConnection != null) {
-            if (foundConnection.isFramed()) {
-                this.connections.addFirst(foundConnection);
+    }
+
+    private Connection getIdle(Bucket bucket, long now) {
+        while (true) {
+            Connection connection = (Connection) bucket.idle.pollFirst();
+            if (connection == null) {
+                return null;
             }
+            this.connectionCount.decrementAndGet();
+            if (connection.isAlive() && isWithinKeepAlive(connection, now)) {
+                try {
+                    Platform.get().tagSocket(connection.getSocket());
+                } catch (SocketException e) {
+                    Util.closeQuietly(connection.getSocket());
+                    Platform.get().logW("Unable to tagSocket(): " + e);
+                }
+                return connection;
+            }
+            Util.closeQuietly(connection.getSocket());
         }
-        return foundConnection;
+    }
+
+    private boolean isWithinKeepAlive(Connection connection, long now) {
+        return now - idleSinceNs(connection) < this.keepAliveDurationNs;
+    }
+
+    /**
+     * Returns when connection became idle or, for a framed connection, was last leased by get,
+     * whichever is later.
+     */
+    private static long idleSinceNs(Connection connection) {
+        return Math.max(connection.getIdleStartTimeNs(), connection.getLeaseTimeNs());
     }
 
     void recycle(Connection connection) {
@@ -128,11 +264,9 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
         if (connection.isAlive()) {
             try {
                 Platform.get().untagSocket(connection.getSocket());
-                synchronized (this) {
-                    addConnection(connection);
-                    connection.incrementRecycleCount();
-                    connection.resetIdleStartTime();
-                }
+                connection.incrementRecycleCount();
+                connection.resetIdleStartTime();
+                addConnection(connection, false);
                 return;
             } catch (SocketException e) {
                 Platform.get().logW("Unable to untagSocket(): " + e);
@@ -143,13 +277,49 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
         Util.closeQuietly(connection.getSocket());
     }
 
-    private void addConnection(Connection connection) {
-        boolean empty = this.connections.isEmpty();
-        this.connections.addFirst(connection);
-        if (empty) {
+    /**
+     * Returns the current bucket of address, replacing one that cleanup has retired.
+     */
+    private Bucket bucketFor(Address address) {
+        while (true) {
+            Bucket bucket = (Bucket) this.buckets.get(address);
+            if (bucket == null) {
+                Bucket newBucket = new Bucket();
+                bucket = (Bucket) this.buckets.putIfAbsent(address, newBucket);
+                if (bucket == null) {
+                    return newBucket;
+                }
+            }
+            if (!bucket.retired) {
+                return bucket;
+            }
+            this.buckets.remove(address, bucket);
+        }
+    }
+
+    /**
+     * Adds a connection to its bucket's idle or framed deque. If the bucket was retired
+     * meanwhile, the connection is taken back and added again to a current bucket, unless get or
+     * cleanup already took it. Starts the cleanup thread if it is not running, and wakes it once
+     * per cleanup pass when the pool holds more connections than may stay idle.
+     */
+    private void addConnection(Connection connection, boolean framed) {
+        Address address = connection.getRoute().getAddress();
+        while (true) {
+            Bucket bucket = bucketFor(address);
+            ConcurrentLinkedDeque<Connection> deque = framed ? bucket.framed : bucket.idle;
+            deque.addFirst(connection);
+            if (!bucket.retired || !deque.remove(connection)) {
+                break;
+            }
+        }
+        if (this.connectionCount.incrementAndGet() > this.maxIdleConnections && this.evictionRequested.compareAndSet(false, true)) {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+        if (this.cleanupRunning.compareAndSet(false, true)) {
             this.executor.execute(this.connectionsCleanupRunnable);
-        } else {
-            notifyAll();
         }
     }
 
@@ -157,17 +327,17 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
         if (!connection.isFramed()) {
             throw new IllegalArgumentException();
         } else if (connection.isAlive()) {
-            synchronized (this) {
-                addConnection(connection);
-            }
+            addConnection(connection, true);
         }
     }
 
     public void evictAll() {
-        List<Connection> toEvict;
+        List<Connection> toEvict = new ArrayList();
+        for (Bucket bucket : this.buckets.values()) {
+            drain(bucket.idle, toEvict);
+            drain(bucket.framed, toEvict);
+        }
         synchronized (this) {
-            toEvict = new ArrayList(this.connections);
-            this.connections.clear();
             notifyAll();
         }
         int size = toEvict.size();
@@ -176,46 +346,85 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
         }
     }
 
+    private void drain(ConcurrentLinkedDeque<Connection> deque, List<Connection> out) {
+        while (true) {
+            Connection connection = (Connection) deque.pollFirst();
+            if (connection != null) {
+                this.connectionCount.decrementAndGet();
+                out.add(connection);
+            } else {
+                return;
+            }
+        }
+    }
+
     private void runCleanupUntilPoolIsEmpty() {
         do {
         } while (performCleanup());
     }
 
+    /**
+     * Evicts connections that are dead or were idle for longer than the keep-alive duration,
+     * then the longest idle ones beyond maxIdleConnections, and retires empty buckets. Waits
+     * until the next connection is due for eviction if there was nothing to evict. Returns false
+     * once the pool is empty.
+     */
     boolean performCleanup() {
-        synchronized (this) {
-            if (this.connections.isEmpty()) {
+        if (this.connectionCount.get() <= 0) {
+            for (Entry<Address, Bucket> entry : this.buckets.entrySet()) {
+                if (((Bucket) entry.getValue()).isEmpty()) {
+                    retire((Address) entry.getKey(), (Bucket) entry.getValue());
+                }
+            }
+            this.cleanupRunning.set(false);
+            if (this.connectionCount.get() <= 0 || !this.cleanupRunning.compareAndSet(false, true)) {
                 return false;
             }
-            List<Connection> evictableConnections = new ArrayList();
-            int idleConnectionCount = 0;
-            long now = System.nanoTime();
-            long nanosUntilNextEviction = this.keepAliveDurationNs;
-            ListIterator<Connection> i = this.connections.listIterator(this.connections.size());
-            while (i.hasPrevious()) {
-                Connection connection = (Connection) i.previous();
-                long nanosUntilEviction = (connection.getIdleStartTimeNs() + this.keepAliveDurationNs) - now;
-                if (nanosUntilEviction <= 0 || !connection.isAlive()) {
-                    i.remove();
-                    evictableConnections.add(connection);
-                } else if (connection.isIdle()) {
-                    idleConnectionCount++;
-                    nanosUntilNextEviction = Math.min(nanosUntilNextEviction, nanosUntilEviction);
+        }
+        this.evictionRequested.set(false);
+        List<Connection> evictableConnections = new ArrayList();
+        List<Connection> idleConnections = new ArrayList();
+        long now = System.nanoTime();
+        long nanosUntilNextEviction = this.keepAliveDurationNs;
+        for (Entry<Address, Bucket> entry : this.buckets.entrySet()) {
+            Bucket bucket = (Bucket) entry.getValue();
+            for (Connection connection : bucket.idle) {
+                nanosUntilNextEviction = Math.min(nanosUntilNextEviction, evictIfExpired(bucket.idle, connection, now, evictableConnections, idleConnections));
+            }
+            for (Connection connection : bucket.framed) {
+                synchronized (connection) {
+                    nanosUntilNextEviction = Math.min(nanosUntilNextEviction, evictIfExpired(bucket.framed, connection, now, evictableConnections, idleConnections));
                 }
             }
-            i = this.connections.listIterator(this.connections.size());
-            while (i.hasPrevious()) {
-                int i2 = this.maxIdleConnections;
-                if (idleConnectionCount <= r0) {
-                    break;
+            if (bucket.isEmpty()) {
+                retire((Address) entry.getKey(), bucket);
+            }
+        }
+        int excess = idleConnections.size() - this.maxIdleConnections;
+        if (excess > 0) {
+            Collections.sort(idleConnections, new IdleStartOrder());
+            for (int i = 0; i < excess; i++) {
+                Connection connection2 = (Connection) idleConnections.get(i);
+                Bucket bucket2 = (Bucket) this.buckets.get(connection2.getRoute().getAddress());
+                if (bucket2 == null) {
+                    continue;
                 }
-                connection = (Connection) i.previous();
-                if (connection.isIdle()) {
-                    evictableConnections.add(connection);
-                    i.remove();
-                    idleConnectionCount--;
+                if (connection2.isFramed()) {
+                    synchronized (connection2) {
+                        if (connection2.isIdle() && connection2.getLeaseTimeNs() < connection2.getIdleStartTimeNs()) {
+                            remove(bucket2.framed, connection2, evictableConnections);
+                        }
+                    }
+                } else {
+                    remove(bucket2.idle, connection2, evictableConnections);
                 }
             }
-            if (evictableConnections.isEmpty()) {
+        }
+        if (evictableConnections.isEmpty()) {
+            synchronized (this) {
+                if (this.evictionRequested.get()) {
+                    return true;
+                }
                 try {
                     long millisUntilNextEviction = nanosUntilNextEviction / 1000000;
                     wait(millisUntilNextEviction, (int) (nanosUntilNextEviction - (1000000 * millisUntilNextEviction)));
@@ -223,11 +432,64 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
                 } catch (InterruptedException e) {
                 }
             }
-            int size = evictableConnections.size();
-            for (int i3 = 0; i3 < size; i3++) {
-                Util.closeQuietly(((Connection) evictableConnections.get(i3)).getSocket());
+        }
+        int size = evictableConnections.size();
+        for (int i2 = 0; i2 < size; i2++) {
+            Util.closeQuietly(((Connection) evictableConnections.get(i2)).getSocket());
+        }
+        return true;
+    }
+
+    /**
+     * Evicts connection if it is dead or was idle for longer than the keep-alive duration, and
+     * otherwise adds it to idleConnections if it is idle. Returns the nanoseconds until it is
+     * due for eviction. A framed connection must be checked under its monitor, so that it is not
+     * evicted while get leases it.
+     */
+    private long evictIfExpired(ConcurrentLinkedDeque<Connection> deque, Connection connection, long now, List<Connection> evicted, List<Connection> idleConnections) {
+        boolean idle = connection.isIdle();
+        long nanosUntilEviction = idle ? (idleSinceNs(connection) + this.keepAliveDurationNs) - now : this.keepAliveDurationNs;
+        if (nanosUntilEviction <= 0 || !connection.isAlive()) {
+            remove(deque, connection, evicted);
+            return this.keepAliveDurationNs;
+        }
+        if (idle) {
+            idleConnections.add(connection);
+        }
+        return nanosUntilEviction;
+    }
+
+    /**
+     * Removes an empty bucket from the map. Connections added to it while it was being retired
+     * are moved to the address's new bucket, here or by their adder, whichever removes them
+     * first.
+     */
+    private void retire(Address address, Bucket bucket) {
+        bucket.retired = true;
+        this.buckets.remove(address, bucket);
+        rehome(bucket.idle, false);
+        rehome(bucket.framed, true);
+    }
+
+    private void rehome(ConcurrentLinkedDeque<Connection> deque, boolean framed) {
+        while (true) {
+            Connection connection = (Connection) deque.pollFirst();
+            if (connection != null) {
+                this.connectionCount.decrementAndGet();
+                addConnection(connection, framed);
+            } else {
+                return;
             }
-            return true;
+        }
+    }
+
+    /**
+     * Removes connection from deque unless a caller of get took it first.
+     */
+    private void remove(ConcurrentLinkedDeque<Connection> deque, Connection connection, List<Connection> evicted) {
+        if (deque.remove(connection)) {
+            this.connectionCount.decrementAndGet();
+            evicted.add(connection);
         }
     }
 
@@ -235,7 +497,16 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
         this.executor = cleanupExecutor;
     }
 
-    synchronized List<Connection> getConnections() {
-        return new ArrayList(this.connections);
+    List<Connection> getConnections() {
+        List<Connection> connections = new ArrayList();
+        for (Bucket bucket : this.buckets.values()) {
+            connections.addAll(bucket.idle);
+            connections.addAll(bucket.framed);
+        }
+        return connections;
+    }
+
+    int getBucketCount() {
+        return this.buckets.size();
     }
 }
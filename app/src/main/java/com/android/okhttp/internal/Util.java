@@ -22,9 +22,9 @@ import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 
 public final class Util {
-    public static final byte[] EMPTY_BYTE_ARRAY = null;
-    public static final String[] EMPTY_STRING_ARRAY = null;
-    public static final Charset UTF_8 = null;
+    public static final byte[] EMPTY_BYTE_ARRAY;
+    public static final String[] EMPTY_STRING_ARRAY;
+    public static final Charset UTF_8;
 
     /* renamed from: com.android.okhttp.internal.Util.1 */
     static class AnonymousClass1 implements ThreadFactory {
@@ -44,32 +44,9 @@ public final class Util {
     }
 
     static {
-        /* JADX: method processing error */
-/*
-        Error: jadx.core.utils.exceptions.DecodeException: Load method exception in method: com.android.okhttp.internal.Util.<clinit>():void
-	at jadx.core.dex.nodes.MethodNode.load(MethodNode.java:113)
-	at jadx.core.dex.nodes.ClassNode.load(ClassNode.java:256)
-	at jadx.core.ProcessClass.process(ProcessClass.java:34)
-	at jadx.core.ProcessClass.processDependencies(ProcessClass.java:59)
-	at jadx.core.ProcessClass.process(ProcessClass.java:42)
-	at jadx.api.JadxDecompiler.processClass(JadxDecompiler.java:281)
-	at jadx.api.JavaClass.decompile(JavaClass.java:59)
-	at jadx.api.JadxDecompiler$1.run(JadxDecompiler.java:161)
-Caused by: jadx.core.utils.exceptions.DecodeException:  in method: com.android.okhttp.internal.Util.<clinit>():void
-	at jadx.core.dex.instructions.InsnDecoder.decodeInsns(InsnDecoder.java:46)
-	at jadx.core.dex.nodes.MethodNode.load(MethodNode.java:98)
-	... 7 more
-Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
-	at com.android.dx.io.OpcodeInfo.get(OpcodeInfo.java:1197)
-	at com.android.dx.io.OpcodeInfo.getFormat(OpcodeInfo.java:1212)
-	at com.android.dx.io.instructions.DecodedInstruction.decode(DecodedInstruction.java:72)
-	at jadx.core.dex.instructions.InsnDecoder.decodeInsns(InsnDecoder.java:43)
-	... 8 more
-*/
-        /*
-        // Can't load method instructions.
-        */
-        throw new UnsupportedOperationException("Method not decompiled: com.android.okhttp.internal.Util.<clinit>():void");
+        EMPTY_BYTE_ARRAY = new byte[0];
+        EMPTY_STRING_ARRAY = new String[0];
+        UTF_8 = Charset.forName("UTF-8");
     }
 
     public static boolean skipAll(com.android.okhttp.okio.Source r12, int r13, java.util.concurrent.TimeUnit r14) throws java.io.IOException {
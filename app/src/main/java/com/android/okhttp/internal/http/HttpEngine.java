@@ -292,8 +292,10 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
                 throw new RequestException(e);
             }
         }
+        long start = System.nanoTime();
         this.connection = createNextConnection();
         Internal.instance.connectAndSetOwner(this.client, this.connection, this, this.networkRequest);
+        this.client.getConnectionPool().recordWait(System.nanoTime() - start);
         this.route = this.connection.getRoute();
     }
 
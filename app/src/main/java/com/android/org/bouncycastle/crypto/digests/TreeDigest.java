@@ -0,0 +1,249 @@
+package com.android.org.bouncycastle.crypto.digests;
+
+import com.android.org.bouncycastle.crypto.Digest;
+import com.android.org.bouncycastle.crypto.ExtendedDigest;
+import com.android.org.bouncycastle.util.Memoable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Hashes its input as a Merkle tree over fixed-size chunks, with the leaves hashed in parallel
+ * on a ForkJoinPool. The root is computed as in RFC 6962: a leaf is H(0x00 || chunk) and an
+ * inner node is H(0x01 || left || right), where the left subtree holds the largest power of
+ * two of leaves smaller than the node's count. The result depends on the chunk size and is not
+ * the plain digest of the input.
+ */
+public class TreeDigest implements ExtendedDigest {
+    public static final int DEFAULT_CHUNK_SIZE = 1048576;
+    private static final int MAX_MAP_SIZE = 67108864;
+    private static final int SCRATCH_SIZE = 8192;
+    private byte[] chunk;
+    private int chunkOff;
+    private final int chunkSize;
+    private final Digest digest;
+    private final List<byte[]> leafHashes;
+    private final int maxPendingLeaves;
+    private final List<LeafTask> pendingLeaves;
+    private final ForkJoinPool pool;
+
+    private final class LeafTask extends RecursiveTask<byte[]> {
+        private final byte[] data;
+        private final ByteBuffer mapped;
+
+        LeafTask(byte[] data, ByteBuffer mapped) {
+            this.data = data;
+            this.mapped = mapped;
+        }
+
+        protected byte[] compute() {
+            Digest leafDigest = TreeDigest.this.newDigest();
+            leafDigest.update((byte) 0);
+            if (this.data != null) {
+                leafDigest.update(this.data, 0, this.data.length);
+            } else {
+                byte[] scratch = new byte[TreeDigest.SCRATCH_SIZE];
+                while (this.mapped.hasRemaining()) {
+                    int n = Math.min(this.mapped.remaining(), TreeDigest.SCRATCH_SIZE);
+                    this.mapped.get(scratch, 0, n);
+                    leafDigest.update(scratch, 0, n);
+                }
+            }
+            byte[] out = new byte[leafDigest.getDigestSize()];
+            leafDigest.doFinal(out, 0);
+            return out;
+        }
+    }
+
+    public TreeDigest(Digest digest) {
+        this(digest, DEFAULT_CHUNK_SIZE, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a tree digest over chunks of chunkSize bytes. The digest must be Memoable or an
+     * OpenSSLDigest, so that each leaf can be hashed with its own instance.
+     */
+    public TreeDigest(Digest digest, int chunkSize, ForkJoinPool pool) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive");
+        } else if ((digest instanceof Memoable) || (digest instanceof OpenSSLDigest)) {
+            this.digest = digest;
+            this.chunkSize = chunkSize;
+            this.pool = pool;
+            this.maxPendingLeaves = pool.getParallelism() * 2;
+            this.leafHashes = new ArrayList<byte[]>();
+            this.pendingLeaves = new ArrayList<LeafTask>();
+            this.digest.reset();
+        } else {
+            throw new IllegalArgumentException("digest must be Memoable or an OpenSSLDigest");
+        }
+    }
+
+    public String getAlgorithmName() {
+        return this.digest.getAlgorithmName() + "/Tree";
+    }
+
+    public int getDigestSize() {
+        return this.digest.getDigestSize();
+    }
+
+    public int getByteLength() {
+        return this.digest instanceof ExtendedDigest ? ((ExtendedDigest) this.digest).getByteLength() : 64;
+    }
+
+    public int getChunkSize() {
+        return this.chunkSize;
+    }
+
+    public void update(byte in) {
+        if (this.chunk == null) {
+            this.chunk = new byte[this.chunkSize];
+        }
+        this.chunk[this.chunkOff++] = in;
+        if (this.chunkOff == this.chunkSize) {
+            submitChunk();
+        }
+    }
+
+    public void update(byte[] in, int inOff, int len) {
+        while (len > 0) {
+            if (this.chunk == null) {
+                this.chunk = new byte[this.chunkSize];
+            }
+            int n = Math.min(len, this.chunkSize - this.chunkOff);
+            System.arraycopy(in, inOff, this.chunk, this.chunkOff, n);
+            this.chunkOff += n;
+            inOff += n;
+            len -= n;
+            if (this.chunkOff == this.chunkSize) {
+                submitChunk();
+            }
+        }
+    }
+
+    /**
+     * Hashes length bytes of channel starting at position. Whole chunks are hashed straight
+     * from read-only mappings of the file instead of being read into chunk buffers; only the
+     * bytes that do not fill a chunk are copied.
+     */
+    public void update(FileChannel channel, long position, long length) throws IOException {
+        long end = position + length;
+        if (this.chunkOff > 0 && position < end) {
+            int n = (int) Math.min(end - position, (long) (this.chunkSize - this.chunkOff));
+            channel.map(MapMode.READ_ONLY, position, (long) n).get(this.chunk, this.chunkOff, n);
+            this.chunkOff += n;
+            position += (long) n;
+            if (this.chunkOff == this.chunkSize) {
+                submitChunk();
+            }
+        }
+        long windowSize = (long) Math.max(this.chunkSize, (MAX_MAP_SIZE / this.chunkSize) * this.chunkSize);
+        while (end - position >= ((long) this.chunkSize)) {
+            long wholeChunks = ((end - position) / ((long) this.chunkSize)) * ((long) this.chunkSize);
+            MappedByteBuffer window = channel.map(MapMode.READ_ONLY, position, Math.min(windowSize, wholeChunks));
+            for (int off = 0; off < window.capacity(); off += this.chunkSize) {
+                ByteBuffer slice = window.duplicate();
+                slice.position(off);
+                slice.limit(this.chunkSize + off);
+                submit(new LeafTask(null, slice.slice()));
+            }
+            position += (long) window.capacity();
+        }
+        if (position < end) {
+            if (this.chunk == null) {
+                this.chunk = new byte[this.chunkSize];
+            }
+            int n2 = (int) (end - position);
+            channel.map(MapMode.READ_ONLY, position, (long) n2).get(this.chunk, 0, n2);
+            this.chunkOff = n2;
+        }
+    }
+
+    /**
+     * Waits for the leaves, writes the root to out and resets. The digest is reset even when
+     * hashing a leaf failed, so it can be used again.
+     */
+    public int doFinal(byte[] out, int outOff) {
+        try {
+            if (this.chunkOff > 0) {
+                byte[] last = new byte[this.chunkOff];
+                System.arraycopy(this.chunk, 0, last, 0, this.chunkOff);
+                submit(new LeafTask(last, null));
+            }
+            for (LeafTask task : this.pendingLeaves) {
+                this.leafHashes.add(task.join());
+            }
+            this.pendingLeaves.clear();
+            byte[] root;
+            if (this.leafHashes.isEmpty()) {
+                root = new byte[this.digest.getDigestSize()];
+                this.digest.doFinal(root, 0);
+            } else {
+                root = rootOf(0, this.leafHashes.size());
+            }
+            System.arraycopy(root, 0, out, outOff, root.length);
+            return root.length;
+        } finally {
+            reset();
+        }
+    }
+
+    public void reset() {
+        for (LeafTask task : this.pendingLeaves) {
+            task.cancel(false);
+        }
+        this.pendingLeaves.clear();
+        this.leafHashes.clear();
+        this.chunkOff = 0;
+        this.digest.reset();
+    }
+
+    private void submitChunk() {
+        submit(new LeafTask(this.chunk, null));
+        this.chunk = null;
+        this.chunkOff = 0;
+    }
+
+    /**
+     * Queues a leaf on the pool. Once more than maxPendingLeaves leaves are queued, waits for
+     * the oldest one, which bounds the memory held by chunks that are not hashed yet.
+     */
+    private void submit(LeafTask task) {
+        this.pool.execute(task);
+        this.pendingLeaves.add(task);
+        if (this.pendingLeaves.size() > this.maxPendingLeaves) {
+            this.leafHashes.add(this.pendingLeaves.remove(0).join());
+        }
+    }
+
+    private byte[] rootOf(int from, int to) {
+        int count = to - from;
+        if (count == 1) {
+            return this.leafHashes.get(from);
+        }
+        int split = Integer.highestOneBit(count - 1);
+        byte[] left = rootOf(from, from + split);
+        byte[] right = rootOf(from + split, to);
+        this.digest.update((byte) 1);
+        this.digest.update(left, 0, left.length);
+        this.digest.update(right, 0, right.length);
+        byte[] node = new byte[this.digest.getDigestSize()];
+        this.digest.doFinal(node, 0);
+        return node;
+    }
+
+    private Digest newDigest() {
+        if (this.digest instanceof Memoable) {
+            Digest copy = (Digest) ((Memoable) this.digest).copy();
+            copy.reset();
+            return copy;
+        }
+        return new OpenSSLDigest(this.digest.getAlgorithmName(), getByteLength());
+    }
+}
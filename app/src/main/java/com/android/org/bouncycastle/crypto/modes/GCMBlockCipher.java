@@ -36,6 +36,7 @@ public class GCMBlockCipher implements AEADBlockCipher {
     private GCMExponentiator exp;
     private boolean forEncryption;
     private byte[] initialAssociatedText;
+    private byte[] keyStream;
     private byte[] macBlock;
     private int macSize;
     private GCMMultiplier multiplier;
@@ -223,17 +224,70 @@ public class GCMBlockCipher implements AEADBlockCipher {
         } else if (in.length < inOff + len) {
             throw new DataLengthException("Input buffer too short");
         } else {
-            int resultLen = 0;
-            for (int i = 0; i < len; i++) {
-                this.bufBlock[this.bufOff] = in[inOff + i];
-                int i2 = this.bufOff + 1;
-                this.bufOff = i2;
-                if (i2 == this.bufBlock.length) {
-                    outputBlock(out, outOff + resultLen);
-                    resultLen += BLOCK_SIZE;
+            int blockCount = ((this.bufOff + len) - (this.forEncryption ? 0 : this.macSize)) / BLOCK_SIZE;
+            if (blockCount <= 0) {
+                System.arraycopy(in, inOff, this.bufBlock, this.bufOff, len);
+                this.bufOff += len;
+                return 0;
+            } else if (out.length < (blockCount * BLOCK_SIZE) + outOff) {
+                throw new OutputLengthException("Output buffer too short");
+            } else {
+                int resultLen = 0;
+                while (this.bufOff > 0 && blockCount > 0) {
+                    if (this.bufOff < BLOCK_SIZE) {
+                        int fill = BLOCK_SIZE - this.bufOff;
+                        System.arraycopy(in, inOff, this.bufBlock, this.bufOff, fill);
+                        inOff += fill;
+                        len -= fill;
+                        this.bufOff = BLOCK_SIZE;
+                    }
+                    processBlocks(this.bufBlock, 0, 1, out, outOff + resultLen);
+                    this.bufOff -= 16;
+                    System.arraycopy(this.bufBlock, BLOCK_SIZE, this.bufBlock, 0, this.bufOff);
+                    resultLen += 16;
+                    blockCount--;
+                }
+                if (blockCount > 0) {
+                    processBlocks(in, inOff, blockCount, out, outOff + resultLen);
+                    int processed = blockCount * BLOCK_SIZE;
+                    inOff += processed;
+                    len -= processed;
+                    resultLen += processed;
                 }
+                System.arraycopy(in, inOff, this.bufBlock, this.bufOff, len);
+                this.bufOff += len;
+                return resultLen;
             }
-            return resultLen;
+        }
+    }
+
+    /**
+     * Encrypts or decrypts whole blocks straight from in to out, reusing one keystream block.
+     * The ciphertext is hashed before the output is written, so in and out may be the same
+     * array.
+     */
+    private void processBlocks(byte[] in, int inOff, int blockCount, byte[] out, int outOff) {
+        if (this.totalLength == 0) {
+            initCipher();
+        }
+        if (this.keyStream == null) {
+            this.keyStream = new byte[BLOCK_SIZE];
+        }
+        while (blockCount > 0) {
+            encryptNextCounter(this.keyStream, 0);
+            if (!this.forEncryption) {
+                gHASHPartial(this.S, in, inOff, BLOCK_SIZE);
+            }
+            for (int i = 0; i < BLOCK_SIZE; i++) {
+                out[outOff + i] = (byte) (in[inOff + i] ^ this.keyStream[i]);
+            }
+            if (this.forEncryption) {
+                gHASHPartial(this.S, out, outOff, BLOCK_SIZE);
+            }
+            this.totalLength += 16;
+            inOff += BLOCK_SIZE;
+            outOff += BLOCK_SIZE;
+            blockCount--;
         }
     }
 
@@ -383,6 +437,12 @@ public class GCMBlockCipher implements AEADBlockCipher {
     }
 
     private byte[] getNextCounterBlock() {
+        byte[] tmp = new byte[BLOCK_SIZE];
+        encryptNextCounter(tmp, 0);
+        return tmp;
+    }
+
+    private void encryptNextCounter(byte[] out, int outOff) {
         int c = (this.counter[15] & 255) + 1;
         this.counter[15] = (byte) c;
         c = (c >>> 8) + (this.counter[14] & 255);
@@ -390,8 +450,6 @@ public class GCMBlockCipher implements AEADBlockCipher {
         c = (c >>> 8) + (this.counter[13] & 255);
         this.counter[13] = (byte) c;
         this.counter[12] = (byte) ((c >>> 8) + (this.counter[12] & 255));
-        byte[] tmp = new byte[BLOCK_SIZE];
-        this.cipher.processBlock(this.counter, 0, tmp, 0);
-        return tmp;
+        this.cipher.processBlock(this.counter, 0, out, outOff);
     }
 }
@@ -5,33 +5,10 @@ import com.android.org.bouncycastle.util.Pack;
 public abstract class GCMUtil {
     private static final int E1 = -520093696;
     private static final long E1L = -2233785415175766016L;
-    private static final int[] LOOKUP = null;
+    private static final int[] LOOKUP;
 
     static {
-        /* JADX: method processing error */
-/*
-        Error: jadx.core.utils.exceptions.DecodeException: Load method exception in method: com.android.org.bouncycastle.crypto.modes.gcm.GCMUtil.<clinit>():void
-	at jadx.core.dex.nodes.MethodNode.load(MethodNode.java:113)
-	at jadx.core.dex.nodes.ClassNode.load(ClassNode.java:256)
-	at jadx.core.ProcessClass.process(ProcessClass.java:34)
-	at jadx.api.JadxDecompiler.processClass(JadxDecompiler.java:281)
-	at jadx.api.JavaClass.decompile(JavaClass.java:59)
-	at jadx.api.JadxDecompiler$1.run(JadxDecompiler.java:161)
-Caused by: jadx.core.utils.exceptions.DecodeException:  in method: com.android.org.bouncycastle.crypto.modes.gcm.GCMUtil.<clinit>():void
-	at jadx.core.dex.instructions.InsnDecoder.decodeInsns(InsnDecoder.java:46)
-	at jadx.core.dex.nodes.MethodNode.load(MethodNode.java:98)
-	... 5 more
-Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
-	at com.android.dx.io.OpcodeInfo.get(OpcodeInfo.java:1197)
-	at com.android.dx.io.OpcodeInfo.getFormat(OpcodeInfo.java:1212)
-	at com.android.dx.io.instructions.DecodedInstruction.decode(DecodedInstruction.java:72)
-	at jadx.core.dex.instructions.InsnDecoder.decodeInsns(InsnDecoder.java:43)
-	... 6 more
-*/
-        /*
-        // Can't load method instructions.
-        */
-        throw new UnsupportedOperationException("Method not decompiled: com.android.org.bouncycastle.crypto.modes.gcm.GCMUtil.<clinit>():void");
+        LOOKUP = generateLookup();
     }
 
     private static int[] generateLookup() {
@@ -165,19 +142,23 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
     }
 
     public static void multiplyP(int[] x) {
-        x[0] = x[0] ^ (E1 & (shiftRight(x) >> 8));
+        int m = shiftRight(x) >> 8;
+        x[0] = x[0] ^ (E1 & m);
     }
 
     public static void multiplyP(int[] x, int[] z) {
-        z[0] = z[0] ^ (E1 & (shiftRight(x, z) >> 8));
+        int m = shiftRight(x, z) >> 8;
+        z[0] = z[0] ^ (E1 & m);
     }
 
     public static void multiplyP8(int[] x) {
-        x[0] = x[0] ^ LOOKUP[shiftRightN(x, 8) >>> 24];
+        int c = shiftRightN(x, 8);
+        x[0] = x[0] ^ LOOKUP[c >>> 24];
     }
 
     public static void multiplyP8(int[] x, int[] y) {
-        y[0] = y[0] ^ LOOKUP[shiftRightN(x, 8, y) >>> 24];
+        int c = shiftRightN(x, 8, y);
+        y[0] = y[0] ^ LOOKUP[c >>> 24];
     }
 
     static int shiftRight(int[] x) {
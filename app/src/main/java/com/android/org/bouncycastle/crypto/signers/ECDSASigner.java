@@ -85,7 +85,62 @@ public class ECDSASigner implements ECConstants, DSA {
             return false;
         }
         BigInteger c = s.modInverse(n);
-        ECPoint point = ECAlgorithms.sumOfTwoMultiplies(ec.getG(), e.multiply(c).mod(n), ((ECPublicKeyParameters) this.key).getQ(), r.multiply(c).mod(n));
+        return verifyPoint(ECAlgorithms.sumOfTwoMultiplies(ec.getG(), e.multiply(c).mod(n), ((ECPublicKeyParameters) this.key).getQ(), r.multiply(c).mod(n)), r, n);
+    }
+
+    /**
+     * Verifies several signatures made with the key this signer was initialised with, and
+     * returns whether each one is valid. Gives the same results as calling verifySignature
+     * for each message. This is not batch verification: each signature still costs its own
+     * sum of two multiplies. Only the inversion of the s values is shared, one modular
+     * inversion for the whole batch, along with the normalization of the resulting points on
+     * curves that need it.
+     */
+    public boolean[] verifySignatures(byte[][] messages, BigInteger[] r, BigInteger[] s) {
+        if (messages.length != r.length || messages.length != s.length) {
+            throw new IllegalArgumentException("messages, r and s must have the same length");
+        }
+        ECDomainParameters ec = this.key.getParameters();
+        BigInteger n = ec.getN();
+        int count = messages.length;
+        BigInteger[] prefixes = new BigInteger[count];
+        BigInteger product = ONE;
+        for (int i = 0; i < count; i++) {
+            if (r[i].compareTo(ONE) >= 0 && r[i].compareTo(n) < 0 && s[i].compareTo(ONE) >= 0 && s[i].compareTo(n) < 0) {
+                prefixes[i] = product;
+                product = product.multiply(s[i]).mod(n);
+            }
+        }
+        BigInteger inverse = product.modInverse(n);
+        ECPoint G = ec.getG();
+        ECPoint Q = ((ECPublicKeyParameters) this.key).getQ();
+        ECPoint[] points = new ECPoint[count];
+        for (int i = count - 1; i >= 0; i--) {
+            if (prefixes[i] != null) {
+                BigInteger c = inverse.multiply(prefixes[i]).mod(n);
+                inverse = inverse.multiply(s[i]).mod(n);
+                points[i] = ECAlgorithms.sumOfTwoMultiplies(G, calculateE(n, messages[i]).multiply(c).mod(n), Q, r[i].multiply(c).mod(n));
+            }
+        }
+        ECCurve curve = G.getCurve();
+        BigInteger cofactor = curve.getCofactor();
+        if (cofactor == null || cofactor.compareTo(EIGHT) > 0) {
+            curve.normalizeAll(points);
+        }
+        boolean[] results = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            if (points[i] != null) {
+                results[i] = verifyPoint(points[i], r[i], n);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Checks that the x coordinate of point, reduced mod n, is r. Compares in projective
+     * coordinates when the cofactor is small enough, which avoids a field inversion.
+     */
+    private boolean verifyPoint(ECPoint point, BigInteger r, BigInteger n) {
         if (point.isInfinity()) {
             return false;
         }
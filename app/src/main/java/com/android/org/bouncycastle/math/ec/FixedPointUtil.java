@@ -1,9 +1,79 @@
 package com.android.org.bouncycastle.math.ec;
 
+import com.android.org.bouncycastle.math.field.FiniteField;
+import com.android.org.bouncycastle.util.Arrays;
 import java.math.BigInteger;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
 
 public class FixedPointUtil {
+    private static final int MAX_SHARED_TABLES = 16;
     public static final String PRECOMP_NAME = "bc_fixed_point";
+    private static final LinkedHashMap<BasePointKey, SharedTable> sharedTables;
+
+    /**
+     * Identifies a base point by the field and coefficients of its curve and by its affine
+     * coordinates, so that separately decoded copies of the same generator share one lookup
+     * table. Holds no reference to the curve.
+     */
+    private static final class BasePointKey {
+        private final BigInteger a;
+        private final BigInteger b;
+        private final byte[] encoding;
+        private final FiniteField field;
+
+        BasePointKey(ECPoint p) {
+            ECCurve c = p.getCurve();
+            this.field = c.getField();
+            this.a = c.getA().toBigInteger();
+            this.b = c.getB().toBigInteger();
+            this.encoding = p.getEncoded(false);
+        }
+
+        public boolean equals(Object obj) {
+            if (!(obj instanceof BasePointKey)) {
+                return false;
+            }
+            BasePointKey other = (BasePointKey) obj;
+            if (this.field.equals(other.field) && this.a.equals(other.a) && this.b.equals(other.b)) {
+                return Arrays.areEqual(this.encoding, other.encoding);
+            }
+            return false;
+        }
+
+        public int hashCode() {
+            return (((((this.field.hashCode() * 31) + this.a.hashCode()) * 31) + this.b.hashCode()) * 31) + Arrays.hashCode(this.encoding);
+        }
+    }
+
+    /**
+     * The affine coordinates of a lookup table, without the point at infinity in entry 0.
+     * Tables are shared as coordinates rather than points so that the cache does not keep any
+     * curve instance reachable.
+     */
+    private static final class SharedTable {
+        final int width;
+        final BigInteger[] x;
+        final BigInteger[] y;
+
+        SharedTable(ECPoint[] lookupTable, int width) {
+            this.width = width;
+            this.x = new BigInteger[lookupTable.length];
+            this.y = new BigInteger[lookupTable.length];
+            for (int i = 1; i < lookupTable.length; i++) {
+                this.x[i] = lookupTable[i].getAffineXCoord().toBigInteger();
+                this.y[i] = lookupTable[i].getAffineYCoord().toBigInteger();
+            }
+        }
+    }
+
+    static {
+        sharedTables = new LinkedHashMap<BasePointKey, SharedTable>(MAX_SHARED_TABLES, 0.75f, true) {
+            protected boolean removeEldestEntry(Entry<BasePointKey, SharedTable> entry) {
+                return size() > FixedPointUtil.MAX_SHARED_TABLES;
+            }
+        };
+    }
 
     public static int getCombSize(ECCurve c) {
         BigInteger order = c.getOrder();
@@ -23,6 +93,12 @@ public class FixedPointUtil {
         FixedPointPreCompInfo info = getFixedPointPreCompInfo(c.getPreCompInfo(p, PRECOMP_NAME));
         ECPoint[] lookupTable = info.getPreComp();
         if (lookupTable == null || lookupTable.length < n) {
+            BasePointKey key = new BasePointKey(p);
+            FixedPointPreCompInfo cached = getSharedTable(key, c, n);
+            if (cached != null) {
+                c.setPreCompInfo(p, PRECOMP_NAME, cached);
+                return cached;
+            }
             int i;
             int d = ((getCombSize(c) + minWidth) - 1) / minWidth;
             ECPoint[] pow2Table = new ECPoint[minWidth];
@@ -44,7 +120,35 @@ public class FixedPointUtil {
             info.setPreComp(lookupTable);
             info.setWidth(minWidth);
             c.setPreCompInfo(p, PRECOMP_NAME, info);
+            SharedTable shared = new SharedTable(lookupTable, minWidth);
+            synchronized (sharedTables) {
+                sharedTables.put(key, shared);
+            }
+        }
+        return info;
+    }
+
+    /**
+     * Returns the table built for an equal base point with at least n entries, created on c, or
+     * null if there is none. At most MAX_SHARED_TABLES tables are kept, least recently used
+     * first out.
+     */
+    private static FixedPointPreCompInfo getSharedTable(BasePointKey key, ECCurve c, int n) {
+        SharedTable shared;
+        synchronized (sharedTables) {
+            shared = (SharedTable) sharedTables.get(key);
+        }
+        if (shared == null || shared.x.length < n) {
+            return null;
+        }
+        ECPoint[] lookupTable = new ECPoint[shared.x.length];
+        lookupTable[0] = c.getInfinity();
+        for (int i = 1; i < lookupTable.length; i++) {
+            lookupTable[i] = c.createPoint(shared.x[i], shared.y[i]);
         }
+        FixedPointPreCompInfo info = new FixedPointPreCompInfo();
+        info.setPreComp(lookupTable);
+        info.setWidth(shared.width);
         return info;
     }
 }
@@ -14,6 +14,7 @@ import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -23,20 +24,117 @@ import libcore.io.IoUtils;
 import org.conscrypt.OpenSSLX509Certificate;
 
 public class TrustedCertificateStore {
-    private static final CertificateFactory CERT_FACTORY = null;
+    private static final CertificateFactory CERT_FACTORY;
     private static final String PREFIX_SYSTEM = "system:";
     private static final String PREFIX_USER = "user:";
     private static File defaultCaCertsAddedDir;
     private static File defaultCaCertsDeletedDir;
     private static File defaultCaCertsSystemDir;
     private final File addedDir;
+    private final CertIndex addedIndex;
     private final File deletedDir;
+    private final CertIndex deletedIndex;
     private final File systemDir;
+    private final CertIndex systemIndex;
 
     private interface CertSelector {
         boolean match(X509Certificate x509Certificate);
     }
 
+    /**
+     * Certificates of one directory, parsed once and indexed by subject. The index is built on
+     * the first lookup from the files hash.0, hash.1, ... of every hash up to the first missing
+     * index, and rebuilt when the directory's modification time changes or the store writes to
+     * it. Lookups, including misses, do not touch the files. Deleting a user certificate
+     * truncates its file in place, so the store touches the directory for other stores' indexes.
+     */
+    private final class CertIndex {
+        private final File dir;
+        private HashMap<X500Principal, List<IndexedCert>> entries;
+        private long lastModified;
+        private HashMap<String, Integer> nextIndexes;
+
+        CertIndex(File dir) {
+            this.dir = dir;
+            this.lastModified = -1;
+        }
+
+        synchronized IndexedCert[] get(X500Principal subject) {
+            update();
+            List<IndexedCert> certs = (List) this.entries.get(subject);
+            if (certs == null) {
+                return new IndexedCert[0];
+            }
+            return (IndexedCert[]) certs.toArray(new IndexedCert[certs.size()]);
+        }
+
+        /**
+         * Returns the first missing file of hash, where a new certificate with that hash goes.
+         */
+        synchronized File nextFile(String hash) {
+            update();
+            Integer index = (Integer) this.nextIndexes.get(hash);
+            return TrustedCertificateStore.this.file(this.dir, hash, index != null ? index.intValue() : 0);
+        }
+
+        synchronized void invalidate() {
+            this.entries = null;
+        }
+
+        private void update() {
+            long modified = this.dir.lastModified();
+            if (this.entries == null || modified != this.lastModified) {
+                this.lastModified = modified;
+                load();
+            }
+        }
+
+        private void load() {
+            this.entries = new HashMap();
+            this.nextIndexes = new HashMap();
+            String[] names = this.dir.list();
+            if (names != null) {
+                Set<String> files = new HashSet();
+                Collections.addAll(files, names);
+                for (String name : names) {
+                    int dot = name.lastIndexOf(46);
+                    if (dot > 0 && name.endsWith(".0")) {
+                        load(files, name.substring(0, dot));
+                    }
+                }
+            }
+        }
+
+        private void load(Set<String> files, String hash) {
+            int index = 0;
+            while (files.contains(hash + '.' + index)) {
+                File file = TrustedCertificateStore.this.file(this.dir, hash, index);
+                X509Certificate cert = TrustedCertificateStore.this.readCertificate(file);
+                if (cert != null) {
+                    X500Principal subject = cert.getSubjectX500Principal();
+                    List<IndexedCert> certs = (List) this.entries.get(subject);
+                    if (certs == null) {
+                        certs = new ArrayList();
+                        this.entries.put(subject, certs);
+                    }
+                    certs.add(new IndexedCert(file, cert));
+                }
+                index++;
+            }
+            this.nextIndexes.put(hash, Integer.valueOf(index));
+        }
+    }
+
+    private static final class IndexedCert {
+        final X509Certificate cert;
+        final File file;
+
+        IndexedCert(File file, X509Certificate cert) {
+            this.file = file;
+            this.cert = cert;
+        }
+    }
+
     /* renamed from: com.android.org.conscrypt.TrustedCertificateStore.1 */
     class AnonymousClass1 implements CertSelector {
         final /* synthetic */ X509Certificate val$x;
@@ -121,32 +219,15 @@ public class TrustedCertificateStore {
     }
 
     static {
-        /* JADX: method processing error */
-/*
-        Error: jadx.core.utils.exceptions.DecodeException: Load method exception in method: com.android.org.conscrypt.TrustedCertificateStore.<clinit>():void
-	at jadx.core.dex.nodes.MethodNode.load(MethodNode.java:113)
-	at jadx.core.dex.nodes.ClassNode.load(ClassNode.java:256)
-	at jadx.core.ProcessClass.process(ProcessClass.java:34)
-	at jadx.core.ProcessClass.processDependencies(ProcessClass.java:59)
-	at jadx.core.ProcessClass.process(ProcessClass.java:42)
-	at jadx.api.JadxDecompiler.processClass(JadxDecompiler.java:281)
-	at jadx.api.JavaClass.decompile(JavaClass.java:59)
-	at jadx.api.JadxDecompiler$1.run(JadxDecompiler.java:161)
-Caused by: jadx.core.utils.exceptions.DecodeException:  in method: com.android.org.conscrypt.TrustedCertificateStore.<clinit>():void
-	at jadx.core.dex.instructions.InsnDecoder.decodeInsns(InsnDecoder.java:46)
-	at jadx.core.dex.nodes.MethodNode.load(MethodNode.java:98)
-	... 7 more
-Caused by: java.lang.IllegalArgumentException: bogus opcode: 00e9
-	at com.android.dx.io.OpcodeInfo.get(OpcodeInfo.java:1197)
-	at com.android.dx.io.OpcodeInfo.getFormat(OpcodeInfo.java:1212)
-	at com.android.dx.io.instructions.DecodedInstruction.decode(DecodedInstruction.java:72)
-	at jadx.core.dex.instructions.InsnDecoder.decodeInsns(InsnDecoder.java:43)
-	... 8 more
-*/
-        /*
-        // Can't load method instructions.
-        */
-        throw new UnsupportedOperationException("Method not decompiled: com.android.org.conscrypt.TrustedCertificateStore.<clinit>():void");
+        String ANDROID_ROOT = System.getenv("ANDROID_ROOT");
+        String ANDROID_DATA = System.getenv("ANDROID_DATA");
+        defaultCaCertsSystemDir = new File(ANDROID_ROOT + "/etc/security/cacerts");
+        setDefaultUserDirectory(new File(ANDROID_DATA + "/misc/keychain"));
+        try {
+            CERT_FACTORY = CertificateFactory.getInstance("X509");
+        } catch (CertificateException e) {
+            throw new AssertionError(e);
+        }
     }
 
     public static final boolean isSystem(String alias) {
@@ -170,6 +251,9 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 00e9
         this.systemDir = systemDir;
         this.addedDir = addedDir;
         this.deletedDir = deletedDir;
+        this.systemIndex = new CertIndex(systemDir);
+        this.addedIndex = new CertIndex(addedDir);
+        this.deletedIndex = new CertIndex(deletedDir);
     }
 
     public Certificate getCertificate(String alias) {
@@ -276,7 +360,7 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 00e9
     }
 
     private boolean isDeletedSystemCertificate(X509Certificate x) {
-        return getCertificateFile(this.deletedDir, x).exists();
+        return findCertificateFile(this.deletedDir, x) != null;
     }
 
     public Date getCreationDate(String alias) {
@@ -351,25 +435,36 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 00e9
             return null;
         }
         X509Certificate x = (X509Certificate) c;
-        File user = getCertificateFile(this.addedDir, x);
-        if (user.exists()) {
+        File user = findCertificateFile(this.addedDir, x);
+        if (user != null) {
             return PREFIX_USER + user.getName();
         }
         if (!includeDeletedSystem && isDeletedSystemCertificate(x)) {
             return null;
         }
-        File system = getCertificateFile(this.systemDir, x);
-        if (system.exists()) {
+        File system = findCertificateFile(this.systemDir, x);
+        if (system != null) {
             return PREFIX_SYSTEM + system.getName();
         }
         return null;
     }
 
     public boolean isUserAddedCertificate(X509Certificate cert) {
-        return getCertificateFile(this.addedDir, cert).exists();
+        return findCertificateFile(this.addedDir, cert) != null;
     }
 
     public File getCertificateFile(File dir, X509Certificate x) {
+        File file = findCertificateFile(dir, x);
+        if (file != null) {
+            return file;
+        }
+        return indexFor(dir).nextFile(hash(x.getSubjectX500Principal()));
+    }
+
+    /**
+     * Returns the file of x in dir, or null if dir does not have it.
+     */
+    private File findCertificateFile(File dir, X509Certificate x) {
         return (File) findCert(dir, x.getSubjectX500Principal(), new AnonymousClass1(x), File.class);
     }
 
@@ -456,53 +551,58 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 00e9
         return new ArrayList(chain);
     }
 
-    /* JADX WARNING: inconsistent code. */
-    /* Code decompiled incorrectly, please refer to instructions dump. */
     private <T> T findCert(File dir, X500Principal subject, CertSelector selector, Class<T> desiredReturnType) {
-        T certs = null;
-        String hash = hash(subject);
-        int index = 0;
-        while (true) {
-            File file = file(dir, hash, index);
-            if (!file.isFile()) {
-                break;
-            }
-            if (!isTombstone(file)) {
-                X509Certificate cert = readCertificate(file);
-                if (cert != null && selector.match(cert)) {
-                    if (desiredReturnType != X509Certificate.class) {
-                        if (desiredReturnType != Boolean.class) {
-                            if (desiredReturnType != File.class) {
-                                if (desiredReturnType != Set.class) {
-                                    break;
-                                }
-                                if (certs == null) {
-                                    certs = new HashSet();
-                                }
-                                certs.add(cert);
-                            } else {
-                                return file;
-                            }
-                        }
-                        return Boolean.TRUE;
+        IndexedCert[] entries = indexFor(dir).get(subject);
+        Set<X509Certificate> certs = null;
+        for (IndexedCert entry : entries) {
+            X509Certificate cert = entry.cert;
+            if (selector.match(cert)) {
+                if (desiredReturnType == X509Certificate.class) {
+                    return (T) cert;
+                }
+                if (desiredReturnType == Boolean.class) {
+                    return (T) Boolean.TRUE;
+                }
+                if (desiredReturnType == File.class) {
+                    return (T) entry.file;
+                }
+                if (desiredReturnType == Set.class) {
+                    if (certs == null) {
+                        certs = new HashSet();
                     }
-                    return cert;
+                    certs.add(cert);
+                } else {
+                    throw new AssertionError();
                 }
             }
-            index++;
         }
         if (desiredReturnType == Boolean.class) {
-            return Boolean.FALSE;
-        }
-        if (desiredReturnType == File.class) {
-            return file;
+            return (T) Boolean.FALSE;
         }
         if (desiredReturnType == Set.class) {
-            return certs;
+            return (T) certs;
         }
         return null;
     }
 
+    private CertIndex indexFor(File dir) {
+        if (dir == this.addedDir) {
+            return this.addedIndex;
+        }
+        if (dir == this.systemDir) {
+            return this.systemIndex;
+        }
+        if (dir == this.deletedDir) {
+            return this.deletedIndex;
+        }
+        return new CertIndex(dir);
+    }
+
+    private void invalidateIndexes() {
+        this.addedIndex.invalidate();
+        this.deletedIndex.invalidate();
+    }
+
     private String hash(X500Principal name) {
         return Hex.intToHexString(NativeCrypto.X509_NAME_hash_old(name), 8);
     }
@@ -514,16 +614,18 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 00e9
     public void installCertificate(X509Certificate cert) throws IOException, CertificateException {
         if (cert == null) {
             throw new NullPointerException("cert == null");
-        } else if (getCertificateFile(this.systemDir, cert).exists()) {
-            File deleted = getCertificateFile(this.deletedDir, cert);
-            if (deleted.exists() && !deleted.delete()) {
-                throw new IOException("Could not remove " + deleted);
-            }
-        } else {
-            File user = getCertificateFile(this.addedDir, cert);
-            if (!user.exists()) {
-                writeCertificate(user, cert);
+        }
+        try {
+            if (findCertificateFile(this.systemDir, cert) != null) {
+                File deleted = findCertificateFile(this.deletedDir, cert);
+                if (deleted != null && !deleted.delete()) {
+                    throw new IOException("Could not remove " + deleted);
+                }
+            } else if (findCertificateFile(this.addedDir, cert) == null) {
+                writeCertificate(getCertificateFile(this.addedDir, cert), cert);
             }
+        } finally {
+            invalidateIndexes();
         }
     }
 
@@ -531,19 +633,27 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 00e9
         if (alias != null) {
             File file = fileForAlias(alias);
             if (file != null) {
-                if (isSystem(alias)) {
-                    X509Certificate cert = readCertificate(file);
-                    if (cert != null) {
-                        File deleted = getCertificateFile(this.deletedDir, cert);
-                        if (!deleted.exists()) {
-                            writeCertificate(deleted, cert);
-                        }
-                    }
-                } else if (isUser(alias)) {
-                    new FileOutputStream(file).close();
-                    removeUnnecessaryTombstones(alias);
+                try {
+                    deleteCertificateFile(alias, file);
+                } finally {
+                    invalidateIndexes();
+                }
+            }
+        }
+    }
+
+    private void deleteCertificateFile(String alias, File file) throws IOException, CertificateException {
+        if (isSystem(alias)) {
+            X509Certificate cert = readCertificate(file);
+            if (cert != null) {
+                if (findCertificateFile(this.deletedDir, cert) == null) {
+                    writeCertificate(getCertificateFile(this.deletedDir, cert), cert);
                 }
             }
+        } else if (isUser(alias)) {
+            new FileOutputStream(file).close();
+            removeUnnecessaryTombstones(alias);
+            file.getParentFile().setLastModified(System.currentTimeMillis());
         }
     }
 
@@ -818,7 +818,8 @@ public class HwPackageManagerService extends PackageManagerService {
 
     private static boolean firstScan() {
         boolean z;
-        boolean exists = new File(Environment.getDataDirectory(), "system/packages.xml").exists();
+        File systemDir = new File(Environment.getDataDirectory(), "system");
+        boolean exists = new File(systemDir, "packages.xml").exists() || new File(systemDir, "packages.bin").exists();
         String str = TAG;
         StringBuilder append = new StringBuilder().append("is first scan?");
         if (exists) {
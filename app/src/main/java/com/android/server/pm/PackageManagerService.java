@@ -168,6 +168,7 @@ import com.android.server.am.ProcessList;
 import com.android.server.display.RampAnimator;
 import com.android.server.net.NetworkPolicyManagerInternal;
 import com.android.server.pm.PackageDexOptimizer.ForcedUpdatePackageDexOptimizer;
+import com.android.server.pm.ParallelPackageParser.ParseResult;
 import com.android.server.pm.PermissionsState.PermissionState;
 import com.android.server.pm.Settings.VersionInfo;
 import com.android.server.radar.FrameworkRadar;
@@ -361,7 +362,6 @@ public class PackageManagerService extends AbsPackageManagerService {
     private static boolean mOptimizeBootOn;
     private static final Comparator<ProviderInfo> mProviderInitOrderSorter = null;
     private static final Comparator<ResolveInfo> mResolvePrioritySorter = null;
-    private static final int mThreadnum = 0;
     private static final Intent sBrowserIntent = null;
     static UserManagerService sUserManager;
     ExecutorService clearDirectoryThread;
@@ -424,6 +424,7 @@ public class PackageManagerService extends AbsPackageManagerService {
     private final OnPermissionChangeListeners mOnPermissionChangeListeners;
     final boolean mOnlyCore;
     final ArrayMap<String, ArrayMap<String, Package>> mOverlays;
+    private File mPackageCacheDir;
     protected final PackageDexOptimizer mPackageDexOptimizer;
     private final PackageUsage mPackageUsage;
     @GuardedBy("mPackages")
@@ -1074,35 +1075,6 @@ public class PackageManagerService extends AbsPackageManagerService {
         }
     }
 
-    /* renamed from: com.android.server.pm.PackageManagerService.8 */
-    class AnonymousClass8 implements Runnable {
-        final /* synthetic */ long val$currentTime;
-        final /* synthetic */ File val$file;
-        final /* synthetic */ int val$hwFlags;
-        final /* synthetic */ int val$parseFlags;
-        final /* synthetic */ int val$scanFlags;
-
-        AnonymousClass8(File val$file, int val$parseFlags, int val$scanFlags, long val$currentTime, int val$hwFlags) {
-            this.val$file = val$file;
-            this.val$parseFlags = val$parseFlags;
-            this.val$scanFlags = val$scanFlags;
-            this.val$currentTime = val$currentTime;
-            this.val$hwFlags = val$hwFlags;
-        }
-
-        public void run() {
-            try {
-                PackageManagerService.this.scanPackageTracedLI(this.val$file, this.val$parseFlags | PackageManagerService.UPDATE_PERMISSIONS_REPLACE_ALL, this.val$scanFlags, this.val$currentTime, null, this.val$hwFlags);
-            } catch (PackageManagerException e) {
-                Slog.w(PackageManagerService.TAG, "Failed to parse " + this.val$file + ": " + e.getMessage());
-                if ((this.val$parseFlags & PackageManagerService.UPDATE_PERMISSIONS_ALL) == 0 && e.error == -2) {
-                    PackageManagerService.logCriticalInfo(PackageManagerService.REASON_NON_SYSTEM_LIBRARY, "Deleting invalid package at " + this.val$file);
-                    PackageManagerService.this.removeCodePathLI(this.val$file);
-                }
-            }
-        }
-    }
-
     /* renamed from: com.android.server.pm.PackageManagerService.9 */
     class AnonymousClass9 implements Runnable {
         final /* synthetic */ String val$action;
@@ -6178,6 +6150,7 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 00e9
         VersionInfo ver = this.mSettings.getInternalVersion();
         boolean z = (ver == null || Build.FINGERPRINT.equals(ver.fingerprint)) ? HWFLOW : DISABLE_EPHEMERAL_APPS;
         this.mIsUpgrade = z;
+        this.mPackageCacheDir = preparePackageCacheDir();
         if (HWFLOW) {
             this.startTimer = SystemClock.uptimeMillis();
         }
@@ -6322,6 +6295,9 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 00e9
                 this.mTimerCounter = i;
                 Slog.i(str, append.append(i).append(" **** mEphemeralInstallDir  ************ Time to elapsed: ").append(SystemClock.uptimeMillis() - this.startTimer).append(" ms").toString());
             }
+            if (this.mPackageCacheDir != null) {
+                PackageParser.pruneCache(this.mPackageCacheDir);
+            }
             synchronized (this.mPackages) {
                 for (String deletedAppName : possiblyDeletedUpdatedSystemApps) {
                     String msg;
@@ -9378,43 +9354,49 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 00e9
             Log.d(TAG, "No files in app dir " + dir);
             return;
         }
-        ExecutorService executorService = Executors.newFixedThreadPool(mThreadnum);
-        int length = files.length;
-        for (int i = REASON_FIRST_BOOT; i < length; i += UPDATE_PERMISSIONS_ALL) {
-            File file = files[i];
-            boolean isPackage = (PackageParser.isApkFile(file) || file.isDirectory()) ? PackageInstallerService.isStageName(file.getName()) ? HWFLOW : DISABLE_EPHEMERAL_APPS : HWFLOW;
-            if (isPackage && !isUninstallApk(file.getPath() + ".apk")) {
-                HwCustEmergDataManager emergDataManager = HwCustEmergDataManager.getDefault();
-                if (emergDataManager == null || emergDataManager.isEmergencyState() || !emergDataManager.getEmergencyPkgName().contains(file.getName())) {
-                    if (this.mIsPackageScanMultiThread) {
-                        try {
-                            executorService.submit(new AnonymousClass8(file, parseFlags, scanFlags, currentTime, hwFlags));
-                        } catch (Exception e) {
-                            logCriticalInfo(REASON_NON_SYSTEM_LIBRARY, "can't submit task");
-                            this.mIsPackageScanMultiThread = HWFLOW;
+        ParallelPackageParser parallelPackageParser = null;
+        if (this.mIsPackageScanMultiThread) {
+            parallelPackageParser = new ParallelPackageParser(this.mSeparateProcesses, this.mOnlyCore, this.mMetrics, this.mPackageCacheDir);
+        }
+        try {
+            int length = files.length;
+            for (int i = REASON_FIRST_BOOT; i < length; i += UPDATE_PERMISSIONS_ALL) {
+                File file = files[i];
+                boolean isPackage = (PackageParser.isApkFile(file) || file.isDirectory()) ? PackageInstallerService.isStageName(file.getName()) ? HWFLOW : DISABLE_EPHEMERAL_APPS : HWFLOW;
+                if (isPackage && !isUninstallApk(file.getPath() + ".apk")) {
+                    HwCustEmergDataManager emergDataManager = HwCustEmergDataManager.getDefault();
+                    if (emergDataManager != null && !emergDataManager.isEmergencyState() && emergDataManager.getEmergencyPkgName().contains(file.getName())) {
+                        Log.i(TAG, "dont scan EmergencyData.apk");
+                    } else if (parallelPackageParser != null) {
+                        int flags = parseFlags | UPDATE_PERMISSIONS_REPLACE_ALL;
+                        if ((scanFlags & SCAN_TRUSTED_OVERLAY) != 0) {
+                            flags |= SCAN_TRUSTED_OVERLAY;
                         }
-                    }
-                    if (!this.mIsPackageScanMultiThread) {
+                        if ((134217728 & hwFlags) == 0 || isCustApkRecorded(file)) {
+                            parallelPackageParser.submit(file, flags, hwFlags);
+                        }
+                    } else {
                         try {
                             scanPackageTracedLI(file, parseFlags | UPDATE_PERMISSIONS_REPLACE_ALL, scanFlags, currentTime, null, hwFlags);
-                        } catch (PackageManagerException e2) {
-                            Slog.w(TAG, "Failed to parse " + file + ": " + e2.getMessage());
-                            if ((parseFlags & UPDATE_PERMISSIONS_ALL) == 0 && e2.error == -2) {
-                                logCriticalInfo(REASON_NON_SYSTEM_LIBRARY, "Deleting invalid package at " + file);
-                                removeCodePathLI(file);
-                            }
+                        } catch (PackageManagerException e) {
+                            handleScanFailureLI(file, parseFlags, e);
                         }
                     }
-                } else {
-                    Log.i(TAG, "dont scan EmergencyData.apk");
                 }
             }
-        }
-        executorService.shutdown();
-        try {
-            executorService.awaitTermination(1, TimeUnit.DAYS);
-        } catch (InterruptedException e3) {
-            e3.printStackTrace();
+            if (parallelPackageParser != null) {
+                while (true) {
+                    ParseResult result = parallelPackageParser.take();
+                    if (result == null) {
+                        break;
+                    }
+                    scanParseResultLI(result, parseFlags, scanFlags, currentTime);
+                }
+            }
+        } finally {
+            if (parallelPackageParser != null) {
+                parallelPackageParser.close();
+            }
         }
         if (HWFLOW) {
             String str = TAG;
@@ -9425,6 +9407,58 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 00e9
         }
     }
 
+    /**
+     * Scans a package parsed by {@link ParallelPackageParser}, the same way scanPackageLI does
+     * after parsing a file itself.
+     */
+    private void scanParseResultLI(ParseResult result, int parseFlags, int scanFlags, long currentTime) {
+        Throwable throwable = result.throwable;
+        try {
+            if (throwable instanceof PackageParserException) {
+                throw PackageManagerException.from((PackageParserException) throwable);
+            } else if (throwable != null) {
+                throw new IllegalStateException("Unexpected exception occurred while parsing " + result.scanFile, throwable);
+            } else {
+                Package pkg = result.pkg;
+                if (pkg != null && isInMultiWinWhiteList(pkg.packageName)) {
+                    pkg.forceResizeableAllActivity();
+                }
+                Trace.traceBegin(262144, "scanPackage");
+                try {
+                    scanPackageLI(pkg, result.scanFile, result.parseFlags, scanFlags, currentTime, null, result.hwFlags);
+                } finally {
+                    Trace.traceEnd(262144);
+                }
+            }
+        } catch (PackageManagerException e) {
+            handleScanFailureLI(result.scanFile, parseFlags, e);
+        }
+    }
+
+    private void handleScanFailureLI(File file, int parseFlags, PackageManagerException e) {
+        Slog.w(TAG, "Failed to parse " + file + ": " + e.getMessage());
+        if ((parseFlags & UPDATE_PERMISSIONS_ALL) == 0 && e.error == -2) {
+            logCriticalInfo(REASON_NON_SYSTEM_LIBRARY, "Deleting invalid package at " + file);
+            removeCodePathLI(file);
+        }
+    }
+
+    /**
+     * Returns the directory for cached parse results, emptied when the build changed, or null
+     * if it can not be created.
+     */
+    private File preparePackageCacheDir() {
+        File cacheDir = new File(new File(Environment.getDataDirectory(), "system"), "package_cache");
+        if (this.mIsUpgrade) {
+            FileUtils.deleteContents(cacheDir);
+        }
+        if (cacheDir.isDirectory() || cacheDir.mkdirs()) {
+            return cacheDir;
+        }
+        Slog.w(TAG, "Unable to create package cache " + cacheDir);
+        return null;
+    }
+
     private static File getSettingsProblemFile() {
         return new File(new File(Environment.getDataDirectory(), "system"), "uiderrors.txt");
     }
@@ -9497,6 +9531,7 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 00e9
         pp.setSeparateProcesses(this.mSeparateProcesses);
         pp.setOnlyCoreApps(this.mOnlyCore);
         pp.setDisplayMetrics(this.mMetrics);
+        pp.setCacheDir(this.mPackageCacheDir);
         if ((scanFlags & SCAN_TRUSTED_OVERLAY) != 0) {
             parseFlags |= SCAN_TRUSTED_OVERLAY;
         }
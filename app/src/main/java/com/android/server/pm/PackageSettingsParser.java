@@ -0,0 +1,431 @@
+package com.android.server.pm;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+/**
+ * Pull parser over records of packages.bin written by {@link PackageSettingsSerializer}. The
+ * records are read in place from the mapped store; a string is only turned into a String the
+ * first time it is asked for, so attributes the reader never looks at are never decoded. When a
+ * root tag is given the records are presented as the children of that tag, which is how the
+ * whole store reads like packages.xml.
+ */
+final class PackageSettingsParser implements XmlPullParser {
+    private int mAttributeCount;
+    private int[] mAttributeNames;
+    private int[] mAttributeValues;
+    private final ByteBuffer mBuffer;
+    private int mDepth;
+    private int mEnd;
+    private int mEventType;
+    private final String[] mKeys;
+    private final int[] mLengths;
+    private String[] mNames;
+    private final int[] mOffsets;
+    private int mPosition;
+    private int mRecord;
+    private final String mRoot;
+    private boolean mRootClosed;
+    private byte[] mScratch;
+    private int mStringCount;
+    private int[] mStringLengths;
+    private int[] mStringOffsets;
+    private String[] mStrings;
+    private String mText;
+
+    PackageSettingsParser(ByteBuffer buffer, String root, String[] keys, int[] offsets, int[] lengths) {
+        this.mBuffer = buffer;
+        this.mRoot = root;
+        this.mKeys = keys;
+        this.mOffsets = offsets;
+        this.mLengths = lengths;
+        this.mRecord = -1;
+        this.mEventType = 0;
+        this.mAttributeNames = new int[16];
+        this.mAttributeValues = new int[16];
+        this.mNames = new String[16];
+        this.mScratch = new byte[256];
+        this.mStringLengths = new int[64];
+        this.mStringOffsets = new int[64];
+        this.mStrings = new String[64];
+    }
+
+    public int next() throws XmlPullParserException {
+        if (this.mEventType == 1) {
+            return 1;
+        }
+        if (this.mEventType == 3) {
+            this.mDepth--;
+        }
+        this.mAttributeCount = 0;
+        this.mText = null;
+        if (this.mEventType == 0 && this.mRoot != null) {
+            pushName(this.mRoot);
+            this.mEventType = 2;
+            return 2;
+        }
+        while (true) {
+            if (this.mPosition >= this.mEnd) {
+                if (this.mRecord + 1 < this.mOffsets.length) {
+                    startRecord(this.mRecord + 1);
+                } else if (this.mRoot == null || this.mRootClosed) {
+                    if (this.mDepth != 0) {
+                        throw new XmlPullParserException("Unexpected end of store", this, null);
+                    }
+                    this.mEventType = 1;
+                    return 1;
+                } else {
+                    this.mRootClosed = true;
+                    this.mEventType = 3;
+                    return 3;
+                }
+            } else {
+                ByteBuffer byteBuffer = this.mBuffer;
+                int i = this.mPosition;
+                this.mPosition = i + 1;
+                int token = byteBuffer.get(i) & 255;
+                switch (token) {
+                    case PackageSettingsSerializer.TOKEN_END_RECORD /*0*/:
+                        if (this.mDepth != recordDepth()) {
+                            throw new XmlPullParserException("Unbalanced record", this, null);
+                        }
+                        this.mPosition = this.mEnd;
+                        break;
+                    case PackageSettingsSerializer.TOKEN_START_TAG /*1*/:
+                        pushName(getString(readString()));
+                        readAttributes();
+                        this.mEventType = 2;
+                        return 2;
+                    case PackageSettingsSerializer.TOKEN_END_TAG /*3*/:
+                        if (this.mDepth <= recordDepth()) {
+                            throw new XmlPullParserException("Unbalanced end tag", this, null);
+                        }
+                        this.mEventType = 3;
+                        return 3;
+                    case PackageSettingsSerializer.TOKEN_TEXT /*4*/:
+                        this.mText = getString(readString());
+                        this.mEventType = 4;
+                        return 4;
+                    default:
+                        throw new XmlPullParserException("Unknown token " + token, this, null);
+                }
+            }
+        }
+    }
+
+    public int nextToken() throws XmlPullParserException {
+        return next();
+    }
+
+    public int nextTag() throws XmlPullParserException, IOException {
+        int type = next();
+        if (type == 4 && isWhitespace()) {
+            type = next();
+        }
+        if (type == 2 || type == 3) {
+            return type;
+        }
+        throw new XmlPullParserException("Expected start or end tag", this, null);
+    }
+
+    public String nextText() throws XmlPullParserException, IOException {
+        if (this.mEventType != 2) {
+            throw new XmlPullParserException("Precondition: START_TAG", this, null);
+        }
+        String result = "";
+        if (next() == 4) {
+            result = this.mText;
+            next();
+        }
+        if (this.mEventType == 3) {
+            return result;
+        }
+        throw new XmlPullParserException("Expected END_TAG", this, null);
+    }
+
+    public void require(int type, String namespace, String name) throws XmlPullParserException {
+        if (type != this.mEventType || ((namespace != null && !namespace.equals(getNamespace())) || (name != null && !name.equals(getName())))) {
+            throw new XmlPullParserException("Expected event " + type + " " + name, this, null);
+        }
+    }
+
+    public int getEventType() {
+        return this.mEventType;
+    }
+
+    public int getDepth() {
+        return this.mDepth;
+    }
+
+    public String getName() {
+        if (this.mEventType == 2 || this.mEventType == 3) {
+            return this.mNames[this.mDepth - 1];
+        }
+        return null;
+    }
+
+    public String getText() {
+        return this.mText;
+    }
+
+    public char[] getTextCharacters(int[] holderForStartAndLength) {
+        if (this.mText == null) {
+            holderForStartAndLength[0] = -1;
+            holderForStartAndLength[1] = -1;
+            return null;
+        }
+        holderForStartAndLength[0] = 0;
+        holderForStartAndLength[1] = this.mText.length();
+        return this.mText.toCharArray();
+    }
+
+    public boolean isWhitespace() throws XmlPullParserException {
+        if (this.mEventType != 4) {
+            throw new XmlPullParserException("Not a text event", this, null);
+        }
+        for (int i = 0; i < this.mText.length(); i++) {
+            if (!Character.isWhitespace(this.mText.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean isEmptyElementTag() {
+        return false;
+    }
+
+    public int getAttributeCount() {
+        return this.mEventType == 2 ? this.mAttributeCount : -1;
+    }
+
+    public String getAttributeName(int index) {
+        checkAttributeIndex(index);
+        return getString(this.mAttributeNames[index]);
+    }
+
+    public String getAttributeValue(int index) {
+        checkAttributeIndex(index);
+        return getString(this.mAttributeValues[index]);
+    }
+
+    public String getAttributeValue(String namespace, String name) {
+        for (int i = 0; i < this.mAttributeCount; i++) {
+            if (name.equals(getString(this.mAttributeNames[i]))) {
+                return getString(this.mAttributeValues[i]);
+            }
+        }
+        return null;
+    }
+
+    public String getAttributeNamespace(int index) {
+        checkAttributeIndex(index);
+        return "";
+    }
+
+    public String getAttributePrefix(int index) {
+        checkAttributeIndex(index);
+        return null;
+    }
+
+    public String getAttributeType(int index) {
+        checkAttributeIndex(index);
+        return "CDATA";
+    }
+
+    public boolean isAttributeDefault(int index) {
+        return false;
+    }
+
+    public String getNamespace() {
+        return "";
+    }
+
+    public String getNamespace(String prefix) {
+        return null;
+    }
+
+    public int getNamespaceCount(int depth) {
+        return 0;
+    }
+
+    public String getNamespacePrefix(int pos) throws XmlPullParserException {
+        throw new XmlPullParserException("Namespaces are not supported");
+    }
+
+    public String getNamespaceUri(int pos) throws XmlPullParserException {
+        throw new XmlPullParserException("Namespaces are not supported");
+    }
+
+    public String getPrefix() {
+        return null;
+    }
+
+    public int getLineNumber() {
+        return -1;
+    }
+
+    public int getColumnNumber() {
+        return -1;
+    }
+
+    public String getInputEncoding() {
+        return StandardCharsets.UTF_8.name();
+    }
+
+    public String getPositionDescription() {
+        if (this.mRecord < 0 || this.mRecord >= this.mKeys.length) {
+            return "start of packages.bin";
+        }
+        return "record " + this.mKeys[this.mRecord] + " of packages.bin at " + this.mPosition;
+    }
+
+    public boolean getFeature(String name) {
+        return false;
+    }
+
+    public void setFeature(String name, boolean state) throws XmlPullParserException {
+        if (state) {
+            throw new XmlPullParserException("Unsupported feature " + name);
+        }
+    }
+
+    public Object getProperty(String name) {
+        return null;
+    }
+
+    public void setProperty(String name, Object value) throws XmlPullParserException {
+        throw new XmlPullParserException("Unsupported property " + name);
+    }
+
+    public void setInput(Reader in) throws XmlPullParserException {
+        throw new XmlPullParserException("Input is the package settings store");
+    }
+
+    public void setInput(InputStream inputStream, String inputEncoding) throws XmlPullParserException {
+        throw new XmlPullParserException("Input is the package settings store");
+    }
+
+    public void defineEntityReplacementText(String entityName, String replacementText) throws XmlPullParserException {
+        throw new XmlPullParserException("Entities are not supported");
+    }
+
+    private int recordDepth() {
+        return this.mRoot != null ? 1 : 0;
+    }
+
+    private void startRecord(int record) {
+        this.mRecord = record;
+        this.mPosition = this.mOffsets[record];
+        this.mEnd = this.mPosition + this.mLengths[record];
+        this.mStringCount = 0;
+        Arrays.fill(this.mStrings, null);
+    }
+
+    private void pushName(String name) {
+        if (this.mDepth == this.mNames.length) {
+            this.mNames = (String[]) Arrays.copyOf(this.mNames, this.mDepth * 2);
+        }
+        String[] strArr = this.mNames;
+        int i = this.mDepth;
+        this.mDepth = i + 1;
+        strArr[i] = name;
+    }
+
+    private void readAttributes() throws XmlPullParserException {
+        while (this.mPosition < this.mEnd && this.mBuffer.get(this.mPosition) == (byte) PackageSettingsSerializer.TOKEN_ATTRIBUTE) {
+            this.mPosition++;
+            if (this.mAttributeCount == this.mAttributeNames.length) {
+                this.mAttributeNames = Arrays.copyOf(this.mAttributeNames, this.mAttributeCount * 2);
+                this.mAttributeValues = Arrays.copyOf(this.mAttributeValues, this.mAttributeCount * 2);
+            }
+            this.mAttributeNames[this.mAttributeCount] = readString();
+            this.mAttributeValues[this.mAttributeCount] = readString();
+            this.mAttributeCount++;
+        }
+    }
+
+    /**
+     * Reads a string reference and returns its index in the record's string table, or -1 for
+     * null. A literal is only located here; its bytes are decoded by {@link #getString}.
+     */
+    private int readString() throws XmlPullParserException {
+        int header = readVarint();
+        if (header == 0) {
+            return -1;
+        }
+        if ((header & 1) != 0) {
+            int index = header >>> 1;
+            if (index < this.mStringCount) {
+                return index;
+            }
+            throw new XmlPullParserException("Bad string reference " + index, this, null);
+        }
+        int length = (header >>> 1) - 1;
+        if (length > this.mEnd - this.mPosition) {
+            throw new XmlPullParserException("String past end of record", this, null);
+        }
+        if (this.mStringCount == this.mStringOffsets.length) {
+            int capacity = this.mStringCount * 2;
+            this.mStringOffsets = Arrays.copyOf(this.mStringOffsets, capacity);
+            this.mStringLengths = Arrays.copyOf(this.mStringLengths, capacity);
+            this.mStrings = (String[]) Arrays.copyOf(this.mStrings, capacity);
+        }
+        this.mStringOffsets[this.mStringCount] = this.mPosition;
+        this.mStringLengths[this.mStringCount] = length;
+        this.mPosition += length;
+        int i = this.mStringCount;
+        this.mStringCount = i + 1;
+        return i;
+    }
+
+    private String getString(int index) {
+        if (index < 0) {
+            return null;
+        }
+        String value = this.mStrings[index];
+        if (value != null) {
+            return value;
+        }
+        int length = this.mStringLengths[index];
+        if (this.mScratch.length < length) {
+            this.mScratch = new byte[Math.max(length, this.mScratch.length * 2)];
+        }
+        int offset = this.mStringOffsets[index];
+        for (int i = 0; i < length; i++) {
+            this.mScratch[i] = this.mBuffer.get(offset + i);
+        }
+        value = new String(this.mScratch, 0, length, StandardCharsets.UTF_8);
+        this.mStrings[index] = value;
+        return value;
+    }
+
+    private int readVarint() throws XmlPullParserException {
+        int value = 0;
+        int shift = 0;
+        while (this.mPosition < this.mEnd && shift < 32) {
+            ByteBuffer byteBuffer = this.mBuffer;
+            int i = this.mPosition;
+            this.mPosition = i + 1;
+            byte b = byteBuffer.get(i);
+            value |= (b & 127) << shift;
+            if ((b & 128) == 0) {
+                return value;
+            }
+            shift += 7;
+        }
+        throw new XmlPullParserException("Bad varint", this, null);
+    }
+
+    private void checkAttributeIndex(int index) {
+        if (this.mEventType != 2 || index < 0 || index >= this.mAttributeCount) {
+            throw new IndexOutOfBoundsException("Attribute index " + index);
+        }
+    }
+}
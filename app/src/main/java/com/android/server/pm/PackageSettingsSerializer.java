@@ -0,0 +1,219 @@
+package com.android.server.pm;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import org.xmlpull.v1.XmlSerializer;
+
+/**
+ * Serializer that encodes the calls made by the package settings writers into the compact token
+ * form stored in packages.bin, one record at a time. Every string is written once per record;
+ * later occurrences refer back to it by index, so the repeated tag and attribute names of a
+ * package cost a byte or two each. Namespaces are not supported, Settings does not use them.
+ */
+final class PackageSettingsSerializer implements XmlSerializer {
+    static final int TOKEN_ATTRIBUTE = 2;
+    static final int TOKEN_END_RECORD = 0;
+    static final int TOKEN_END_TAG = 3;
+    static final int TOKEN_START_TAG = 1;
+    static final int TOKEN_TEXT = 4;
+    private byte[] mBuffer;
+    private int mCount;
+    private boolean mInStartTag;
+    private final ArrayList<String> mNames;
+    private final HashMap<String, Integer> mStrings;
+
+    PackageSettingsSerializer() {
+        this.mBuffer = new byte[4096];
+        this.mNames = new ArrayList();
+        this.mStrings = new HashMap();
+    }
+
+    /**
+     * Ends the current record and returns its tokens. The serializer is ready for the next
+     * record afterwards.
+     */
+    byte[] finishRecord() {
+        if (this.mNames.isEmpty()) {
+            writeByte(TOKEN_END_RECORD);
+            byte[] record = Arrays.copyOf(this.mBuffer, this.mCount);
+            this.mCount = 0;
+            this.mInStartTag = false;
+            this.mStrings.clear();
+            return record;
+        }
+        throw new IllegalStateException("Unclosed tag " + ((String) this.mNames.get(this.mNames.size() - 1)));
+    }
+
+    public XmlSerializer startTag(String namespace, String name) throws IOException {
+        if (name == null) {
+            throw new IllegalArgumentException("name == null");
+        }
+        writeByte(TOKEN_START_TAG);
+        writeString(name);
+        this.mNames.add(name);
+        this.mInStartTag = true;
+        return this;
+    }
+
+    public XmlSerializer attribute(String namespace, String name, String value) throws IOException {
+        if (!this.mInStartTag) {
+            throw new IllegalStateException("Attribute " + name + " outside of a start tag");
+        }
+        writeByte(TOKEN_ATTRIBUTE);
+        writeString(name);
+        writeString(value);
+        return this;
+    }
+
+    public XmlSerializer endTag(String namespace, String name) throws IOException {
+        int last = this.mNames.size() - 1;
+        if (last < 0 || !((String) this.mNames.get(last)).equals(name)) {
+            throw new IllegalStateException("Unexpected end tag " + name);
+        }
+        this.mNames.remove(last);
+        this.mInStartTag = false;
+        writeByte(TOKEN_END_TAG);
+        return this;
+    }
+
+    public XmlSerializer text(String text) throws IOException {
+        if (this.mNames.isEmpty()) {
+            throw new IllegalStateException("Text outside of a tag");
+        }
+        this.mInStartTag = false;
+        writeByte(TOKEN_TEXT);
+        writeString(text);
+        return this;
+    }
+
+    public XmlSerializer text(char[] buf, int start, int len) throws IOException {
+        return text(new String(buf, start, len));
+    }
+
+    public void cdsect(String text) throws IOException {
+        text(text);
+    }
+
+    public void comment(String text) {
+    }
+
+    public void docdecl(String text) {
+    }
+
+    public void ignorableWhitespace(String text) {
+    }
+
+    public void processingInstruction(String text) {
+    }
+
+    public void entityRef(String text) {
+        throw new UnsupportedOperationException();
+    }
+
+    public void startDocument(String encoding, Boolean standalone) {
+    }
+
+    public void endDocument() {
+    }
+
+    public void flush() {
+    }
+
+    public int getDepth() {
+        return this.mNames.size();
+    }
+
+    public String getName() {
+        return this.mNames.isEmpty() ? null : (String) this.mNames.get(this.mNames.size() - 1);
+    }
+
+    public String getNamespace() {
+        return null;
+    }
+
+    public String getPrefix(String namespace, boolean generatePrefix) {
+        return null;
+    }
+
+    public void setPrefix(String prefix, String namespace) {
+        throw new UnsupportedOperationException();
+    }
+
+    public boolean getFeature(String name) {
+        return false;
+    }
+
+    public void setFeature(String name, boolean state) {
+    }
+
+    public Object getProperty(String name) {
+        return null;
+    }
+
+    public void setProperty(String name, Object value) {
+    }
+
+    public void setOutput(OutputStream os, String encoding) {
+        throw new UnsupportedOperationException();
+    }
+
+    public void setOutput(Writer writer) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Strings are prefixed by a varint: 0 for null, an odd value for a reference to the string
+     * with index value >> 1, and an even value for a literal of (value >> 1) - 1 UTF-8 bytes.
+     */
+    private void writeString(String value) {
+        if (value == null) {
+            writeVarint(0);
+            return;
+        }
+        Integer index = (Integer) this.mStrings.get(value);
+        if (index != null) {
+            writeVarint((index.intValue() << 1) | 1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint((bytes.length + 1) << 1);
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, this.mBuffer, this.mCount, bytes.length);
+        this.mCount += bytes.length;
+        this.mStrings.put(value, Integer.valueOf(this.mStrings.size()));
+    }
+
+    private void writeVarint(int value) {
+        ensureCapacity(5);
+        while ((value & -128) != 0) {
+            byte[] bArr = this.mBuffer;
+            int i = this.mCount;
+            this.mCount = i + 1;
+            bArr[i] = (byte) ((value & 127) | 128);
+            value >>>= 7;
+        }
+        byte[] bArr2 = this.mBuffer;
+        int i2 = this.mCount;
+        this.mCount = i2 + 1;
+        bArr2[i2] = (byte) value;
+    }
+
+    private void writeByte(int value) {
+        ensureCapacity(1);
+        byte[] bArr = this.mBuffer;
+        int i = this.mCount;
+        this.mCount = i + 1;
+        bArr[i] = (byte) value;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (this.mCount + extra > this.mBuffer.length) {
+            this.mBuffer = Arrays.copyOf(this.mBuffer, Math.max(this.mBuffer.length * 2, this.mCount + extra));
+        }
+    }
+}
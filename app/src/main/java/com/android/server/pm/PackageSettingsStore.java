@@ -0,0 +1,574 @@
+package com.android.server.pm;
+
+import android.os.FileUtils;
+import android.util.ArrayMap;
+import android.util.ArraySet;
+import android.util.Slog;
+import com.android.internal.util.FastXmlSerializer;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.zip.CRC32;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlSerializer;
+
+/**
+ * Binary replacement for packages.xml. The store is a versioned file of length and CRC framed
+ * records: one for the global settings written before the packages, one per package, one per
+ * disabled system package and one for the settings written after them. Each record holds the
+ * tokens of the XML the Settings writers would have produced for that part, so the existing
+ * read and write code is reused unchanged through {@link PackageSettingsSerializer} and
+ * {@link PackageSettingsParser}.
+ *
+ * <p>The file is memory-mapped and only the frame headers are indexed when it is opened; record
+ * contents are decoded as they are parsed, and {@link #openPackage} reads a single package
+ * without touching the others. A write encodes every record but only appends the ones whose
+ * encoding changed, plus removals, followed by a commit record; records after the last commit
+ * are ignored, so an interrupted write leaves the previous state. Once the superseded records
+ * outweigh the live ones the file is rewritten and renamed into place. Settings only uses the
+ * store when ro.config.hw_packages_store is set, and otherwise turns it back into packages.xml
+ * with {@link #exportXml}. Not thread safe; callers hold the package manager lock.
+ */
+final class PackageSettingsStore {
+    private static final int FRAME_HEADER_LENGTH = 8;
+    private static final int HEADER_LENGTH = 8;
+    static final int KIND_COMMIT = 7;
+    static final int KIND_DISABLED_PACKAGE = 3;
+    static final int KIND_HEAD = 1;
+    static final int KIND_PACKAGE = 2;
+    private static final int KIND_REMOVE_DISABLED_PACKAGE = 6;
+    private static final int KIND_REMOVE_PACKAGE = 5;
+    static final int KIND_TAIL = 4;
+    private static final int MAGIC = 1347637586;
+    private static final String TAG = "PackageSettingsStore";
+    private static final int VERSION = 1;
+    private MappedByteBuffer mBuffer;
+    private final ArrayMap<String, Record> mDisabledPackages;
+    private final File mFile;
+    private long mFileLength;
+    private Record mHead;
+    private long mLiveBytes;
+    private boolean mLoaded;
+    private final ArrayMap<String, Record> mPackages;
+    private final ArraySet<String> mSeenDisabledPackages;
+    private final ArraySet<String> mSeenPackages;
+    private Record mTail;
+    private final File mTempFile;
+    private final ArrayList<Record> mUpdates;
+    private long mValidLength;
+
+    private static final class Record {
+        final int frameLength;
+        final String key;
+        final int kind;
+        int offset;
+        byte[] payload;
+        final int payloadLength;
+
+        Record(int kind, String key, int offset, int payloadLength, int frameLength) {
+            this.kind = kind;
+            this.key = key;
+            this.offset = offset;
+            this.payloadLength = payloadLength;
+            this.frameLength = frameLength;
+            this.payload = null;
+        }
+
+        Record(int kind, String key, byte[] payload) {
+            this.kind = kind;
+            this.key = key;
+            this.payload = payload;
+            this.payloadLength = payload.length;
+            this.frameLength = ((FRAME_HEADER_LENGTH + 3) + key.getBytes(StandardCharsets.UTF_8).length) + payload.length;
+            this.offset = -1;
+        }
+    }
+
+    PackageSettingsStore(File file) {
+        this.mFile = file;
+        this.mTempFile = new File(file.getPath() + ".tmp");
+        this.mPackages = new ArrayMap();
+        this.mDisabledPackages = new ArrayMap();
+        this.mSeenPackages = new ArraySet();
+        this.mSeenDisabledPackages = new ArraySet();
+        this.mUpdates = new ArrayList();
+    }
+
+    /**
+     * Returns a parser that reads the whole store as a packages.xml document, or null if there
+     * is no valid store yet.
+     */
+    XmlPullParser openDocument() {
+        if (!load()) {
+            return null;
+        }
+        ArrayList<Record> records = new ArrayList(this.mPackages.size() + this.mDisabledPackages.size() + 2);
+        if (this.mHead != null) {
+            records.add(this.mHead);
+        }
+        records.addAll(this.mPackages.values());
+        records.addAll(this.mDisabledPackages.values());
+        if (this.mTail != null) {
+            records.add(this.mTail);
+        }
+        return newParser("packages", records);
+    }
+
+    /**
+     * Returns a parser over the stored record of a single package, decoding nothing else, or
+     * null if the package is not in the store.
+     */
+    XmlPullParser openPackage(String name, boolean disabled) {
+        if (!load()) {
+            return null;
+        }
+        Record record = (Record) (disabled ? this.mDisabledPackages : this.mPackages).get(name);
+        if (record == null) {
+            return null;
+        }
+        ArrayList<Record> records = new ArrayList(1);
+        records.add(record);
+        return newParser(null, records);
+    }
+
+    /**
+     * Starts collecting the records of a write. Every record that should remain in the store
+     * must be passed to {@link #putRecord} before {@link #commitUpdate}.
+     */
+    void beginUpdate() {
+        load();
+        this.mUpdates.clear();
+        this.mSeenPackages.clear();
+        this.mSeenDisabledPackages.clear();
+    }
+
+    void putRecord(int kind, String key, byte[] payload) {
+        Record current;
+        switch (kind) {
+            case KIND_HEAD /*1*/:
+                current = this.mHead;
+                break;
+            case KIND_PACKAGE /*2*/:
+                this.mSeenPackages.add(key);
+                current = (Record) this.mPackages.get(key);
+                break;
+            case KIND_DISABLED_PACKAGE /*3*/:
+                this.mSeenDisabledPackages.add(key);
+                current = (Record) this.mDisabledPackages.get(key);
+                break;
+            case KIND_TAIL /*4*/:
+                current = this.mTail;
+                break;
+            default:
+                throw new IllegalArgumentException("Bad record kind " + kind);
+        }
+        if (current == null || !payloadEquals(current, payload)) {
+            this.mUpdates.add(new Record(kind, key, payload));
+        }
+    }
+
+    /**
+     * Stores the records collected since {@link #beginUpdate}, appending the changed ones or
+     * rewriting the file if it has accumulated too much garbage. Returns the number of records
+     * written.
+     */
+    int commitUpdate() throws IOException {
+        for (int i = 0; i < this.mPackages.size(); i++) {
+            String name = (String) this.mPackages.keyAt(i);
+            if (!this.mSeenPackages.contains(name)) {
+                this.mUpdates.add(new Record(KIND_REMOVE_PACKAGE, name, new byte[0]));
+            }
+        }
+        for (int i2 = 0; i2 < this.mDisabledPackages.size(); i2++) {
+            String name2 = (String) this.mDisabledPackages.keyAt(i2);
+            if (!this.mSeenDisabledPackages.contains(name2)) {
+                this.mUpdates.add(new Record(KIND_REMOVE_DISABLED_PACKAGE, name2, new byte[0]));
+            }
+        }
+        int written;
+        try {
+            if (this.mBuffer != null && this.mUpdates.isEmpty()) {
+                written = 0;
+            } else {
+                long updateBytes = 0;
+                for (Record record : this.mUpdates) {
+                    updateBytes += (long) record.frameLength;
+                }
+                if (this.mBuffer == null || this.mFileLength != this.mValidLength || (this.mFileLength + updateBytes) - (((long) HEADER_LENGTH) + this.mLiveBytes) > this.mLiveBytes) {
+                    for (Record record2 : this.mUpdates) {
+                        apply(record2);
+                    }
+                    written = rewrite();
+                } else {
+                    written = append();
+                }
+            }
+            this.mUpdates.clear();
+            return written;
+        } catch (IOException e) {
+            this.mUpdates.clear();
+            delete();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes the store as packages.xml, so it can be read by a build without the store.
+     */
+    void exportXml(File target) throws IOException {
+        XmlPullParser parser = openDocument();
+        if (parser == null) {
+            throw new IOException("No package settings store " + this.mFile);
+        }
+        FileOutputStream fstr = new FileOutputStream(target);
+        try {
+            BufferedOutputStream out = new BufferedOutputStream(fstr);
+            XmlSerializer serializer = new FastXmlSerializer();
+            serializer.setOutput(out, StandardCharsets.UTF_8.name());
+            serializer.startDocument(null, Boolean.valueOf(true));
+            serializer.setFeature("http://xmlpull.org/v1/doc/features.html#indent-output", true);
+            while (true) {
+                int type = parser.next();
+                if (type == 1) {
+                    break;
+                } else if (type == 2) {
+                    serializer.startTag(null, parser.getName());
+                    for (int i = 0; i < parser.getAttributeCount(); i++) {
+                        String value = parser.getAttributeValue(i);
+                        if (value != null) {
+                            serializer.attribute(null, parser.getAttributeName(i), value);
+                        }
+                    }
+                } else if (type == 3) {
+                    serializer.endTag(null, parser.getName());
+                } else if (type == 4) {
+                    serializer.text(parser.getText());
+                }
+            }
+            serializer.endDocument();
+            out.flush();
+            FileUtils.sync(fstr);
+        } catch (XmlPullParserException e) {
+            throw new IOException("Corrupt package settings store", e);
+        } finally {
+            fstr.close();
+        }
+    }
+
+    /**
+     * Forgets the store, e.g. when settings had to be written as XML instead.
+     */
+    void delete() {
+        clear();
+        this.mLoaded = true;
+        this.mFile.delete();
+        this.mTempFile.delete();
+    }
+
+    private void clear() {
+        this.mBuffer = null;
+        this.mHead = null;
+        this.mTail = null;
+        this.mPackages.clear();
+        this.mDisabledPackages.clear();
+        this.mFileLength = 0;
+        this.mValidLength = 0;
+        this.mLiveBytes = 0;
+    }
+
+    private PackageSettingsParser newParser(String root, ArrayList<Record> records) {
+        int count = records.size();
+        String[] keys = new String[count];
+        int[] offsets = new int[count];
+        int[] lengths = new int[count];
+        for (int i = 0; i < count; i++) {
+            Record record = (Record) records.get(i);
+            keys[i] = record.key;
+            offsets[i] = record.offset;
+            lengths[i] = record.payloadLength;
+        }
+        return new PackageSettingsParser(this.mBuffer.duplicate(), root, keys, offsets, lengths);
+    }
+
+    /**
+     * Maps the file and indexes its committed records. Returns true if a valid store is
+     * available. Only the first call reads the file.
+     */
+    private boolean load() {
+        if (this.mLoaded) {
+            return this.mBuffer != null;
+        }
+        this.mLoaded = true;
+        if (!this.mFile.exists()) {
+            return false;
+        }
+        try {
+            map();
+            ByteBuffer buffer = this.mBuffer;
+            if (this.mFileLength < 8 || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                Slog.w(TAG, "Ignoring unknown package settings store " + this.mFile);
+                clear();
+                return false;
+            }
+            scan(buffer);
+            if (this.mValidLength != this.mFileLength) {
+                Slog.w(TAG, "Dropped " + (this.mFileLength - this.mValidLength) + " uncommitted bytes from " + this.mFile);
+            }
+            return true;
+        } catch (IOException e) {
+            Slog.w(TAG, "Unable to read " + this.mFile, e);
+            clear();
+            return false;
+        }
+    }
+
+    private void map() throws IOException {
+        FileInputStream in = new FileInputStream(this.mFile);
+        try {
+            FileChannel channel = in.getChannel();
+            this.mFileLength = channel.size();
+            if (this.mFileLength > 2147483647L) {
+                throw new IOException("Package settings store too large: " + this.mFileLength);
+            }
+            this.mBuffer = channel.map(MapMode.READ_ONLY, 0, this.mFileLength);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Walks the frame headers and applies every committed record to the index. A frame that is
+     * truncated or fails its CRC ends the scan; it and everything after the last commit record
+     * are dropped.
+     */
+    private void scan(ByteBuffer buffer) {
+        ArrayList<Record> pending = new ArrayList();
+        byte[] scratch = new byte[8192];
+        CRC32 crc = new CRC32();
+        int limit = (int) this.mFileLength;
+        int position = HEADER_LENGTH;
+        this.mValidLength = (long) HEADER_LENGTH;
+        while (limit - position >= FRAME_HEADER_LENGTH + 3) {
+            int length = buffer.getInt(position);
+            int expectedCrc = buffer.getInt(position + 4);
+            int start = position + FRAME_HEADER_LENGTH;
+            if (length < 3 || length > limit - start) {
+                break;
+            }
+            crc.reset();
+            int i = 0;
+            while (i < length) {
+                int chunk = Math.min(scratch.length, length - i);
+                for (int j = 0; j < chunk; j++) {
+                    scratch[j] = buffer.get((start + i) + j);
+                }
+                crc.update(scratch, 0, chunk);
+                i += chunk;
+            }
+            if (((int) crc.getValue()) != expectedCrc) {
+                break;
+            }
+            int kind = buffer.get(start);
+            int keyLength = buffer.getShort(start + 1) & 65535;
+            if (keyLength > length - 3) {
+                break;
+            }
+            byte[] key = new byte[keyLength];
+            for (int k = 0; k < keyLength; k++) {
+                key[k] = buffer.get((start + 3) + k);
+            }
+            int payloadOffset = (start + 3) + keyLength;
+            position = start + length;
+            if (kind == KIND_COMMIT) {
+                for (Record record : pending) {
+                    apply(record);
+                }
+                pending.clear();
+                this.mValidLength = (long) position;
+            } else {
+                pending.add(new Record(kind, new String(key, StandardCharsets.UTF_8), payloadOffset, (length - 3) - keyLength, length + FRAME_HEADER_LENGTH));
+            }
+        }
+    }
+
+    private void apply(Record record) {
+        switch (record.kind) {
+            case KIND_HEAD /*1*/:
+                this.mLiveBytes -= this.mHead != null ? (long) this.mHead.frameLength : 0;
+                this.mHead = record;
+                break;
+            case KIND_PACKAGE /*2*/:
+                Record old = (Record) this.mPackages.put(record.key, record);
+                this.mLiveBytes -= old != null ? (long) old.frameLength : 0;
+                break;
+            case KIND_DISABLED_PACKAGE /*3*/:
+                Record old2 = (Record) this.mDisabledPackages.put(record.key, record);
+                this.mLiveBytes -= old2 != null ? (long) old2.frameLength : 0;
+                break;
+            case KIND_TAIL /*4*/:
+                this.mLiveBytes -= this.mTail != null ? (long) this.mTail.frameLength : 0;
+                this.mTail = record;
+                break;
+            case KIND_REMOVE_PACKAGE /*5*/:
+                Record removed = (Record) this.mPackages.remove(record.key);
+                this.mLiveBytes -= removed != null ? (long) removed.frameLength : 0;
+                return;
+            case KIND_REMOVE_DISABLED_PACKAGE /*6*/:
+                Record removed2 = (Record) this.mDisabledPackages.remove(record.key);
+                this.mLiveBytes -= removed2 != null ? (long) removed2.frameLength : 0;
+                return;
+            default:
+                Slog.w(TAG, "Skipping record of unknown kind " + record.kind);
+                return;
+        }
+        this.mLiveBytes += (long) record.frameLength;
+    }
+
+    private int append() throws IOException {
+        long base = this.mFileLength;
+        FileOutputStream fstr = new FileOutputStream(this.mFile, true);
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fstr));
+            long position = base;
+            for (Record record : this.mUpdates) {
+                position = writeFrame(out, record, position);
+            }
+            writeFrame(out, new Record(KIND_COMMIT, "", new byte[0]), position);
+            out.flush();
+            FileUtils.sync(fstr);
+        } finally {
+            fstr.close();
+        }
+        for (Record record2 : this.mUpdates) {
+            apply(record2);
+        }
+        remap();
+        for (Record record3 : this.mUpdates) {
+            record3.payload = null;
+        }
+        return this.mUpdates.size();
+    }
+
+    /**
+     * Writes every live record to a temporary file that then replaces the store. The index must
+     * already reflect the update; records that did not change are copied from the old mapping.
+     */
+    private int rewrite() throws IOException {
+        ArrayList<Record> records = new ArrayList(this.mPackages.size() + this.mDisabledPackages.size() + 2);
+        if (this.mHead != null) {
+            records.add(this.mHead);
+        }
+        records.addAll(this.mPackages.values());
+        records.addAll(this.mDisabledPackages.values());
+        if (this.mTail != null) {
+            records.add(this.mTail);
+        }
+        ArrayList<Record> copies = new ArrayList(records.size());
+        for (Record record : records) {
+            copies.add(record.payload != null ? record : new Record(record.kind, record.key, payload(record)));
+        }
+        FileOutputStream fstr = new FileOutputStream(this.mTempFile);
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fstr));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            long position = (long) HEADER_LENGTH;
+            for (Record copy : copies) {
+                position = writeFrame(out, copy, position);
+            }
+            writeFrame(out, new Record(KIND_COMMIT, "", new byte[0]), position);
+            out.flush();
+            FileUtils.sync(fstr);
+            fstr.close();
+            if (!this.mTempFile.renameTo(this.mFile)) {
+                throw new IOException("Unable to replace " + this.mFile);
+            }
+            FileUtils.setPermissions(this.mFile.toString(), 432, -1, -1);
+            this.mPackages.clear();
+            this.mDisabledPackages.clear();
+            this.mHead = null;
+            this.mTail = null;
+            this.mLiveBytes = 0;
+            for (Record copy2 : copies) {
+                apply(copy2);
+            }
+            remap();
+            for (Record copy3 : copies) {
+                copy3.payload = null;
+            }
+            return copies.size();
+        } catch (IOException e) {
+            fstr.close();
+            this.mTempFile.delete();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes one frame and records the payload offset in the record. Returns the file position
+     * after the frame.
+     */
+    private long writeFrame(DataOutputStream out, Record record, long position) throws IOException {
+        byte[] key = record.key.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream frame = new ByteArrayOutputStream((key.length + 3) + record.payloadLength);
+        frame.write(record.kind);
+        frame.write((key.length >> 8) & 255);
+        frame.write(key.length & 255);
+        frame.write(key, 0, key.length);
+        frame.write(record.payload, 0, record.payloadLength);
+        byte[] bytes = frame.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        out.writeInt(bytes.length);
+        out.writeInt((int) crc.getValue());
+        out.write(bytes);
+        record.offset = (int) (((((long) FRAME_HEADER_LENGTH) + position) + 3) + ((long) key.length));
+        return (((long) FRAME_HEADER_LENGTH) + position) + ((long) bytes.length);
+    }
+
+    private void remap() throws IOException {
+        map();
+        this.mValidLength = this.mFileLength;
+    }
+
+    private byte[] payload(Record record) {
+        byte[] bytes = new byte[record.payloadLength];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = this.mBuffer.get(record.offset + i);
+        }
+        return bytes;
+    }
+
+    private boolean payloadEquals(Record record, byte[] payload) {
+        if (record.payloadLength != payload.length) {
+            return false;
+        }
+        if (record.payload != null) {
+            for (int i = 0; i < payload.length; i++) {
+                if (record.payload[i] != payload[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        ByteBuffer buffer = this.mBuffer;
+        int offset = record.offset;
+        for (int i2 = 0; i2 < payload.length; i2++) {
+            if (buffer.get(offset + i2) != payload[i2]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
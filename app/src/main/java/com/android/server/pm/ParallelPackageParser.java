@@ -0,0 +1,142 @@
+package com.android.server.pm;
+
+import android.content.pm.PackageParser;
+import android.content.pm.PackageParser.Package;
+import android.os.Process;
+import android.os.Trace;
+import android.util.DisplayMetrics;
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Parses packages on a small worker pool while the caller scans the ones already parsed.
+ * Results are handed out in the order the files were submitted, so the settings see packages
+ * in the same order as a sequential scan. At most QUEUE_CAPACITY packages are parsed ahead of
+ * the caller, which bounds the memory held by parsed packages that were not scanned yet.
+ */
+final class ParallelPackageParser implements AutoCloseable {
+    private static final int MAX_THREADS = 4;
+    private static final int QUEUE_CAPACITY = 10;
+    private final File mCacheDir;
+    private final ExecutorService mExecutorService;
+    private final ArrayDeque<Future<ParseResult>> mInFlight;
+    private final DisplayMetrics mMetrics;
+    private final boolean mOnlyCoreApps;
+    private final ArrayDeque<ParseResult> mPending;
+    private final String[] mSeparateProcesses;
+
+    static class ParseResult {
+        final int hwFlags;
+        final int parseFlags;
+        Package pkg;
+        final File scanFile;
+        Throwable throwable;
+
+        ParseResult(File scanFile, int parseFlags, int hwFlags) {
+            this.scanFile = scanFile;
+            this.parseFlags = parseFlags;
+            this.hwFlags = hwFlags;
+        }
+
+        public String toString() {
+            return "ParseResult{pkg=" + this.pkg + ", scanFile=" + this.scanFile + ", throwable=" + this.throwable + "}";
+        }
+    }
+
+    private static class ParserThreadFactory implements ThreadFactory {
+        private final AtomicInteger mCount;
+
+        private ParserThreadFactory() {
+            this.mCount = new AtomicInteger();
+        }
+
+        public Thread newThread(Runnable r) {
+            return new Thread(r, "package-parsing-thread" + this.mCount.incrementAndGet());
+        }
+    }
+
+    private class ParseTask implements Callable<ParseResult> {
+        private final ParseResult mResult;
+
+        ParseTask(ParseResult result) {
+            this.mResult = result;
+        }
+
+        public ParseResult call() {
+            Process.setThreadPriority(-2);
+            Trace.traceBegin(262144, "parallel parsePackage [" + this.mResult.scanFile + "]");
+            try {
+                PackageParser pp = new PackageParser();
+                pp.setSeparateProcesses(ParallelPackageParser.this.mSeparateProcesses);
+                pp.setOnlyCoreApps(ParallelPackageParser.this.mOnlyCoreApps);
+                pp.setDisplayMetrics(ParallelPackageParser.this.mMetrics);
+                pp.setCacheDir(ParallelPackageParser.this.mCacheDir);
+                this.mResult.pkg = pp.parsePackage(this.mResult.scanFile, this.mResult.parseFlags, this.mResult.hwFlags);
+            } catch (Throwable e) {
+                this.mResult.throwable = e;
+            } finally {
+                Trace.traceEnd(262144);
+            }
+            return this.mResult;
+        }
+    }
+
+    ParallelPackageParser(String[] separateProcesses, boolean onlyCoreApps, DisplayMetrics metrics, File cacheDir) {
+        this.mSeparateProcesses = separateProcesses;
+        this.mOnlyCoreApps = onlyCoreApps;
+        this.mMetrics = metrics;
+        this.mCacheDir = cacheDir;
+        this.mInFlight = new ArrayDeque();
+        this.mPending = new ArrayDeque();
+        this.mExecutorService = Executors.newFixedThreadPool(Math.max(1, Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors())), new ParserThreadFactory());
+    }
+
+    /**
+     * Queues a package for parsing. Parsing starts right away unless QUEUE_CAPACITY packages
+     * are already waiting to be taken.
+     */
+    void submit(File scanFile, int parseFlags, int hwFlags) {
+        this.mPending.add(new ParseResult(scanFile, parseFlags, hwFlags));
+        fill();
+    }
+
+    /**
+     * Returns the result for the oldest submitted package that was not taken yet, waiting for
+     * it to be parsed, or null once every submitted package has been taken. Parse failures are
+     * reported in {@link ParseResult#throwable}.
+     */
+    ParseResult take() {
+        Future<ParseResult> future = (Future) this.mInFlight.poll();
+        if (future == null) {
+            return null;
+        }
+        try {
+            ParseResult result = (ParseResult) future.get();
+            fill();
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for package parsing", e);
+        } catch (ExecutionException e2) {
+            throw new IllegalStateException("Package parsing failed", e2.getCause());
+        }
+    }
+
+    public void close() {
+        this.mPending.clear();
+        this.mExecutorService.shutdownNow();
+    }
+
+    private void fill() {
+        while (this.mInFlight.size() < QUEUE_CAPACITY && !this.mPending.isEmpty()) {
+            this.mInFlight.add(this.mExecutorService.submit(new ParseTask((ParseResult) this.mPending.poll())));
+        }
+    }
+}
@@ -30,6 +30,7 @@ import android.os.Handler;
 import android.os.Message;
 import android.os.PatternMatcher;
 import android.os.SystemClock;
+import android.os.SystemProperties;
 import android.os.UserHandle;
 import android.os.storage.StorageManager;
 import android.text.TextUtils;
@@ -170,6 +171,7 @@ final class Settings {
     private final File mKernelMappingFilename;
     public final KeySetManagerService mKeySetManagerService;
     private final ArrayMap<Long, Integer> mKeySetRefs;
+    private String mLastPackageList;
     private final Object mLock;
     final SparseIntArray mNextAppLinkGeneration;
     private final SparseArray<Object> mOtherUserIds;
@@ -189,9 +191,11 @@ final class Settings {
     private final SparseArray<ArrayMap<String, ArraySet<RestoredPermissionGrant>>> mRestoredUserGrants;
     private final RuntimePermissionPersistence mRuntimePermissionsPersistence;
     private final File mSettingsFilename;
+    private final PackageSettingsStore mSettingsStore;
     final ArrayMap<String, SharedUserSetting> mSharedUsers;
     private final File mStoppedPackagesFilename;
     private final File mSystemDir;
+    private final boolean mUseSettingsStore;
     private final ArrayList<Object> mUserIds;
     private VerifierDeviceIdentity mVerifierDeviceIdentity;
     private ArrayMap<String, VersionInfo> mVersion;
@@ -696,6 +700,8 @@ Caused by: jadx.core.utils.exceptions.DecodeException: Unknown instruction: not-
         FileUtils.setPermissions(this.mSystemDir.toString(), 509, -1, -1);
         this.mSettingsFilename = new File(this.mSystemDir, "packages.xml");
         this.mBackupSettingsFilename = new File(this.mSystemDir, "packages-backup.xml");
+        this.mSettingsStore = new PackageSettingsStore(new File(this.mSystemDir, "packages.bin"));
+        this.mUseSettingsStore = SystemProperties.getBoolean("ro.config.hw_packages_store", false);
         this.mPackageListFilename = new File(this.mSystemDir, "packages.list");
         FileUtils.setPermissions(this.mPackageListFilename, 416, ProcessList.PSS_SAFE_TIME_FROM_STATE_CHANGE, 1032);
         File kernelDir = new File("/config/sdcardfs");
@@ -2591,6 +2597,13 @@ Caused by: jadx.core.utils.exceptions.DecodeException: Unknown instruction: not-
     }
 
     void writeLPr() {
+        if (this.mUseSettingsStore && writeSettingsStoreLPr()) {
+            writeKernelMappingLPr();
+            writePackageListLPr();
+            writeAllUsersPackageRestrictionsLPr();
+            writeAllRuntimePermissionsLPr();
+            return;
+        }
         if (this.mSettingsFilename.exists()) {
             if (this.mBackupSettingsFilename.exists()) {
                 this.mSettingsFilename.delete();
@@ -2611,82 +2624,14 @@ Caused by: jadx.core.utils.exceptions.DecodeException: Unknown instruction: not-
             serializer.startDocument(null, Boolean.valueOf(true));
             serializer.setFeature("http://xmlpull.org/v1/doc/features.html#indent-output", true);
             serializer.startTag(null, "packages");
-            int i = 0;
-            while (true) {
-                if (i >= this.mVersion.size()) {
-                    break;
-                }
-                String volumeUuid = (String) this.mVersion.keyAt(i);
-                VersionInfo ver = (VersionInfo) this.mVersion.valueAt(i);
-                serializer.startTag(null, TAG_VERSION);
-                XmlUtils.writeStringAttribute(serializer, ATTR_VOLUME_UUID, volumeUuid);
-                XmlUtils.writeIntAttribute(serializer, ATTR_SDK_VERSION, ver.sdkVersion);
-                XmlUtils.writeIntAttribute(serializer, ATTR_DATABASE_VERSION, ver.databaseVersion);
-                XmlUtils.writeStringAttribute(serializer, ATTR_FINGERPRINT, ver.fingerprint);
-                serializer.endTag(null, TAG_VERSION);
-                i++;
-            }
-            if (this.mVerifierDeviceIdentity != null) {
-                serializer.startTag(null, "verifier");
-                serializer.attribute(null, "device", this.mVerifierDeviceIdentity.toString());
-                serializer.endTag(null, "verifier");
-            }
-            if (this.mReadExternalStorageEnforced != null) {
-                serializer.startTag(null, TAG_READ_EXTERNAL_STORAGE);
-                serializer.attribute(null, ATTR_ENFORCEMENT, this.mReadExternalStorageEnforced.booleanValue() ? "1" : "0");
-                serializer.endTag(null, TAG_READ_EXTERNAL_STORAGE);
-            }
-            serializer.startTag(null, "permission-trees");
-            for (BasePermission bp : this.mPermissionTrees.values()) {
-                writePermissionLPr(serializer, bp);
-            }
-            serializer.endTag(null, "permission-trees");
-            serializer.startTag(null, "permissions");
-            for (BasePermission bp2 : this.mPermissions.values()) {
-                writePermissionLPr(serializer, bp2);
-            }
-            serializer.endTag(null, "permissions");
+            writeSettingsHeadLPr(serializer);
             for (PackageSetting writePackageLPr : this.mPackages.values()) {
                 writePackageLPr(serializer, writePackageLPr);
             }
             for (PackageSetting writePackageLPr2 : this.mDisabledSysPackages.values()) {
                 writeDisabledSysPackageLPr(serializer, writePackageLPr2);
             }
-            for (SharedUserSetting usr : this.mSharedUsers.values()) {
-                serializer.startTag(null, TAG_SHARED_USER);
-                serializer.attribute(null, ATTR_NAME, usr.name);
-                serializer.attribute(null, "userId", Integer.toString(usr.userId));
-                usr.signatures.writeXml(serializer, "sigs", this.mPastSignatures);
-                writePermissionsLPr(serializer, usr.getPermissionsState().getInstallPermissionStates());
-                serializer.endTag(null, TAG_SHARED_USER);
-            }
-            if (this.mPackagesToBeCleaned.size() > 0) {
-                for (PackageCleanItem item : this.mPackagesToBeCleaned) {
-                    String userStr = Integer.toString(item.userId);
-                    serializer.startTag(null, "cleaning-package");
-                    serializer.attribute(null, ATTR_NAME, item.packageName);
-                    serializer.attribute(null, ATTR_CODE, item.andCode ? "true" : "false");
-                    serializer.attribute(null, ATTR_USER, userStr);
-                    serializer.endTag(null, "cleaning-package");
-                }
-            }
-            if (this.mRenamedPackages.size() > 0) {
-                for (Entry<String, String> e : this.mRenamedPackages.entrySet()) {
-                    serializer.startTag(null, "renamed-package");
-                    serializer.attribute(null, "new", (String) e.getKey());
-                    serializer.attribute(null, "old", (String) e.getValue());
-                    serializer.endTag(null, "renamed-package");
-                }
-            }
-            int numIVIs = this.mRestoredIntentFilterVerifications.size();
-            if (numIVIs > 0) {
-                serializer.startTag(null, "restored-ivi");
-                for (i = 0; i < numIVIs; i++) {
-                    writeDomainVerificationsLPr(serializer, (IntentFilterVerificationInfo) this.mRestoredIntentFilterVerifications.valueAt(i));
-                }
-                serializer.endTag(null, "restored-ivi");
-            }
-            this.mKeySetManagerService.writeKeySetManagerServiceLPr(serializer);
+            writeSettingsTailLPr(serializer);
             serializer.endTag(null, "packages");
             serializer.endDocument();
             bufferedOutputStream.flush();
@@ -2694,6 +2639,7 @@ Caused by: jadx.core.utils.exceptions.DecodeException: Unknown instruction: not-
             bufferedOutputStream.close();
             this.mBackupSettingsFilename.delete();
             FileUtils.setPermissions(this.mSettingsFilename.toString(), 432, -1, -1);
+            this.mSettingsStore.delete();
             writeKernelMappingLPr();
             writePackageListLPr();
             writeAllUsersPackageRestrictionsLPr();
@@ -2715,6 +2661,159 @@ Caused by: jadx.core.utils.exceptions.DecodeException: Unknown instruction: not-
         }
     }
 
+    /**
+     * Writes the settings that precede the packages: versions, verifier, permission trees and
+     * permissions.
+     */
+    private void writeSettingsHeadLPr(XmlSerializer serializer) throws XmlPullParserException, IOException {
+        int i = 0;
+        while (true) {
+            if (i >= this.mVersion.size()) {
+                break;
+            }
+            String volumeUuid = (String) this.mVersion.keyAt(i);
+            VersionInfo ver = (VersionInfo) this.mVersion.valueAt(i);
+            serializer.startTag(null, TAG_VERSION);
+            XmlUtils.writeStringAttribute(serializer, ATTR_VOLUME_UUID, volumeUuid);
+            XmlUtils.writeIntAttribute(serializer, ATTR_SDK_VERSION, ver.sdkVersion);
+            XmlUtils.writeIntAttribute(serializer, ATTR_DATABASE_VERSION, ver.databaseVersion);
+            XmlUtils.writeStringAttribute(serializer, ATTR_FINGERPRINT, ver.fingerprint);
+            serializer.endTag(null, TAG_VERSION);
+            i++;
+        }
+        if (this.mVerifierDeviceIdentity != null) {
+            serializer.startTag(null, "verifier");
+            serializer.attribute(null, "device", this.mVerifierDeviceIdentity.toString());
+            serializer.endTag(null, "verifier");
+        }
+        if (this.mReadExternalStorageEnforced != null) {
+            serializer.startTag(null, TAG_READ_EXTERNAL_STORAGE);
+            serializer.attribute(null, ATTR_ENFORCEMENT, this.mReadExternalStorageEnforced.booleanValue() ? "1" : "0");
+            serializer.endTag(null, TAG_READ_EXTERNAL_STORAGE);
+        }
+        serializer.startTag(null, "permission-trees");
+        for (BasePermission bp : this.mPermissionTrees.values()) {
+            writePermissionLPr(serializer, bp);
+        }
+        serializer.endTag(null, "permission-trees");
+        serializer.startTag(null, "permissions");
+        for (BasePermission bp2 : this.mPermissions.values()) {
+            writePermissionLPr(serializer, bp2);
+        }
+        serializer.endTag(null, "permissions");
+    }
+
+    /**
+     * Writes the settings that follow the packages: shared users, pending cleanups, renamed
+     * packages, restored domain verifications and key sets.
+     */
+    private void writeSettingsTailLPr(XmlSerializer serializer) throws IOException {
+        for (SharedUserSetting usr : this.mSharedUsers.values()) {
+            serializer.startTag(null, TAG_SHARED_USER);
+            serializer.attribute(null, ATTR_NAME, usr.name);
+            serializer.attribute(null, "userId", Integer.toString(usr.userId));
+            usr.signatures.writeXml(serializer, "sigs", this.mPastSignatures);
+            writePermissionsLPr(serializer, usr.getPermissionsState().getInstallPermissionStates());
+            serializer.endTag(null, TAG_SHARED_USER);
+        }
+        if (this.mPackagesToBeCleaned.size() > 0) {
+            for (PackageCleanItem item : this.mPackagesToBeCleaned) {
+                String userStr = Integer.toString(item.userId);
+                serializer.startTag(null, "cleaning-package");
+                serializer.attribute(null, ATTR_NAME, item.packageName);
+                serializer.attribute(null, ATTR_CODE, item.andCode ? "true" : "false");
+                serializer.attribute(null, ATTR_USER, userStr);
+                serializer.endTag(null, "cleaning-package");
+            }
+        }
+        if (this.mRenamedPackages.size() > 0) {
+            for (Entry<String, String> e : this.mRenamedPackages.entrySet()) {
+                serializer.startTag(null, "renamed-package");
+                serializer.attribute(null, "new", (String) e.getKey());
+                serializer.attribute(null, "old", (String) e.getValue());
+                serializer.endTag(null, "renamed-package");
+            }
+        }
+        int numIVIs = this.mRestoredIntentFilterVerifications.size();
+        if (numIVIs > 0) {
+            serializer.startTag(null, "restored-ivi");
+            for (int i = 0; i < numIVIs; i++) {
+                writeDomainVerificationsLPr(serializer, (IntentFilterVerificationInfo) this.mRestoredIntentFilterVerifications.valueAt(i));
+            }
+            serializer.endTag(null, "restored-ivi");
+        }
+        this.mKeySetManagerService.writeKeySetManagerServiceLPr(serializer);
+    }
+
+    /**
+     * Turns a store left behind while ro.config.hw_packages_store was set back into packages.xml,
+     * which is authoritative again. Returns false if the export failed; the store is then kept
+     * and read instead.
+     */
+    private boolean exportSettingsStoreLPw() {
+        try {
+            this.mSettingsStore.exportXml(this.mSettingsFilename);
+            FileUtils.setPermissions(this.mSettingsFilename.toString(), 432, -1, -1);
+            this.mBackupSettingsFilename.delete();
+            this.mSettingsStore.delete();
+            this.mReadMessages.append("Exported package settings store to settings file\n");
+            return true;
+        } catch (IOException e) {
+            Slog.wtf("PackageManager", "Unable to export package settings store", e);
+            this.mSettingsFilename.delete();
+            return false;
+        }
+    }
+
+    /**
+     * Writes the settings to packages.bin. Only used when ro.config.hw_packages_store is set;
+     * otherwise packages.xml is written as before. Every record is encoded, but only the ones whose
+     * encoding changed since the last write are stored. Each record gets its own signature table
+     * so it can be decoded and replaced on its own. Once the store holds the settings,
+     * packages.xml is no longer read and is removed; code that looks for the settings on disk
+     * must check for packages.bin as well. Returns false if the store could not be written; it is
+     * then discarded so the XML written instead is authoritative.
+     */
+    private boolean writeSettingsStoreLPr() {
+        PackageSettingsStore store = this.mSettingsStore;
+        PackageSettingsSerializer serializer = new PackageSettingsSerializer();
+        try {
+            store.beginUpdate();
+            this.mPastSignatures.clear();
+            writeSettingsHeadLPr(serializer);
+            store.putRecord(1, "", serializer.finishRecord());
+            for (PackageSetting ps : this.mPackages.values()) {
+                this.mPastSignatures.clear();
+                writePackageLPr(serializer, ps);
+                store.putRecord(2, ps.name, serializer.finishRecord());
+            }
+            for (PackageSetting ps2 : this.mDisabledSysPackages.values()) {
+                this.mPastSignatures.clear();
+                writeDisabledSysPackageLPr(serializer, ps2);
+                store.putRecord(3, ps2.name, serializer.finishRecord());
+            }
+            this.mPastSignatures.clear();
+            writeSettingsTailLPr(serializer);
+            store.putRecord(4, "", serializer.finishRecord());
+            store.commitUpdate();
+            if (this.mSettingsFilename.exists()) {
+                this.mSettingsFilename.delete();
+            }
+            if (this.mBackupSettingsFilename.exists()) {
+                this.mBackupSettingsFilename.delete();
+            }
+            return true;
+        } catch (XmlPullParserException e) {
+            Slog.wtf("PackageManager", "Unable to write package settings store, falling back to XML", e);
+            store.delete();
+            return false;
+        } catch (IOException e2) {
+            Slog.wtf("PackageManager", "Unable to write package settings store, falling back to XML", e2);
+            store.delete();
+            return false;
+        }
+    }
+
     void writeKernelMappingLPr() {
         if (this.mKernelMappingFilename != null) {
             String name;
@@ -2754,86 +2853,71 @@ Caused by: jadx.core.utils.exceptions.DecodeException: Unknown instruction: not-
         writePackageListLPr(-1);
     }
 
+    /**
+     * Rewrites packages.list if its content changed since the last write. The list only depends
+     * on a few fields of each package, so most settings writes leave it untouched.
+     */
     void writePackageListLPr(int creatingUserId) {
-        Exception e;
         List<UserInfo> users = UserManagerService.getInstance().getUsers(true);
         int[] userIds = new int[users.size()];
-        int i = 0;
-        while (true) {
-            int length = userIds.length;
-            if (i >= r0) {
-                break;
-            }
+        for (int i = 0; i < userIds.length; i++) {
             userIds[i] = ((UserInfo) users.get(i)).id;
-            i++;
         }
         if (creatingUserId != -1) {
             userIds = ArrayUtils.appendInt(userIds, creatingUserId);
         }
-        JournaledFile journal = new JournaledFile(this.mPackageListFilename, new File(this.mPackageListFilename.getAbsolutePath() + ".tmp"));
-        AutoCloseable autoCloseable = null;
-        try {
-            FileOutputStream fstr = new FileOutputStream(journal.chooseForWrite());
-            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(fstr, Charset.defaultCharset()));
-            try {
-                FileUtils.setPermissions(fstr.getFD(), 416, ProcessList.PSS_SAFE_TIME_FROM_STATE_CHANGE, 1032);
-                StringBuilder sb = new StringBuilder();
-                for (PackageSetting pkg : this.mPackages.values()) {
-                    if (pkg.pkg != null) {
-                        if (pkg.pkg.applicationInfo != null) {
-                            if (pkg.pkg.applicationInfo.dataDir != null) {
-                                ApplicationInfo ai = pkg.pkg.applicationInfo;
-                                String dataPath = ai.dataDir;
-                                boolean isDebug = (ai.flags & 2) != 0 ? true : DEBUG_STOPPED;
-                                int[] gids = pkg.getPermissionsState().computeGids(userIds);
-                                if (dataPath.indexOf(32) < 0) {
-                                    sb.setLength(0);
-                                    sb.append(ai.packageName);
-                                    sb.append(" ");
-                                    sb.append(ai.uid);
-                                    sb.append(isDebug ? " 1 " : " 0 ");
-                                    sb.append(dataPath);
-                                    sb.append(" ");
-                                    sb.append(ai.seinfo);
-                                    sb.append(" ");
-                                    if (gids != null && gids.length > 0) {
-                                        sb.append(gids[0]);
-                                        i = 1;
-                                        while (true) {
-                                            length = gids.length;
-                                            if (i >= r0) {
-                                                break;
-                                            }
-                                            sb.append(",");
-                                            sb.append(gids[i]);
-                                            i++;
-                                        }
-                                    } else {
-                                        sb.append("none");
-                                    }
-                                    sb.append("\n");
-                                    writer.append(sb);
-                                }
-                            }
+        StringBuilder sb = new StringBuilder();
+        for (PackageSetting pkg : this.mPackages.values()) {
+            if (pkg.pkg == null || pkg.pkg.applicationInfo == null || pkg.pkg.applicationInfo.dataDir == null) {
+                if (!"android".equals(pkg.name)) {
+                    Slog.w(TAG, "Skipping " + pkg + " due to missing metadata");
+                }
+            } else {
+                ApplicationInfo ai = pkg.pkg.applicationInfo;
+                String dataPath = ai.dataDir;
+                boolean isDebug = (ai.flags & 2) != 0 ? true : DEBUG_STOPPED;
+                int[] gids = pkg.getPermissionsState().computeGids(userIds);
+                if (dataPath.indexOf(32) < 0) {
+                    sb.append(ai.packageName);
+                    sb.append(" ");
+                    sb.append(ai.uid);
+                    sb.append(isDebug ? " 1 " : " 0 ");
+                    sb.append(dataPath);
+                    sb.append(" ");
+                    sb.append(ai.seinfo);
+                    sb.append(" ");
+                    if (gids == null || gids.length <= 0) {
+                        sb.append("none");
+                    } else {
+                        sb.append(gids[0]);
+                        for (int i2 = 1; i2 < gids.length; i2++) {
+                            sb.append(",");
+                            sb.append(gids[i2]);
                         }
                     }
-                    if (!"android".equals(pkg.name)) {
-                        Slog.w(TAG, "Skipping " + pkg + " due to missing metadata");
-                    }
+                    sb.append("\n");
                 }
+            }
+        }
+        String packageList = sb.toString();
+        if (!packageList.equals(this.mLastPackageList) || !this.mPackageListFilename.exists()) {
+            JournaledFile journal = new JournaledFile(this.mPackageListFilename, new File(this.mPackageListFilename.getAbsolutePath() + ".tmp"));
+            BufferedWriter writer = null;
+            try {
+                FileOutputStream fstr = new FileOutputStream(journal.chooseForWrite());
+                writer = new BufferedWriter(new OutputStreamWriter(fstr, Charset.defaultCharset()));
+                FileUtils.setPermissions(fstr.getFD(), 416, ProcessList.PSS_SAFE_TIME_FROM_STATE_CHANGE, 1032);
+                writer.append(packageList);
                 writer.flush();
                 FileUtils.sync(fstr);
                 writer.close();
                 journal.commit();
-            } catch (Exception e2) {
-                e = e2;
-                autoCloseable = writer;
+                this.mLastPackageList = packageList;
+            } catch (Exception e) {
+                Slog.wtf(TAG, "Failed to write packages.list", e);
+                IoUtils.closeQuietly(writer);
+                journal.rollback();
             }
-        } catch (Exception e3) {
-            e = e3;
-            Slog.wtf(TAG, "Failed to write packages.list", e);
-            IoUtils.closeQuietly(autoCloseable);
-            journal.rollback();
         }
     }
 
@@ -3016,7 +3100,11 @@ Caused by: jadx.core.utils.exceptions.DecodeException: Unknown instruction: not-
     boolean readLPw(List<UserInfo> users) {
         int type;
         InputStream inputStream = null;
-        if (this.mBackupSettingsFilename.exists()) {
+        XmlPullParser storeParser = this.mSettingsStore.openDocument();
+        if (storeParser != null && !this.mUseSettingsStore && exportSettingsStoreLPw()) {
+            storeParser = null;
+        }
+        if (storeParser == null && this.mBackupSettingsFilename.exists()) {
             try {
                 InputStream fileInputStream = new FileInputStream(this.mBackupSettingsFilename);
                 try {
@@ -3037,7 +3125,7 @@ Caused by: jadx.core.utils.exceptions.DecodeException: Unknown instruction: not-
         this.mPastSignatures.clear();
         this.mKeySetRefs.clear();
         this.mInstallerPackages.clear();
-        if (inputStream == null) {
+        if (inputStream == null && storeParser == null) {
             try {
                 if (this.mSettingsFilename.exists()) {
                     inputStream = new FileInputStream(this.mSettingsFilename);
@@ -3078,8 +3166,14 @@ Caused by: jadx.core.utils.exceptions.DecodeException: Unknown instruction: not-
                 Log.wtf("PackageManager", "Error reading package manager settings", e5);
             }
         }
-        XmlPullParser parser = Xml.newPullParser();
-        parser.setInput(inputStream, StandardCharsets.UTF_8.name());
+        XmlPullParser parser;
+        if (storeParser != null) {
+            this.mReadMessages.append("Reading from package settings store\n");
+            parser = storeParser;
+        } else {
+            parser = Xml.newPullParser();
+            parser.setInput(inputStream, StandardCharsets.UTF_8.name());
+        }
         do {
             type = parser.next();
             if (type == 2) {
@@ -3096,7 +3190,7 @@ Caused by: jadx.core.utils.exceptions.DecodeException: Unknown instruction: not-
         while (true) {
             type = parser.next();
             if (type == 1 || (type == CURRENT_DATABASE_VERSION && parser.getDepth() <= outerDepth)) {
-                inputStream.close();
+                IoUtils.closeQuietly(inputStream);
             } else if (!(type == CURRENT_DATABASE_VERSION || type == 4)) {
                 String tagName = parser.getName();
                 if (tagName.equals(HwBroadcastRadarUtil.KEY_PACKAGE)) {
@@ -3215,7 +3309,7 @@ Caused by: jadx.core.utils.exceptions.DecodeException: Unknown instruction: not-
                 }
             }
         }
-        inputStream.close();
+        IoUtils.closeQuietly(inputStream);
         int N = this.mPendingPackages.size();
         for (int i = 0; i < N; i++) {
             PackageSettingBase pp = (PendingPackage) this.mPendingPackages.get(i);
@@ -0,0 +1,223 @@
+package com.huawei.g11n.tmr;
+
+import com.huawei.g11n.tmr.address.AddressTmr;
+import com.huawei.g11n.tmr.phonenumber.AbstractPhoneNumberMatcher;
+import com.huawei.g11n.tmr.phonenumber.PhoneNumberMatcher;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs date, phone number and address detection over many messages on a fork-join pool.
+ * Each worker thread keeps its own date handle and phone number matcher.
+ */
+public class BatchTmr {
+    private static final int DEFAULT_WINDOW = 256;
+    private static final int SEQUENTIAL_THRESHOLD = 8;
+    public static final int TYPE_ADDRESS = 4;
+    public static final int TYPE_ALL = 7;
+    public static final int TYPE_DATE = 1;
+    public static final int TYPE_PHONE = 2;
+    private final AtomicLong addressCount;
+    private final String country;
+    private final AtomicLong dateCount;
+    private final ThreadLocal<AbstractDateTmrHandle> dateHandles;
+    private final AtomicLong elapsedNanos;
+    private final Locale locale;
+    private final AtomicLong messageCount;
+    private final AtomicLong phoneCount;
+    private final ThreadLocal<AbstractPhoneNumberMatcher> phoneMatchers;
+    private final ForkJoinPool pool;
+    private final int types;
+
+    public interface ResultListener {
+        void onResult(int i, CharSequence charSequence, Result result);
+    }
+
+    /**
+     * Extraction results of one message, in the formats of the single-message APIs: the first
+     * element of each array is the number of entities found. The arrays are the ones returned by
+     * the detectors, held as they are; a Result itself is reused for later messages.
+     */
+    public static class Result {
+        int[] addresses;
+        int[] dates;
+        int[] phoneNumbers;
+
+        /**
+         * Returns a result that keeps these arrays after this one is reused.
+         */
+        public Result copy() {
+            Result result = new Result();
+            result.dates = this.dates;
+            result.phoneNumbers = this.phoneNumbers;
+            result.addresses = this.addresses;
+            return result;
+        }
+
+        public int[] getDates() {
+            return this.dates;
+        }
+
+        public int[] getPhoneNumbers() {
+            return this.phoneNumbers;
+        }
+
+        public int[] getAddresses() {
+            return this.addresses;
+        }
+    }
+
+    private class ExtractAction extends RecursiveAction {
+        private final int from;
+        private final List<CharSequence> messages;
+        private final Result[] results;
+        private final int to;
+
+        ExtractAction(List<CharSequence> list, Result[] resultArr, int i, int i2) {
+            this.messages = list;
+            this.results = resultArr;
+            this.from = i;
+            this.to = i2;
+        }
+
+        protected void compute() {
+            if (this.to - this.from <= BatchTmr.SEQUENTIAL_THRESHOLD) {
+                for (int i = this.from; i < this.to; i++) {
+                    BatchTmr.this.extractOne((CharSequence) this.messages.get(i), this.results[i]);
+                }
+                return;
+            }
+            int i2 = (this.from + this.to) >>> 1;
+            RecursiveAction.invokeAll(new ExtractAction(this.messages, this.results, this.from, i2), new ExtractAction(this.messages, this.results, i2, this.to));
+        }
+    }
+
+    public BatchTmr(String str, Locale locale, int i, int i2) {
+        this.country = str;
+        this.locale = locale;
+        this.types = i;
+        this.pool = new ForkJoinPool(i2);
+        this.dateHandles = new ThreadLocal<AbstractDateTmrHandle>() {
+            protected AbstractDateTmrHandle initialValue() {
+                return DateTmr.newHandle(BatchTmr.this.locale);
+            }
+        };
+        this.phoneMatchers = new ThreadLocal<AbstractPhoneNumberMatcher>() {
+            protected AbstractPhoneNumberMatcher initialValue() {
+                return new PhoneNumberMatcher(BatchTmr.this.country);
+            }
+        };
+        this.messageCount = new AtomicLong();
+        this.dateCount = new AtomicLong();
+        this.phoneCount = new AtomicLong();
+        this.addressCount = new AtomicLong();
+        this.elapsedNanos = new AtomicLong();
+    }
+
+    public BatchTmr(String str, Locale locale) {
+        this(str, locale, TYPE_ALL, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Extracts all messages and returns copies of their results in input order.
+     */
+    public List<Result> extract(Iterable<? extends CharSequence> iterable) {
+        final List<Result> arrayList = new ArrayList();
+        extract(iterable, new ResultListener() {
+            public void onResult(int i, CharSequence charSequence, Result result) {
+                arrayList.add(result.copy());
+            }
+        });
+        return arrayList;
+    }
+
+    /**
+     * Streams the messages through the pool in fixed windows so that only one window of input
+     * and results is held at a time. The listener is called on the calling thread in input order.
+     * Its Result is only valid during the call: the results of a window are reset and reused for
+     * the next one.
+     */
+    public void extract(Iterable<? extends CharSequence> iterable, ResultListener resultListener) {
+        List arrayList = new ArrayList(DEFAULT_WINDOW);
+        Result[] resultArr = new Result[DEFAULT_WINDOW];
+        for (int i3 = 0; i3 < DEFAULT_WINDOW; i3++) {
+            resultArr[i3] = new Result();
+        }
+        int i = 0;
+        Iterator it = iterable.iterator();
+        while (it.hasNext()) {
+            arrayList.add((CharSequence) it.next());
+            if (arrayList.size() == DEFAULT_WINDOW || !it.hasNext()) {
+                runWindow(arrayList, resultArr);
+                for (int i2 = 0; i2 < arrayList.size(); i2++) {
+                    resultListener.onResult(i + i2, (CharSequence) arrayList.get(i2), resultArr[i2]);
+                }
+                i += arrayList.size();
+                arrayList.clear();
+            }
+        }
+    }
+
+    private void runWindow(List<CharSequence> list, Result[] resultArr) {
+        long nanoTime = System.nanoTime();
+        this.pool.invoke(new ExtractAction(list, resultArr, 0, list.size()));
+        this.elapsedNanos.addAndGet(System.nanoTime() - nanoTime);
+        this.messageCount.addAndGet((long) list.size());
+    }
+
+    void extractOne(CharSequence charSequence, Result result) {
+        String charSequence2 = charSequence == null ? "" : charSequence.toString();
+        if ((this.types & TYPE_DATE) != 0) {
+            int[] time = ((AbstractDateTmrHandle) this.dateHandles.get()).getTime(charSequence2);
+            result.dates = time;
+            this.dateCount.addAndGet((long) time[0]);
+        }
+        if ((this.types & TYPE_PHONE) != 0) {
+            int[] matchedPhoneNumber = ((AbstractPhoneNumberMatcher) this.phoneMatchers.get()).getMatchedPhoneNumber(charSequence2, this.country);
+            result.phoneNumbers = matchedPhoneNumber;
+            this.phoneCount.addAndGet((long) matchedPhoneNumber[0]);
+        }
+        if ((this.types & TYPE_ADDRESS) != 0) {
+            int[] addr = AddressTmr.getAddr(charSequence2);
+            result.addresses = addr;
+            this.addressCount.addAndGet((long) addr[0]);
+        }
+    }
+
+    public long getMessageCount() {
+        return this.messageCount.get();
+    }
+
+    public long getDateCount() {
+        return this.dateCount.get();
+    }
+
+    public long getPhoneNumberCount() {
+        return this.phoneCount.get();
+    }
+
+    public long getAddressCount() {
+        return this.addressCount.get();
+    }
+
+    public long getElapsedNanos() {
+        return this.elapsedNanos.get();
+    }
+
+    public double getMessagesPerSecond() {
+        long j = this.elapsedNanos.get();
+        if (j <= 0) {
+            return 0.0d;
+        }
+        return (((double) this.messageCount.get()) * 1.0E9d) / ((double) j);
+    }
+
+    public void shutdown() {
+        this.pool.shutdown();
+    }
+}
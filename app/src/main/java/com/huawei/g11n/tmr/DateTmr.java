@@ -3,9 +3,47 @@ package com.huawei.g11n.tmr;
 import com.huawei.g11n.tmr.datetime.utils.LocaleParam;
 import java.util.Date;
 import java.util.Locale;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Detects dates with one handle per locale. Handles are expensive to build, so the most
+ * recently used ones are cached. Lookups take no lock; a handle is built holding only the monitor
+ * of its own cache entry, so other locales are neither blocked nor rebuilt meanwhile.
+ */
 public class DateTmr {
-    private static AbstractDateTmrHandle instance;
+    private static final ConcurrentHashMap<String, HandleEntry> HANDLES = new ConcurrentHashMap();
+    private static final int MAX_CACHED_HANDLES = 4;
+    private static volatile HandleEntry lastEntry;
+
+    /**
+     * The cached handle of one locale, built by the first caller that needs it. lastUsed orders
+     * the entries for least recently used eviction.
+     */
+    private static final class HandleEntry {
+        private volatile AbstractDateTmrHandle handle;
+        volatile long lastUsed;
+        final String locale;
+
+        HandleEntry(String str) {
+            this.locale = str;
+            this.lastUsed = System.nanoTime();
+        }
+
+        AbstractDateTmrHandle getHandle() {
+            AbstractDateTmrHandle abstractDateTmrHandle = this.handle;
+            if (abstractDateTmrHandle == null) {
+                synchronized (this) {
+                    abstractDateTmrHandle = this.handle;
+                    if (abstractDateTmrHandle == null) {
+                        abstractDateTmrHandle = new DateTmrHandle(this.locale, DateTmr.calBkLocale(this.locale));
+                        this.handle = abstractDateTmrHandle;
+                    }
+                }
+            }
+            return abstractDateTmrHandle;
+        }
+    }
 
     static {
         /* JADX: method processing error */
@@ -34,27 +72,62 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
         throw new UnsupportedOperationException("Method not decompiled: com.huawei.g11n.tmr.DateTmr.<clinit>():void");
     }
 
-    private static synchronized AbstractDateTmrHandle getInstance() {
-        AbstractDateTmrHandle abstractDateTmrHandle;
-        synchronized (DateTmr.class) {
-            String calLocale = calLocale();
-            String calBkLocale = calBkLocale(calLocale);
-            if (instance == null) {
-                instance = new DateTmrHandle(calLocale, calBkLocale);
-            } else if (!instance.getLocale().equals(calLocale)) {
-                instance = new DateTmrHandle(calLocale, calBkLocale);
+    private static AbstractDateTmrHandle getInstance() {
+        return getInstance(calLocale(Locale.getDefault()));
+    }
+
+    private static AbstractDateTmrHandle getInstance(String str) {
+        HandleEntry handleEntry = lastEntry;
+        if (handleEntry == null || !handleEntry.locale.equals(str)) {
+            handleEntry = (HandleEntry) HANDLES.get(str);
+            if (handleEntry == null) {
+                HandleEntry handleEntry2 = new HandleEntry(str);
+                handleEntry = (HandleEntry) HANDLES.putIfAbsent(str, handleEntry2);
+                if (handleEntry == null) {
+                    handleEntry = handleEntry2;
+                    trimHandles(handleEntry);
+                }
+            }
+            lastEntry = handleEntry;
+        }
+        handleEntry.lastUsed = System.nanoTime();
+        return handleEntry.getHandle();
+    }
+
+    /**
+     * Evicts the least recently used entries, other than the one just added, until at most
+     * MAX_CACHED_HANDLES remain.
+     */
+    private static void trimHandles(HandleEntry handleEntry) {
+        while (HANDLES.size() > MAX_CACHED_HANDLES) {
+            Entry entry = null;
+            for (Entry entry2 : HANDLES.entrySet()) {
+                if (entry2.getValue() != handleEntry && (entry == null || ((HandleEntry) entry2.getValue()).lastUsed < ((HandleEntry) entry.getValue()).lastUsed)) {
+                    entry = entry2;
+                }
+            }
+            if (entry != null) {
+                HANDLES.remove(entry.getKey(), entry.getValue());
+            } else {
+                return;
             }
-            abstractDateTmrHandle = instance;
         }
-        return abstractDateTmrHandle;
+    }
+
+    /**
+     * Builds a handle for the locale that is not shared through the cache, for callers that
+     * keep one per thread.
+     */
+    static AbstractDateTmrHandle newHandle(Locale locale) {
+        String calLocale = calLocale(locale);
+        return new DateTmrHandle(calLocale, calBkLocale(calLocale));
     }
 
     private static String calBkLocale(String str) {
         return !str.equals("en") ? "en" : "zh_hans";
     }
 
-    private static String calLocale() {
-        Locale locale = Locale.getDefault();
+    private static String calLocale(Locale locale) {
         String language = locale.getLanguage();
         if (language.equals("in")) {
             language = "id";
@@ -82,4 +155,12 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
     public static Date[] convertDate(String str, long j) {
         return getInstance().convertDate(str, j);
     }
+
+    public static int[] getTime(String str, Locale locale) {
+        return getInstance(calLocale(locale)).getTime(str);
+    }
+
+    public static Date[] convertDate(String str, long j, Locale locale) {
+        return getInstance(calLocale(locale)).convertDate(str, j);
+    }
 }
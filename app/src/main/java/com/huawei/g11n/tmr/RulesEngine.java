@@ -13,15 +13,18 @@ public class RulesEngine {
     private String locale;
     private HashMap<Integer, Pattern> patterns;
     private HashMap<Integer, String> regexs;
+    private List<Integer> sortedIds;
 
     public RulesEngine(String str, HashMap<Integer, String> hashMap, HashMap<String, String> hashMap2, LocaleParam localeParam, LocaleParam localeParam2, boolean z) {
         this.locale = str;
         init(str, hashMap, hashMap2, localeParam, localeParam2, z);
+        sortIds();
     }
 
     public RulesEngine(String str, HashMap<Integer, String> hashMap, HashMap<String, String> hashMap2, LocaleParam localeParam, LocaleParam localeParam2) {
         this.locale = str;
         init(str, hashMap, hashMap2, localeParam, localeParam2, true);
+        sortIds();
     }
 
     public Pattern getPatterns(Integer num) {
@@ -96,12 +99,19 @@ public class RulesEngine {
         return this.regexs;
     }
 
+    private void sortIds() {
+        this.sortedIds = new ArrayList();
+        this.sortedIds.addAll(this.patterns.keySet());
+        Collections.sort(this.sortedIds);
+    }
+
+    /**
+     * Returns the matches of every rule, by ascending rule id. The ids are sorted once when the
+     * engine is built rather than on every call.
+     */
     public List<Match> match(String str) {
         List<Match> arrayList = new ArrayList();
-        List<Integer> arrayList2 = new ArrayList();
-        arrayList2.addAll(this.patterns.keySet());
-        Collections.sort(arrayList2);
-        for (Integer num : arrayList2) {
+        for (Integer num : this.sortedIds) {
             Matcher matcher = ((Pattern) this.patterns.get(num)).matcher(str);
             while (matcher.find()) {
                 arrayList.add(new Match(matcher.start(), matcher.end(), String.valueOf(num)));
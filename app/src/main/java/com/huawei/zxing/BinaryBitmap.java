@@ -14,6 +14,10 @@ public final class BinaryBitmap {
         this.binarizer = binarizer;
     }
 
+    Binarizer getBinarizer() {
+        return this.binarizer;
+    }
+
     public int getWidth() {
         return this.binarizer.getWidth();
     }
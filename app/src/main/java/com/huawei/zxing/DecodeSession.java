@@ -0,0 +1,137 @@
+package com.huawei.zxing;
+
+import android.graphics.Rect;
+import com.huawei.zxing.common.BitArray;
+import com.huawei.zxing.common.BitMatrix;
+import com.huawei.zxing.common.GlobalHistogramBinarizer;
+import com.huawei.zxing.common.HybridBinarizer;
+
+/**
+ * Decodes preview frames of one fixed crop size. The luminance, black point and bit matrix
+ * buffers are allocated once and reused for every frame, so binarization does not allocate.
+ * A session is not thread safe and must only be used by one decoding thread.
+ */
+public final class DecodeSession {
+    private final BinaryBitmap bitmap;
+    private final int[][] blackPoints;
+    private final int height;
+    private final byte[] luminances;
+    private final BitMatrix matrix;
+    private final MultiFormatReader reader;
+    private final FrameLuminanceSource source;
+    private final int width;
+
+    private final class FrameLuminanceSource extends LuminanceSource {
+        FrameLuminanceSource() {
+            super(DecodeSession.this.width, DecodeSession.this.height);
+        }
+
+        public byte[] getRow(int y, byte[] row) {
+            if (y < 0 || y >= getHeight()) {
+                throw new IllegalArgumentException("Requested row is outside the image: " + y);
+            }
+            int width = getWidth();
+            if (row == null || row.length < width) {
+                row = new byte[width];
+            }
+            System.arraycopy(DecodeSession.this.luminances, y * width, row, 0, width);
+            return row;
+        }
+
+        public byte[] getMatrix() {
+            return DecodeSession.this.luminances;
+        }
+
+        public boolean isCropSupported() {
+            return true;
+        }
+
+        public LuminanceSource crop(int left, int top, int width, int height) {
+            return new PlanarYUVLuminanceSource(DecodeSession.this.luminances, getWidth(), getHeight(), left, top, width, height, false);
+        }
+
+        public boolean isRotateSupported() {
+            return true;
+        }
+
+        public LuminanceSource rotateCounterClockwise() {
+            int width = getWidth();
+            int height = getHeight();
+            byte[] rotated = new byte[(width * height)];
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    rotated[(((width - 1) - x) * height) + y] = DecodeSession.this.luminances[(y * width) + x];
+                }
+            }
+            return new PlanarYUVLuminanceSource(rotated, height, width, 0, 0, height, width, false);
+        }
+    }
+
+    private final class FrameBinarizer extends Binarizer {
+        private final GlobalHistogramBinarizer rowBinarizer;
+
+        FrameBinarizer(LuminanceSource source) {
+            super(source);
+            this.rowBinarizer = new GlobalHistogramBinarizer(source);
+        }
+
+        public BitArray getBlackRow(int y, BitArray row) throws NotFoundException {
+            return this.rowBinarizer.getBlackRow(y, row);
+        }
+
+        public BitMatrix getBlackMatrix() {
+            return DecodeSession.this.matrix;
+        }
+
+        public Binarizer createBinarizer(LuminanceSource source) {
+            return new HybridBinarizer(source);
+        }
+    }
+
+    public DecodeSession(MultiFormatReader reader, int width, int height) {
+        if (reader == null) {
+            throw new IllegalArgumentException("Reader must be non-null.");
+        } else if (HybridBinarizer.isSupportedSize(width, height)) {
+            this.reader = reader;
+            this.width = width;
+            this.height = height;
+            this.luminances = new byte[(width * height)];
+            this.blackPoints = HybridBinarizer.createBlackPoints(width, height);
+            this.matrix = new BitMatrix(width, height);
+            this.source = new FrameLuminanceSource();
+            this.bitmap = new BinaryBitmap(new FrameBinarizer(this.source));
+        } else {
+            throw new IllegalArgumentException("Frame is too small for a decode session: " + width + "x" + height);
+        }
+    }
+
+    public boolean accepts(int width, int height) {
+        return this.width == width && this.height == height;
+    }
+
+    public Result decode(byte[] data, int dataWidth, int dataHeight, Rect rect) {
+        if (data == null || rect == null) {
+            return null;
+        }
+        if (!accepts(rect.width(), rect.height())) {
+            throw new IllegalArgumentException("Crop rectangle does not match the session size.");
+        } else if (rect.left + this.width > dataWidth || rect.top + this.height > dataHeight) {
+            throw new IllegalArgumentException("Crop rectangle does not fit within image data.");
+        } else if (!this.reader.awaitPendingTasks()) {
+            return null;
+        } else {
+            int inputOffset = (rect.top * dataWidth) + rect.left;
+            for (int y = 0; y < this.height; y++) {
+                System.arraycopy(data, inputOffset, this.luminances, this.width * y, this.width);
+                inputOffset += dataWidth;
+            }
+            this.matrix.clear();
+            HybridBinarizer.binarize(this.luminances, this.width, this.height, this.blackPoints, this.matrix);
+            try {
+                return this.reader.decodeWithState(this.bitmap);
+            } catch (ReaderException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -4,6 +4,7 @@ import android.graphics.Bitmap;
 import android.graphics.Rect;
 import android.util.Log;
 import com.huawei.zxing.aztec.AztecReader;
+import com.huawei.zxing.common.BitMatrix;
 import com.huawei.zxing.common.HybridBinarizer;
 import com.huawei.zxing.datamatrix.DataMatrixReader;
 import com.huawei.zxing.maxicode.MaxiCodeReader;
@@ -13,11 +14,80 @@ import com.huawei.zxing.pdf417.PDF417Reader;
 import com.huawei.zxing.qrcode.QRCodeReader;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public final class MultiFormatReader implements Reader {
     private Map<DecodeHintType, ?> hints;
+    private ExecutorService parallelExecutor;
+    private CountDownLatch pendingTasks;
+    private boolean qrTracking;
     private Reader[] readers;
+    private DecodeSession session;
+
+    /**
+     * Decodes one frame with one reader. A task that is claimed before it starts is skipped;
+     * every task counts down the frame's latch exactly once.
+     */
+    private static final class ReaderTask implements Callable<Result> {
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final Map<DecodeHintType, ?> hints;
+        private final BinaryBitmap image;
+        private final CountDownLatch latch;
+        private final Reader reader;
+
+        ReaderTask(Reader reader, BinaryBitmap image, Map<DecodeHintType, ?> hints, CountDownLatch latch) {
+            this.reader = reader;
+            this.image = image;
+            this.hints = hints;
+            this.latch = latch;
+        }
+
+        boolean claim() {
+            if (!this.claimed.compareAndSet(false, true)) {
+                return false;
+            }
+            this.latch.countDown();
+            return true;
+        }
+
+        public Result call() throws Exception {
+            if (!this.claimed.compareAndSet(false, true)) {
+                return null;
+            }
+            try {
+                return this.reader.decode(this.image, this.hints);
+            } finally {
+                this.latch.countDown();
+            }
+        }
+    }
+
+    public void setParallelExecutor(ExecutorService executor) {
+        this.parallelExecutor = executor;
+    }
+
+    public void setQRTracking(boolean tracking) {
+        this.qrTracking = tracking;
+        applyQRTracking();
+    }
+
+    private void applyQRTracking() {
+        if (this.readers != null) {
+            for (Reader reader : this.readers) {
+                if (reader instanceof QRCodeReader) {
+                    ((QRCodeReader) reader).setTrackingEnabled(this.qrTracking);
+                }
+            }
+        }
+    }
 
     public Result decode(BinaryBitmap image) throws NotFoundException {
         setHints(null);
@@ -40,6 +110,12 @@ public final class MultiFormatReader implements Reader {
         if (data == null || rect == null) {
             return null;
         }
+        if (HybridBinarizer.isSupportedSize(rect.width(), rect.height())) {
+            if (this.session == null || !this.session.accepts(rect.width(), rect.height())) {
+                this.session = new DecodeSession(this, rect.width(), rect.height());
+            }
+            return this.session.decode(data, width, height, rect);
+        }
         Result rawResult = null;
         PlanarYUVLuminanceSource source = new PlanarYUVLuminanceSource(data, width, height, rect.left, rect.top, rect.width(), rect.height(), false);
         if (source != null) {
@@ -110,6 +186,7 @@ public final class MultiFormatReader implements Reader {
             readers.add(new MultiFormatOneDReader(hints));
         }
         this.readers = (Reader[]) readers.toArray(new Reader[readers.size()]);
+        applyQRTracking();
     }
 
     public void reset() {
@@ -120,14 +197,53 @@ public final class MultiFormatReader implements Reader {
         }
     }
 
+    /**
+     * Waits for the readers that lost the last parallel decode but were already running. They
+     * still read that frame's matrix and use the reader instances, so a new frame must not be
+     * binarized or decoded before they finish. Returns false if the wait was interrupted.
+     */
+    boolean awaitPendingTasks() {
+        CountDownLatch latch = this.pendingTasks;
+        if (latch == null) {
+            return true;
+        }
+        try {
+            latch.await();
+            this.pendingTasks = null;
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
     private Result decodeInternal(BinaryBitmap image) throws NotFoundException {
+        if (!awaitPendingTasks()) {
+            throw NotFoundException.getNotFoundInstance();
+        }
+        if (this.readers != null && this.readers.length > 1 && this.parallelExecutor != null) {
+            BitMatrix matrix = null;
+            try {
+                matrix = image.getBlackMatrix();
+            } catch (NotFoundException e) {
+            }
+            if (matrix != null) {
+                try {
+                    return decodeParallel(image, matrix);
+                } catch (RejectedExecutionException e2) {
+                    Log.w("MultiFormatReader", "parallel decode rejected, decoding sequentially");
+                    if (!awaitPendingTasks()) {
+                        throw NotFoundException.getNotFoundInstance();
+                    }
+                }
+            }
+        }
         if (this.readers != null) {
             Reader[] readerArr = this.readers;
             int i = 0;
             int length = readerArr.length;
             while (i < length) {
                 Reader reader = readerArr[i];
-                Log.e("MultiFormatReader", "MultFormatReader current reader=" + reader);
                 try {
                     return reader.decode(image, this.hints);
                 } catch (ReaderException e) {
@@ -137,4 +253,48 @@ public final class MultiFormatReader implements Reader {
         }
         throw NotFoundException.getNotFoundInstance();
     }
+
+    /**
+     * Runs every reader on the executor and returns the result of the first reader, in reader
+     * order, that decodes the frame, as the sequential loop would. If submitting is rejected,
+     * the tasks already submitted are claimed or left pending like the losers of a decode, and
+     * the caller must await them before it uses the readers again.
+     */
+    private Result decodeParallel(BinaryBitmap image, BitMatrix matrix) throws NotFoundException {
+        Binarizer binarizer = image.getBinarizer();
+        CountDownLatch latch = new CountDownLatch(this.readers.length);
+        ReaderTask[] tasks = new ReaderTask[this.readers.length];
+        for (int i = 0; i < tasks.length; i++) {
+            Reader reader = this.readers[i];
+            tasks[i] = new ReaderTask(reader, new BinaryBitmap(new SharedMatrixBinarizer(binarizer, matrix, reader instanceof PDF417Reader)), this.hints, latch);
+        }
+        List<Future<Result>> futures = new ArrayList(tasks.length);
+        try {
+            for (ReaderTask task : tasks) {
+                futures.add(this.parallelExecutor.submit(task));
+            }
+            for (int i2 = 0; i2 < futures.size(); i2++) {
+                try {
+                    return (Result) ((Future) futures.get(i2)).get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw ((RuntimeException) cause);
+                    } else if (cause instanceof Error) {
+                        throw ((Error) cause);
+                    }
+                }
+            }
+        } catch (InterruptedException e2) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (int i3 = 0; i3 < tasks.length; i3++) {
+                if (tasks[i3].claim() && i3 < futures.size()) {
+                    ((Future) futures.get(i3)).cancel(false);
+                }
+            }
+            this.pendingTasks = latch;
+        }
+        throw NotFoundException.getNotFoundInstance();
+    }
 }
@@ -0,0 +1,37 @@
+package com.huawei.zxing;
+
+import com.huawei.zxing.common.BitArray;
+import com.huawei.zxing.common.BitMatrix;
+
+/**
+ * Hands out a matrix that was binarized once so that several readers can work on the same frame
+ * concurrently. Row access is serialized on the original binarizer, whose row buffers are shared.
+ */
+final class SharedMatrixBinarizer extends Binarizer {
+    private final boolean copyMatrix;
+    private final Binarizer delegate;
+    private final BitMatrix matrix;
+
+    SharedMatrixBinarizer(Binarizer delegate, BitMatrix matrix, boolean copyMatrix) {
+        super(delegate.getLuminanceSource());
+        this.delegate = delegate;
+        this.matrix = matrix;
+        this.copyMatrix = copyMatrix;
+    }
+
+    public BitMatrix getBlackMatrix() {
+        return this.copyMatrix ? this.matrix.copy() : this.matrix;
+    }
+
+    public BitArray getBlackRow(int y, BitArray row) throws NotFoundException {
+        BitArray blackRow;
+        synchronized (this.delegate) {
+            blackRow = this.delegate.getBlackRow(y, row);
+        }
+        return blackRow;
+    }
+
+    public Binarizer createBinarizer(LuminanceSource source) {
+        return this.delegate.createBinarizer(source);
+    }
+}
@@ -20,6 +20,13 @@ public final class BitMatrix {
         this.bits = new int[(this.rowSize * height)];
     }
 
+    private BitMatrix(int width, int height, int rowSize, int[] bits) {
+        this.width = width;
+        this.height = height;
+        this.rowSize = rowSize;
+        this.bits = bits;
+    }
+
     public boolean get(int x, int y) {
         if (((this.bits[(this.rowSize * y) + (x >> 5)] >>> (x & 31)) & 1) != 0) {
             return true;
@@ -191,6 +198,10 @@ public final class BitMatrix {
         return hash;
     }
 
+    public BitMatrix copy() {
+        return new BitMatrix(this.width, this.height, this.rowSize, (int[]) this.bits.clone());
+    }
+
     public String toString() {
         StringBuilder result = new StringBuilder(this.height * (this.width + 1));
         for (int y = 0; y < this.height; y++) {
@@ -28,18 +28,8 @@ public final class HybridBinarizer extends GlobalHistogramBinarizer {
         if (width < MINIMUM_DIMENSION || height < MINIMUM_DIMENSION) {
             this.matrix = super.getBlackMatrix();
         } else {
-            byte[] luminances = source.getMatrix();
-            int subWidth = width >> BLOCK_SIZE_POWER;
-            if ((width & BLOCK_SIZE_MASK) != 0) {
-                subWidth++;
-            }
-            int subHeight = height >> BLOCK_SIZE_POWER;
-            if ((height & BLOCK_SIZE_MASK) != 0) {
-                subHeight++;
-            }
-            int[][] blackPoints = calculateBlackPoints(luminances, subWidth, subHeight, width, height);
             BitMatrix newMatrix = new BitMatrix(width, height);
-            calculateThresholdForBlock(luminances, subWidth, subHeight, width, height, blackPoints, newMatrix);
+            binarize(source.getMatrix(), width, height, createBlackPoints(width, height), newMatrix);
             this.matrix = newMatrix;
         }
         return this.matrix;
@@ -49,6 +39,33 @@ public final class HybridBinarizer extends GlobalHistogramBinarizer {
         return new HybridBinarizer(source);
     }
 
+    public static boolean isSupportedSize(int width, int height) {
+        return width >= MINIMUM_DIMENSION && height >= MINIMUM_DIMENSION;
+    }
+
+    public static int[][] createBlackPoints(int width, int height) {
+        return (int[][]) Array.newInstance(Integer.TYPE, new int[]{subSize(height), subSize(width)});
+    }
+
+    /**
+     * Binarizes luminances into matrix using caller-owned buffers, so that frames of a fixed size
+     * can be processed without allocation. The matrix is expected to be clear.
+     */
+    public static void binarize(byte[] luminances, int width, int height, int[][] blackPoints, BitMatrix matrix) {
+        int subWidth = subSize(width);
+        int subHeight = subSize(height);
+        calculateBlackPoints(luminances, subWidth, subHeight, width, height, blackPoints);
+        calculateThresholdForBlock(luminances, subWidth, subHeight, width, height, blackPoints, matrix);
+    }
+
+    private static int subSize(int dimension) {
+        int sub = dimension >> BLOCK_SIZE_POWER;
+        if ((dimension & BLOCK_SIZE_MASK) != 0) {
+            return sub + 1;
+        }
+        return sub;
+    }
+
     private static void calculateThresholdForBlock(byte[] luminances, int subWidth, int subHeight, int width, int height, int[][] blackPoints, BitMatrix matrix) {
         for (int y = 0; y < subHeight; y++) {
             int yoffset = y << BLOCK_SIZE_POWER;
@@ -95,8 +112,7 @@ public final class HybridBinarizer extends GlobalHistogramBinarizer {
         }
     }
 
-    private static int[][] calculateBlackPoints(byte[] luminances, int subWidth, int subHeight, int width, int height) {
-        int[][] blackPoints = (int[][]) Array.newInstance(Integer.TYPE, new int[]{subHeight, subWidth});
+    private static void calculateBlackPoints(byte[] luminances, int subWidth, int subHeight, int width, int height, int[][] blackPoints) {
         for (int y = 0; y < subHeight; y++) {
             int yoffset = y << BLOCK_SIZE_POWER;
             int maxYOffset = height - 8;
@@ -155,6 +171,5 @@ public final class HybridBinarizer extends GlobalHistogramBinarizer {
                 x++;
             }
         }
-        return blackPoints;
     }
 }
@@ -1,15 +1,15 @@
 package com.huawei.zxing.common.reedsolomon;
 
 public final class GenericGF {
-    public static final GenericGF AZTEC_DATA_10 = null;
-    public static final GenericGF AZTEC_DATA_12 = null;
-    public static final GenericGF AZTEC_DATA_6 = null;
-    public static final GenericGF AZTEC_DATA_8 = null;
-    public static final GenericGF AZTEC_PARAM = null;
-    public static final GenericGF DATA_MATRIX_FIELD_256 = null;
+    public static final GenericGF AZTEC_DATA_10;
+    public static final GenericGF AZTEC_DATA_12;
+    public static final GenericGF AZTEC_DATA_6;
+    public static final GenericGF AZTEC_DATA_8;
+    public static final GenericGF AZTEC_PARAM;
+    public static final GenericGF DATA_MATRIX_FIELD_256;
     private static final int INITIALIZATION_THRESHOLD = 0;
-    public static final GenericGF MAXICODE_FIELD_64 = null;
-    public static final GenericGF QR_CODE_FIELD_256 = null;
+    public static final GenericGF MAXICODE_FIELD_64;
+    public static final GenericGF QR_CODE_FIELD_256;
     private int[] expTable;
     private final int generatorBase;
     private boolean initialized;
@@ -20,32 +20,14 @@ public final class GenericGF {
     private GenericGFPoly zero;
 
     static {
-        /* JADX: method processing error */
-/*
-        Error: jadx.core.utils.exceptions.DecodeException: Load method exception in method: com.huawei.zxing.common.reedsolomon.GenericGF.<clinit>():void
-	at jadx.core.dex.nodes.MethodNode.load(MethodNode.java:113)
-	at jadx.core.dex.nodes.ClassNode.load(ClassNode.java:256)
-	at jadx.core.ProcessClass.process(ProcessClass.java:34)
-	at jadx.core.ProcessClass.processDependencies(ProcessClass.java:59)
-	at jadx.core.ProcessClass.process(ProcessClass.java:42)
-	at jadx.api.JadxDecompiler.processClass(JadxDecompiler.java:281)
-	at jadx.api.JavaClass.decompile(JavaClass.java:59)
-	at jadx.api.JadxDecompiler$1.run(JadxDecompiler.java:161)
-Caused by: jadx.core.utils.exceptions.DecodeException:  in method: com.huawei.zxing.common.reedsolomon.GenericGF.<clinit>():void
-	at jadx.core.dex.instructions.InsnDecoder.decodeInsns(InsnDecoder.java:46)
-	at jadx.core.dex.nodes.MethodNode.load(MethodNode.java:98)
-	... 7 more
-Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
-	at com.android.dx.io.OpcodeInfo.get(OpcodeInfo.java:1197)
-	at com.android.dx.io.OpcodeInfo.getFormat(OpcodeInfo.java:1212)
-	at com.android.dx.io.instructions.DecodedInstruction.decode(DecodedInstruction.java:72)
-	at jadx.core.dex.instructions.InsnDecoder.decodeInsns(InsnDecoder.java:43)
-	... 8 more
-*/
-        /*
-        // Can't load method instructions.
-        */
-        throw new UnsupportedOperationException("Method not decompiled: com.huawei.zxing.common.reedsolomon.GenericGF.<clinit>():void");
+        AZTEC_DATA_12 = new GenericGF(4201, 4096, 1);
+        AZTEC_DATA_10 = new GenericGF(1033, 1024, 1);
+        AZTEC_DATA_6 = new GenericGF(67, 64, 1);
+        AZTEC_PARAM = new GenericGF(19, 16, 1);
+        QR_CODE_FIELD_256 = new GenericGF(285, 256, 0);
+        DATA_MATRIX_FIELD_256 = new GenericGF(301, 256, 1);
+        AZTEC_DATA_8 = DATA_MATRIX_FIELD_256;
+        MAXICODE_FIELD_64 = AZTEC_DATA_6;
     }
 
     public GenericGF(int primitive, int size, int b) {
@@ -107,6 +89,16 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
         }
     }
 
+    int[] getExpTable() {
+        checkInit();
+        return this.expTable;
+    }
+
+    int[] getLogTable() {
+        checkInit();
+        return this.logTable;
+    }
+
     static int addOrSubtract(int a, int b) {
         return a ^ b;
     }
@@ -1,5 +1,12 @@
 package com.huawei.zxing.common.reedsolomon;
 
+import java.util.Arrays;
+
+/**
+ * Reed-Solomon decoder that works on the field's log/exp tables directly. Polynomials are kept in
+ * int arrays indexed by degree, and the working arrays are allocated once per decode call rather
+ * than for every syndrome, division step and Chien search evaluation.
+ */
 public final class ReedSolomonDecoder {
     private final GenericGF field;
 
@@ -8,25 +15,15 @@ public final class ReedSolomonDecoder {
     }
 
     public void decode(int[] received, int twoS) throws ReedSolomonException {
-        int i;
-        GenericGFPoly poly = new GenericGFPoly(this.field, received);
-        int[] syndromeCoefficients = new int[twoS];
-        boolean noError = true;
-        for (i = 0; i < twoS; i++) {
-            int eval = poly.evaluateAt(this.field.exp(this.field.getGeneratorBase() + i));
-            syndromeCoefficients[(syndromeCoefficients.length - 1) - i] = eval;
-            if (eval != 0) {
-                noError = false;
-            }
-        }
-        if (!noError) {
-            GenericGFPoly syndrome = new GenericGFPoly(this.field, syndromeCoefficients);
-            GenericGFPoly[] sigmaOmega = runEuclideanAlgorithm(this.field.buildMonomial(twoS, 1), syndrome, twoS);
-            GenericGFPoly sigma = sigmaOmega[0];
-            GenericGFPoly omega = sigmaOmega[1];
-            int[] errorLocations = findErrorLocations(sigma);
-            int[] errorMagnitudes = findErrorMagnitudes(omega, errorLocations);
-            for (i = 0; i < errorLocations.length; i++) {
+        int[] expTable = this.field.getExpTable();
+        int[] logTable = this.field.getLogTable();
+        int order = this.field.getSize() - 1;
+        int[] syndromes = new int[twoS];
+        if (computeSyndromes(received, syndromes, expTable, logTable, order)) {
+            int[][] sigmaOmega = runEuclideanAlgorithm(syndromes, twoS, expTable, logTable, order);
+            int[] errorLocations = findErrorLocations(sigmaOmega[0], expTable, logTable, order);
+            int[] errorMagnitudes = findErrorMagnitudes(sigmaOmega[1], errorLocations, expTable, logTable, order);
+            for (int i = 0; i < errorLocations.length; i++) {
                 int position = (received.length - 1) - this.field.log(errorLocations[i]);
                 if (position < 0) {
                     throw new ReedSolomonException("Bad error location");
@@ -36,59 +33,143 @@ public final class ReedSolomonDecoder {
         }
     }
 
-    private GenericGFPoly[] runEuclideanAlgorithm(GenericGFPoly a, GenericGFPoly b, int R) throws ReedSolomonException {
-        if (a.getDegree() < b.getDegree()) {
-            GenericGFPoly temp = a;
-            a = b;
-            b = temp;
+    /**
+     * Evaluates the received word at every generator root in a single pass over the codewords.
+     * Returns true if any syndrome is non-zero.
+     */
+    private boolean computeSyndromes(int[] received, int[] syndromes, int[] expTable, int[] logTable, int order) {
+        int twoS = syndromes.length;
+        int[] rootLogs = new int[twoS];
+        for (int i = 0; i < twoS; i++) {
+            rootLogs[i] = (this.field.getGeneratorBase() + i) % order;
+        }
+        for (int coefficient : received) {
+            for (int i = 0; i < twoS; i++) {
+                int syndrome = syndromes[i];
+                if (syndrome != 0) {
+                    int logSum = logTable[syndrome] + rootLogs[i];
+                    if (logSum >= order) {
+                        logSum -= order;
+                    }
+                    syndrome = expTable[logSum];
+                }
+                syndromes[i] = syndrome ^ coefficient;
+            }
+        }
+        for (int syndrome2 : syndromes) {
+            if (syndrome2 != 0) {
+                return true;
+            }
         }
-        GenericGFPoly rLast = a;
-        GenericGFPoly r = b;
-        GenericGFPoly tLast = this.field.getZero();
-        GenericGFPoly t = this.field.getOne();
-        while (r.getDegree() >= R / 2) {
-            GenericGFPoly rLastLast = rLast;
-            GenericGFPoly tLastLast = tLast;
+        return false;
+    }
+
+    private int[][] runEuclideanAlgorithm(int[] syndromes, int R, int[] expTable, int[] logTable, int order) throws ReedSolomonException {
+        int length = R + 1;
+        int[] rLast = new int[length];
+        rLast[R] = 1;
+        int rLastDegree = R;
+        int[] r = new int[length];
+        System.arraycopy(syndromes, 0, r, 0, R);
+        int rDegree = degreeOf(r, R - 1);
+        int[] tLast = new int[length];
+        int tLastDegree = 0;
+        int[] t = new int[length];
+        t[0] = 1;
+        int tDegree = 0;
+        int[] q = new int[length];
+        while (rDegree >= R / 2) {
+            int[] temp = rLast;
             rLast = r;
-            tLast = t;
-            if (r.isZero()) {
+            r = temp;
+            int tempDegree = rLastDegree;
+            rLastDegree = rDegree;
+            rDegree = tempDegree;
+            if (rLastDegree == 0 && rLast[0] == 0) {
                 throw new ReedSolomonException("r_{i-1} was zero");
             }
-            r = rLastLast;
-            GenericGFPoly q = this.field.getZero();
-            int denominatorLeadingTerm = rLast.getCoefficient(rLast.getDegree());
-            int dltInverse = this.field.inverse(denominatorLeadingTerm);
-            while (r.getDegree() >= rLast.getDegree() && !r.isZero()) {
-                int degreeDiff = r.getDegree() - rLast.getDegree();
-                int scale = this.field.multiply(r.getCoefficient(r.getDegree()), dltInverse);
-                q = q.addOrSubtract(this.field.buildMonomial(degreeDiff, scale));
-                r = r.addOrSubtract(rLast.multiplyByMonomial(degreeDiff, scale));
+            Arrays.fill(q, 0);
+            int qDegree = 0;
+            int dltInverse = this.field.inverse(rLast[rLastDegree]);
+            while (rDegree >= rLastDegree && (rDegree != 0 || r[0] != 0)) {
+                int degreeDiff = rDegree - rLastDegree;
+                int scale = multiply(r[rDegree], dltInverse, expTable, logTable, order);
+                q[degreeDiff] = q[degreeDiff] ^ scale;
+                if (degreeDiff > qDegree) {
+                    qDegree = degreeDiff;
+                }
+                for (int k = 0; k <= rLastDegree; k++) {
+                    int i = k + degreeDiff;
+                    r[i] = r[i] ^ multiply(rLast[k], scale, expTable, logTable, order);
+                }
+                rDegree = degreeOf(r, rDegree);
+            }
+            for (int i2 = 0; i2 <= qDegree; i2++) {
+                int qCoefficient = q[i2];
+                if (qCoefficient != 0) {
+                    for (int j = 0; j <= tDegree; j++) {
+                        int k2 = i2 + j;
+                        tLast[k2] = tLast[k2] ^ multiply(qCoefficient, t[j], expTable, logTable, order);
+                    }
+                }
             }
-            t = q.multiply(tLast).addOrSubtract(tLastLast);
-            if (r.getDegree() >= rLast.getDegree()) {
+            int newTDegree = degreeOf(tLast, Math.min(R, Math.max(qDegree + tDegree, tLastDegree)));
+            temp = tLast;
+            tLast = t;
+            t = temp;
+            tLastDegree = tDegree;
+            tDegree = newTDegree;
+            if (rDegree >= rLastDegree) {
                 throw new IllegalStateException("Division algorithm failed to reduce polynomial?");
             }
         }
-        int sigmaTildeAtZero = t.getCoefficient(0);
+        int sigmaTildeAtZero = t[0];
         if (sigmaTildeAtZero == 0) {
             throw new ReedSolomonException("sigmaTilde(0) was zero");
         }
         int inverse = this.field.inverse(sigmaTildeAtZero);
-        GenericGFPoly sigma = t.multiply(inverse);
-        GenericGFPoly omega = r.multiply(inverse);
-        return new GenericGFPoly[]{sigma, omega};
+        int[] sigma = new int[(tDegree + 1)];
+        for (int i3 = 0; i3 <= tDegree; i3++) {
+            sigma[i3] = multiply(t[i3], inverse, expTable, logTable, order);
+        }
+        int[] omega = new int[(rDegree + 1)];
+        for (int i4 = 0; i4 <= rDegree; i4++) {
+            omega[i4] = multiply(r[i4], inverse, expTable, logTable, order);
+        }
+        return new int[][]{sigma, omega};
     }
 
-    private int[] findErrorLocations(GenericGFPoly errorLocator) throws ReedSolomonException {
-        int numErrors = errorLocator.getDegree();
+    /**
+     * Chien search: the terms of the error locator are stepped from one power of alpha to the next
+     * in the log domain instead of evaluating the polynomial from scratch for each field element.
+     */
+    private int[] findErrorLocations(int[] errorLocator, int[] expTable, int[] logTable, int order) throws ReedSolomonException {
+        int numErrors = errorLocator.length - 1;
         if (numErrors == 1) {
-            return new int[]{errorLocator.getCoefficient(1)};
+            return new int[]{errorLocator[1]};
         }
         int[] result = new int[numErrors];
+        int[] terms = (int[]) errorLocator.clone();
         int e = 0;
-        for (int i = 1; i < this.field.getSize() && e < numErrors; i++) {
-            if (errorLocator.evaluateAt(i) == 0) {
-                result[e] = this.field.inverse(i);
+        for (int j = 0; j < order && e < numErrors; j++) {
+            if (j > 0) {
+                for (int k = 1; k <= numErrors; k++) {
+                    int term = terms[k];
+                    if (term != 0) {
+                        int logSum = logTable[term] + k;
+                        if (logSum >= order) {
+                            logSum -= order;
+                        }
+                        terms[k] = expTable[logSum];
+                    }
+                }
+            }
+            int sum = 0;
+            for (int term2 : terms) {
+                sum ^= term2;
+            }
+            if (sum == 0) {
+                result[e] = expTable[j == 0 ? 0 : order - j];
                 e++;
             }
         }
@@ -98,7 +179,7 @@ public final class ReedSolomonDecoder {
         throw new ReedSolomonException("Error locator degree does not match number of roots");
     }
 
-    private int[] findErrorMagnitudes(GenericGFPoly errorEvaluator, int[] errorLocations) {
+    private int[] findErrorMagnitudes(int[] errorEvaluator, int[] errorLocations, int[] expTable, int[] logTable, int order) {
         int s = errorLocations.length;
         int[] result = new int[s];
         for (int i = 0; i < s; i++) {
@@ -106,15 +187,38 @@ public final class ReedSolomonDecoder {
             int denominator = 1;
             for (int j = 0; j < s; j++) {
                 if (i != j) {
-                    int term = this.field.multiply(errorLocations[j], xiInverse);
-                    denominator = this.field.multiply(denominator, (term & 1) == 0 ? term | 1 : term & -2);
+                    int term = multiply(errorLocations[j], xiInverse, expTable, logTable, order);
+                    denominator = multiply(denominator, (term & 1) == 0 ? term | 1 : term & -2, expTable, logTable, order);
                 }
             }
-            result[i] = this.field.multiply(errorEvaluator.evaluateAt(xiInverse), this.field.inverse(denominator));
+            int evaluation = errorEvaluator[errorEvaluator.length - 1];
+            for (int k = errorEvaluator.length - 2; k >= 0; k--) {
+                evaluation = multiply(xiInverse, evaluation, expTable, logTable, order) ^ errorEvaluator[k];
+            }
+            result[i] = multiply(evaluation, this.field.inverse(denominator), expTable, logTable, order);
             if (this.field.getGeneratorBase() != 0) {
-                result[i] = this.field.multiply(result[i], xiInverse);
+                result[i] = multiply(result[i], xiInverse, expTable, logTable, order);
             }
         }
         return result;
     }
+
+    private static int degreeOf(int[] poly, int fromDegree) {
+        int degree = fromDegree;
+        while (degree > 0 && poly[degree] == 0) {
+            degree--;
+        }
+        return degree;
+    }
+
+    private static int multiply(int a, int b, int[] expTable, int[] logTable, int order) {
+        if (a == 0 || b == 0) {
+            return 0;
+        }
+        int logSum = logTable[a] + logTable[b];
+        if (logSum >= order) {
+            logSum -= order;
+        }
+        return expTable[logSum];
+    }
 }
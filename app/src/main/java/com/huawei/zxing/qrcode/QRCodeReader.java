@@ -7,6 +7,7 @@ import com.huawei.zxing.DecodeHintType;
 import com.huawei.zxing.FormatException;
 import com.huawei.zxing.NotFoundException;
 import com.huawei.zxing.Reader;
+import com.huawei.zxing.ReaderException;
 import com.huawei.zxing.Result;
 import com.huawei.zxing.ResultMetadataType;
 import com.huawei.zxing.ResultPoint;
@@ -21,7 +22,10 @@ import java.util.Map;
 
 public class QRCodeReader implements Reader {
     private static final ResultPoint[] NO_POINTS = null;
+    private static final float TRACKING_MARGIN = 0.5f;
     private final Decoder decoder;
+    private ResultPoint[] lastPoints;
+    private boolean trackingEnabled;
 
     static {
         /* JADX: method processing error */
@@ -68,9 +72,27 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
         DecoderResult decoderResult;
         ResultPoint[] points;
         if (hints == null || !hints.containsKey(DecodeHintType.PURE_BARCODE)) {
-            DetectorResult detectorResult = new Detector(image.getBlackMatrix()).detect(hints);
-            decoderResult = this.decoder.decode(detectorResult.getBits(), (Map) hints);
+            BitMatrix matrix = image.getBlackMatrix();
+            DetectorResult detectorResult = null;
+            decoderResult = null;
+            if (this.trackingEnabled && this.lastPoints != null) {
+                try {
+                    detectorResult = detectInRegion(matrix, hints, this.lastPoints);
+                    decoderResult = this.decoder.decode(detectorResult.getBits(), (Map) hints);
+                } catch (ReaderException e) {
+                    detectorResult = null;
+                    decoderResult = null;
+                }
+            }
+            if (decoderResult == null) {
+                this.lastPoints = null;
+                detectorResult = new Detector(matrix).detect(hints);
+                decoderResult = this.decoder.decode(detectorResult.getBits(), (Map) hints);
+            }
             points = detectorResult.getPoints();
+            if (this.trackingEnabled) {
+                this.lastPoints = (ResultPoint[]) points.clone();
+            }
         } else {
             decoderResult = this.decoder.decode(extractPureBits(image.getBlackMatrix()), (Map) hints);
             points = NO_POINTS;
@@ -91,6 +113,42 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
     }
 
     public void reset() {
+        this.lastPoints = null;
+    }
+
+    /**
+     * In tracking mode the finder pattern search of the next frame is limited to the area around
+     * the code found in the previous frame, falling back to a full search on a miss.
+     */
+    public void setTrackingEnabled(boolean trackingEnabled) {
+        this.trackingEnabled = trackingEnabled;
+        this.lastPoints = null;
+    }
+
+    public boolean isTrackingEnabled() {
+        return this.trackingEnabled;
+    }
+
+    private static DetectorResult detectInRegion(BitMatrix image, Map<DecodeHintType, ?> hints, ResultPoint[] previous) throws NotFoundException, FormatException {
+        float minX = Float.MAX_VALUE;
+        float minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE;
+        float maxY = -Float.MAX_VALUE;
+        for (ResultPoint point : previous) {
+            minX = Math.min(minX, point.getX());
+            minY = Math.min(minY, point.getY());
+            maxX = Math.max(maxX, point.getX());
+            maxY = Math.max(maxY, point.getY());
+        }
+        float margin = (Math.max(maxX - minX, maxY - minY) * TRACKING_MARGIN) + 8.0f;
+        int left = Math.max(0, (int) (minX - margin));
+        int top = Math.max(0, (int) (minY - margin));
+        int right = Math.min(image.getWidth(), ((int) (maxX + margin)) + 1);
+        int bottom = Math.min(image.getHeight(), ((int) (maxY + margin)) + 1);
+        if (left >= right || top >= bottom) {
+            throw NotFoundException.getNotFoundInstance();
+        }
+        return new Detector(image).detect(hints, left, top, right, bottom);
     }
 
     private static BitMatrix extractPureBits(BitMatrix image) throws NotFoundException {
@@ -43,6 +43,15 @@ public class Detector {
         return processFinderPatternInfo(new FinderPatternFinder(this.image, this.resultPointCallback).find(hints));
     }
 
+    public final DetectorResult detect(Map<DecodeHintType, ?> hints, int left, int top, int right, int bottom) throws NotFoundException, FormatException {
+        ResultPointCallback resultPointCallback = null;
+        if (hints != null) {
+            resultPointCallback = (ResultPointCallback) hints.get(DecodeHintType.NEED_RESULT_POINT_CALLBACK);
+        }
+        this.resultPointCallback = resultPointCallback;
+        return processFinderPatternInfo(new FinderPatternFinder(this.image, this.resultPointCallback).find(hints, left, top, right, bottom));
+    }
+
     protected final DetectorResult processFinderPatternInfo(FinderPatternInfo info) throws NotFoundException, FormatException {
         ResultPoint topLeft = info.getTopLeft();
         ResultPoint topRight = info.getTopRight();
@@ -78,24 +78,28 @@ public class FinderPatternFinder {
     }
 
     final FinderPatternInfo find(Map<DecodeHintType, ?> hints) throws NotFoundException {
+        return find(hints, 0, 0, this.image.getWidth(), this.image.getHeight());
+    }
+
+    final FinderPatternInfo find(Map<DecodeHintType, ?> hints, int left, int top, int right, int bottom) throws NotFoundException {
         boolean containsKey = hints != null ? hints.containsKey(DecodeHintType.TRY_HARDER) : false;
-        int maxI = this.image.getHeight();
-        int maxJ = this.image.getWidth();
-        int iSkip = (maxI * MIN_SKIP) / 228;
+        int maxI = bottom;
+        int maxJ = right;
+        int iSkip = ((bottom - top) * MIN_SKIP) / 228;
         if (iSkip < MIN_SKIP || containsKey) {
             iSkip = MIN_SKIP;
         }
         boolean done = false;
         int[] stateCount = new int[5];
-        int i = iSkip - 1;
-        while (i < maxI && !r2) {
+        int i = (top + iSkip) - 1;
+        while (i < maxI && !done) {
             stateCount[0] = 0;
             stateCount[1] = 0;
             stateCount[CENTER_QUORUM] = 0;
             stateCount[MIN_SKIP] = 0;
             stateCount[4] = 0;
             int currentState = 0;
-            int j = 0;
+            int j = left;
             while (j < maxJ) {
                 if (this.image.get(j, i)) {
                     if ((currentState & 1) == 1) {
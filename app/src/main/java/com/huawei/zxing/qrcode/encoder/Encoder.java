@@ -16,7 +16,12 @@ import huawei.android.widget.ViewDragHelper;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
 
 public final class Encoder {
     private static final /* synthetic */ int[] -com-huawei-zxing-qrcode-decoder-ModeSwitchesValues = null;
@@ -104,8 +109,42 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
     private Encoder() {
     }
 
-    private static int calculateMaskPenalty(ByteMatrix matrix) {
-        return ((MaskUtil.applyMaskPenaltyRule1(matrix) + MaskUtil.applyMaskPenaltyRule2(matrix)) + MaskUtil.applyMaskPenaltyRule3(matrix)) + MaskUtil.applyMaskPenaltyRule4(matrix);
+    private static final class MaskPenaltyTask extends RecursiveTask<Integer> {
+        private final int maskPattern;
+        private final PackedMaskPenalty maskPenalty;
+
+        MaskPenaltyTask(PackedMaskPenalty maskPenalty, int maskPattern) {
+            this.maskPenalty = maskPenalty;
+            this.maskPattern = maskPattern;
+        }
+
+        protected Integer compute() {
+            return Integer.valueOf(this.maskPenalty.copy().calculate(this.maskPattern));
+        }
+    }
+
+    private static final class EncodeTask extends RecursiveTask<QRCode> {
+        private final String content;
+        private final ErrorCorrectionLevel ecLevel;
+        private WriterException failure;
+        private final Map<EncodeHintType, ?> hints;
+        private final ForkJoinPool pool;
+
+        EncodeTask(String content, ErrorCorrectionLevel ecLevel, Map<EncodeHintType, ?> hints, ForkJoinPool pool) {
+            this.content = content;
+            this.ecLevel = ecLevel;
+            this.hints = hints;
+            this.pool = pool;
+        }
+
+        protected QRCode compute() {
+            try {
+                return Encoder.encode(this.content, this.ecLevel, this.hints, this.pool);
+            } catch (WriterException e) {
+                this.failure = e;
+                return null;
+            }
+        }
     }
 
     public static QRCode encode(String content, ErrorCorrectionLevel ecLevel) throws WriterException {
@@ -113,6 +152,38 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
     }
 
     public static QRCode encode(String content, ErrorCorrectionLevel ecLevel, Map<EncodeHintType, ?> hints) throws WriterException {
+        return encode(content, ecLevel, hints, null);
+    }
+
+    /**
+     * Encodes many contents on the given pool. Each symbol is a separate task, and its eight
+     * candidate masks are scored as subtasks on the same pool.
+     */
+    public static List<QRCode> encodeBatch(List<String> contents, final ErrorCorrectionLevel ecLevel, final Map<EncodeHintType, ?> hints, final ForkJoinPool pool) throws WriterException {
+        final List<EncodeTask> tasks = new ArrayList(contents.size());
+        for (String content : contents) {
+            tasks.add(new EncodeTask(content, ecLevel, hints, pool));
+        }
+        pool.invoke(new RecursiveAction() {
+            protected void compute() {
+                ForkJoinTask.invokeAll(tasks);
+            }
+        });
+        List<QRCode> codes = new ArrayList(tasks.size());
+        for (EncodeTask task : tasks) {
+            if (task.failure != null) {
+                throw task.failure;
+            }
+            codes.add((QRCode) task.getRawResult());
+        }
+        return codes;
+    }
+
+    /**
+     * Like encode(String, ErrorCorrectionLevel, Map), but scores the eight masks in parallel on the
+     * given pool. A null pool scores them one after another on the calling thread.
+     */
+    public static QRCode encode(String content, ErrorCorrectionLevel ecLevel, Map<EncodeHintType, ?> hints, ForkJoinPool pool) throws WriterException {
         String encoding;
         if (hints == null) {
             encoding = null;
@@ -150,7 +221,7 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
         qrCode.setVersion(version);
         int dimension = version.getDimensionForVersion();
         ByteMatrix matrix = new ByteMatrix(dimension, dimension);
-        int maskPattern = chooseMaskPattern(finalBits, ecLevel, version, matrix);
+        int maskPattern = chooseMaskPattern(finalBits, ecLevel, version, matrix, pool);
         qrCode.setMaskPattern(maskPattern);
         MatrixUtil.buildMatrix(finalBits, ecLevel, version, maskPattern, matrix);
         qrCode.setMatrix(matrix);
@@ -212,15 +283,38 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
         }
     }
 
-    private static int chooseMaskPattern(BitArray bits, ErrorCorrectionLevel ecLevel, Version version, ByteMatrix matrix) throws WriterException {
+    private static int chooseMaskPattern(BitArray bits, ErrorCorrectionLevel ecLevel, Version version, ByteMatrix matrix, ForkJoinPool pool) throws WriterException {
         int minPenalty = Integer.MAX_VALUE;
         int bestMaskPattern = -1;
-        for (int maskPattern = 0; maskPattern < 8; maskPattern++) {
-            MatrixUtil.buildMatrix(bits, ecLevel, version, maskPattern, matrix);
-            int penalty = calculateMaskPenalty(matrix);
-            if (penalty < minPenalty) {
-                minPenalty = penalty;
-                bestMaskPattern = maskPattern;
+        PackedMaskPenalty maskPenalty = PackedMaskPenalty.forSymbol(bits, ecLevel, version, matrix);
+        if (pool == null) {
+            for (int maskPattern = 0; maskPattern < 8; maskPattern++) {
+                int penalty = maskPenalty.calculate(maskPattern);
+                if (penalty < minPenalty) {
+                    minPenalty = penalty;
+                    bestMaskPattern = maskPattern;
+                }
+            }
+            return bestMaskPattern;
+        }
+        final List<MaskPenaltyTask> tasks = new ArrayList(8);
+        for (int maskPattern2 = 0; maskPattern2 < 8; maskPattern2++) {
+            tasks.add(new MaskPenaltyTask(maskPenalty, maskPattern2));
+        }
+        if (ForkJoinTask.getPool() == pool) {
+            ForkJoinTask.invokeAll(tasks);
+        } else {
+            pool.invoke(new RecursiveAction() {
+                protected void compute() {
+                    ForkJoinTask.invokeAll(tasks);
+                }
+            });
+        }
+        for (MaskPenaltyTask task : tasks) {
+            int penalty2 = ((Integer) task.getRawResult()).intValue();
+            if (penalty2 < minPenalty) {
+                minPenalty = penalty2;
+                bestMaskPattern = task.maskPattern;
             }
         }
         return bestMaskPattern;
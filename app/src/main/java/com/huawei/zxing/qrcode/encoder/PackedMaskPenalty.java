@@ -0,0 +1,379 @@
+package com.huawei.zxing.qrcode.encoder;
+
+import com.huawei.zxing.WriterException;
+import com.huawei.zxing.common.BitArray;
+import com.huawei.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.huawei.zxing.qrcode.decoder.Version;
+
+/**
+ * Computes the same mask penalty as the four MaskUtil rules, but on rows and columns packed into
+ * 64-bit words so that each rule is evaluated a word at a time. The packed buffers are sized for
+ * one matrix dimension and reused between calls; an instance must not be shared between threads.
+ *
+ * <p>An instance made by {@link #forSymbol} scores the eight masks of one symbol without building
+ * them: the symbol is laid out and packed once unmasked, and each mask is derived from it by
+ * flipping the data modules under the mask pattern a word at a time and rewriting the 30 format
+ * information modules.
+ */
+final class PackedMaskPenalty {
+    private static final int N1 = 3;
+    private static final int N2 = 3;
+    private static final int N3 = 40;
+    private static final int N4 = 10;
+    private static final int PATTERN_PERIOD = 12;
+    private long[][] baseColumns;
+    private long[][] baseRows;
+    private final long[][] columns;
+    private long[][] dataColumns;
+    private long[][] dataRows;
+    private final int dimension;
+    private long[][][] patternColumns;
+    private long[][][] patternRows;
+    private final long[][] rows;
+    private final long[] scratchA;
+    private final long[] scratchB;
+    private final long[] scratchC;
+    private final long[] scratchD;
+    private long[] typeInfoBits;
+    private int[] typeInfoX;
+    private int[] typeInfoY;
+    private final int words;
+
+    PackedMaskPenalty(int dimension) {
+        this.dimension = dimension;
+        this.words = (dimension + 63) >> 6;
+        this.rows = new long[dimension][this.words];
+        this.columns = new long[dimension][this.words];
+        this.scratchA = new long[this.words];
+        this.scratchB = new long[this.words];
+        this.scratchC = new long[this.words];
+        this.scratchD = new long[this.words];
+    }
+
+    /**
+     * Returns a scorer with its own buffers that shares the unmasked symbol of this one, so that
+     * masks can be scored on several threads.
+     */
+    PackedMaskPenalty copy() {
+        PackedMaskPenalty copy = new PackedMaskPenalty(this.dimension);
+        copy.baseRows = this.baseRows;
+        copy.baseColumns = this.baseColumns;
+        copy.dataRows = this.dataRows;
+        copy.dataColumns = this.dataColumns;
+        copy.patternRows = this.patternRows;
+        copy.patternColumns = this.patternColumns;
+        copy.typeInfoBits = this.typeInfoBits;
+        copy.typeInfoX = this.typeInfoX;
+        copy.typeInfoY = this.typeInfoY;
+        return copy;
+    }
+
+    /**
+     * Lays out the symbol once without a mask, using matrix as scratch space, and returns a scorer
+     * for its eight masks. The contents of matrix are undefined afterwards.
+     */
+    static PackedMaskPenalty forSymbol(BitArray dataBits, ErrorCorrectionLevel ecLevel, Version version, ByteMatrix matrix) throws WriterException {
+        PackedMaskPenalty penalty = new PackedMaskPenalty(matrix.getWidth());
+        int dimension = penalty.dimension;
+        MatrixUtil.clearMatrix(matrix);
+        MatrixUtil.embedBasicPatterns(version, matrix);
+        MatrixUtil.maybeEmbedVersionInfo(version, matrix);
+        long[][] freeRows = new long[dimension][penalty.words];
+        penalty.packValue(matrix, (byte) -1, freeRows, null);
+        MatrixUtil.embedTypeInfo(ecLevel, 0, matrix);
+        penalty.dataRows = new long[dimension][penalty.words];
+        penalty.dataColumns = new long[dimension][penalty.words];
+        penalty.packValue(matrix, (byte) -1, penalty.dataRows, penalty.dataColumns);
+        int count = 0;
+        int[] typeInfoX = new int[64];
+        int[] typeInfoY = new int[64];
+        for (int y = 0; y < dimension; y++) {
+            for (int x = 0; x < dimension; x++) {
+                if (isSet(freeRows[y], x) && !isSet(penalty.dataRows[y], x)) {
+                    typeInfoX[count] = x;
+                    typeInfoY[count] = y;
+                    count++;
+                }
+            }
+        }
+        penalty.typeInfoX = new int[count];
+        penalty.typeInfoY = new int[count];
+        System.arraycopy(typeInfoX, 0, penalty.typeInfoX, 0, count);
+        System.arraycopy(typeInfoY, 0, penalty.typeInfoY, 0, count);
+        penalty.typeInfoBits = new long[8];
+        for (int maskPattern = 0; maskPattern < 8; maskPattern++) {
+            MatrixUtil.embedTypeInfo(ecLevel, maskPattern, matrix);
+            for (int i = 0; i < count; i++) {
+                if (matrix.get(penalty.typeInfoX[i], penalty.typeInfoY[i]) == 1) {
+                    penalty.typeInfoBits[maskPattern] = penalty.typeInfoBits[maskPattern] | (1L << i);
+                }
+            }
+        }
+        MatrixUtil.embedDataBits(dataBits, -1, matrix);
+        penalty.baseRows = new long[dimension][penalty.words];
+        penalty.baseColumns = new long[dimension][penalty.words];
+        penalty.packValue(matrix, (byte) 1, penalty.baseRows, penalty.baseColumns);
+        penalty.patternRows = new long[8][PATTERN_PERIOD][];
+        penalty.patternColumns = new long[8][PATTERN_PERIOD][];
+        for (int maskPattern2 = 0; maskPattern2 < 8; maskPattern2++) {
+            for (int i2 = 0; i2 < PATTERN_PERIOD; i2++) {
+                int rowPeriod = 0;
+                int columnPeriod = 0;
+                for (int j = 0; j < PATTERN_PERIOD; j++) {
+                    if (MaskUtil.getDataMaskBit(maskPattern2, j, i2)) {
+                        rowPeriod |= 1 << j;
+                    }
+                    if (MaskUtil.getDataMaskBit(maskPattern2, i2, j)) {
+                        columnPeriod |= 1 << j;
+                    }
+                }
+                penalty.patternRows[maskPattern2][i2] = penalty.tile(rowPeriod);
+                penalty.patternColumns[maskPattern2][i2] = penalty.tile(columnPeriod);
+            }
+        }
+        return penalty;
+    }
+
+    /**
+     * Repeats a PATTERN_PERIOD-bit pattern across a packed line.
+     */
+    private long[] tile(int period) {
+        long[] line = new long[this.words];
+        for (int j = 0; j < this.dimension; j++) {
+            if (((period >>> (j % PATTERN_PERIOD)) & 1) != 0) {
+                line[j >> 6] = line[j >> 6] | (1L << (j & 63));
+            }
+        }
+        return line;
+    }
+
+    /**
+     * Scores one mask of the symbol given to forSymbol. The mask patterns repeat every
+     * PATTERN_PERIOD modules in both directions, so one packed row per phase covers the symbol.
+     */
+    int calculate(int maskPattern) {
+        for (int i = 0; i < this.dimension; i++) {
+            long[] patternRow = this.patternRows[maskPattern][i % PATTERN_PERIOD];
+            long[] patternColumn = this.patternColumns[maskPattern][i % PATTERN_PERIOD];
+            long[] baseRow = this.baseRows[i];
+            long[] baseColumn = this.baseColumns[i];
+            long[] dataRow = this.dataRows[i];
+            long[] dataColumn = this.dataColumns[i];
+            long[] row = this.rows[i];
+            long[] column = this.columns[i];
+            for (int k = 0; k < this.words; k++) {
+                row[k] = baseRow[k] ^ (dataRow[k] & patternRow[k]);
+                column[k] = baseColumn[k] ^ (dataColumn[k] & patternColumn[k]);
+            }
+        }
+        long bits = this.typeInfoBits[maskPattern];
+        for (int i2 = 0; i2 < this.typeInfoX.length; i2++) {
+            int x = this.typeInfoX[i2];
+            int y = this.typeInfoY[i2];
+            if (((bits >>> i2) & 1) != 0) {
+                this.rows[y][x >> 6] = this.rows[y][x >> 6] | (1L << (x & 63));
+                this.columns[x][y >> 6] = this.columns[x][y >> 6] | (1L << (y & 63));
+            } else {
+                this.rows[y][x >> 6] = this.rows[y][x >> 6] & (~(1L << (x & 63)));
+                this.columns[x][y >> 6] = this.columns[x][y >> 6] & (~(1L << (y & 63)));
+            }
+        }
+        return score();
+    }
+
+    int calculate(ByteMatrix matrix) {
+        if (matrix.getWidth() != this.dimension || matrix.getHeight() != this.dimension) {
+            throw new IllegalArgumentException("Matrix does not match dimension " + this.dimension);
+        }
+        pack(matrix);
+        return score();
+    }
+
+    private int score() {
+        int penalty = 0;
+        int darkCells = 0;
+        int rule3Matches = 0;
+        for (int i = 0; i < this.dimension; i++) {
+            penalty += runPenalty(this.rows[i]) + runPenalty(this.columns[i]);
+            rule3Matches += finderLikeMatches(this.rows[i]) + finderLikeMatches(this.columns[i]);
+            for (long word : this.rows[i]) {
+                darkCells += Long.bitCount(word);
+            }
+        }
+        int blocks = 0;
+        for (int y = 0; y < this.dimension - 1; y++) {
+            blocks += sameColorBlocks(this.rows[y], this.rows[y + 1]);
+        }
+        int totalCells = this.dimension * this.dimension;
+        return ((penalty + (blocks * N2)) + (rule3Matches * N3)) + (((Math.abs((darkCells * 2) - totalCells) * N4) / totalCells) * N4);
+    }
+
+    /**
+     * Sets the bits of the modules of matrix equal to value in cleared rows and, if given, columns.
+     */
+    private void packValue(ByteMatrix matrix, byte value, long[][] rows, long[][] columns) {
+        byte[][] array = matrix.getArray();
+        for (int y = 0; y < this.dimension; y++) {
+            byte[] arrayY = array[y];
+            long[] row = rows[y];
+            for (int x = 0; x < this.dimension; x++) {
+                if (arrayY[x] == value) {
+                    row[x >> 6] = row[x >> 6] | (1L << (x & 63));
+                    if (columns != null) {
+                        long[] column = columns[x];
+                        column[y >> 6] = column[y >> 6] | (1L << (y & 63));
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean isSet(long[] line, int index) {
+        return ((line[index >> 6] >>> (index & 63)) & 1) != 0;
+    }
+
+    private void pack(ByteMatrix matrix) {
+        byte[][] array = matrix.getArray();
+        for (int i = 0; i < this.dimension; i++) {
+            for (int k = 0; k < this.words; k++) {
+                this.rows[i][k] = 0;
+                this.columns[i][k] = 0;
+            }
+        }
+        for (int y = 0; y < this.dimension; y++) {
+            byte[] arrayY = array[y];
+            long[] row = this.rows[y];
+            for (int x = 0; x < this.dimension; x++) {
+                if (arrayY[x] == 1) {
+                    row[x >> 6] = row[x >> 6] | (1L << (x & 63));
+                    long[] column = this.columns[x];
+                    column[y >> 6] = column[y >> 6] | (1L << (y & 63));
+                }
+            }
+        }
+    }
+
+    /**
+     * Rule 1: every run of five or more equal modules costs N1 plus one per extra module.
+     */
+    private int runPenalty(long[] line) {
+        int penalty = 0;
+        int start = 0;
+        while (start < this.dimension) {
+            int end = nextChange(line, start);
+            int length = end - start;
+            if (length >= 5) {
+                penalty += (length - 5) + N1;
+            }
+            start = end;
+        }
+        return penalty;
+    }
+
+    private int nextChange(long[] line, int from) {
+        long invert = ((line[from >> 6] >>> (from & 63)) & 1) != 0 ? -1 : 0;
+        int position = from + 1;
+        while (position < this.dimension) {
+            int k = position >> 6;
+            long differing = (line[k] ^ invert) >>> (position & 63);
+            if (differing != 0) {
+                return Math.min(this.dimension, Long.numberOfTrailingZeros(differing) + position);
+            }
+            position = (k + 1) << 6;
+        }
+        return this.dimension;
+    }
+
+    /**
+     * Rule 2: 2x2 blocks of one color. Bit x is set where the modules at x and x + 1 in both rows match.
+     */
+    private int sameColorBlocks(long[] upper, long[] lower) {
+        long[] vertical = this.scratchA;
+        for (int k = 0; k < this.words; k++) {
+            vertical[k] = ~(upper[k] ^ lower[k]);
+        }
+        shiftRight(vertical, 1, this.scratchB);
+        shiftRight(upper, 1, this.scratchC);
+        int count = 0;
+        for (int k = 0; k < this.words; k++) {
+            count += Long.bitCount(((vertical[k] & this.scratchB[k]) & (~(upper[k] ^ this.scratchC[k]))) & validMask(k, this.dimension - 1));
+        }
+        return count;
+    }
+
+    /**
+     * Rule 3: 1:1:3:1:1 dark/light runs with four light modules on at least one side. Modules outside
+     * the symbol count as light.
+     */
+    private int finderLikeMatches(long[] line) {
+        if (this.dimension < 7) {
+            return 0;
+        }
+        long[] pattern = this.scratchA;
+        long[] shifted = this.scratchB;
+        for (int k = 0; k < this.words; k++) {
+            pattern[k] = line[k];
+        }
+        for (int i = 1; i < 7; i++) {
+            shiftRight(line, i, shifted);
+            boolean dark = i != 1 && i != 5;
+            for (int k = 0; k < this.words; k++) {
+                pattern[k] = pattern[k] & (dark ? shifted[k] : ~shifted[k]);
+            }
+        }
+        long[] darkBefore = this.scratchC;
+        long[] darkAfter = this.scratchD;
+        for (int k = 0; k < this.words; k++) {
+            darkBefore[k] = 0;
+            darkAfter[k] = 0;
+        }
+        for (int i2 = 1; i2 <= 4; i2++) {
+            shiftLeft(line, i2, shifted);
+            for (int k = 0; k < this.words; k++) {
+                darkBefore[k] = darkBefore[k] | shifted[k];
+            }
+        }
+        for (int i3 = 7; i3 <= 10; i3++) {
+            shiftRight(line, i3, shifted);
+            for (int k = 0; k < this.words; k++) {
+                darkAfter[k] = darkAfter[k] | shifted[k];
+            }
+        }
+        int count = 0;
+        for (int k = 0; k < this.words; k++) {
+            count += Long.bitCount((pattern[k] & ((~darkBefore[k]) | (~darkAfter[k]))) & validMask(k, this.dimension - 6));
+        }
+        return count;
+    }
+
+    private static long validMask(int word, int limit) {
+        int remaining = limit - (word << 6);
+        if (remaining >= 64) {
+            return -1;
+        }
+        if (remaining <= 0) {
+            return 0;
+        }
+        return (1L << remaining) - 1;
+    }
+
+    private void shiftRight(long[] source, int shift, long[] target) {
+        for (int k = 0; k < this.words; k++) {
+            long value = source[k] >>> shift;
+            if (k + 1 < this.words) {
+                value |= source[k + 1] << (64 - shift);
+            }
+            target[k] = value;
+        }
+    }
+
+    private void shiftLeft(long[] source, int shift, long[] target) {
+        for (int k = this.words - 1; k >= 0; k--) {
+            long value = source[k] << shift;
+            if (k > 0) {
+                value |= source[k - 1] >>> (64 - shift);
+            }
+            target[k] = value;
+        }
+    }
+}
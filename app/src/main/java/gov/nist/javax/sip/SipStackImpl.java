@@ -16,6 +16,7 @@ import gov.nist.javax.sip.stack.DefaultMessageLogFactory;
 import gov.nist.javax.sip.stack.DefaultRouter;
 import gov.nist.javax.sip.stack.MessageProcessor;
 import gov.nist.javax.sip.stack.SIPTransactionStack;
+import gov.nist.javax.sip.stack.SipTimer;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
@@ -295,6 +296,18 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
                     if (cacheflag != null && "false".equalsIgnoreCase(cacheflag.trim())) {
                         this.cacheClientConnections = false;
                     }
+                    this.useNioTransport = "true".equalsIgnoreCase(configurationProperties.getProperty("gov.nist.javax.sip.USE_NIO_TRANSPORT", "false").trim());
+                    this.lazyHeaderParsing = "true".equalsIgnoreCase(configurationProperties.getProperty("gov.nist.javax.sip.LAZY_HEADER_PARSING", "false").trim());
+                    this.udpChannelReceive = "true".equalsIgnoreCase(configurationProperties.getProperty("gov.nist.javax.sip.UDP_CHANNEL_RECEIVE", "false").trim());
+                    String timerClassName = configurationProperties.getProperty("gov.nist.javax.sip.TIMER_CLASS_NAME");
+                    if (timerClassName != null) {
+                        try {
+                            setSipTimer((SipTimer) Class.forName(timerClassName).getConstructor(new Class[0]).newInstance(new Object[0]));
+                            this.sipTimerClassName = timerClassName;
+                        } catch (Exception e) {
+                            throw new PeerUnavailableException("can't find or instantiate SipTimer implementation: " + timerClassName);
+                        }
+                    }
                     String readTimeout = configurationProperties.getProperty("gov.nist.javax.sip.READ_TIMEOUT");
                     if (readTimeout != null) {
                         try {
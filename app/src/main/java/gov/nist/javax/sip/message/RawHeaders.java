@@ -0,0 +1,190 @@
+package gov.nist.javax.sip.message;
+
+import gov.nist.core.Separators;
+import gov.nist.javax.sip.parser.StringMsgParser;
+import java.io.ByteArrayOutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Headers of a received message that were not parsed yet, kept as offsets into the buffer the
+ * message was read from. Entries are grouped by lower case header name in the order the names
+ * first appeared. Each group remembers the name of the parsed header it followed, its anchor, so
+ * the message can be encoded in the order it was received.
+ */
+final class RawHeaders {
+    private final byte[] buffer;
+    private final LinkedHashMap<String, Range> ranges;
+
+    private static final class Range {
+        String anchor;
+        final int end;
+        Range next;
+        final int start;
+
+        Range(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    RawHeaders(byte[] buffer) {
+        this.buffer = buffer;
+        this.ranges = new LinkedHashMap();
+    }
+
+    /**
+     * Returns a table with the same headers over the same buffer, which is never written to.
+     */
+    RawHeaders copy() {
+        RawHeaders retval = new RawHeaders(this.buffer);
+        for (Entry<String, Range> entry : this.ranges.entrySet()) {
+            Range range = (Range) entry.getValue();
+            String anchor = range.anchor;
+            while (range != null) {
+                retval.add((String) entry.getKey(), range.start, range.end, anchor);
+                range = range.next;
+            }
+        }
+        return retval;
+    }
+
+    byte[] getBuffer() {
+        return this.buffer;
+    }
+
+    /**
+     * Adds a header. The anchor, the lower case name of the parsed header the first header of
+     * this name followed, or null if it came first, is ignored for names already present.
+     */
+    void add(String lowerCaseName, int start, int end, String anchor) {
+        Range range = new Range(start, end);
+        Range last = (Range) this.ranges.get(lowerCaseName);
+        if (last == null) {
+            range.anchor = anchor;
+            this.ranges.put(lowerCaseName, range);
+            return;
+        }
+        while (last.next != null) {
+            last = last.next;
+        }
+        last.next = range;
+    }
+
+    boolean contains(String lowerCaseName) {
+        return this.ranges.containsKey(lowerCaseName);
+    }
+
+    String getAnchor(String lowerCaseName) {
+        Range range = (Range) this.ranges.get(lowerCaseName);
+        return range != null ? range.anchor : null;
+    }
+
+    /**
+     * Returns whether any header follows the given anchor.
+     */
+    boolean hasHeadersAfter(String anchor) {
+        for (Range range : this.ranges.values()) {
+            if (isAnchoredTo(range, anchor)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    boolean isEmpty() {
+        return this.ranges.isEmpty();
+    }
+
+    String firstName() {
+        Iterator<String> it = this.ranges.keySet().iterator();
+        return it.hasNext() ? (String) it.next() : null;
+    }
+
+    /**
+     * Appends the headers that follow the given anchor, each as a single unfolded line ending in
+     * CRLF.
+     */
+    void appendTo(StringBuffer encoding, String anchor) {
+        for (Range range : this.ranges.values()) {
+            if (isAnchoredTo(range, anchor)) {
+                while (range != null) {
+                    encoding.append(StringMsgParser.decodeHeaderLine(this.buffer, range.start, range.end)).append(Separators.NEWLINE);
+                    range = range.next;
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the headers that follow the given anchor as received, each followed by CRLF.
+     * Folded headers keep their continuation lines.
+     */
+    void writeTo(ByteArrayOutputStream out, String anchor) {
+        for (Range range : this.ranges.values()) {
+            if (isAnchoredTo(range, anchor)) {
+                while (range != null) {
+                    out.write(this.buffer, range.start, range.end - range.start);
+                    out.write(13);
+                    out.write(10);
+                    range = range.next;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the anchors that are not names of the given parsed headers, whose headers are
+     * encoded after all others.
+     */
+    List<String> getOrphanAnchors(Map<String, ?> parsedHeaders) {
+        List<String> retval = null;
+        for (Range range : this.ranges.values()) {
+            if (range.anchor != null && !parsedHeaders.containsKey(range.anchor)) {
+                if (retval == null) {
+                    retval = new LinkedList();
+                }
+                if (!retval.contains(range.anchor)) {
+                    retval.add(range.anchor);
+                }
+            }
+        }
+        return retval;
+    }
+
+    private static boolean isAnchoredTo(Range range, String anchor) {
+        return anchor == null ? range.anchor == null : anchor.equals(range.anchor);
+    }
+
+    /**
+     * Removes the headers with the given name and returns their unfolded lines, or null if
+     * there were none. The groups that followed them after the same anchor are anchored to
+     * them instead, as they will follow the header parsed from them.
+     */
+    List<String> remove(String lowerCaseName) {
+        Range range = (Range) this.ranges.get(lowerCaseName);
+        if (range == null) {
+            return null;
+        }
+        boolean after = false;
+        for (Entry<String, Range> entry : this.ranges.entrySet()) {
+            Range other = (Range) entry.getValue();
+            if (other == range) {
+                after = true;
+            } else if (after && isAnchoredTo(other, range.anchor)) {
+                other.anchor = lowerCaseName;
+            }
+        }
+        this.ranges.remove(lowerCaseName);
+        List<String> lines = new LinkedList();
+        while (range != null) {
+            lines.add(StringMsgParser.decodeHeaderLine(this.buffer, range.start, range.end));
+            range = range.next;
+        }
+        return lines;
+    }
+}
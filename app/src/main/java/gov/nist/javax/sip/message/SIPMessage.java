@@ -43,6 +43,7 @@ import gov.nist.javax.sip.header.ViaList;
 import gov.nist.javax.sip.header.WWWAuthenticate;
 import gov.nist.javax.sip.header.Warning;
 import gov.nist.javax.sip.parser.ParserFactory;
+import java.io.ByteArrayOutputStream;
 import java.io.UnsupportedEncodingException;
 import java.lang.reflect.Field;
 import java.text.ParseException;
@@ -96,6 +97,7 @@ public abstract class SIPMessage extends MessageObject implements Message, Messa
     private Object messageContentObject;
     private Hashtable<String, SIPHeader> nameTable;
     protected boolean nullRequest;
+    private volatile RawHeaders rawHeaders;
     protected int size;
     protected To toHeader;
     protected LinkedList<String> unrecognizedHeaders;
@@ -157,6 +159,7 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
 
     public LinkedList<String> getMessageAsEncodedStrings() {
         LinkedList<String> retval = new LinkedList();
+        parseRawHeaders();
         Iterator<SIPHeader> li = this.headers.iterator();
         while (li.hasNext()) {
             SIPHeader sipHeader = (SIPHeader) li.next();
@@ -171,13 +174,7 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
 
     protected String encodeSIPHeaders() {
         StringBuffer encoding = new StringBuffer();
-        Iterator<SIPHeader> it = this.headers.iterator();
-        while (it.hasNext()) {
-            SIPHeader siphdr = (SIPHeader) it.next();
-            if (!(siphdr instanceof ContentLength)) {
-                siphdr.encode(encoding);
-            }
-        }
+        encodeHeaders(encoding);
         return this.contentLengthHeader.encode(encoding).append(Separators.NEWLINE).toString();
     }
 
@@ -188,6 +185,7 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
         if (!other.getClass().equals(getClass())) {
             return false;
         }
+        parseRawHeaders();
         Iterator<SIPHeader> li = ((SIPMessage) other).getHeaders();
         while (li.hasNext()) {
             SIPHeader hisHeaders = (SIPHeader) li.next();
@@ -236,6 +234,7 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
 
     public void merge(Object template) {
         if (template.getClass().equals(getClass())) {
+            ((SIPMessage) template).parseRawHeaders();
             Object[] templateHeaders = ((SIPMessage) template).headers.toArray();
             for (SIPHeader hdr : templateHeaders) {
                 List<SIPHeader> myHdrs = getHeaderList(hdr.getHeaderName());
@@ -255,13 +254,7 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
 
     public String encode() {
         StringBuffer encoding = new StringBuffer();
-        Iterator<SIPHeader> it = this.headers.iterator();
-        while (it.hasNext()) {
-            SIPHeader siphdr = (SIPHeader) it.next();
-            if (!(siphdr instanceof ContentLength)) {
-                encoding.append(siphdr.encode());
-            }
-        }
+        encodeHeaders(encoding);
         for (String unrecognized : this.unrecognizedHeaders) {
             encoding.append(unrecognized).append(Separators.NEWLINE);
         }
@@ -284,6 +277,45 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
         return encoding.toString();
     }
 
+    /**
+     * Encodes all headers but Content-Length. Headers that were never parsed are appended as
+     * they were received, after the parsed header they followed.
+     */
+    private void encodeHeaders(StringBuffer encoding) {
+        RawHeaders raw = this.rawHeaders;
+        if (raw == null) {
+            encodeParsedHeaders(encoding);
+            return;
+        }
+        synchronized (raw) {
+            raw.appendTo(encoding, null);
+            Iterator<SIPHeader> it = this.headers.iterator();
+            while (it.hasNext()) {
+                SIPHeader siphdr = (SIPHeader) it.next();
+                if (!(siphdr instanceof ContentLength)) {
+                    siphdr.encode(encoding);
+                }
+                raw.appendTo(encoding, SIPHeaderNamesCache.toLowerCase(siphdr.getName()));
+            }
+            List<String> orphans = raw.getOrphanAnchors(this.nameTable);
+            if (orphans != null) {
+                for (String anchor : orphans) {
+                    raw.appendTo(encoding, anchor);
+                }
+            }
+        }
+    }
+
+    private void encodeParsedHeaders(StringBuffer encoding) {
+        Iterator<SIPHeader> it = this.headers.iterator();
+        while (it.hasNext()) {
+            SIPHeader siphdr = (SIPHeader) it.next();
+            if (!(siphdr instanceof ContentLength)) {
+                siphdr.encode(encoding);
+            }
+        }
+    }
+
     public byte[] encodeAsBytes(String transport) {
         if ((this instanceof SIPRequest) && ((SIPRequest) this).isNullRequest()) {
             return "\r\n\r\n".getBytes();
@@ -293,42 +325,81 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
         } catch (Exception e) {
             InternalErrorHandler.handleException(e);
         }
+        String charset = getCharset();
+        byte[] content = getRawContent();
+        RawHeaders raw = this.rawHeaders;
+        if (raw == null) {
+            return encodeAsBytes(charset, null, content);
+        }
+        synchronized (raw) {
+            return encodeAsBytes(charset, raw, content);
+        }
+    }
+
+    /**
+     * Encodes the parsed headers with the bytes of the headers that were never parsed copied
+     * as they were received after the parsed header they followed, then Content-Length and the
+     * content.
+     */
+    private byte[] encodeAsBytes(String charset, RawHeaders raw, byte[] content) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
         StringBuffer encoding = new StringBuffer();
-        synchronized (this.headers) {
-            Iterator<SIPHeader> it = this.headers.iterator();
-            while (it.hasNext()) {
-                SIPHeader siphdr = (SIPHeader) it.next();
-                if (!(siphdr instanceof ContentLength)) {
-                    siphdr.encode(encoding);
+        try {
+            if (raw != null) {
+                raw.writeTo(out, null);
+            }
+            synchronized (this.headers) {
+                Iterator<SIPHeader> it = this.headers.iterator();
+                while (it.hasNext()) {
+                    SIPHeader siphdr = (SIPHeader) it.next();
+                    if (!(siphdr instanceof ContentLength)) {
+                        siphdr.encode(encoding);
+                    }
+                    String name = SIPHeaderNamesCache.toLowerCase(siphdr.getName());
+                    if (raw != null && raw.hasHeadersAfter(name)) {
+                        out.write(encoding.toString().getBytes(charset));
+                        encoding.setLength(0);
+                        raw.writeTo(out, name);
+                    }
                 }
             }
-        }
-        this.contentLengthHeader.encode(encoding);
-        encoding.append(Separators.NEWLINE);
-        byte[] retval = null;
-        byte[] content = getRawContent();
-        if (content != null) {
-            byte[] msgarray = null;
-            try {
-                msgarray = encoding.toString().getBytes(getCharset());
-            } catch (Exception ex) {
-                InternalErrorHandler.handleException(ex);
+            List<String> orphans = raw != null ? raw.getOrphanAnchors(this.nameTable) : null;
+            if (orphans != null) {
+                out.write(encoding.toString().getBytes(charset));
+                encoding.setLength(0);
+                for (String anchor : orphans) {
+                    raw.writeTo(out, anchor);
+                }
             }
-            retval = new byte[(msgarray.length + content.length)];
-            System.arraycopy(msgarray, 0, retval, 0, msgarray.length);
-            System.arraycopy(content, 0, retval, msgarray.length, content.length);
-        } else {
-            try {
-                retval = encoding.toString().getBytes(getCharset());
-            } catch (Exception ex2) {
-                InternalErrorHandler.handleException(ex2);
+            this.contentLengthHeader.encode(encoding);
+            encoding.append(Separators.NEWLINE);
+            out.write(encoding.toString().getBytes(charset));
+            if (content != null) {
+                out.write(content);
             }
+        } catch (Exception ex) {
+            InternalErrorHandler.handleException(ex);
         }
-        return retval;
+        return out.toByteArray();
     }
 
     public Object clone() {
+        RawHeaders raw = this.rawHeaders;
+        if (raw != null) {
+            synchronized (raw) {
+                return clone(raw.copy());
+            }
+        }
+        return clone(null);
+    }
+
+    /**
+     * Clones the parsed headers. Headers that were never parsed are shared with the clone
+     * through a copy of their offsets, so forwarding a copy does not parse them.
+     */
+    private SIPMessage clone(RawHeaders raw) {
         SIPMessage retval = (SIPMessage) super.clone();
+        retval.rawHeaders = raw;
         retval.nameTable = new Hashtable();
         retval.fromHeader = null;
         retval.toHeader = null;
@@ -370,6 +441,7 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
         } catch (Exception ex) {
             InternalErrorHandler.handleException(ex);
         }
+        parseRawHeaders();
         sprint("List of headers : ");
         sprint(this.headers.toString());
         sprint("messageContent = ");
@@ -445,6 +517,7 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
         if (header == null) {
             throw new NullPointerException("null header");
         }
+        parseRawHeaders(SIPHeaderNamesCache.toLowerCase(header.getName()));
         SIPHeader h;
         if (!ListMap.hasList(header) || SIPHeaderList.class.isAssignableFrom(header.getClass())) {
             h = header;
@@ -504,6 +577,7 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
 
     public void removeHeader(String headerName, boolean top) {
         String headerNameLowerCase = SIPHeaderNamesCache.toLowerCase(headerName);
+        parseRawHeaders(headerNameLowerCase);
         SIPHeader toRemove = (SIPHeader) this.nameTable.get(headerNameLowerCase);
         if (toRemove != null) {
             Iterator<SIPHeader> li;
@@ -553,6 +627,7 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
             throw new NullPointerException("null arg");
         }
         String headerNameLowerCase = SIPHeaderNamesCache.toLowerCase(headerName);
+        parseRawHeaders(headerNameLowerCase);
         SIPHeader removed = (SIPHeader) this.nameTable.remove(headerNameLowerCase);
         if (removed != null) {
             if (removed instanceof From) {
@@ -620,6 +695,7 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
     }
 
     public Iterator<SIPHeader> getHeaders() {
+        parseRawHeaders();
         return this.headers.iterator();
     }
 
@@ -631,6 +707,7 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
         if (lowerCaseHeaderName == null) {
             throw new NullPointerException("bad name");
         }
+        parseRawHeaders(lowerCaseHeaderName);
         SIPHeader sipHeader = (SIPHeader) this.nameTable.get(lowerCaseHeaderName);
         if (sipHeader instanceof SIPHeaderList) {
             return ((SIPHeaderList) sipHeader).getFirst();
@@ -881,7 +958,9 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
         if (headerName == null) {
             throw new NullPointerException("null headerName");
         }
-        SIPHeader sipHeader = (SIPHeader) this.nameTable.get(SIPHeaderNamesCache.toLowerCase(headerName));
+        String headerNameLowerCase = SIPHeaderNamesCache.toLowerCase(headerName);
+        parseRawHeaders(headerNameLowerCase);
+        SIPHeader sipHeader = (SIPHeader) this.nameTable.get(headerNameLowerCase);
         if (sipHeader == null) {
             return new LinkedList().listIterator();
         }
@@ -893,6 +972,7 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
 
     public String getHeaderAsFormattedString(String name) {
         String lowerCaseName = name.toLowerCase();
+        parseRawHeaders(lowerCaseName);
         if (this.nameTable.containsKey(lowerCaseName)) {
             return ((SIPHeader) this.nameTable.get(lowerCaseName)).toString();
         }
@@ -900,11 +980,14 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
     }
 
     private SIPHeader getSIPHeaderListLowerCase(String lowerCaseHeaderName) {
+        parseRawHeaders(lowerCaseHeaderName);
         return (SIPHeader) this.nameTable.get(lowerCaseHeaderName);
     }
 
     private List<SIPHeader> getHeaderList(String headerName) {
-        SIPHeader sipHeader = (SIPHeader) this.nameTable.get(SIPHeaderNamesCache.toLowerCase(headerName));
+        String headerNameLowerCase = SIPHeaderNamesCache.toLowerCase(headerName);
+        parseRawHeaders(headerNameLowerCase);
+        SIPHeader sipHeader = (SIPHeader) this.nameTable.get(headerNameLowerCase);
         if (sipHeader == null) {
             return null;
         }
@@ -917,7 +1000,9 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
     }
 
     public boolean hasHeader(String headerName) {
-        return this.nameTable.containsKey(SIPHeaderNamesCache.toLowerCase(headerName));
+        String headerNameLowerCase = SIPHeaderNamesCache.toLowerCase(headerName);
+        parseRawHeaders(headerNameLowerCase);
+        return this.nameTable.containsKey(headerNameLowerCase);
     }
 
     public boolean hasFromTag() {
@@ -972,6 +1057,112 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
         this.unrecognizedHeaders.add(unparsed);
     }
 
+    /**
+     * Records a header that is parsed the first time its name is looked up. The header spans
+     * buffer[start..end) including its name; lowerCaseName is the full form of that name. All
+     * raw headers of a message share one buffer, which must not be modified afterwards.
+     */
+    public void addRawHeader(String lowerCaseName, byte[] buffer, int start, int end) {
+        RawHeaders raw = this.rawHeaders;
+        if (raw == null) {
+            raw = new RawHeaders(buffer);
+            this.rawHeaders = raw;
+        } else if (raw.getBuffer() != buffer) {
+            throw new IllegalArgumentException("Raw headers must share one buffer");
+        }
+        synchronized (raw) {
+            raw.add(lowerCaseName, start, end, raw.contains(lowerCaseName) ? null : getLastHeaderName());
+        }
+    }
+
+    /**
+     * Returns the lower case name of the last parsed header, or null if there is none.
+     */
+    private String getLastHeaderName() {
+        SIPHeader last = null;
+        Iterator<SIPHeader> it = this.headers.iterator();
+        while (it.hasNext()) {
+            last = (SIPHeader) it.next();
+        }
+        return last != null ? SIPHeaderNamesCache.toLowerCase(last.getName()) : null;
+    }
+
+    private void parseRawHeaders(String lowerCaseName) {
+        RawHeaders raw = this.rawHeaders;
+        if (raw != null) {
+            synchronized (raw) {
+                String anchor = raw.getAnchor(lowerCaseName);
+                List<String> lines = raw.remove(lowerCaseName);
+                if (lines != null) {
+                    for (String line : lines) {
+                        attachRawHeader(line);
+                    }
+                    moveAfter(lowerCaseName, anchor);
+                }
+                if (raw.isEmpty() && this.rawHeaders == raw) {
+                    this.rawHeaders = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves the header just attached under the given name from the end of the header list to
+     * the position it was received at, right after the header named anchor, or first if anchor
+     * is null. The header stays last if its anchor was removed since.
+     */
+    private void moveAfter(String lowerCaseName, String anchor) {
+        SIPHeader header = (SIPHeader) this.nameTable.get(lowerCaseName);
+        if (header == null) {
+            return;
+        }
+        LinkedList<SIPHeader> tail = new LinkedList();
+        boolean found = anchor == null;
+        Iterator<SIPHeader> it = this.headers.iterator();
+        while (it.hasNext()) {
+            SIPHeader siphdr = (SIPHeader) it.next();
+            if (found) {
+                it.remove();
+                if (siphdr != header) {
+                    tail.add(siphdr);
+                }
+            } else if (anchor.equals(SIPHeaderNamesCache.toLowerCase(siphdr.getName()))) {
+                found = true;
+            }
+        }
+        if (found) {
+            this.headers.add(header);
+            this.headers.addAll(tail);
+        }
+    }
+
+    private void parseRawHeaders() {
+        RawHeaders raw = this.rawHeaders;
+        if (raw != null) {
+            synchronized (raw) {
+                while (true) {
+                    String name = raw.firstName();
+                    if (name == null) {
+                        break;
+                    }
+                    parseRawHeaders(name);
+                }
+            }
+        }
+    }
+
+    /**
+     * Headers that fail to parse are kept as unrecognized headers, as the stack's parse
+     * exception listeners do for all but the core headers, which are never parsed lazily.
+     */
+    private void attachRawHeader(String line) {
+        try {
+            attachHeader(ParserFactory.createParser(line + Separators.RETURN).parse(), false, false);
+        } catch (ParseException e) {
+            this.unrecognizedHeaders.add(line);
+        }
+    }
+
     public void addHeader(String sipHeader) {
         String hdrString = sipHeader.trim() + Separators.RETURN;
         try {
@@ -982,10 +1173,12 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
     }
 
     public ListIterator<String> getUnrecognizedHeaders() {
+        parseRawHeaders();
         return this.unrecognizedHeaders.listIterator();
     }
 
     public ListIterator<String> getHeaderNames() {
+        parseRawHeaders();
         Iterator<SIPHeader> li = this.headers.iterator();
         LinkedList<String> retval = new LinkedList();
         while (li.hasNext()) {
@@ -999,6 +1192,8 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
             return false;
         }
         SIPMessage otherMessage = (SIPMessage) other;
+        parseRawHeaders();
+        otherMessage.parseRawHeaders();
         if (this.nameTable.size() != otherMessage.nameTable.size()) {
             return false;
         }
@@ -12,15 +12,20 @@ import gov.nist.javax.sip.header.ExtensionHeaderImpl;
 import gov.nist.javax.sip.header.NameMap;
 import gov.nist.javax.sip.header.RequestLine;
 import gov.nist.javax.sip.header.SIPHeader;
+import gov.nist.javax.sip.header.SIPHeaderNamesCache;
 import gov.nist.javax.sip.header.StatusLine;
 import gov.nist.javax.sip.message.SIPMessage;
 import gov.nist.javax.sip.message.SIPRequest;
 import gov.nist.javax.sip.message.SIPResponse;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.text.ParseException;
 
 public class StringMsgParser {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
     private static boolean computeContentLengthFromMessage;
+    private boolean lazyParsing;
     private ParseExceptionListener parseExceptionListener;
     private String rawStringMessage;
     protected boolean readBody;
@@ -220,6 +225,202 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
         return sIPMessage;
     }
 
+    /**
+     * Parses a message from buffer[offset..offset+length) without copying its header lines.
+     * With lazy parsing on, only the first line and the Via, From, To, Call-ID, CSeq,
+     * Content-Length and Max-Forwards headers are parsed here; the other headers are recorded
+     * by offset and parsed the first time the message is asked for them. The message then
+     * keeps a reference to buffer, so the caller must not reuse it.
+     */
+    public SIPMessage parseSIPMessage(byte[] msgBuffer, int offset, int length) throws ParseException {
+        int end = offset + length;
+        int i = offset;
+        while (i < end && msgBuffer[i] < 32) {
+            i++;
+        }
+        if (i == end) {
+            return null;
+        }
+        SIPMessage sipMessage = null;
+        int headerStart = -1;
+        int headerEnd = -1;
+        while (true) {
+            int lineStart = i;
+            while (i < end && msgBuffer[i] != 13 && msgBuffer[i] != 10) {
+                i++;
+            }
+            int lineEnd = trimEnd(msgBuffer, lineStart, i);
+            if (i < end && msgBuffer[i] == 13) {
+                i++;
+            }
+            if (i < end && msgBuffer[i] == 10) {
+                i++;
+            }
+            if (lineEnd == lineStart) {
+                break;
+            }
+            if (sipMessage == null) {
+                sipMessage = processFirstLine(new String(msgBuffer, lineStart, lineEnd - lineStart, UTF8));
+            } else if (msgBuffer[lineStart] != 32 && msgBuffer[lineStart] != 9) {
+                if (headerStart >= 0) {
+                    processHeader(msgBuffer, headerStart, headerEnd, sipMessage);
+                }
+                headerStart = lineStart;
+                headerEnd = lineEnd;
+            } else if (headerStart < 0) {
+                throw new ParseException("Bad header continuation.", 0);
+            } else {
+                headerEnd = lineEnd;
+            }
+            if (i == end) {
+                break;
+            }
+        }
+        if (sipMessage == null) {
+            throw new ParseException("Bad message", 0);
+        }
+        if (headerStart >= 0) {
+            processHeader(msgBuffer, headerStart, headerEnd, sipMessage);
+        }
+        sipMessage.setSize(i - offset);
+        if (!(!this.readBody || sipMessage.getContentLength() == null || sipMessage.getContentLength().getContentLength() == 0)) {
+            int bodyLength = end - i;
+            byte[] body = new byte[bodyLength];
+            System.arraycopy(msgBuffer, i, body, 0, bodyLength);
+            sipMessage.setMessageContent(body, computeContentLengthFromMessage, sipMessage.getContentLength().getContentLength());
+        }
+        return sipMessage;
+    }
+
+    /**
+     * Parses the remaining bytes of buffer. Heap buffers are parsed in place, see
+     * {@link #parseSIPMessage(byte[], int, int)}; the buffer's position is not changed.
+     */
+    public SIPMessage parseSIPMessage(ByteBuffer buffer) throws ParseException {
+        if (buffer.hasArray()) {
+            return parseSIPMessage(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        }
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return parseSIPMessage(bytes, 0, bytes.length);
+    }
+
+    private void processHeader(byte[] msgBuffer, int start, int end, SIPMessage message) throws ParseException {
+        if (this.lazyParsing) {
+            String name = getHeaderName(msgBuffer, start, end);
+            if (!(name == null || isCoreHeader(name))) {
+                message.addRawHeader(name, msgBuffer, start, end);
+                return;
+            }
+        }
+        processHeader(decodeHeaderLine(msgBuffer, start, end), message);
+    }
+
+    /**
+     * Returns the lower case full name of the header line in buffer[start..end), expanding
+     * compact forms, or null if the line has no name.
+     */
+    private static String getHeaderName(byte[] buffer, int start, int end) {
+        int colon = start;
+        while (colon < end && buffer[colon] != 58) {
+            colon++;
+        }
+        int nameEnd = trimEnd(buffer, start, colon);
+        if (colon == end || nameEnd == start) {
+            return null;
+        }
+        String name = SIPHeaderNamesCache.toLowerCase(new String(buffer, start, nameEnd - start, UTF8));
+        if (name.length() != 1) {
+            return name;
+        }
+        switch (name.charAt(0)) {
+            case 'b':
+                return "referred-by";
+            case 'c':
+                return "content-type";
+            case 'e':
+                return "content-encoding";
+            case 'f':
+                return "from";
+            case 'i':
+                return "call-id";
+            case 'k':
+                return "supported";
+            case 'l':
+                return "content-length";
+            case 'm':
+                return "contact";
+            case 'o':
+                return "event";
+            case 'r':
+                return "refer-to";
+            case 's':
+                return "subject";
+            case 't':
+                return "to";
+            case 'u':
+                return "allow-events";
+            case 'v':
+                return "via";
+            case 'x':
+                return "session-expires";
+            default:
+                return name;
+        }
+    }
+
+    /**
+     * Headers the stack reads on every message, directly or through the fields SIPMessage keeps
+     * for them, and which are therefore always parsed eagerly.
+     */
+    private static boolean isCoreHeader(String lowerCaseName) {
+        if (lowerCaseName.equals("via") || lowerCaseName.equals("from") || lowerCaseName.equals("to") || lowerCaseName.equals("call-id") || lowerCaseName.equals("cseq") || lowerCaseName.equals("content-length")) {
+            return true;
+        }
+        return lowerCaseName.equals("max-forwards");
+    }
+
+    private static int trimEnd(byte[] buffer, int start, int end) {
+        while (end > start && buffer[end - 1] <= 32) {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * Decodes the header in buffer[start..end) into a single line, joining continuation lines
+     * the same way parseSIPMessage does.
+     */
+    public static String decodeHeaderLine(byte[] buffer, int start, int end) {
+        int i = start;
+        while (i < end && buffer[i] != 13 && buffer[i] != 10) {
+            i++;
+        }
+        if (i == end) {
+            return new String(buffer, start, end - start, UTF8);
+        }
+        StringBuilder line = new StringBuilder(end - start);
+        int lineStart = start;
+        while (true) {
+            line.append(new String(buffer, lineStart, trimEnd(buffer, lineStart, i) - lineStart, UTF8));
+            while (i < end && (buffer[i] == 13 || buffer[i] == 10)) {
+                i++;
+            }
+            if (i == end) {
+                return line.toString();
+            }
+            lineStart = i + 1;
+            i = lineStart;
+            while (i < end && buffer[i] != 13 && buffer[i] != 10) {
+                i++;
+            }
+        }
+    }
+
+    public void setLazyParsing(boolean lazyParsing) {
+        this.lazyParsing = lazyParsing;
+    }
+
     private String trimEndOfLine(String line) {
         if (line == null) {
             return line;
@@ -251,6 +452,7 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
                     throw ex;
                 }
             }
+            return message;
         }
         message = new SIPRequest();
         try {
@@ -0,0 +1,55 @@
+package gov.nist.javax.sip.stack;
+
+import java.util.Timer;
+
+/**
+ * SipTimer backed by a java.util.Timer. Cancelled tasks stay in the timer's queue until they
+ * are due, so the queue is purged every PURGE_INTERVAL cancellations.
+ */
+public class DefaultSipTimer extends SipTimer {
+    private static final int PURGE_INTERVAL = 1000;
+    private int cancelledCount;
+    private final Timer timer;
+
+    public DefaultSipTimer() {
+        this(new Timer("SipTimer", true));
+    }
+
+    public DefaultSipTimer(Timer timer) {
+        this.timer = timer;
+    }
+
+    public void schedule(SIPStackTimerTask task, long delay) {
+        prepare(task, delay, 0);
+        this.timer.schedule(task, delay);
+    }
+
+    public void schedule(SIPStackTimerTask task, long delay, long period) {
+        prepare(task, delay, period);
+        this.timer.schedule(task, delay, period);
+    }
+
+    protected boolean cancel(SIPStackTimerTask task) {
+        boolean purge;
+        synchronized (this) {
+            int i = this.cancelledCount + 1;
+            this.cancelledCount = i;
+            purge = i >= PURGE_INTERVAL;
+            if (purge) {
+                this.cancelledCount = 0;
+            }
+        }
+        if (purge) {
+            this.timer.purge();
+        }
+        return false;
+    }
+
+    public void stop() {
+        this.timer.cancel();
+    }
+
+    public Timer getTimer() {
+        return this.timer;
+    }
+}
@@ -0,0 +1,274 @@
+package gov.nist.javax.sip.stack;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SipTimer that keeps its tasks in a hashed timing wheel. Scheduling and cancelling are
+ * constant time, and a cancelled task is unlinked from the wheel on the next tick instead of
+ * staying queued until it is due. Tasks run on a single worker thread with a resolution of
+ * one tick; periodic tasks are rescheduled with a fixed delay, like Timer.schedule.
+ */
+public class HashedWheelSipTimer extends SipTimer implements Runnable {
+    private static final long DEFAULT_TICK_MILLIS = 10;
+    private static final int DEFAULT_WHEEL_SIZE = 512;
+    private static final int MAX_TRANSFERS_PER_TICK = 100000;
+    private static final int STATE_CANCELLED = 1;
+    private static final int STATE_EXPIRED = 2;
+    private static final int STATE_WAITING = 0;
+    private final ConcurrentLinkedQueue<Timeout> cancelledTimeouts;
+    private final int mask;
+    private final ConcurrentLinkedQueue<Timeout> newTimeouts;
+    private final AtomicInteger pendingCount;
+    private volatile boolean running;
+    private final long startTime;
+    private long tick;
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final Thread workerThread;
+
+    private static final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        private Bucket() {
+        }
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (this.head == null) {
+                this.tail = timeout;
+                this.head = timeout;
+                return;
+            }
+            this.tail.next = timeout;
+            timeout.prev = this.tail;
+            this.tail = timeout;
+        }
+
+        Timeout remove(Timeout timeout) {
+            Timeout next = timeout.next;
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            }
+            if (timeout == this.head) {
+                if (timeout == this.tail) {
+                    this.tail = null;
+                    this.head = null;
+                } else {
+                    this.head = next;
+                }
+            } else if (timeout == this.tail) {
+                this.tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+            return next;
+        }
+    }
+
+    static final class Timeout {
+        Bucket bucket;
+        long deadline;
+        Timeout next;
+        final long period;
+        Timeout prev;
+        long remainingRounds;
+        final AtomicInteger state;
+        final SIPStackTimerTask task;
+
+        Timeout(SIPStackTimerTask task, long deadline, long period) {
+            this.state = new AtomicInteger(HashedWheelSipTimer.STATE_WAITING);
+            this.task = task;
+            this.deadline = deadline;
+            this.period = period;
+        }
+    }
+
+    public HashedWheelSipTimer() {
+        this(DEFAULT_TICK_MILLIS, DEFAULT_WHEEL_SIZE);
+    }
+
+    /**
+     * Creates a timer whose wheel has wheelSize slots of tickMillis each. The wheel size is
+     * rounded up to a power of two.
+     */
+    public HashedWheelSipTimer(long tickMillis, int wheelSize) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("tickMillis must be positive: " + tickMillis);
+        } else if (wheelSize <= 0 || wheelSize > 1073741824) {
+            throw new IllegalArgumentException("bad wheelSize: " + wheelSize);
+        } else {
+            int size = 1;
+            while (size < wheelSize) {
+                size <<= 1;
+            }
+            this.wheel = new Bucket[size];
+            for (int i = 0; i < size; i++) {
+                this.wheel[i] = new Bucket();
+            }
+            this.mask = size - 1;
+            this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+            this.newTimeouts = new ConcurrentLinkedQueue();
+            this.cancelledTimeouts = new ConcurrentLinkedQueue();
+            this.pendingCount = new AtomicInteger();
+            this.startTime = System.nanoTime();
+            this.running = true;
+            this.workerThread = new Thread(this, "HashedWheelSipTimer");
+            this.workerThread.setDaemon(true);
+            this.workerThread.start();
+        }
+    }
+
+    public void schedule(SIPStackTimerTask task, long delay) {
+        schedule(task, delay, 0);
+    }
+
+    public void schedule(SIPStackTimerTask task, long delay, long period) {
+        if (!this.running) {
+            throw new IllegalStateException("Timer already cancelled.");
+        } else if (task.timeout != null) {
+            throw new IllegalStateException("Task already scheduled or cancelled");
+        } else {
+            prepare(task, delay, period);
+            Timeout timeout = new Timeout(task, (System.nanoTime() - this.startTime) + TimeUnit.MILLISECONDS.toNanos(delay), TimeUnit.MILLISECONDS.toNanos(period));
+            task.timeout = timeout;
+            this.pendingCount.incrementAndGet();
+            this.newTimeouts.add(timeout);
+        }
+    }
+
+    protected boolean cancel(SIPStackTimerTask task) {
+        Timeout timeout = task.timeout;
+        if (timeout == null || !timeout.state.compareAndSet(STATE_WAITING, STATE_CANCELLED)) {
+            return false;
+        }
+        this.cancelledTimeouts.add(timeout);
+        return true;
+    }
+
+    public void stop() {
+        this.running = false;
+        this.workerThread.interrupt();
+    }
+
+    /**
+     * Returns the number of tasks that are scheduled and were neither cancelled nor, for
+     * one-shot tasks, run yet.
+     */
+    public int getPendingCount() {
+        return this.pendingCount.get();
+    }
+
+    public void run() {
+        while (this.running) {
+            long now = waitForNextTick();
+            if (now >= 0) {
+                processCancelledTimeouts();
+                transferNewTimeouts();
+                expireTimeouts(this.wheel[(int) (this.tick & ((long) this.mask))], now);
+                this.tick++;
+            }
+        }
+        this.newTimeouts.clear();
+        this.cancelledTimeouts.clear();
+    }
+
+    /**
+     * Sleeps until the end of the current tick and returns the time since the start of the
+     * timer, or -1 if the timer was stopped meanwhile.
+     */
+    private long waitForNextTick() {
+        long deadline = this.tickNanos * (this.tick + 1);
+        while (true) {
+            long currentTime = System.nanoTime() - this.startTime;
+            long sleepMillis = ((deadline - currentTime) + 999999) / 1000000;
+            if (sleepMillis <= 0) {
+                return currentTime;
+            }
+            try {
+                Thread.sleep(sleepMillis);
+            } catch (InterruptedException e) {
+                if (!this.running) {
+                    return -1;
+                }
+            }
+        }
+    }
+
+    private void processCancelledTimeouts() {
+        while (true) {
+            Timeout timeout = (Timeout) this.cancelledTimeouts.poll();
+            if (timeout != null) {
+                if (timeout.bucket != null) {
+                    timeout.bucket.remove(timeout);
+                }
+                this.pendingCount.decrementAndGet();
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void transferNewTimeouts() {
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            Timeout timeout = (Timeout) this.newTimeouts.poll();
+            if (timeout != null) {
+                if (timeout.state.get() == STATE_WAITING) {
+                    addToWheel(timeout);
+                }
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void addToWheel(Timeout timeout) {
+        long calculated = timeout.deadline / this.tickNanos;
+        timeout.remainingRounds = (calculated - this.tick) / ((long) this.wheel.length);
+        this.wheel[(int) (Math.max(calculated, this.tick) & ((long) this.mask))].add(timeout);
+    }
+
+    private void expireTimeouts(Bucket bucket, long now) {
+        Timeout timeout = bucket.head;
+        while (timeout != null) {
+            if (timeout.remainingRounds <= 0) {
+                Timeout next = bucket.remove(timeout);
+                if (timeout.deadline <= now) {
+                    expire(timeout, now);
+                } else {
+                    this.newTimeouts.add(timeout);
+                }
+                timeout = next;
+            } else {
+                timeout.remainingRounds--;
+                timeout = timeout.next;
+            }
+        }
+    }
+
+    /**
+     * Runs the task of a timeout. A periodic task stays in the waiting state while it runs, so
+     * a cancel from inside the task or from another thread keeps it from being rescheduled. It
+     * goes back through the new timeouts queue rather than into the bucket being expired.
+     */
+    private void expire(Timeout timeout, long now) {
+        if (timeout.period <= 0) {
+            if (timeout.state.compareAndSet(STATE_WAITING, STATE_EXPIRED)) {
+                this.pendingCount.decrementAndGet();
+                timeout.task.run();
+            }
+        } else if (timeout.state.get() == STATE_WAITING) {
+            timeout.task.run();
+            if (this.running && timeout.state.get() == STATE_WAITING) {
+                timeout.deadline = timeout.period + now;
+                this.newTimeouts.add(timeout);
+            }
+        }
+    }
+}
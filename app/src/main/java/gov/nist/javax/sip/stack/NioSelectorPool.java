@@ -0,0 +1,231 @@
+package gov.nist.javax.sip.stack;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+/**
+ * Small pool of selector threads shared by the connections of a NioTcpMessageProcessor. Each
+ * connection is bound to one selector for its lifetime, and its connect, reads and queued writes
+ * happen on that selector's thread. Messages are processed elsewhere, so a selector thread never
+ * blocks on the stack.
+ */
+final class NioSelectorPool {
+    private static final long CONNECT_CHECK_INTERVAL = 1000;
+    private int next;
+    private final SIPTransactionStack sipStack;
+    private final Worker[] workers;
+
+    final class Worker implements Runnable {
+        private final ArrayList<NioTcpMessageChannel> connectingChannels;
+        private final ArrayDeque<Runnable> pendingTasks;
+        private volatile boolean running;
+        private final Selector selector;
+        private final Thread thread;
+
+        private Worker(String name) throws IOException {
+            this.connectingChannels = new ArrayList();
+            this.pendingTasks = new ArrayDeque();
+            this.selector = Selector.open();
+            this.thread = new Thread(this);
+            this.thread.setName(name);
+            this.thread.setDaemon(true);
+        }
+
+        /**
+         * Runs task on the selector thread before the next select.
+         */
+        void execute(Runnable task) {
+            synchronized (this.pendingTasks) {
+                this.pendingTasks.add(task);
+            }
+            this.selector.wakeup();
+        }
+
+        void register(final SocketChannel socketChannel, final NioTcpMessageChannel channel) {
+            execute(new Runnable() {
+                public void run() {
+                    try {
+                        channel.setSelectionKey(socketChannel.register(Worker.this.selector, SelectionKey.OP_READ, channel));
+                    } catch (ClosedChannelException e) {
+                        channel.close();
+                    }
+                }
+            });
+        }
+
+        /**
+         * Registers a channel whose connect is still in progress. The connect is finished on
+         * OP_CONNECT, or the channel is closed once its connect deadline has passed.
+         */
+        void connect(final SocketChannel socketChannel, final NioTcpMessageChannel channel) {
+            execute(new Runnable() {
+                public void run() {
+                    try {
+                        channel.setSelectionKey(socketChannel.register(Worker.this.selector, SelectionKey.OP_CONNECT, channel));
+                        Worker.this.connectingChannels.add(channel);
+                    } catch (ClosedChannelException e) {
+                        channel.close();
+                    }
+                }
+            });
+        }
+
+        /**
+         * Asks for a writable event of the channel's current key. Queued behind the channel's
+         * registration, so the key is always set when this runs.
+         */
+        void setWriteInterest(final NioTcpMessageChannel channel) {
+            execute(new Runnable() {
+                public void run() {
+                    SelectionKey key = channel.getSelectionKey();
+                    if (key != null && key.isValid() && !channel.isConnecting()) {
+                        key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                    }
+                }
+            });
+        }
+
+        /**
+         * Reads from the channel again after its pending messages were processed.
+         */
+        void resumeReading(final NioTcpMessageChannel channel) {
+            execute(new Runnable() {
+                public void run() {
+                    SelectionKey key = channel.getSelectionKey();
+                    if (key != null && key.isValid()) {
+                        key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+                    }
+                }
+            });
+        }
+
+        public void run() {
+            while (this.running) {
+                try {
+                    this.selector.select(this.connectingChannels.isEmpty() ? 0 : CONNECT_CHECK_INTERVAL);
+                    runPendingTasks();
+                    Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = (SelectionKey) keys.next();
+                        keys.remove();
+                        handleKey(key);
+                    }
+                    expireConnects();
+                } catch (IOException ex) {
+                    if (NioSelectorPool.this.sipStack.isLoggingEnabled()) {
+                        NioSelectorPool.this.sipStack.getStackLogger().logException(ex);
+                    }
+                } catch (RuntimeException ex2) {
+                    if (NioSelectorPool.this.sipStack.isLoggingEnabled()) {
+                        NioSelectorPool.this.sipStack.getStackLogger().logException(ex2);
+                    }
+                }
+            }
+            try {
+                this.selector.close();
+            } catch (IOException e) {
+            }
+        }
+
+        /**
+         * Handles the ready operations of one key. A channel closed by another thread can cancel
+         * its key between the validity checks and the interest changes in handleConnect,
+         * handleRead and handleWrite; that, or any other failure of the channel, closes only
+         * that channel.
+         */
+        private void handleKey(SelectionKey key) {
+            NioTcpMessageChannel channel = (NioTcpMessageChannel) key.attachment();
+            try {
+                if (key.isValid() && key.isConnectable()) {
+                    channel.handleConnect();
+                }
+                if (key.isValid() && key.isReadable()) {
+                    channel.handleRead();
+                }
+                if (key.isValid() && key.isWritable()) {
+                    channel.handleWrite();
+                }
+            } catch (CancelledKeyException e) {
+                channel.close();
+            } catch (RuntimeException ex) {
+                if (NioSelectorPool.this.sipStack.isLoggingEnabled()) {
+                    NioSelectorPool.this.sipStack.getStackLogger().logException(ex);
+                }
+                channel.close();
+            }
+        }
+
+        private void expireConnects() {
+            long now = System.currentTimeMillis();
+            Iterator<NioTcpMessageChannel> channels = this.connectingChannels.iterator();
+            while (channels.hasNext()) {
+                NioTcpMessageChannel channel = (NioTcpMessageChannel) channels.next();
+                if (!channel.isConnecting()) {
+                    channels.remove();
+                } else if (channel.isConnectExpired(now)) {
+                    channels.remove();
+                    channel.connectTimedOut();
+                }
+            }
+        }
+
+        /**
+         * Runs the queued tasks. A task whose channel was closed in the meantime finds its key
+         * cancelled and is dropped.
+         */
+        private void runPendingTasks() {
+            while (true) {
+                Runnable task;
+                synchronized (this.pendingTasks) {
+                    task = (Runnable) this.pendingTasks.poll();
+                }
+                if (task != null) {
+                    try {
+                        task.run();
+                    } catch (CancelledKeyException e) {
+                    }
+                } else {
+                    return;
+                }
+            }
+        }
+    }
+
+    NioSelectorPool(SIPTransactionStack sipStack, int size) throws IOException {
+        this.sipStack = sipStack;
+        this.workers = new Worker[size];
+        for (int i = 0; i < size; i++) {
+            this.workers[i] = new Worker("NioSelectorThread-" + i);
+        }
+    }
+
+    void start() {
+        for (Worker worker : this.workers) {
+            worker.running = true;
+            worker.thread.start();
+        }
+    }
+
+    void stop() {
+        for (Worker worker : this.workers) {
+            worker.running = false;
+            worker.selector.wakeup();
+        }
+    }
+
+    /**
+     * Returns the selector for a new connection, spreading connections round robin.
+     */
+    synchronized Worker next() {
+        Worker worker = this.workers[this.next];
+        this.next = (this.next + 1) % this.workers.length;
+        return worker;
+    }
+}
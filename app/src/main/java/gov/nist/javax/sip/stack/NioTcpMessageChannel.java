@@ -0,0 +1,726 @@
+package gov.nist.javax.sip.stack;
+
+import gov.nist.core.InternalErrorHandler;
+import gov.nist.core.Separators;
+import gov.nist.javax.sip.header.CSeq;
+import gov.nist.javax.sip.header.CallID;
+import gov.nist.javax.sip.header.From;
+import gov.nist.javax.sip.header.RequestLine;
+import gov.nist.javax.sip.header.StatusLine;
+import gov.nist.javax.sip.header.To;
+import gov.nist.javax.sip.header.Via;
+import gov.nist.javax.sip.message.SIPMessage;
+import gov.nist.javax.sip.message.SIPRequest;
+import gov.nist.javax.sip.message.SIPResponse;
+import gov.nist.javax.sip.parser.ParseExceptionListener;
+import gov.nist.javax.sip.parser.StringMsgParser;
+import gov.nist.javax.sip.stack.NioSelectorPool.Worker;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.text.ParseException;
+import java.util.ArrayDeque;
+import java.util.concurrent.RejectedExecutionException;
+import javax.sip.ListeningPoint;
+import javax.sip.address.Hop;
+import javax.sip.message.Response;
+
+/**
+ * Non-blocking counterpart of TCPMessageChannel. The connection is served by a selector thread
+ * of its NioTcpMessageProcessor instead of a reader thread of its own. Incoming bytes are framed
+ * by the blank line ending the headers and the Content-Length header on the selector thread.
+ * The framed messages are parsed and processed in order on the processor's message executor,
+ * since processing can block on the stack; reading stops while too many bytes wait there.
+ * Outgoing connects and writes that do not complete right away are finished when the selector
+ * reports the socket connectable or writable.
+ */
+public class NioTcpMessageChannel extends MessageChannel implements ParseExceptionListener, RawMessageChannel {
+    private static final int CONNECT_TIMEOUT = 10000;
+    private static final int DEFAULT_MAX_HEADER_SIZE = 65536;
+    private static final int INITIAL_BUFFER_SIZE = 4096;
+    private static final int MAX_PENDING_READ_BYTES = 1048576;
+    private static final int MAX_PENDING_WRITE_BYTES = 1048576;
+    private SocketChannel channel;
+    private long connectDeadline;
+    private boolean connecting;
+    private final boolean incoming;
+    protected boolean isCached;
+    protected String key;
+    protected String myAddress;
+    protected int myPort;
+    private final NioTcpMessageProcessor nioMessageProcessor;
+    protected InetAddress peerAddress;
+    protected int peerPort;
+    protected String peerProtocol;
+    private int pendingMessageBytes;
+    private final ArrayDeque<byte[]> pendingMessages;
+    private int pendingWriteBytes;
+    private boolean processing;
+    private ByteBuffer readBuffer;
+    private boolean readPaused;
+    private SelectionKey selectionKey;
+    protected SIPTransactionStack sipStack;
+    private Worker worker;
+    private final ArrayDeque<ByteBuffer> writeQueue;
+
+    NioTcpMessageChannel(SocketChannel channel, SIPTransactionStack sipStack, NioTcpMessageProcessor msgProcessor, Worker worker) throws IOException {
+        if (sipStack.isLoggingEnabled()) {
+            sipStack.getStackLogger().logDebug("creating new NioTcpMessageChannel ");
+        }
+        this.incoming = true;
+        this.channel = channel;
+        this.peerAddress = channel.socket().getInetAddress();
+        this.peerPort = channel.socket().getPort();
+        this.sipStack = sipStack;
+        this.nioMessageProcessor = msgProcessor;
+        this.messageProcessor = msgProcessor;
+        this.myAddress = msgProcessor.getIpAddress().getHostAddress();
+        this.myPort = msgProcessor.getPort();
+        this.pendingMessages = new ArrayDeque();
+        this.readBuffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+        this.writeQueue = new ArrayDeque();
+        this.worker = worker;
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        worker.register(channel, this);
+    }
+
+    NioTcpMessageChannel(InetAddress inetAddr, int port, SIPTransactionStack sipStack, NioTcpMessageProcessor msgProcessor) {
+        if (sipStack.isLoggingEnabled()) {
+            sipStack.getStackLogger().logDebug("creating new NioTcpMessageChannel ");
+        }
+        this.incoming = false;
+        this.peerAddress = inetAddr;
+        this.peerPort = port;
+        this.peerProtocol = ListeningPoint.TCP;
+        this.sipStack = sipStack;
+        this.nioMessageProcessor = msgProcessor;
+        this.messageProcessor = msgProcessor;
+        this.myAddress = msgProcessor.getIpAddress().getHostAddress();
+        this.myPort = msgProcessor.getPort();
+        this.key = MessageChannel.getKey(this.peerAddress, this.peerPort, ListeningPoint.TCP);
+        this.pendingMessages = new ArrayDeque();
+        this.readBuffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+        this.writeQueue = new ArrayDeque();
+    }
+
+    boolean isIncoming() {
+        return this.incoming;
+    }
+
+    SelectionKey getSelectionKey() {
+        return this.selectionKey;
+    }
+
+    void setSelectionKey(SelectionKey selectionKey) {
+        this.selectionKey = selectionKey;
+    }
+
+    /**
+     * Starts the connection of an outgoing channel if it is not open yet. The connect does not
+     * block: messages sent before it completes are queued and written once the selector thread
+     * has finished the connect. A connect that fails or takes longer than CONNECT_TIMEOUT closes
+     * the channel.
+     */
+    private synchronized SocketChannel connect() throws IOException {
+        if (this.channel != null && this.channel.isOpen()) {
+            return this.channel;
+        }
+        if (this.incoming) {
+            throw new IOException("Connection closed by " + this.peerAddress + Separators.COLON + this.peerPort);
+        }
+        SocketChannel socketChannel = SocketChannel.open();
+        boolean connected;
+        try {
+            socketChannel.configureBlocking(false);
+            socketChannel.socket().bind(new InetSocketAddress(this.messageProcessor.getIpAddress(), 0));
+            socketChannel.socket().setTcpNoDelay(true);
+            connected = socketChannel.connect(new InetSocketAddress(this.peerAddress, this.peerPort));
+        } catch (IOException ex) {
+            socketChannel.close();
+            throw ex;
+        }
+        this.readBuffer.clear();
+        synchronized (this.writeQueue) {
+            this.writeQueue.clear();
+            this.pendingWriteBytes = 0;
+            this.connecting = !connected;
+            this.connectDeadline = System.currentTimeMillis() + CONNECT_TIMEOUT;
+        }
+        this.channel = socketChannel;
+        this.worker = this.nioMessageProcessor.nextWorker();
+        if (connected) {
+            this.worker.register(socketChannel, this);
+        } else {
+            this.worker.connect(socketChannel, this);
+        }
+        return socketChannel;
+    }
+
+    private void send(byte[] msg) throws IOException {
+        SocketChannel socketChannel = connect();
+        ByteBuffer buffer = ByteBuffer.wrap(msg);
+        synchronized (this.writeQueue) {
+            if (this.writeQueue.isEmpty() && !this.connecting) {
+                socketChannel.write(buffer);
+                if (!buffer.hasRemaining()) {
+                    return;
+                }
+            } else if (this.pendingWriteBytes + buffer.remaining() > MAX_PENDING_WRITE_BYTES) {
+                throw new IOException("Send queue full for " + getKey());
+            }
+            this.writeQueue.add(buffer);
+            this.pendingWriteBytes += buffer.remaining();
+            if (this.connecting) {
+                return;
+            }
+        }
+        this.worker.setWriteInterest(this);
+    }
+
+    boolean isConnecting() {
+        boolean z;
+        synchronized (this.writeQueue) {
+            z = this.connecting;
+        }
+        return z;
+    }
+
+    boolean isConnectExpired(long now) {
+        boolean z;
+        synchronized (this.writeQueue) {
+            z = this.connecting && now >= this.connectDeadline;
+        }
+        return z;
+    }
+
+    /**
+     * Called on the selector thread when a pending connect can be finished. The writes queued
+     * while connecting are flushed on the following OP_WRITE.
+     */
+    void handleConnect() {
+        try {
+            if (this.channel.finishConnect()) {
+                synchronized (this.writeQueue) {
+                    this.connecting = false;
+                    this.selectionKey.interestOps(this.writeQueue.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                }
+            }
+        } catch (IOException ex) {
+            if (this.sipStack.isLoggingEnabled()) {
+                this.sipStack.getStackLogger().logDebug("Error connecting to " + getKey() + " " + ex);
+            }
+            close();
+        }
+    }
+
+    void connectTimedOut() {
+        if (this.sipStack.isLoggingEnabled()) {
+            this.sipStack.getStackLogger().logDebug("Timed out connecting to " + getKey());
+        }
+        close();
+    }
+
+    /**
+     * Called on the selector thread when the socket is writable. Selection keys are only
+     * touched on that thread.
+     */
+    void handleWrite() {
+        try {
+            synchronized (this.writeQueue) {
+                while (!this.writeQueue.isEmpty()) {
+                    ByteBuffer buffer = (ByteBuffer) this.writeQueue.peek();
+                    this.pendingWriteBytes -= this.channel.write(buffer);
+                    if (buffer.hasRemaining()) {
+                        return;
+                    }
+                    this.writeQueue.poll();
+                }
+                this.selectionKey.interestOps(this.selectionKey.interestOps() & ~SelectionKey.OP_WRITE);
+            }
+        } catch (IOException ex) {
+            if (this.sipStack.isLoggingEnabled()) {
+                this.sipStack.getStackLogger().logDebug("Error writing to " + getKey() + " " + ex);
+            }
+            close();
+        }
+    }
+
+    /**
+     * Called on the selector thread when the socket is readable. Every complete message in the
+     * read buffer is handed to the message executor; reading is paused while more than
+     * MAX_PENDING_READ_BYTES wait to be processed.
+     */
+    void handleRead() {
+        try {
+            if (this.channel.read(this.readBuffer) < 0) {
+                if (this.sipStack.isLoggingEnabled()) {
+                    this.sipStack.getStackLogger().logDebug("Connection closed by " + getKey());
+                }
+                close();
+                return;
+            }
+            this.readBuffer.flip();
+            while (this.channel.isOpen()) {
+                byte[] msg = nextMessage();
+                if (msg == null) {
+                    break;
+                }
+                enqueueMessage(msg);
+            }
+            this.readBuffer.compact();
+            synchronized (this.pendingMessages) {
+                if (this.pendingMessageBytes >= MAX_PENDING_READ_BYTES && !this.readPaused) {
+                    this.readPaused = true;
+                    this.selectionKey.interestOps(this.selectionKey.interestOps() & ~SelectionKey.OP_READ);
+                }
+            }
+        } catch (IOException ex) {
+            if (this.sipStack.isLoggingEnabled()) {
+                this.sipStack.getStackLogger().logDebug("Error reading from " + getKey() + " " + ex);
+            }
+            close();
+        }
+    }
+
+    /**
+     * Removes the next complete message from the flipped read buffer, or returns null if more
+     * bytes are needed. Keep-alive line breaks between messages are skipped.
+     */
+    private byte[] nextMessage() throws IOException {
+        ByteBuffer buffer = this.readBuffer;
+        while (buffer.hasRemaining() && (buffer.get(buffer.position()) == 13 || buffer.get(buffer.position()) == 10)) {
+            buffer.position(buffer.position() + 1);
+        }
+        int start = buffer.position();
+        int headerEnd = -1;
+        int i = start;
+        while (i < buffer.limit()) {
+            if (buffer.get(i) == 10) {
+                int j = i + 1;
+                if (j < buffer.limit() && buffer.get(j) == 13) {
+                    j++;
+                }
+                if (j < buffer.limit() && buffer.get(j) == 10) {
+                    headerEnd = j + 1;
+                    break;
+                }
+            }
+            i++;
+        }
+        int maxMessageSize = this.sipStack.getMaxMessageSize() > 0 ? this.sipStack.getMaxMessageSize() : DEFAULT_MAX_HEADER_SIZE;
+        if (headerEnd < 0) {
+            if (buffer.remaining() >= maxMessageSize) {
+                throw new IOException("Max size exceeded!");
+            }
+            ensureCapacity(buffer.remaining() + 1);
+            return null;
+        }
+        int contentLength = parseContentLength(buffer, start, headerEnd);
+        if (contentLength < 0 || (this.sipStack.getMaxMessageSize() > 0 && (headerEnd - start) + contentLength > this.sipStack.getMaxMessageSize())) {
+            throw new IOException("Bad or too large Content-Length " + contentLength);
+        }
+        int length = (headerEnd - start) + contentLength;
+        if (buffer.remaining() < length) {
+            ensureCapacity(length);
+            return null;
+        }
+        byte[] msg = new byte[length];
+        buffer.get(msg);
+        return msg;
+    }
+
+    /**
+     * Grows the flipped read buffer so a pending message of length bytes fits once the unread
+     * bytes are compacted to the front.
+     */
+    private void ensureCapacity(int length) {
+        if (length > this.readBuffer.capacity()) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(length, this.readBuffer.capacity() * 2));
+            grown.put(this.readBuffer);
+            grown.flip();
+            this.readBuffer = grown;
+        }
+    }
+
+    /**
+     * Returns the value of the Content-Length header ("l" in compact form) found between start
+     * and end, or 0 if the message has none.
+     */
+    private static int parseContentLength(ByteBuffer buffer, int start, int end) {
+        int lineStart = start;
+        for (int i = start; i < end; i++) {
+            if (buffer.get(i) == 10) {
+                int value = contentLengthOfLine(buffer, lineStart, i);
+                if (value != -2) {
+                    return value;
+                }
+                lineStart = i + 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the Content-Length value of the line, -2 if it is another header and -1 if the
+     * value is malformed.
+     */
+    private static int contentLengthOfLine(ByteBuffer buffer, int start, int end) {
+        int i = start;
+        int nameEnd = start;
+        while (nameEnd < end && buffer.get(nameEnd) != 58 && buffer.get(nameEnd) != 32 && buffer.get(nameEnd) != 9) {
+            nameEnd++;
+        }
+        if (!nameMatches(buffer, start, nameEnd, "content-length") && !nameMatches(buffer, start, nameEnd, "l")) {
+            return -2;
+        }
+        i = nameEnd;
+        while (i < end && (buffer.get(i) == 32 || buffer.get(i) == 9)) {
+            i++;
+        }
+        if (i == end || buffer.get(i) != 58) {
+            return -2;
+        }
+        i++;
+        while (i < end && (buffer.get(i) == 32 || buffer.get(i) == 9)) {
+            i++;
+        }
+        long value = 0;
+        int digits = 0;
+        while (i < end && buffer.get(i) >= 48 && buffer.get(i) <= 57) {
+            value = ((10 * value) + ((long) buffer.get(i))) - 48;
+            if (value > 2147483647L) {
+                return -1;
+            }
+            digits++;
+            i++;
+        }
+        while (i < end && (buffer.get(i) == 32 || buffer.get(i) == 9 || buffer.get(i) == 13)) {
+            i++;
+        }
+        return (digits == 0 || i != end) ? -1 : (int) value;
+    }
+
+    private static boolean nameMatches(ByteBuffer buffer, int start, int end, String name) {
+        if (end - start != name.length()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (Character.toLowerCase((char) buffer.get(start + i)) != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Queues a framed message and starts a task processing this channel's queue unless one is
+     * running, so the messages of a connection are processed one at a time and in order.
+     */
+    private void enqueueMessage(byte[] msg) {
+        synchronized (this.pendingMessages) {
+            this.pendingMessages.add(msg);
+            this.pendingMessageBytes += msg.length;
+            if (this.processing) {
+                return;
+            }
+            this.processing = true;
+        }
+        try {
+            this.nioMessageProcessor.execute(new Runnable() {
+                public void run() {
+                    NioTcpMessageChannel.this.processPendingMessages();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            synchronized (this.pendingMessages) {
+                this.pendingMessages.clear();
+                this.pendingMessageBytes = 0;
+                this.processing = false;
+            }
+        }
+    }
+
+    private void processPendingMessages() {
+        while (true) {
+            byte[] msg;
+            boolean resume = false;
+            synchronized (this.pendingMessages) {
+                msg = (byte[]) this.pendingMessages.poll();
+                if (msg == null) {
+                    this.processing = false;
+                    return;
+                }
+                this.pendingMessageBytes -= msg.length;
+                if (this.readPaused && this.pendingMessageBytes < MAX_PENDING_READ_BYTES / 2) {
+                    this.readPaused = false;
+                    resume = true;
+                }
+            }
+            if (resume) {
+                this.worker.resumeReading(this);
+            }
+            processBytes(msg);
+        }
+    }
+
+    private void processBytes(byte[] msg) {
+        StringMsgParser parser = new StringMsgParser();
+        parser.setParseExceptionListener(this);
+        parser.setLazyParsing(this.sipStack.lazyHeaderParsing);
+        try {
+            SIPMessage sipMessage = parser.parseSIPMessage(msg, 0, msg.length);
+            if (sipMessage != null) {
+                processMessage(sipMessage);
+            }
+        } catch (ParseException ex) {
+            if (this.sipStack.isLoggingEnabled()) {
+                this.sipStack.getStackLogger().logDebug("Dropping badly formatted message from " + getKey() + " " + ex);
+            }
+        } catch (Exception ex2) {
+            if (this.sipStack.isLoggingEnabled()) {
+                this.sipStack.getStackLogger().logException(ex2);
+            }
+            close();
+        }
+    }
+
+    public boolean isReliable() {
+        return true;
+    }
+
+    public void close() {
+        synchronized (this) {
+            if (this.channel != null) {
+                try {
+                    this.channel.close();
+                } catch (IOException ex) {
+                    if (this.sipStack.isLoggingEnabled()) {
+                        this.sipStack.getStackLogger().logDebug("Error closing socket " + ex);
+                    }
+                }
+            }
+        }
+        synchronized (this.writeQueue) {
+            this.writeQueue.clear();
+            this.pendingWriteBytes = 0;
+            this.connecting = false;
+        }
+        if (this.sipStack.isLoggingEnabled()) {
+            this.sipStack.getStackLogger().logDebug("Closing message Channel " + this);
+        }
+        this.nioMessageProcessor.remove(this);
+    }
+
+    public SIPTransactionStack getSIPStack() {
+        return this.sipStack;
+    }
+
+    public String getTransport() {
+        return ListeningPoint.TCP;
+    }
+
+    public String getPeerAddress() {
+        if (this.peerAddress != null) {
+            return this.peerAddress.getHostAddress();
+        }
+        return getHost();
+    }
+
+    protected InetAddress getPeerInetAddress() {
+        return this.peerAddress;
+    }
+
+    public String getPeerProtocol() {
+        return this.peerProtocol;
+    }
+
+    public void sendMessage(SIPMessage sipMessage) throws IOException {
+        byte[] msg = sipMessage.encodeAsBytes(getTransport());
+        long time = System.currentTimeMillis();
+        send(msg);
+        if (this.sipStack.getStackLogger().isLoggingEnabled(16)) {
+            logMessage(sipMessage, this.peerAddress, this.peerPort, time);
+        }
+    }
+
+    public void sendMessage(byte[] message, InetAddress receiverAddress, int receiverPort, boolean retry) throws IOException {
+        if (message == null || receiverAddress == null) {
+            throw new IllegalArgumentException("Null argument");
+        }
+        if (receiverAddress.equals(this.peerAddress) && receiverPort == this.peerPort) {
+            send(message);
+        } else {
+            ((NioTcpMessageChannel) this.nioMessageProcessor.createMessageChannel(receiverAddress, receiverPort)).send(message);
+        }
+    }
+
+    public void handleException(ParseException ex, SIPMessage sipMessage, Class hdrClass, String header, String message) throws ParseException {
+        if (this.sipStack.isLoggingEnabled()) {
+            this.sipStack.getStackLogger().logException(ex);
+        }
+        if (hdrClass == null || !(hdrClass.equals(From.class) || hdrClass.equals(To.class) || hdrClass.equals(CSeq.class) || hdrClass.equals(Via.class) || hdrClass.equals(CallID.class) || hdrClass.equals(RequestLine.class) || hdrClass.equals(StatusLine.class))) {
+            sipMessage.addUnparsed(header);
+            return;
+        }
+        if (this.sipStack.isLoggingEnabled()) {
+            this.sipStack.getStackLogger().logDebug("Encountered Bad Message \n" + sipMessage.toString());
+        }
+        String msgString = sipMessage.toString();
+        if (!(msgString.startsWith("SIP/") || msgString.startsWith("ACK "))) {
+            String badReqRes = createBadReqRes(msgString, ex);
+            if (badReqRes != null) {
+                if (this.sipStack.isLoggingEnabled()) {
+                    this.sipStack.getStackLogger().logDebug("Sending automatic 400 Bad Request:");
+                    this.sipStack.getStackLogger().logDebug(badReqRes);
+                }
+                try {
+                    send(badReqRes.getBytes());
+                } catch (IOException e) {
+                    this.sipStack.getStackLogger().logException(e);
+                }
+            } else if (this.sipStack.isLoggingEnabled()) {
+                this.sipStack.getStackLogger().logDebug("Could not formulate automatic 400 Bad Request");
+            }
+        }
+        throw ex;
+    }
+
+    public void processMessage(SIPMessage sipMessage) throws Exception {
+        if (sipMessage.getFrom() == null || sipMessage.getTo() == null || sipMessage.getCallId() == null || sipMessage.getCSeq() == null || sipMessage.getViaHeaders() == null) {
+            String badmsg = sipMessage.encode();
+            if (this.sipStack.isLoggingEnabled()) {
+                this.sipStack.getStackLogger().logDebug(">>> Dropped Bad Msg");
+                this.sipStack.getStackLogger().logDebug(badmsg);
+            }
+            return;
+        }
+        long receptionTime = System.currentTimeMillis();
+        if (sipMessage instanceof SIPRequest) {
+            SIPRequest sipRequest = (SIPRequest) sipMessage;
+            Via v = (Via) sipMessage.getViaHeaders().getFirst();
+            Hop hop = this.sipStack.addressResolver.resolveAddress(v.getHop());
+            this.peerProtocol = v.getTransport();
+            try {
+                if (v.hasParameter(Via.RPORT) || !hop.getHost().equals(this.peerAddress.getHostAddress())) {
+                    v.setParameter(Via.RECEIVED, this.peerAddress.getHostAddress());
+                }
+                v.setParameter(Via.RPORT, Integer.toString(this.peerPort));
+            } catch (ParseException ex) {
+                InternalErrorHandler.handleException(ex, this.sipStack.getStackLogger());
+            }
+            if (!this.isCached) {
+                this.nioMessageProcessor.cacheMessageChannel(this);
+                this.isCached = true;
+            }
+            if (this.sipStack.isLoggingEnabled()) {
+                this.sipStack.getStackLogger().logDebug("----Processing Message---");
+            }
+            if (this.sipStack.getStackLogger().isLoggingEnabled(16)) {
+                this.sipStack.serverLogger.logMessage(sipMessage, getPeerHostPort().toString(), getMessageProcessor().getIpAddress().getHostAddress() + Separators.COLON + getMessageProcessor().getPort(), false, receptionTime);
+            }
+            if (this.sipStack.getMaxMessageSize() > 0) {
+                if ((sipRequest.getContentLength() == null ? 0 : sipRequest.getContentLength().getContentLength()) + sipRequest.getSize() > this.sipStack.getMaxMessageSize()) {
+                    send(sipRequest.createResponse(Response.MESSAGE_TOO_LARGE).encodeAsBytes(getTransport()));
+                    throw new Exception("Message size exceeded");
+                }
+            }
+            ServerRequestInterface sipServerRequest = this.sipStack.newSIPServerRequest(sipRequest, this);
+            if (sipServerRequest != null) {
+                try {
+                    sipServerRequest.processRequest(sipRequest, this);
+                } finally {
+                    if ((sipServerRequest instanceof SIPTransaction) && !((SIPServerTransaction) sipServerRequest).passToListener()) {
+                        ((SIPTransaction) sipServerRequest).releaseSem();
+                    }
+                }
+            } else if (this.sipStack.isLoggingEnabled()) {
+                this.sipStack.getStackLogger().logWarning("Dropping request -- could not acquire semaphore in 10 sec");
+            }
+            return;
+        }
+        SIPResponse sipResponse = (SIPResponse) sipMessage;
+        try {
+            sipResponse.checkHeaders();
+            if (this.sipStack.getMaxMessageSize() > 0) {
+                if ((sipResponse.getContentLength() == null ? 0 : sipResponse.getContentLength().getContentLength()) + sipResponse.getSize() > this.sipStack.getMaxMessageSize()) {
+                    if (this.sipStack.isLoggingEnabled()) {
+                        this.sipStack.getStackLogger().logDebug("Message size exceeded");
+                    }
+                    return;
+                }
+            }
+            ServerResponseInterface sipServerResponse = this.sipStack.newSIPServerResponse(sipResponse, this);
+            if (sipServerResponse != null) {
+                try {
+                    if ((sipServerResponse instanceof SIPClientTransaction) && !((SIPClientTransaction) sipServerResponse).checkFromTag(sipResponse)) {
+                        if (this.sipStack.isLoggingEnabled()) {
+                            this.sipStack.getStackLogger().logError("Dropping response message with invalid tag >>> " + sipResponse);
+                        }
+                        return;
+                    }
+                    sipServerResponse.processResponse(sipResponse, this);
+                } finally {
+                    if ((sipServerResponse instanceof SIPTransaction) && !((SIPTransaction) sipServerResponse).passToListener()) {
+                        ((SIPTransaction) sipServerResponse).releaseSem();
+                    }
+                }
+            } else {
+                this.sipStack.getStackLogger().logWarning("Application is blocked -- could not acquire semaphore -- dropping response");
+            }
+        } catch (ParseException e) {
+            if (this.sipStack.isLoggingEnabled()) {
+                this.sipStack.getStackLogger().logError("Dropping Badly formatted response message >>> " + sipResponse);
+            }
+        }
+    }
+
+    protected void uncache() {
+        if (this.isCached && (this.channel == null || !this.channel.isOpen())) {
+            this.nioMessageProcessor.remove(this);
+        }
+    }
+
+    public boolean equals(Object other) {
+        return this == other;
+    }
+
+    public int hashCode() {
+        return System.identityHashCode(this);
+    }
+
+    public String getKey() {
+        if (this.key != null) {
+            return this.key;
+        }
+        this.key = MessageChannel.getKey(this.peerAddress, this.peerPort, ListeningPoint.TCP);
+        return this.key;
+    }
+
+    public String getViaHost() {
+        return this.myAddress;
+    }
+
+    public int getViaPort() {
+        return this.myPort;
+    }
+
+    public int getPeerPort() {
+        return this.peerPort;
+    }
+
+    public int getPeerPacketSourcePort() {
+        return this.peerPort;
+    }
+
+    public InetAddress getPeerPacketSourceAddress() {
+        return this.peerAddress;
+    }
+
+    public boolean isSecure() {
+        return false;
+    }
+}
@@ -0,0 +1,223 @@
+package gov.nist.javax.sip.stack;
+
+import gov.nist.core.HostPort;
+import gov.nist.core.InternalErrorHandler;
+import gov.nist.javax.sip.SIPConstants;
+import gov.nist.javax.sip.address.ParameterNames;
+import gov.nist.javax.sip.stack.NioSelectorPool.Worker;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sip.ListeningPoint;
+
+/**
+ * TCP message processor that serves all of its connections from a small pool of selector
+ * threads, instead of the two threads per connection used by TCPMessageProcessor. Received
+ * messages are processed on a separate executor: THREAD_POOL_SIZE threads if that is set,
+ * otherwise threads are created as needed and idle ones expire, so a connection only holds a
+ * thread while it has messages to process. Selected by the gov.nist.javax.sip.USE_NIO_TRANSPORT
+ * stack property. The listening socket is not created through the NetworkLayer, which only
+ * hands out blocking sockets.
+ */
+public class NioTcpMessageProcessor extends MessageProcessor {
+    private static final int MAX_SELECTORS = 4;
+    private final ArrayList<NioTcpMessageChannel> incomingChannels;
+    private boolean isRunning;
+    private ExecutorService messageExecutor;
+    protected int nConnections;
+    private NioSelectorPool selectors;
+    private ServerSocketChannel serverChannel;
+    private final Hashtable<String, NioTcpMessageChannel> tcpMessageChannels;
+
+    protected NioTcpMessageProcessor(InetAddress ipAddress, SIPTransactionStack sipStack, int port) {
+        super(ipAddress, port, ParameterNames.TCP, sipStack);
+        this.sipStack = sipStack;
+        this.tcpMessageChannels = new Hashtable();
+        this.incomingChannels = new ArrayList();
+    }
+
+    public void start() throws IOException {
+        Thread thread = new Thread(this);
+        thread.setName("NioTcpMessageProcessorThread");
+        thread.setPriority(10);
+        thread.setDaemon(true);
+        this.serverChannel = ServerSocketChannel.open();
+        this.serverChannel.socket().setReuseAddress(true);
+        this.serverChannel.socket().bind(new InetSocketAddress(getIpAddress(), getPort()));
+        if (getIpAddress().getHostAddress().equals(MessageProcessor.IN_ADDR_ANY) || getIpAddress().getHostAddress().equals(MessageProcessor.IN6_ADDR_ANY)) {
+            super.setIpAddress(this.serverChannel.socket().getInetAddress());
+        }
+        this.selectors = new NioSelectorPool(this.sipStack, Math.max(1, Math.min(MAX_SELECTORS, Runtime.getRuntime().availableProcessors())));
+        ThreadFactory threadFactory = new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable);
+                thread.setName("NioTcpMessageWorker-" + this.count.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+        if (this.sipStack.threadPoolSize > 0) {
+            this.messageExecutor = Executors.newFixedThreadPool(this.sipStack.threadPoolSize, threadFactory);
+        } else {
+            this.messageExecutor = Executors.newCachedThreadPool(threadFactory);
+        }
+        this.selectors.start();
+        this.isRunning = true;
+        thread.start();
+    }
+
+    /**
+     * Accepts connections and hands each one to the next selector. Accepting blocks while
+     * gov.nist.javax.sip.MAX_CONNECTIONS incoming connections are open.
+     */
+    public void run() {
+        while (this.isRunning) {
+            try {
+                synchronized (this) {
+                    while (this.isRunning && this.sipStack.maxConnections != -1 && this.nConnections >= this.sipStack.maxConnections) {
+                        wait();
+                    }
+                }
+                SocketChannel socketChannel = this.serverChannel.accept();
+                if (this.sipStack.isLoggingEnabled()) {
+                    getSIPStack().getStackLogger().logDebug("Accepting new connection!");
+                }
+                synchronized (this) {
+                    if (this.isRunning) {
+                        this.nConnections++;
+                        this.incomingChannels.add(new NioTcpMessageChannel(socketChannel, this.sipStack, this, this.selectors.next()));
+                    } else {
+                        socketChannel.close();
+                    }
+                }
+            } catch (ClosedChannelException e) {
+                this.isRunning = false;
+            } catch (InterruptedException e2) {
+                this.isRunning = false;
+            } catch (IOException ex) {
+                if (this.sipStack.isLoggingEnabled()) {
+                    getSIPStack().getStackLogger().logException(ex);
+                }
+            } catch (Exception ex2) {
+                InternalErrorHandler.handleException(ex2);
+            }
+        }
+    }
+
+    Worker nextWorker() {
+        return this.selectors.next();
+    }
+
+    /**
+     * Runs a message processing task of a channel off the selector threads.
+     */
+    void execute(Runnable task) {
+        this.messageExecutor.execute(task);
+    }
+
+    public String getTransport() {
+        return ParameterNames.TCP;
+    }
+
+    public SIPTransactionStack getSIPStack() {
+        return this.sipStack;
+    }
+
+    public synchronized void stop() {
+        this.isRunning = false;
+        try {
+            this.serverChannel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        for (NioTcpMessageChannel channel : new ArrayList<NioTcpMessageChannel>(this.tcpMessageChannels.values())) {
+            channel.close();
+        }
+        for (NioTcpMessageChannel channel2 : new ArrayList<NioTcpMessageChannel>(this.incomingChannels)) {
+            channel2.close();
+        }
+        this.selectors.stop();
+        this.messageExecutor.shutdown();
+        notify();
+    }
+
+    /**
+     * Forgets a closed channel. Removing an incoming channel frees its connection slot; a
+     * channel closed twice is only counted once.
+     */
+    protected synchronized void remove(NioTcpMessageChannel channel) {
+        String key = channel.getKey();
+        if (this.sipStack.isLoggingEnabled()) {
+            this.sipStack.getStackLogger().logDebug(Thread.currentThread() + " removing " + key);
+        }
+        if (this.tcpMessageChannels.get(key) == channel) {
+            this.tcpMessageChannels.remove(key);
+        }
+        if (this.incomingChannels.remove(channel)) {
+            this.nConnections--;
+            notify();
+        }
+    }
+
+    public synchronized MessageChannel createMessageChannel(HostPort targetHostPort) throws IOException {
+        return createMessageChannel(targetHostPort.getInetAddress(), targetHostPort.getPort());
+    }
+
+    protected synchronized void cacheMessageChannel(NioTcpMessageChannel messageChannel) {
+        String key = messageChannel.getKey();
+        NioTcpMessageChannel currentChannel = (NioTcpMessageChannel) this.tcpMessageChannels.get(key);
+        if (!(currentChannel == null || currentChannel == messageChannel)) {
+            if (this.sipStack.isLoggingEnabled()) {
+                this.sipStack.getStackLogger().logDebug("Closing " + key);
+            }
+            currentChannel.close();
+        }
+        if (this.sipStack.isLoggingEnabled()) {
+            this.sipStack.getStackLogger().logDebug("Caching " + key);
+        }
+        this.tcpMessageChannels.put(key, messageChannel);
+    }
+
+    public synchronized MessageChannel createMessageChannel(InetAddress host, int port) throws IOException {
+        String key = MessageChannel.getKey(host, port, ListeningPoint.TCP);
+        NioTcpMessageChannel retval = (NioTcpMessageChannel) this.tcpMessageChannels.get(key);
+        if (retval != null) {
+            return retval;
+        }
+        retval = new NioTcpMessageChannel(host, port, this.sipStack, this);
+        this.tcpMessageChannels.put(key, retval);
+        retval.isCached = true;
+        if (this.sipStack.isLoggingEnabled()) {
+            this.sipStack.getStackLogger().logDebug("key " + key);
+            this.sipStack.getStackLogger().logDebug("Creating " + retval);
+        }
+        return retval;
+    }
+
+    public int getMaximumMessageSize() {
+        return Integer.MAX_VALUE;
+    }
+
+    public synchronized boolean inUse() {
+        return !this.incomingChannels.isEmpty();
+    }
+
+    public int getDefaultTargetPort() {
+        return SIPConstants.DEFAULT_PORT;
+    }
+
+    public boolean isSecure() {
+        return false;
+    }
+}
@@ -23,7 +23,6 @@ import gov.nist.javax.sip.parser.TokenNames;
 import java.io.IOException;
 import java.text.ParseException;
 import java.util.ListIterator;
-import java.util.TimerTask;
 import java.util.concurrent.ConcurrentHashMap;
 import javax.sip.ClientTransaction;
 import javax.sip.Dialog;
@@ -76,7 +75,7 @@ public class SIPClientTransaction extends SIPTransaction implements ServerRespon
                     int newUseCount = messageChannel.useCount - 1;
                     messageChannel.useCount = newUseCount;
                     if (newUseCount <= 0) {
-                        sipStack.getTimer().schedule(new LingerTimer(), 8000);
+                        sipStack.getSipTimer().schedule(new LingerTimer(), 8000);
                     }
                 } else if (sipStack.isLoggingEnabled() && clientTransaction.isReliable()) {
                     int useCount = clientTransaction.getMessageChannel().useCount;
@@ -673,9 +672,9 @@ public class SIPClientTransaction extends SIPTransaction implements ServerRespon
 
     protected void startTransactionTimer() {
         if (this.transactionTimerStarted.compareAndSet(false, true)) {
-            TimerTask myTimer = new TransactionTimer();
-            if (this.sipStack.getTimer() != null) {
-                this.sipStack.getTimer().schedule(myTimer, (long) this.BASE_TIMER_INTERVAL, (long) this.BASE_TIMER_INTERVAL);
+            SIPStackTimerTask myTimer = new TransactionTimer();
+            if (this.sipStack.getSipTimer() != null) {
+                this.sipStack.getSipTimer().schedule(myTimer, (long) this.BASE_TIMER_INTERVAL, (long) this.BASE_TIMER_INTERVAL);
             }
         }
     }
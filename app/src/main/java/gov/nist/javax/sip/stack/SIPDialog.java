@@ -919,12 +919,12 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
     }
 
     public void doDeferredDelete() {
-        if (this.sipStack.getTimer() == null) {
+        if (this.sipStack.getSipTimer() == null) {
             setState(TERMINATED_STATE);
             return;
         }
         this.dialogDeleteTask = new DialogDeleteTask();
-        this.sipStack.getTimer().schedule(this.dialogDeleteTask, 32000);
+        this.sipStack.getSipTimer().schedule(this.dialogDeleteTask, 32000);
     }
 
     public void setState(int state) {
@@ -938,8 +938,8 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
         }
         this.dialogState = state;
         if (state == TERMINATED_STATE) {
-            if (this.sipStack.getTimer() != null) {
-                this.sipStack.getTimer().schedule(new LingerTimer(), 8000);
+            if (this.sipStack.getSipTimer() != null) {
+                this.sipStack.getSipTimer().schedule(new LingerTimer(), 8000);
             }
             stopTimer();
         }
@@ -1541,7 +1541,7 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
                     this.timerTask.transaction = transaction;
                 } else {
                     this.timerTask = new DialogTimerTask(transaction);
-                    this.sipStack.getTimer().schedule(this.timerTask, 500, 500);
+                    this.sipStack.getSipTimer().schedule(this.timerTask, 500, 500);
                 }
                 releaseTimerTaskSem();
                 setRetransmissionTicks();
@@ -2098,11 +2098,11 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
     }
 
     public synchronized void doDeferredDeleteIfNoAckSent(long seqno) {
-        if (this.sipStack.getTimer() == null) {
+        if (this.sipStack.getSipTimer() == null) {
             setState(TERMINATED_STATE);
         } else if (this.dialogDeleteIfNoAckSentTask == null) {
             this.dialogDeleteIfNoAckSentTask = new DialogDeleteIfNoAckSentTask(seqno);
-            this.sipStack.getTimer().schedule(this.dialogDeleteIfNoAckSentTask, 32000);
+            this.sipStack.getSipTimer().schedule(this.dialogDeleteIfNoAckSentTask, 32000);
         }
     }
 
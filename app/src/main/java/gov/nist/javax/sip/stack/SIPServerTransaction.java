@@ -160,7 +160,7 @@ public class SIPServerTransaction extends SIPTransaction implements ServerReques
                         return;
                     }
                 }
-                SIPServerTransaction.this.sipStack.getTimer().schedule(new LingerTimer(), 8000);
+                SIPServerTransaction.this.sipStack.getSipTimer().schedule(new LingerTimer(), 8000);
             } else {
                 SIPServerTransaction.this.fireTimer();
             }
@@ -215,7 +215,7 @@ public class SIPServerTransaction extends SIPTransaction implements ServerReques
         super(sipStack, newChannelToUse);
         this.provisionalResponseSem = new Semaphore(1);
         if (sipStack.maxListenerResponseTime != -1) {
-            sipStack.getTimer().schedule(new ListenerExecutionMaxTimer(), (long) (sipStack.maxListenerResponseTime * 1000));
+            sipStack.getSipTimer().schedule(new ListenerExecutionMaxTimer(), (long) (sipStack.maxListenerResponseTime * 1000));
         }
         this.rseqNumber = (int) (Math.random() * 1000.0d);
         if (sipStack.isLoggingEnabled()) {
@@ -285,11 +285,11 @@ public class SIPServerTransaction extends SIPTransaction implements ServerReques
     protected void map() {
         TransactionState realState = getRealState();
         if (realState == null || realState == TransactionState.TRYING) {
-            if (!isInviteTransaction() || this.isMapped || this.sipStack.getTimer() == null) {
+            if (!isInviteTransaction() || this.isMapped || this.sipStack.getSipTimer() == null) {
                 this.isMapped = true;
             } else {
                 this.isMapped = true;
-                this.sipStack.getTimer().schedule(new SendTrying(), 200);
+                this.sipStack.getSipTimer().schedule(new SendTrying(), 200);
             }
         }
         this.sipStack.removePendingTransaction(this);
@@ -649,7 +649,7 @@ public class SIPServerTransaction extends SIPTransaction implements ServerReques
                                                 dialogId = ((SIPResponse) response).getDialogId(true);
                                                 this.retransmissionAlertTimerTask = new RetransmissionAlertTimerTask(dialogId);
                                                 this.sipStack.retransmissionAlertTransactions.put(dialogId, this);
-                                                this.sipStack.getTimer().schedule(this.retransmissionAlertTimerTask, 0, 500);
+                                                this.sipStack.getSipTimer().schedule(this.retransmissionAlertTimerTask, 0, 500);
                                             }
                                             sendMessage((SIPResponse) response);
                                             if (dialog != null) {
@@ -695,7 +695,7 @@ public class SIPServerTransaction extends SIPTransaction implements ServerReques
                         dialogId = ((SIPResponse) response).getDialogId(true);
                         this.retransmissionAlertTimerTask = new RetransmissionAlertTimerTask(dialogId);
                         this.sipStack.retransmissionAlertTransactions.put(dialogId, this);
-                        this.sipStack.getTimer().schedule(this.retransmissionAlertTimerTask, 0, 500);
+                        this.sipStack.getSipTimer().schedule(this.retransmissionAlertTimerTask, 0, 500);
                         sendMessage((SIPResponse) response);
                         if (dialog != null) {
                             dialog.startRetransmitTimer(this, (SIPResponse) response);
@@ -744,8 +744,8 @@ public class SIPServerTransaction extends SIPTransaction implements ServerReques
     }
 
     protected void startTransactionTimer() {
-        if (this.transactionTimerStarted.compareAndSet(false, true) && this.sipStack.getTimer() != null) {
-            this.sipStack.getTimer().schedule(new TransactionTimer(), (long) this.BASE_TIMER_INTERVAL, (long) this.BASE_TIMER_INTERVAL);
+        if (this.transactionTimerStarted.compareAndSet(false, true) && this.sipStack.getSipTimer() != null) {
+            this.sipStack.getSipTimer().schedule(new TransactionTimer(), (long) this.BASE_TIMER_INTERVAL, (long) this.BASE_TIMER_INTERVAL);
         }
     }
 
@@ -806,7 +806,7 @@ public class SIPServerTransaction extends SIPTransaction implements ServerReques
             if (getDialog() == null || this.provisionalResponseSem.tryAcquire(1, TimeUnit.SECONDS)) {
                 sendMessage((SIPMessage) relResponse);
                 this.provisionalResponseTask = new ProvisionalResponseTask();
-                this.sipStack.getTimer().schedule(this.provisionalResponseTask, 0, 500);
+                this.sipStack.getSipTimer().schedule(this.provisionalResponseTask, 0, 500);
                 return;
             }
             throw new SipException("Unacknowledged response");
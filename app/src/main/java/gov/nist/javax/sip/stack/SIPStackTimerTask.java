@@ -1,11 +1,25 @@
 package gov.nist.javax.sip.stack;
 
+import gov.nist.javax.sip.stack.HashedWheelSipTimer.Timeout;
 import java.util.TimerTask;
 
 public abstract class SIPStackTimerTask extends TimerTask {
+    volatile long deadline;
+    long period;
+    volatile SipTimer sipTimer;
+    volatile Timeout timeout;
+
     protected abstract void runTask();
 
     public final void run() {
+        SipTimer timer = this.sipTimer;
+        if (timer != null) {
+            long now = System.currentTimeMillis();
+            timer.taskExecuted(now - this.deadline);
+            if (this.period > 0) {
+                this.deadline = this.period + now;
+            }
+        }
         try {
             runTask();
         } catch (Throwable e) {
@@ -13,4 +27,13 @@ public abstract class SIPStackTimerTask extends TimerTask {
             e.printStackTrace();
         }
     }
+
+    public boolean cancel() {
+        boolean cancelled = super.cancel();
+        SipTimer timer = this.sipTimer;
+        if (timer == null || !timer.cancel(this)) {
+            return cancelled;
+        }
+        return true;
+    }
 }
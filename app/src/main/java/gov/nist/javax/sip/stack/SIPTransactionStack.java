@@ -76,6 +76,7 @@ public abstract class SIPTransactionStack implements SIPTransactionEventListener
     protected boolean isAutomaticDialogSupportEnabled;
     protected boolean isBackToBackUserAgent;
     protected boolean isDialogTerminatedEventDeliveredForNullDialog;
+    protected boolean lazyHeaderParsing;
     protected LogRecordFactory logRecordFactory;
     protected boolean logStackTraceOnMessageSend;
     protected int maxConnections;
@@ -103,6 +104,8 @@ public abstract class SIPTransactionStack implements SIPTransactionEventListener
     protected int serverTransactionTableHighwaterMark;
     protected int serverTransactionTableLowaterMark;
     protected StackMessageFactory sipMessageFactory;
+    private SipTimer sipTimer;
+    protected String sipTimerClassName;
     protected String stackAddress;
     protected boolean stackDoesCongestionControl;
     protected InetAddress stackInetAddress;
@@ -113,9 +116,11 @@ public abstract class SIPTransactionStack implements SIPTransactionEventListener
     protected int threadPoolSize;
     private Timer timer;
     protected boolean toExit;
+    protected boolean udpChannelReceive;
     boolean udpFlag;
     protected boolean unlimitedClientTransactionTableSize;
     protected boolean unlimitedServerTransactionTableSize;
+    protected boolean useNioTransport;
     protected boolean useRouterForAll;
 
     class PingTimer extends SIPStackTimerTask {
@@ -214,6 +219,7 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
         this.mergeTable = new ConcurrentHashMap();
         this.retransmissionAlertTransactions = new ConcurrentHashMap();
         this.timer = new Timer();
+        this.sipTimer = new DefaultSipTimer(this.timer);
         this.pendingTransactions = new ConcurrentHashMap();
         this.forkedClientTransactionTable = new ConcurrentHashMap();
         if (getThreadAuditor().isEnabled()) {
@@ -237,9 +243,28 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
         this.terminatedServerTransactionsPendingAck = new ConcurrentHashMap();
         this.forkedClientTransactionTable = new ConcurrentHashMap();
         this.timer = new Timer();
+        this.sipTimer = createSipTimer();
         this.activeClientTransactionCount = new AtomicInteger(0);
     }
 
+    /**
+     * Creates the timer of transactions and dialogs: an instance of sipTimerClassName if one
+     * was configured, otherwise a DefaultSipTimer sharing the stack's Timer.
+     */
+    private SipTimer createSipTimer() {
+        if (this.sipTimerClassName != null) {
+            try {
+                return (SipTimer) Class.forName(this.sipTimerClassName).getConstructor(new Class[0]).newInstance(new Object[0]);
+            } catch (Exception ex) {
+                if (this.stackLogger.isLoggingEnabled()) {
+                    this.stackLogger.logError("Cannot create SipTimer " + this.sipTimerClassName + ", using the default timer");
+                    this.stackLogger.logException(ex);
+                }
+            }
+        }
+        return new DefaultSipTimer(this.timer);
+    }
+
     public SocketAddress obtainLocalAddress(InetAddress dst, int dstPort, InetAddress localAddress, int localPort) throws IOException {
         return this.ioHandler.obtainLocalAddress(dst, dstPort, localAddress, localPort);
     }
@@ -777,7 +802,7 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
             if (removed2 != null) {
                 SIPClientTransaction clientTx = removed2;
                 if (clientTx.getMethod().equals(TokenNames.INVITE) && this.maxForkTime != 0) {
-                    this.timer.schedule(new RemoveForkedTransactionTimerTask(clientTx), (long) (this.maxForkTime * 1000));
+                    this.sipTimer.schedule(new RemoveForkedTransactionTimerTask(clientTx), (long) (this.maxForkTime * 1000));
                 }
             }
         }
@@ -881,6 +906,10 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
             this.timer.cancel();
         }
         this.timer = null;
+        if (this.sipTimer != null) {
+            this.sipTimer.stop();
+        }
+        this.sipTimer = null;
         this.pendingTransactions.clear();
         this.toExit = true;
         synchronized (this) {
@@ -1038,6 +1067,11 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
             this.udpFlag = true;
             return udpMessageProcessor;
         } else if (transport.equalsIgnoreCase(ParameterNames.TCP)) {
+            if (this.useNioTransport) {
+                NioTcpMessageProcessor nioTcpMessageProcessor = new NioTcpMessageProcessor(ipAddress, this, port);
+                addMessageProcessor(nioTcpMessageProcessor);
+                return nioTcpMessageProcessor;
+            }
             TCPMessageProcessor tcpMessageProcessor = new TCPMessageProcessor(ipAddress, this, port);
             addMessageProcessor(tcpMessageProcessor);
             return tcpMessageProcessor;
@@ -1320,6 +1354,18 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
         return this.timer;
     }
 
+    public void setSipTimer(SipTimer sipTimer) {
+        this.sipTimer = sipTimer;
+    }
+
+    /**
+     * Returns the timer that runs transaction and dialog timers, or null once the stack is
+     * stopped.
+     */
+    public SipTimer getSipTimer() {
+        return this.sipTimer;
+    }
+
     public int getReceiveUdpBufferSize() {
         return this.receiveUdpBufferSize;
     }
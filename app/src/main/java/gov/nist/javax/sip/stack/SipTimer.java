@@ -0,0 +1,86 @@
+package gov.nist.javax.sip.stack;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the timers of transactions and dialogs. The implementation is chosen with the
+ * gov.nist.javax.sip.TIMER_CLASS_NAME stack property and needs a public no-argument
+ * constructor. Every implementation keeps track of how late its tasks run.
+ */
+public abstract class SipTimer {
+    private final AtomicLong executedCount;
+    private final AtomicLong maxLag;
+    private final AtomicLong totalLag;
+
+    public abstract void schedule(SIPStackTimerTask sIPStackTimerTask, long j);
+
+    public abstract void schedule(SIPStackTimerTask sIPStackTimerTask, long j, long j2);
+
+    public abstract void stop();
+
+    /**
+     * Called when a task scheduled on this timer is cancelled. Returns true if the task had
+     * not run yet, or was periodic.
+     */
+    protected abstract boolean cancel(SIPStackTimerTask sIPStackTimerTask);
+
+    protected SipTimer() {
+        this.executedCount = new AtomicLong();
+        this.maxLag = new AtomicLong();
+        this.totalLag = new AtomicLong();
+    }
+
+    /**
+     * Binds the task to this timer and records its first deadline. Must be called by every
+     * schedule method before the task can run.
+     */
+    protected final void prepare(SIPStackTimerTask task, long delay, long period) {
+        if (delay < 0) {
+            throw new IllegalArgumentException("Negative delay.");
+        } else if (period < 0) {
+            throw new IllegalArgumentException("Negative period.");
+        } else {
+            task.sipTimer = this;
+            task.period = period;
+            task.deadline = System.currentTimeMillis() + delay;
+        }
+    }
+
+    void taskExecuted(long lag) {
+        long max;
+        if (lag < 0) {
+            lag = 0;
+        }
+        this.executedCount.incrementAndGet();
+        this.totalLag.addAndGet(lag);
+        do {
+            max = this.maxLag.get();
+            if (lag <= max) {
+                return;
+            }
+        } while (!this.maxLag.compareAndSet(max, lag));
+    }
+
+    public long getExecutedCount() {
+        return this.executedCount.get();
+    }
+
+    /**
+     * Returns the largest delay, in milliseconds, between the time a task was due and the time
+     * it started running.
+     */
+    public long getMaxLag() {
+        return this.maxLag.get();
+    }
+
+    public long getAverageLag() {
+        long count = this.executedCount.get();
+        return count == 0 ? 0 : this.totalLag.get() / count;
+    }
+
+    public void resetLagStatistics() {
+        this.executedCount.set(0);
+        this.maxLag.set(0);
+        this.totalLag.set(0);
+    }
+}
@@ -24,6 +24,7 @@ import java.net.DatagramSocket;
 import java.net.InetAddress;
 import java.text.ParseException;
 import java.util.Hashtable;
+import java.util.LinkedList;
 import java.util.TimerTask;
 import javax.sip.ListeningPoint;
 import javax.sip.address.Hop;
@@ -31,6 +32,7 @@ import javax.sip.address.Hop;
 public class UDPMessageChannel extends MessageChannel implements ParseExceptionListener, Runnable, RawMessageChannel {
     private DatagramPacket incomingPacket;
     private String myAddress;
+    private LinkedList messageQueue;
     protected StringMsgParser myParser;
     protected int myPort;
     private InetAddress peerAddress;
@@ -62,7 +64,16 @@ public class UDPMessageChannel extends MessageChannel implements ParseExceptionL
     }
 
     protected UDPMessageChannel(SIPTransactionStack stack, UDPMessageProcessor messageProcessor) {
+        this(stack, messageProcessor, messageProcessor.messageQueue);
+    }
+
+    /**
+     * Creates a channel whose thread processes the packets added to messageQueue until the
+     * processor is stopped.
+     */
+    protected UDPMessageChannel(SIPTransactionStack stack, UDPMessageProcessor messageProcessor, LinkedList messageQueue) {
         this.pingBackRecord = new Hashtable();
+        this.messageQueue = messageQueue;
         this.messageProcessor = messageProcessor;
         this.sipStack = stack;
         Thread mythread = new Thread(this);
@@ -110,13 +121,15 @@ public class UDPMessageChannel extends MessageChannel implements ParseExceptionL
             if (this.myParser == null) {
                 this.myParser = new StringMsgParser();
                 this.myParser.setParseExceptionListener(this);
+                this.myParser.setLazyParsing(this.sipStack.lazyHeaderParsing);
             }
-            if (this.sipStack.threadPoolSize != -1) {
-                synchronized (((UDPMessageProcessor) this.messageProcessor).messageQueue) {
+            if (this.messageQueue != null) {
+                synchronized (this.messageQueue) {
                     while (true) {
-                        if (!((UDPMessageProcessor) this.messageProcessor).messageQueue.isEmpty()) {
-                            packet = (DatagramPacket) ((UDPMessageProcessor) this.messageProcessor).messageQueue.removeFirst();
+                        if (!this.messageQueue.isEmpty()) {
+                            packet = (DatagramPacket) this.messageQueue.removeFirst();
                             this.incomingPacket = packet;
+                            break;
                         } else if (((UDPMessageProcessor) this.messageProcessor).isRunning) {
                             if (threadHandle == null) {
                                 try {
@@ -128,7 +141,7 @@ public class UDPMessageChannel extends MessageChannel implements ParseExceptionL
                                 }
                             }
                             threadHandle.ping();
-                            ((UDPMessageProcessor) this.messageProcessor).messageQueue.wait(threadHandle.getPingIntervalInMillisecs());
+                            this.messageQueue.wait(threadHandle.getPingIntervalInMillisecs());
                         } else {
                             return;
                         }
@@ -142,20 +155,23 @@ public class UDPMessageChannel extends MessageChannel implements ParseExceptionL
             } catch (Exception e2) {
                 this.sipStack.getStackLogger().logError("Error while processing incoming UDP packet", e2);
             }
-        } while (this.sipStack.threadPoolSize != -1);
+        } while (this.messageQueue != null);
     }
 
     private void processIncomingDataPacket(DatagramPacket packet) throws Exception {
         this.peerAddress = packet.getAddress();
         int packetLength = packet.getLength();
-        byte[] msgBytes = new byte[packetLength];
-        System.arraycopy(packet.getData(), 0, msgBytes, 0, packetLength);
+        byte[] msgBytes = packet.getData();
+        if (packet.getOffset() != 0 || msgBytes.length != packetLength) {
+            msgBytes = new byte[packetLength];
+            System.arraycopy(packet.getData(), packet.getOffset(), msgBytes, 0, packetLength);
+        }
         if (this.sipStack.isLoggingEnabled()) {
             this.sipStack.getStackLogger().logDebug("UDPMessageChannel: processIncomingDataPacket : peerAddress = " + this.peerAddress.getHostAddress() + Separators.SLASH + packet.getPort() + " Length = " + packetLength);
         }
         try {
             this.receptionTime = System.currentTimeMillis();
-            SIPMessage sipMessage = this.myParser.parseSIPMessage(msgBytes);
+            SIPMessage sipMessage = this.myParser.parseSIPMessage(msgBytes, 0, packetLength);
             this.myParser = null;
             if (sipMessage == null) {
                 if (this.sipStack.isLoggingEnabled()) {
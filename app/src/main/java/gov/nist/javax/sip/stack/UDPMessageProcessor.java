@@ -9,21 +9,53 @@ import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
 import java.util.LinkedList;
 import org.ccil.cowan.tagsoup.HTMLModels;
 
 public class UDPMessageProcessor extends MessageProcessor {
     private static final int HIGHWAT = 5000;
     private static final int LOWAT = 2500;
+    private static final int MAX_DATAGRAM_SIZE = 65535;
+    private DatagramChannel channel;
     protected boolean isRunning;
     protected LinkedList messageChannels;
     protected LinkedList messageQueue;
     private int port;
     protected DatagramSocket sock;
     protected int threadPoolSize;
+    private LinkedList[] workerQueues;
+
+    /**
+     * The only reader of the channel. Datagrams are taken off the channel one at a time and
+     * queued in that order, so the messages of a call reach their worker in the order they
+     * arrived.
+     */
+    private class Receiver implements Runnable {
+        private Receiver() {
+        }
+
+        public void run() {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(UDPMessageProcessor.MAX_DATAGRAM_SIZE);
+            while (UDPMessageProcessor.this.isRunning) {
+                try {
+                    UDPMessageProcessor.this.dispatch(UDPMessageProcessor.receive(UDPMessageProcessor.this.channel, buffer));
+                } catch (ClosedChannelException e) {
+                    return;
+                } catch (IOException ex) {
+                    if (UDPMessageProcessor.this.sipStack.isLoggingEnabled()) {
+                        UDPMessageProcessor.this.sipStack.getStackLogger().logException(ex);
+                    }
+                }
+            }
+        }
+    }
 
     protected UDPMessageProcessor(InetAddress ipAddress, SIPTransactionStack sipStack, int port) throws IOException {
         super(ipAddress, port, ParameterNames.UDP, sipStack);
@@ -31,7 +63,13 @@ public class UDPMessageProcessor extends MessageProcessor {
         this.messageQueue = new LinkedList();
         this.port = port;
         try {
-            this.sock = sipStack.getNetworkLayer().createDatagramSocket(port, ipAddress);
+            if (sipStack.udpChannelReceive) {
+                this.channel = DatagramChannel.open();
+                this.sock = this.channel.socket();
+                this.sock.bind(new InetSocketAddress(ipAddress, port));
+            } else {
+                this.sock = sipStack.getNetworkLayer().createDatagramSocket(port, ipAddress);
+            }
             this.sock.setReceiveBufferSize(sipStack.getReceiveUdpBufferSize());
             this.sock.setSendBufferSize(sipStack.getSendUdpBufferSize());
             if (sipStack.getThreadAuditor().isEnabled()) {
@@ -51,6 +89,10 @@ public class UDPMessageProcessor extends MessageProcessor {
 
     public void start() throws IOException {
         this.isRunning = true;
+        if (this.channel != null) {
+            startReceivers();
+            return;
+        }
         Thread thread = new Thread(this);
         thread.setDaemon(true);
         thread.setName("UDPMessageProcessorThread");
@@ -119,12 +161,142 @@ public class UDPMessageProcessor extends MessageProcessor {
         }
     }
 
+    /**
+     * Starts the thread reading the channel, and one worker thread per queue processing
+     * messages. There are THREAD_POOL_SIZE workers, or one per processor if no pool size is set.
+     * All messages of a call go to the same worker, so they are processed in the order they
+     * were received.
+     */
+    private void startReceivers() {
+        int workers = this.sipStack.threadPoolSize > 0 ? this.sipStack.threadPoolSize : Runtime.getRuntime().availableProcessors();
+        this.workerQueues = new LinkedList[workers];
+        this.messageChannels = new LinkedList();
+        for (int i = 0; i < workers; i++) {
+            this.workerQueues[i] = new LinkedList();
+            this.messageChannels.add(new UDPMessageChannel(this.sipStack, this, this.workerQueues[i]));
+        }
+        Thread thread = new Thread(new Receiver());
+        thread.setDaemon(true);
+        thread.setName("UDPMessageReceiverThread");
+        thread.setPriority(10);
+        thread.start();
+    }
+
+    /**
+     * Receives a datagram through buffer and returns it as a packet over an array of its own
+     * length. This is the only copy of the data: a lazily parsed message keeps the array it was
+     * parsed from, so the array cannot be reused for the next datagram.
+     */
+    static DatagramPacket receive(DatagramChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.clear();
+        InetSocketAddress source = (InetSocketAddress) channel.receive(buffer);
+        buffer.flip();
+        byte[] data = new byte[buffer.remaining()];
+        buffer.get(data);
+        return new DatagramPacket(data, data.length, source);
+    }
+
+    /**
+     * Returns the queue of the worker that processes the messages of packet's call.
+     */
+    static LinkedList getWorkerQueue(LinkedList[] queues, DatagramPacket packet) {
+        return queues[(callIdHash(packet.getData(), packet.getLength()) & Integer.MAX_VALUE) % queues.length];
+    }
+
+    private void dispatch(DatagramPacket packet) {
+        LinkedList queue = getWorkerQueue(this.workerQueues, packet);
+        synchronized (queue) {
+            if (this.sipStack.stackDoesCongestionControl && queue.size() >= HIGHWAT) {
+                if (this.sipStack.isLoggingEnabled()) {
+                    this.sipStack.getStackLogger().logDebug("Dropping message -- queue length exceeded");
+                }
+                return;
+            }
+            queue.add(packet);
+            queue.notify();
+        }
+    }
+
+    /**
+     * Returns a hash of the Call-ID of a raw message, or 0 if it has none. Only the header
+     * lines are scanned and nothing is parsed.
+     */
+    static int callIdHash(byte[] data, int length) {
+        int lineStart = 0;
+        while (lineStart < length) {
+            int lineEnd = lineStart;
+            while (lineEnd < length && data[lineEnd] != 10) {
+                lineEnd++;
+            }
+            int end = lineEnd;
+            if (end > lineStart && data[end - 1] == 13) {
+                end--;
+            }
+            if (end == lineStart) {
+                return 0;
+            }
+            int valueStart = getCallIdValueStart(data, lineStart, end);
+            if (valueStart >= 0) {
+                while (end > valueStart && data[end - 1] <= 32) {
+                    end--;
+                }
+                int hash = 0;
+                for (int i = valueStart; i < end; i++) {
+                    hash = (hash * 31) + data[i];
+                }
+                return hash;
+            }
+            lineStart = lineEnd + 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the index of the value of a Call-ID header line in data[start..end), or -1 if
+     * the line is another header. Accepts the compact form "i".
+     */
+    private static int getCallIdValueStart(byte[] data, int start, int end) {
+        int i;
+        if ((data[start] | 32) != 105) {
+            if ((data[start] | 32) != 99 || end - start < 7) {
+                return -1;
+            }
+            String name = "call-id";
+            for (i = 0; i < 7; i++) {
+                if ((data[start + i] | 32) != name.charAt(i)) {
+                    return -1;
+                }
+            }
+            i = start + 7;
+        } else {
+            i = start + 1;
+        }
+        while (i < end && (data[i] == 32 || data[i] == 9)) {
+            i++;
+        }
+        if (i == end || data[i] != 58) {
+            return -1;
+        }
+        i++;
+        while (i < end && (data[i] == 32 || data[i] == 9)) {
+            i++;
+        }
+        return i;
+    }
+
     public void stop() {
         synchronized (this.messageQueue) {
             this.isRunning = false;
             this.messageQueue.notifyAll();
             this.sock.close();
         }
+        if (this.workerQueues != null) {
+            for (LinkedList queue : this.workerQueues) {
+                synchronized (queue) {
+                    queue.notifyAll();
+                }
+            }
+        }
     }
 
     public String getTransport() {
@@ -162,6 +334,15 @@ public class UDPMessageProcessor extends MessageProcessor {
                 z = true;
             }
         }
+        if (!(z || this.workerQueues == null)) {
+            for (LinkedList queue : this.workerQueues) {
+                synchronized (queue) {
+                    if (!queue.isEmpty()) {
+                        return true;
+                    }
+                }
+            }
+        }
         return z;
     }
 }
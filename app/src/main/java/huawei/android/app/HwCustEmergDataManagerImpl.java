@@ -19,6 +19,8 @@ public class HwCustEmergDataManagerImpl extends HwCustEmergDataManager {
     private static final String EMERGENCY_STATE_PROP_NAME = "sys.emergency.mountdata";
     private static boolean HWFLOW = false;
     private static final boolean HWLOGW_E = true;
+    private static final String PKGBIN_PATH = "/data/system/packages.bin";
+    private static final String PKGBIN_PATH_BK = "/data_bk/system/packages.bin";
     private static final String PKGXML_PATH = "/data/system/packages.xml";
     private static final String PKGXML_PATH_BK = "/data_bk/system/packages.xml";
     private static final String TAG = "HwCustEmergDataManager";
@@ -274,6 +276,7 @@ Caused by: java.lang.IllegalArgumentException: bogus opcode: 0073
             mFileBackup.copy(CONTACTS_PROVIDER_PATH_BK, CONTACTS_PROVIDER_PATH);
             mFileBackup.copy(TELEPHONY_PROVIDER_PATH_BK, TELEPHONY_PROVIDER_PATH);
             mFileBackup.copy(PKGXML_PATH_BK, PKGXML_PATH);
+            mFileBackup.copy(PKGBIN_PATH_BK, PKGBIN_PATH);
             mFileBackup.disconnectSocket();
         }
     }
@@ -0,0 +1,121 @@
+package android.content.pm;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scans a directory of installed packages the way the boot scan does, once with an empty
+ * PackageCache (cold, every manifest is parsed and the cache is filled) and once with the cache
+ * filled by the previous boot (hot). Parsing real APKs needs the framework, so this runs on a
+ * device with the directory given by the "dir" parameter.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PackageCacheBenchmark {
+    /**
+     * The packages to scan and a cache directory for them.
+     */
+    @State(Scope.Thread)
+    public static class Scan {
+        @Param({"/system/app", "/system/priv-app"})
+        public String dir;
+
+        File cacheDir;
+        File[] packages;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            this.cacheDir = Files.createTempDirectory("package_cache").toFile();
+            this.packages = new File(this.dir).listFiles();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            clear();
+            this.cacheDir.delete();
+        }
+
+        void clear() {
+            File[] files = this.cacheDir.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts every scan with an empty cache.
+     */
+    public static class ColdScan extends Scan {
+        @Setup(Level.Invocation)
+        public void clearCache() {
+            clear();
+        }
+    }
+
+    /**
+     * Fills the cache once, as the previous boot would have.
+     */
+    public static class HotScan extends Scan {
+        @Setup(Level.Trial)
+        public void fillCache() {
+            scan(this);
+        }
+    }
+
+    @Benchmark
+    public int coldScan(ColdScan state) {
+        return scan(state);
+    }
+
+    @Benchmark
+    public int hotScan(HotScan state) {
+        return scan(state);
+    }
+
+    /**
+     * Parses every package of the directory with the cache, returning how many were parsed.
+     */
+    static int scan(Scan state) {
+        int parsed = 0;
+        for (File file : state.packages) {
+            if (!PackageParser.isApkFile(file) && !file.isDirectory()) {
+                continue;
+            }
+            PackageParser parser = new PackageParser();
+            parser.setCacheDir(state.cacheDir);
+            try {
+                parser.parsePackage(file, 0);
+                parsed++;
+            } catch (PackageParser.PackageParserException e) {
+            }
+        }
+        return parsed;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(PackageCacheBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,105 @@
+package android.content.pm;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that PackageCache entries are invalidated when the APKs of a package change.
+ */
+public class PackageCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File apps;
+    private File cacheDir;
+
+    @Before
+    public void setUp() throws Exception {
+        apps = folder.newFolder("app");
+        cacheDir = folder.newFolder("package_cache");
+    }
+
+    @Test
+    public void getStamp_changesWhenApkSizeChanges() throws Exception {
+        File apk = writeFile(new File(apps, "Foo.apk"), 100, 1000000L);
+        String before = PackageCache.getStamp(apk);
+        writeFile(apk, 101, 1000000L);
+        assertNotEquals(before, PackageCache.getStamp(apk));
+    }
+
+    @Test
+    public void getStamp_changesWhenApkIsTouched() throws Exception {
+        File apk = writeFile(new File(apps, "Foo.apk"), 100, 1000000L);
+        String before = PackageCache.getStamp(apk);
+        assertTrue(apk.setLastModified(2000000L));
+        assertNotEquals(before, PackageCache.getStamp(apk));
+    }
+
+    @Test
+    public void getStamp_isStableForUnchangedPackage() throws Exception {
+        File apk = writeFile(new File(apps, "Foo.apk"), 100, 1000000L);
+        assertEquals(PackageCache.getStamp(apk), PackageCache.getStamp(apk));
+    }
+
+    @Test
+    public void getStamp_clusterCoversEverySplit() throws Exception {
+        File dir = new File(apps, "Bar");
+        writeFile(new File(dir, "base.apk"), 100, 1000000L);
+        String before = PackageCache.getStamp(dir);
+        writeFile(new File(dir, "notes.txt"), 10, 1000000L);
+        assertEquals(before, PackageCache.getStamp(dir));
+        writeFile(new File(dir, "split_config.en.apk"), 10, 1000000L);
+        assertNotEquals(before, PackageCache.getStamp(dir));
+    }
+
+    @Test
+    public void getStamp_missingPackageHasNoStamp() {
+        assertNull(PackageCache.getStamp(new File(apps, "Gone.apk")));
+    }
+
+    @Test
+    public void read_missesWithoutStampOrEntry() throws Exception {
+        File apk = writeFile(new File(apps, "Foo.apk"), 100, 1000000L);
+        assertNull(PackageCache.read(cacheDir, apk, 0, 0, null));
+        assertNull(PackageCache.read(cacheDir, apk, 0, 0, PackageCache.getStamp(apk)));
+    }
+
+    @Test
+    public void prune_dropsEntriesOfRemovedPackagesAndTempFiles() throws Exception {
+        File kept = writeFile(new File(apps, "Kept.apk"), 100, 1000000L);
+        File removed = new File(apps, "Removed.apk");
+        File keptEntry = writeFile(new File(cacheDir, entryName(kept)), 10, 1000000L);
+        File removedEntry = writeFile(new File(cacheDir, entryName(removed)), 10, 1000000L);
+        File tempEntry = writeFile(new File(cacheDir, entryName(kept) + ".tmp"), 10, 1000000L);
+        File strayEntry = writeFile(new File(cacheDir, "stray"), 10, 1000000L);
+        PackageCache.prune(cacheDir);
+        assertTrue(keptEntry.exists());
+        assertFalse(removedEntry.exists());
+        assertFalse(tempEntry.exists());
+        assertFalse(strayEntry.exists());
+    }
+
+    private static String entryName(File packageFile) {
+        return "0_0_" + packageFile.getAbsolutePath().replace('/', '@');
+    }
+
+    private static File writeFile(File file, int length, long modified) throws IOException {
+        file.getParentFile().mkdirs();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(new byte[length]);
+        } finally {
+            out.close();
+        }
+        assertTrue(file.setLastModified(modified));
+        return file;
+    }
+}
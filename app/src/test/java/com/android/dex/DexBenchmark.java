@@ -0,0 +1,95 @@
+package com.android.dex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares a dex with 6000 classes and 60000 methods opened with Dex.map and loaded into the heap
+ * with Dex(File): opening it, iterating classDefs() and resolving each class name, iterating
+ * strings(), and resolving the name of every method id.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class DexBenchmark {
+    private static final int CLASSES = 6000;
+    private static final int METHODS_PER_CLASS = 10;
+
+    @Param({"map", "load"})
+    public String open;
+
+    private Dex dex;
+    private File file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        file = File.createTempFile("classes", ".dex");
+        SyntheticDex.write(file, CLASSES, METHODS_PER_CLASS);
+        dex = open();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public Dex openDex() throws Exception {
+        return open();
+    }
+
+    @Benchmark
+    public int classDefs() {
+        int count = 0;
+        for (ClassDef classDef : dex.classDefs()) {
+            count += ((String) dex.typeNames().get(classDef.getTypeIndex())).length();
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int strings() {
+        int count = 0;
+        for (String s : dex.strings()) {
+            count += s.length();
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int methodNames() {
+        int count = 0;
+        int size = dex.methodIds().size();
+        for (int i = 0; i < size; i++) {
+            count += ((String) dex.strings().get(((MethodId) dex.methodIds().get(i)).getNameIndex())).length();
+        }
+        return count;
+    }
+
+    private Dex open() throws Exception {
+        return "map".equals(open) ? Dex.map(file) : new Dex(file);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(DexBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,131 @@
+package com.android.dex;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that a mapped Dex reads the same tables as one loaded into the heap, including when
+ * lookups collide in its string and method id caches.
+ */
+public class DexMapTest {
+    private static final int CLASSES = 300;
+    private static final int METHODS_PER_CLASS = 10;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File dexFile;
+
+    @Before
+    public void setUp() throws Exception {
+        dexFile = SyntheticDex.write(folder.newFile("classes.dex"), CLASSES, METHODS_PER_CLASS);
+    }
+
+    @Test
+    public void map_readsSameStringsAsLoadedDex() throws Exception {
+        Dex loaded = new Dex(dexFile);
+        Dex mapped = Dex.map(dexFile);
+        assertEquals(loaded.strings().size(), mapped.strings().size());
+        for (int pass = 0; pass < 2; pass++) {
+            for (int i = 0; i < loaded.strings().size(); i++) {
+                assertEquals(loaded.strings().get(i), mapped.strings().get(i));
+            }
+        }
+    }
+
+    @Test
+    public void map_stringCacheSurvivesCollisions() throws Exception {
+        Dex mapped = Dex.map(dexFile);
+        Random random = new Random(1);
+        int size = mapped.strings().size();
+        for (int i = 0; i < 20000; i++) {
+            int index = random.nextInt(size);
+            String expected = index < CLASSES ? SyntheticDex.className(index) : SyntheticDex.methodName((index - CLASSES) / METHODS_PER_CLASS, (index - CLASSES) % METHODS_PER_CLASS);
+            assertEquals(expected, mapped.strings().get(index));
+        }
+    }
+
+    @Test
+    public void map_stringCacheReturnsCachedInstance() throws Exception {
+        Dex mapped = Dex.map(dexFile);
+        assertSame(mapped.strings().get(7), mapped.strings().get(7));
+    }
+
+    @Test
+    public void map_readsSameMethodIdsAsLoadedDex() throws Exception {
+        Dex loaded = new Dex(dexFile);
+        Dex mapped = Dex.map(dexFile);
+        assertEquals(loaded.methodIds().size(), mapped.methodIds().size());
+        for (int pass = 0; pass < 2; pass++) {
+            for (int i = 0; i < loaded.methodIds().size(); i++) {
+                MethodId expected = (MethodId) loaded.methodIds().get(i);
+                MethodId actual = (MethodId) mapped.methodIds().get(i);
+                assertEquals(expected.getDeclaringClassIndex(), actual.getDeclaringClassIndex());
+                assertEquals(expected.getProtoIndex(), actual.getProtoIndex());
+                assertEquals(expected.getNameIndex(), actual.getNameIndex());
+            }
+        }
+    }
+
+    @Test
+    public void map_methodIdCacheSurvivesCollisions() throws Exception {
+        Dex mapped = Dex.map(dexFile);
+        Random random = new Random(2);
+        for (int i = 0; i < 20000; i++) {
+            int index = random.nextInt(CLASSES * METHODS_PER_CLASS);
+            MethodId methodId = (MethodId) mapped.methodIds().get(index);
+            assertEquals(index / METHODS_PER_CLASS, methodId.getDeclaringClassIndex());
+            assertEquals(SyntheticDex.methodName(index / METHODS_PER_CLASS, index % METHODS_PER_CLASS), mapped.strings().get(methodId.getNameIndex()));
+        }
+    }
+
+    @Test
+    public void map_methodIdCacheReturnsCachedInstance() throws Exception {
+        Dex mapped = Dex.map(dexFile);
+        assertSame(mapped.methodIds().get(11), mapped.methodIds().get(11));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void map_rejectsMethodIdOutOfRange() throws Exception {
+        Dex.map(dexFile).methodIds().get(CLASSES * METHODS_PER_CLASS);
+    }
+
+    @Test
+    public void map_loadsArchivesLikeDexFile() throws Exception {
+        for (String name : new String[] {"classes.jar", "classes.zip", "classes.apk"}) {
+            File archive = folder.newFile(name);
+            ZipOutputStream out = new ZipOutputStream(new FileOutputStream(archive));
+            try {
+                out.putNextEntry(new ZipEntry(DexFormat.DEX_IN_JAR_NAME));
+                out.write(SyntheticDex.build(CLASSES, METHODS_PER_CLASS));
+                out.closeEntry();
+            } finally {
+                out.close();
+            }
+            assertEquals(name, SyntheticDex.className(3), Dex.map(archive).strings().get(3));
+        }
+    }
+
+    @Test(expected = DexException.class)
+    public void map_rejectsUnknownExtension() throws Exception {
+        Dex.map(copy(dexFile, folder.newFile("classes.bin")));
+    }
+
+    private static File copy(File from, File to) throws IOException {
+        Files.copy(from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return to;
+    }
+}
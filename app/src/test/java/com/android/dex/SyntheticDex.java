@@ -0,0 +1,135 @@
+package com.android.dex;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Builds a minimal dex file with string ids, type ids, method ids and class defs, enough for the
+ * tables Dex reads without parsing class data. Class c is named "Lcom/example/C&lt;c&gt;;" and its
+ * method m is named "method&lt;c&gt;_&lt;m&gt;".
+ */
+final class SyntheticDex {
+    private static final int HEADER_SIZE = 0x70;
+
+    private SyntheticDex() {
+    }
+
+    static String className(int c) {
+        return "Lcom/example/C" + c + ";";
+    }
+
+    static String methodName(int c, int m) {
+        return "method" + c + "_" + m;
+    }
+
+    /**
+     * Returns the index of the name of method m of class c in the string table.
+     */
+    static int methodNameIndex(int classes, int methodsPerClass, int c, int m) {
+        return classes + (c * methodsPerClass) + m;
+    }
+
+    static byte[] build(int classes, int methodsPerClass) {
+        int methods = classes * methodsPerClass;
+        String[] strings = new String[classes + methods];
+        for (int c = 0; c < classes; c++) {
+            strings[c] = className(c);
+            for (int m = 0; m < methodsPerClass; m++) {
+                strings[methodNameIndex(classes, methodsPerClass, c, m)] = methodName(c, m);
+            }
+        }
+        int stringIdsOff = HEADER_SIZE;
+        int typeIdsOff = stringIdsOff + (strings.length * 4);
+        int methodIdsOff = typeIdsOff + (classes * 4);
+        int classDefsOff = methodIdsOff + (methods * 8);
+        int dataOff = classDefsOff + (classes * 32);
+        int stringDataSize = 0;
+        for (String s : strings) {
+            stringDataSize += s.length() + 4;
+        }
+        int mapOff = (dataOff + stringDataSize + 3) & ~3;
+        int fileSize = mapOff + 4 + (7 * 12);
+
+        ByteBuffer out = ByteBuffer.allocate(fileSize).order(ByteOrder.LITTLE_ENDIAN);
+        out.put("dex\n035\0".getBytes(StandardCharsets.US_ASCII));
+        out.putInt(0);
+        out.put(new byte[20]);
+        out.putInt(fileSize);
+        out.putInt(HEADER_SIZE);
+        out.putInt(DexFormat.ENDIAN_TAG);
+        out.putInt(0).putInt(0);
+        out.putInt(mapOff);
+        out.putInt(strings.length).putInt(stringIdsOff);
+        out.putInt(classes).putInt(typeIdsOff);
+        out.putInt(0).putInt(0);
+        out.putInt(0).putInt(0);
+        out.putInt(methods).putInt(methodIdsOff);
+        out.putInt(classes).putInt(classDefsOff);
+        out.putInt(fileSize - dataOff).putInt(dataOff);
+
+        int stringOff = dataOff;
+        for (String s : strings) {
+            out.putInt(stringOff);
+            stringOff += s.length() + 4;
+        }
+        for (int c = 0; c < classes; c++) {
+            out.putInt(c);
+        }
+        for (int c = 0; c < classes; c++) {
+            for (int m = 0; m < methodsPerClass; m++) {
+                out.putShort((short) c);
+                out.putShort((short) 0);
+                out.putInt(methodNameIndex(classes, methodsPerClass, c, m));
+            }
+        }
+        for (int c = 0; c < classes; c++) {
+            out.putInt(c).putInt(1).putInt(-1).putInt(0).putInt(-1).putInt(0).putInt(0).putInt(0);
+        }
+        for (String s : strings) {
+            putUleb128(out, s.length());
+            out.put(s.getBytes(StandardCharsets.US_ASCII));
+            out.put((byte) 0);
+        }
+        out.position(mapOff);
+        out.putInt(7);
+        putMapItem(out, 0x0000, 1, 0);
+        putMapItem(out, 0x0001, strings.length, stringIdsOff);
+        putMapItem(out, 0x0002, classes, typeIdsOff);
+        putMapItem(out, 0x0005, methods, methodIdsOff);
+        putMapItem(out, 0x0006, classes, classDefsOff);
+        putMapItem(out, 0x2002, strings.length, dataOff);
+        putMapItem(out, 0x1000, 1, mapOff);
+        return out.array();
+    }
+
+    static File write(File file, int classes, int methodsPerClass) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(build(classes, methodsPerClass));
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private static void putMapItem(ByteBuffer out, int type, int size, int offset) {
+        out.putShort((short) type);
+        out.putShort((short) 0);
+        out.putInt(size);
+        out.putInt(offset);
+    }
+
+    /**
+     * Writes value in three bytes of unsigned LEB128, padding short values, so every string's
+     * data takes its length plus four bytes.
+     */
+    private static void putUleb128(ByteBuffer out, int value) {
+        out.put((byte) ((value & 0x7f) | 0x80));
+        out.put((byte) (((value >> 7) & 0x7f) | 0x80));
+        out.put((byte) ((value >> 14) & 0x7f));
+    }
+}
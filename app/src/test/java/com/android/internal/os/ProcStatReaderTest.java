@@ -0,0 +1,152 @@
+package com.android.internal.os;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs ProcStatReader against a fake proc tree written to a temporary directory, read through
+ * java.nio instead of the platform file descriptor calls.
+ */
+public class ProcStatReaderTest {
+    private static class ChannelSource implements ProcStatReader.Source {
+        public boolean read(String file, ByteBuffer buffer) {
+            try {
+                FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ);
+                try {
+                    while (buffer.hasRemaining()) {
+                        if (channel.read(buffer) <= 0) {
+                            break;
+                        }
+                    }
+                    return true;
+                } finally {
+                    channel.close();
+                }
+            } catch (IOException e) {
+                return false;
+            }
+        }
+    }
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File root;
+    private ProcStatReader reader;
+
+    @Before
+    public void setUp() throws Exception {
+        root = folder.newFolder("proc");
+        reader = new ProcStatReader(root.getPath(), new ChannelSource());
+    }
+
+    @Test
+    public void readSystemCpu_parsesAggregateLine() throws Exception {
+        write("stat", "cpu  1000 20 300 40000 50 6 7 0 0 0\ncpu0 500 10 150 20000 25 3 3 0 0 0\n");
+        long[] out = new long[7];
+        assertTrue(reader.readSystemCpu(out));
+        assertArrayEquals(new long[] {1000, 20, 300, 40000, 50, 6, 7}, out);
+    }
+
+    @Test
+    public void readLoadAverage_parsesFractions() throws Exception {
+        write("loadavg", "1.25 0.50 12.05 2/345 6789\n");
+        float[] out = new float[3];
+        assertTrue(reader.readLoadAverage(out));
+        assertEquals(1.25f, out[0], 0.0001f);
+        assertEquals(0.5f, out[1], 0.0001f);
+        assertEquals(12.05f, out[2], 0.0001f);
+    }
+
+    @Test
+    public void readProcessStats_readsFaultsAndTimes() throws Exception {
+        String file = write("1234/stat", statLine(1234, "surfaceflinger"));
+        long[] out = new long[4];
+        assertTrue(reader.readProcessStats(file, out));
+        assertEquals(1000, out[ProcStatReader.STAT_MINOR_FAULTS]);
+        assertEquals(1200, out[ProcStatReader.STAT_MAJOR_FAULTS]);
+        assertEquals(1400, out[ProcStatReader.STAT_UTIME]);
+        assertEquals(1500, out[ProcStatReader.STAT_STIME]);
+    }
+
+    @Test
+    public void readProcessStats_nameWithSpacesAndParentheses() throws Exception {
+        String file = write("77/task/78/stat", statLine(78, "Binder (1) :x) y"));
+        long[] out = new long[4];
+        assertTrue(reader.readProcessStats(file, out));
+        assertEquals(1000, out[ProcStatReader.STAT_MINOR_FAULTS]);
+        assertEquals(1500, out[ProcStatReader.STAT_STIME]);
+    }
+
+    @Test
+    public void readFullProcessStats_readsNameAndVsize() throws Exception {
+        String file = write("42/stat", statLine(42, "com.example (app)"));
+        String[] name = new String[1];
+        long[] out = new long[6];
+        assertTrue(reader.readFullProcessStats(file, name, out));
+        assertEquals("com.example (app)", name[0]);
+        assertEquals(1000, out[ProcStatReader.FULL_STAT_MINOR_FAULTS]);
+        assertEquals(1200, out[ProcStatReader.FULL_STAT_MAJOR_FAULTS]);
+        assertEquals(1400, out[ProcStatReader.FULL_STAT_UTIME]);
+        assertEquals(1500, out[ProcStatReader.FULL_STAT_STIME]);
+        assertEquals(2300, out[ProcStatReader.FULL_STAT_VSIZE]);
+    }
+
+    @Test
+    public void readProcessStats_bufferIsReusedAcrossFiles() throws Exception {
+        String first = write("1/stat", statLine(1, "a very long process name that fills the buffer"));
+        String second = write("2/stat", statLine(2, "b"));
+        long[] out = new long[4];
+        assertTrue(reader.readProcessStats(first, out));
+        out[ProcStatReader.STAT_UTIME] = -1;
+        assertTrue(reader.readProcessStats(second, out));
+        assertEquals(1400, out[ProcStatReader.STAT_UTIME]);
+    }
+
+    @Test
+    public void missingOrTruncatedFilesFail() throws Exception {
+        assertFalse(reader.readSystemCpu(new long[7]));
+        assertFalse(reader.readProcessStats(new File(root, "9/stat").getPath(), new long[4]));
+        String truncated = write("10/stat", "10 (short) S 1 2 3");
+        assertFalse(reader.readProcessStats(truncated, new long[4]));
+        assertFalse(reader.readFullProcessStats(truncated, new String[1], new long[6]));
+    }
+
+    /**
+     * Returns a stat line whose numeric field n holds n * 100, so each parsed field can be told
+     * apart.
+     */
+    private static String statLine(int pid, String name) {
+        StringBuilder line = new StringBuilder();
+        line.append(pid).append(" (").append(name).append(") S");
+        for (int field = 4; field <= 44; field++) {
+            line.append(' ').append(field * 100);
+        }
+        return line.append('\n').toString();
+    }
+
+    private String write(String path, String content) throws IOException {
+        File file = new File(root, path);
+        file.getParentFile().mkdirs();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes(StandardCharsets.US_ASCII));
+        } finally {
+            out.close();
+        }
+        return file.getPath();
+    }
+}
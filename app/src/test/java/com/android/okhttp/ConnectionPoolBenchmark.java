@@ -0,0 +1,80 @@
+package com.android.okhttp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures keep-alive calls per second made by 32 threads through one client and pool, spread
+ * round-robin over one or eight loopback servers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@Threads(32)
+public class ConnectionPoolBenchmark {
+    @Param({"1", "8"})
+    public int hosts;
+
+    private OkHttpClient client;
+    private ConnectionPool pool;
+    private final List<LoopbackServer> servers = new ArrayList<LoopbackServer>();
+
+    /**
+     * The next server a benchmark thread calls.
+     */
+    @State(Scope.Thread)
+    public static class Caller {
+        int next;
+    }
+
+    @Setup
+    public void setUp() throws Exception {
+        for (int i = 0; i < hosts; i++) {
+            LoopbackServer server = new LoopbackServer();
+            server.start();
+            servers.add(server);
+        }
+        pool = new ConnectionPool(32 * hosts, 300000);
+        client = new OkHttpClient();
+        client.setConnectionPool(pool);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        pool.evictAll();
+        for (LoopbackServer server : servers) {
+            server.shutdown();
+        }
+    }
+
+    @Benchmark
+    public String call(Caller caller) throws Exception {
+        caller.next = (caller.next + 1) % hosts;
+        Response response = client.newCall(new Request.Builder().url(servers.get(caller.next).url()).build()).execute();
+        return response.body().string();
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(ConnectionPoolBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,112 @@
+package com.android.okhttp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs many threads of keep-alive calls against several loopback servers through one pool, and
+ * checks that connections are reused and that the pool's counters add up. Throughput is measured
+ * by ConnectionPoolBenchmark.
+ */
+public class ConnectionPoolTest {
+    private static final int HOSTS = 8;
+    private static final int REQUESTS_PER_THREAD = 200;
+    private static final int THREADS = 32;
+    private static final long TIMEOUT_SECONDS = 120;
+
+    private OkHttpClient client;
+    private ConnectionPool pool;
+    private final List<LoopbackServer> servers = new ArrayList<LoopbackServer>();
+
+    @Before
+    public void setUp() throws Exception {
+        for (int i = 0; i < HOSTS; i++) {
+            LoopbackServer server = new LoopbackServer();
+            server.start();
+            servers.add(server);
+        }
+        pool = new ConnectionPool(THREADS * HOSTS, 300000);
+        client = new OkHttpClient();
+        client.setConnectionPool(pool);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        pool.evictAll();
+        for (LoopbackServer server : servers) {
+            server.shutdown();
+        }
+    }
+
+    @Test
+    public void concurrentCallsToManyHosts_reuseConnections() throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(THREADS);
+        final AtomicInteger completed = new AtomicInteger();
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        for (int t = 0; t < THREADS; t++) {
+            final int thread = t;
+            new Thread() {
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < REQUESTS_PER_THREAD; i++) {
+                            String url = servers.get((thread + i) % HOSTS).url();
+                            Response response = client.newCall(new Request.Builder().url(url).build()).execute();
+                            assertEquals(200, response.code());
+                            assertEquals("ok", response.body().string());
+                            completed.incrementAndGet();
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        start.countDown();
+        assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+
+        int requests = THREADS * REQUESTS_PER_THREAD;
+        int connections = 0;
+        for (LoopbackServer server : servers) {
+            connections += server.connections.get();
+        }
+        assertEquals(requests, completed.get());
+        assertTrue("opened " + connections + " connections", connections <= THREADS * HOSTS);
+        assertEquals(requests, pool.getHitCount() + pool.getMissCount());
+        assertTrue(pool.getHitCount() >= requests - connections);
+        assertEquals(requests, pool.getWaitCount());
+    }
+
+    @Test
+    public void evictAll_removesEmptyBuckets() throws Exception {
+        for (LoopbackServer server : servers) {
+            Response response = client.newCall(new Request.Builder().url(server.url()).build()).execute();
+            assertEquals("ok", response.body().string());
+        }
+        assertEquals(HOSTS, pool.getConnectionCount());
+        assertEquals(HOSTS, pool.getBucketCount());
+        pool.evictAll();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (pool.getBucketCount() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, pool.getConnectionCount());
+        assertEquals(0, pool.getBucketCount());
+    }
+}
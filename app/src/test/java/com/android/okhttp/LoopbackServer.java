@@ -0,0 +1,76 @@
+package com.android.okhttp;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A minimal keep-alive HTTP/1.1 server in the manner of MockWebServer: every request gets the
+ * same short response, and each connection is served by its own thread.
+ */
+class LoopbackServer extends Thread {
+    private static final byte[] RESPONSE = "HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nok".getBytes(StandardCharsets.US_ASCII);
+
+    final AtomicInteger connections = new AtomicInteger();
+    private final ServerSocket serverSocket;
+
+    LoopbackServer() throws IOException {
+        serverSocket = new ServerSocket(0, 512, InetAddress.getByName("127.0.0.1"));
+        setDaemon(true);
+    }
+
+    String url() {
+        return "http://127.0.0.1:" + serverSocket.getLocalPort() + "/";
+    }
+
+    public void run() {
+        while (true) {
+            try {
+                final Socket socket = serverSocket.accept();
+                connections.incrementAndGet();
+                Thread thread = new Thread() {
+                    public void run() {
+                        serve(socket);
+                    }
+                };
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    static void serve(Socket socket) {
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            OutputStream out = socket.getOutputStream();
+            while (true) {
+                String line = reader.readLine();
+                if (line == null) {
+                    break;
+                }
+                if (line.isEmpty()) {
+                    out.write(RESPONSE);
+                    out.flush();
+                }
+            }
+        } catch (IOException e) {
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e2) {
+            }
+        }
+    }
+
+    void shutdown() throws IOException {
+        serverSocket.close();
+    }
+}
@@ -0,0 +1,72 @@
+package com.android.org.bouncycastle.crypto.digests;
+
+import com.android.org.bouncycastle.crypto.ExtendedDigest;
+import com.android.org.bouncycastle.util.Memoable;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Digest backed by the platform's MessageDigest. The tests and benchmarks of TreeDigest use it
+ * because the round constants of the SHA-2 digests in this tree were not decompiled.
+ */
+class PlatformDigest implements ExtendedDigest, Memoable {
+    private MessageDigest md;
+
+    PlatformDigest(String algorithm) {
+        try {
+            md = MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private PlatformDigest(MessageDigest md) {
+        this.md = md;
+    }
+
+    public String getAlgorithmName() {
+        return md.getAlgorithm();
+    }
+
+    public int getDigestSize() {
+        return md.getDigestLength();
+    }
+
+    public int getByteLength() {
+        return 64;
+    }
+
+    public void update(byte in) {
+        md.update(in);
+    }
+
+    public void update(byte[] in, int inOff, int len) {
+        md.update(in, inOff, len);
+    }
+
+    public int doFinal(byte[] out, int outOff) {
+        try {
+            return md.digest(out, outOff, md.getDigestLength());
+        } catch (DigestException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    public void reset() {
+        md.reset();
+    }
+
+    public Memoable copy() {
+        try {
+            return new PlatformDigest((MessageDigest) md.clone());
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public void reset(Memoable other) {
+        md = ((PlatformDigest) ((PlatformDigest) other).copy()).md;
+    }
+}
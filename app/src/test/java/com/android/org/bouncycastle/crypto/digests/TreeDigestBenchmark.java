@@ -0,0 +1,72 @@
+package com.android.org.bouncycastle.crypto.digests;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashes 4MB and 64MB inputs with SHA-256, once as a TreeDigest over 1MB chunks on the common
+ * pool and once with the plain sequential digest, in 64KB updates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class TreeDigestBenchmark {
+    private static final int UPDATE_SIZE = 65536;
+
+    @Param({"4194304", "67108864"})
+    public int size;
+
+    private byte[] input;
+    private byte[] out;
+    private PlatformDigest sequential;
+    private TreeDigest tree;
+
+    @Setup
+    public void setUp() {
+        input = new byte[size];
+        new Random(1).nextBytes(input);
+        sequential = new PlatformDigest("SHA-256");
+        tree = new TreeDigest(new PlatformDigest("SHA-256"), TreeDigest.DEFAULT_CHUNK_SIZE, ForkJoinPool.commonPool());
+        out = new byte[32];
+    }
+
+    @Benchmark
+    public byte[] tree() {
+        for (int off = 0; off < size; off += UPDATE_SIZE) {
+            tree.update(input, off, UPDATE_SIZE);
+        }
+        tree.doFinal(out, 0);
+        return out;
+    }
+
+    @Benchmark
+    public byte[] sequential() {
+        for (int off = 0; off < size; off += UPDATE_SIZE) {
+            sequential.update(input, off, UPDATE_SIZE);
+        }
+        sequential.doFinal(out, 0);
+        return out;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(TreeDigestBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,177 @@
+package com.android.org.bouncycastle.crypto.digests;
+
+import com.android.org.bouncycastle.util.Memoable;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks TreeDigest against a separate, recursive implementation of the RFC 6962 Merkle tree
+ * hash, which is itself checked against the Certificate Transparency test vectors.
+ */
+public class TreeDigestTest {
+    private static final int CHUNK_SIZE = 1024;
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @After
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void referenceRoot_matchesCertificateTransparencyVectors() throws Exception {
+        String[] leaves = {"", "00", "10", "2021", "3031", "40414243", "5051525354555657", "606162636465666768696a6b6c6d6e6f"};
+        String[] roots = {
+            "6e340b9cffb37a989ca544e6bb780a2c78901d3fb33738768511a30617afa01d",
+            "fac54203e7cc696cf0dfcb42c92a1d9dbaf70ad9e621f4bd8d98662f00e3c125",
+            "aeb6bcfe274b70a14fb067a5e5578264db0fa9b51af5e0ba159158f329e06e77",
+            "d37ee418976dd95753c1c73862b9398fa2a2cf9b4ff0fdfe8b30cd95209614b7",
+            "4e3bbb1f7b478dcfe71fb631631519a3bca12c9aefca1612bfce4c13a86264d4",
+            "76e67dadbcdf1e10e1b74ddc608abd2f98dfb16fbce75277b5232a127f2087ef",
+            "ddb89be403809e325750d3d263cd78929c2942b7942a34b77e122c9594a74c8c",
+            "5dc9da79a70659a9ad559cb701ded9a2ab9d823aad2f4960cfe370eff4604328"};
+        List<byte[]> data = new ArrayList<byte[]>();
+        for (int i = 0; i < leaves.length; i++) {
+            data.add(decode(leaves[i]));
+            assertArrayEquals(decode(roots[i]), merkleTreeHash(data));
+        }
+        assertArrayEquals(decode("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855"), merkleTreeHash(new ArrayList<byte[]>()));
+    }
+
+    @Test
+    public void doFinal_matchesReferenceRoot() throws Exception {
+        Random random = new Random(1);
+        TreeDigest tree = new TreeDigest(new PlatformDigest("SHA-256"), CHUNK_SIZE, pool);
+        int[] sizes = {0, 1, CHUNK_SIZE - 1, CHUNK_SIZE, CHUNK_SIZE + 1, 3 * CHUNK_SIZE, 5 * CHUNK_SIZE + 3, 8 * CHUNK_SIZE, 13 * CHUNK_SIZE + 700};
+        for (int size : sizes) {
+            byte[] input = new byte[size];
+            random.nextBytes(input);
+            int off = 0;
+            while (off < size) {
+                int n = Math.min(size - off, random.nextInt(3 * CHUNK_SIZE));
+                if (n == 1) {
+                    tree.update(input[off]);
+                } else {
+                    tree.update(input, off, n);
+                }
+                off += n;
+            }
+            byte[] out = new byte[tree.getDigestSize()];
+            assertEquals(out.length, tree.doFinal(out, 0));
+            assertArrayEquals("size " + size, merkleTreeHash(split(input)), out);
+        }
+    }
+
+    @Test
+    public void updateChannel_matchesReferenceRoot() throws Exception {
+        byte[] input = new byte[20 * CHUNK_SIZE + 123];
+        new Random(2).nextBytes(input);
+        File file = File.createTempFile("tree", null);
+        try {
+            FileOutputStream out = new FileOutputStream(file);
+            out.write(input);
+            out.close();
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                TreeDigest tree = new TreeDigest(new PlatformDigest("SHA-256"), CHUNK_SIZE, pool);
+                tree.update(input, 0, 100);
+                tree.update(raf.getChannel(), 100, input.length - 100);
+                byte[] root = new byte[tree.getDigestSize()];
+                tree.doFinal(root, 0);
+                assertArrayEquals(merkleTreeHash(split(input)), root);
+            } finally {
+                raf.close();
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void doFinal_resetsWhenLeafFails() throws Exception {
+        FailingDigest digest = new FailingDigest(new boolean[] {true});
+        TreeDigest tree = new TreeDigest(digest, CHUNK_SIZE, pool);
+        tree.update(new byte[3 * CHUNK_SIZE + 5], 0, 3 * CHUNK_SIZE + 5);
+        byte[] root = new byte[tree.getDigestSize()];
+        try {
+            tree.doFinal(root, 0);
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        digest.fail[0] = false;
+        byte[] input = new byte[2 * CHUNK_SIZE + 1];
+        new Random(3).nextBytes(input);
+        tree.update(input, 0, input.length);
+        tree.doFinal(root, 0);
+        assertArrayEquals(merkleTreeHash(split(input)), root);
+    }
+
+    private static byte[] decode(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(i * 2, (i * 2) + 2), 16);
+        }
+        return bytes;
+    }
+
+    private static List<byte[]> split(byte[] input) {
+        List<byte[]> leaves = new ArrayList<byte[]>();
+        for (int off = 0; off < input.length; off += CHUNK_SIZE) {
+            leaves.add(Arrays.copyOfRange(input, off, Math.min(input.length, off + CHUNK_SIZE)));
+        }
+        return leaves;
+    }
+
+    /** MTH from RFC 6962 section 2.1, written straight from its definition. */
+    private static byte[] merkleTreeHash(List<byte[]> leaves) throws Exception {
+        MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+        int n = leaves.size();
+        if (n == 0) {
+            return sha256.digest();
+        }
+        if (n == 1) {
+            sha256.update((byte) 0);
+            return sha256.digest(leaves.get(0));
+        }
+        int k = 1;
+        while (k * 2 < n) {
+            k *= 2;
+        }
+        sha256.update((byte) 1);
+        sha256.update(merkleTreeHash(leaves.subList(0, k)));
+        return sha256.digest(merkleTreeHash(leaves.subList(k, n)));
+    }
+
+    /** SHA-256 whose leaf copies throw while fail[0] is set. */
+    private static final class FailingDigest extends PlatformDigest {
+        final boolean[] fail;
+
+        FailingDigest(boolean[] fail) {
+            super("SHA-256");
+            this.fail = fail;
+        }
+
+        public void update(byte[] in, int inOff, int len) {
+            if (fail[0]) {
+                throw new IllegalStateException("leaf failed");
+            }
+            super.update(in, inOff, len);
+        }
+
+        public Memoable copy() {
+            return new FailingDigest(fail);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.android.org.bouncycastle.crypto.modes;
+
+import com.android.org.bouncycastle.crypto.params.AEADParameters;
+import com.android.org.bouncycastle.crypto.params.KeyParameter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Seals and opens 1KB, 64KB and 16MB messages with AES-128/GCM in one processBytes call each,
+ * with 20 bytes of additional data. AES runs on the platform's AES/ECB, so the time spent in
+ * GCMBlockCipher itself is the counter handling, the XOR and GHASH.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class GCMBlockCipherBenchmark {
+    @Param({"1024", "65536", "16777216"})
+    public int size;
+
+    private GCMBlockCipher cipher;
+    private byte[] out;
+    private AEADParameters params;
+    private byte[] plaintext;
+    private byte[] sealed;
+
+    @Setup
+    public void setUp() throws Exception {
+        Random random = new Random(1);
+        byte[] key = new byte[16];
+        byte[] iv = new byte[12];
+        byte[] aad = new byte[20];
+        plaintext = new byte[size];
+        random.nextBytes(key);
+        random.nextBytes(iv);
+        random.nextBytes(aad);
+        random.nextBytes(plaintext);
+        params = new AEADParameters(new KeyParameter(key), 128, iv, aad);
+        cipher = new GCMBlockCipher(new PlatformAESEngine());
+        out = new byte[size + 16];
+        sealed = new byte[size + 16];
+        cipher.init(true, params);
+        cipher.doFinal(sealed, cipher.processBytes(plaintext, 0, size, sealed, 0));
+    }
+
+    @Benchmark
+    public byte[] seal() throws Exception {
+        cipher.init(true, params);
+        cipher.doFinal(out, cipher.processBytes(plaintext, 0, size, out, 0));
+        return out;
+    }
+
+    @Benchmark
+    public byte[] open() throws Exception {
+        cipher.init(false, params);
+        cipher.doFinal(out, cipher.processBytes(sealed, 0, sealed.length, out, 0));
+        return out;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(GCMBlockCipherBenchmark.class.getSimpleName()).build()).run();
+    }
+}
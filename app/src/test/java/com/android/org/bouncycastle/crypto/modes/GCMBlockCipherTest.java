@@ -0,0 +1,159 @@
+package com.android.org.bouncycastle.crypto.modes;
+
+import com.android.org.bouncycastle.crypto.InvalidCipherTextException;
+import com.android.org.bouncycastle.crypto.params.AEADParameters;
+import com.android.org.bouncycastle.crypto.params.KeyParameter;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks GCMBlockCipher against the AES test cases of the GCM specification submitted to NIST
+ * (McGrew and Viega, "The Galois/Counter Mode of Operation", appendix B), fed whole and in
+ * chunks of every size from 1 to 33 bytes, and against the platform's AES/GCM for long input.
+ */
+public class GCMBlockCipherTest {
+    private static final String K_0_128 = "00000000000000000000000000000000";
+    private static final String K_0_192 = "000000000000000000000000000000000000000000000000";
+    private static final String K_0_256 = "0000000000000000000000000000000000000000000000000000000000000000";
+    private static final String K_128 = "feffe9928665731c6d6a8f9467308308";
+    private static final String K_192 = "feffe9928665731c6d6a8f9467308308feffe9928665731c";
+    private static final String K_256 = "feffe9928665731c6d6a8f9467308308feffe9928665731c6d6a8f9467308308";
+    private static final String A = "feedfacedeadbeeffeedfacedeadbeefabaddad2";
+    private static final String IV_0 = "000000000000000000000000";
+    private static final String IV_64 = "cafebabefacedbad";
+    private static final String IV_96 = "cafebabefacedbaddecaf888";
+    private static final String IV_480 = "9313225df88406e555909c5aff5269aa6a7a9538534f7da1e4c303d2a318a728c3c0c95156809539fcf0e2429a6b525416aedbf5a0de6a57a637b39b";
+    private static final String P_0 = "00000000000000000000000000000000";
+    private static final String P_60 = "d9313225f88406e5a55909c5aff5269a86a7a9531534f7da2e4c303d8a318a721c3c0c95956809532fcf0e2449a6b525b16aedf5aa0de657ba637b39";
+    private static final String P_64 = P_60 + "1aafd255";
+
+    /**
+     * Key, IV, plaintext, additional data, ciphertext and tag of test cases 1 to 18.
+     */
+    private static final String[][] VECTORS = {
+            {K_0_128, IV_0, "", "", "", "58e2fccefa7e3061367f1d57a4e7455a"},
+            {K_0_128, IV_0, P_0, "", "0388dace60b6a392f328c2b971b2fe78", "ab6e47d42cec13bdf53a67b21257bddf"},
+            {K_128, IV_96, P_64, "", "42831ec2217774244b7221b784d0d49ce3aa212f2c02a4e035c17e2329aca12e21d514b25466931c7d8f6a5aac84aa051ba30b396a0aac973d58e091473f5985", "4d5c2af327cd64a62cf35abd2ba6fab4"},
+            {K_128, IV_96, P_60, A, "42831ec2217774244b7221b784d0d49ce3aa212f2c02a4e035c17e2329aca12e21d514b25466931c7d8f6a5aac84aa051ba30b396a0aac973d58e091", "5bc94fbc3221a5db94fae95ae7121a47"},
+            {K_128, IV_64, P_60, A, "61353b4c2806934a777ff51fa22a4755699b2a714fcdc6f83766e5f97b6c742373806900e49f24b22b097544d4896b424989b5e1ebac0f07c23f4598", "3612d2e79e3b0785561be14aaca2fccb"},
+            {K_128, IV_480, P_60, A, "8ce24998625615b603a033aca13fb894be9112a5c3a211a8ba262a3cca7e2ca701e4a9a4fba43c90ccdcb281d48c7c6fd62875d2aca417034c34aee5", "619cc5aefffe0bfa462af43c1699d050"},
+            {K_0_192, IV_0, "", "", "", "cd33b28ac773f74ba00ed1f312572435"},
+            {K_0_192, IV_0, P_0, "", "98e7247c07f0fe411c267e4384b0f600", "2ff58d80033927ab8ef4d4587514f0fb"},
+            {K_192, IV_96, P_64, "", "3980ca0b3c00e841eb06fac4872a2757859e1ceaa6efd984628593b40ca1e19c7d773d00c144c525ac619d18c84a3f4718e2448b2fe324d9ccda2710acade256", "9924a7c8587336bfb118024db8674a14"},
+            {K_192, IV_96, P_60, A, "3980ca0b3c00e841eb06fac4872a2757859e1ceaa6efd984628593b40ca1e19c7d773d00c144c525ac619d18c84a3f4718e2448b2fe324d9ccda2710", "2519498e80f1478f37ba55bd6d27618c"},
+            {K_192, IV_64, P_60, A, "0f10f599ae14a154ed24b36e25324db8c566632ef2bbb34f8347280fc4507057fddc29df9a471f75c66541d4d4dad1c9e93a19a58e8b473fa0f062f7", "65dcc57fcf623a24094fcca40d3533f8"},
+            {K_192, IV_480, P_60, A, "d27e88681ce3243c4830165a8fdcf9ff1de9a1d8e6b447ef6ef7b79828666e4581e79012af34ddd9e2f037589b292db3e67c036745fa22e7e9b7373b", "dcf566ff291c25bbb8568fc3d376a6d9"},
+            {K_0_256, IV_0, "", "", "", "530f8afbc74536b9a963b4f1c4cb738b"},
+            {K_0_256, IV_0, P_0, "", "cea7403d4d606b6e074ec5d3baf39d18", "d0d1c8a799996bf0265b98b5d48ab919"},
+            {K_256, IV_96, P_64, "", "522dc1f099567d07f47f37a32a84427d643a8cdcbfe5c0c97598a2bd2555d1aa8cb08e48590dbb3da7b08b1056828838c5f61e6393ba7a0abcc9f662898015ad", "b094dac5d93471bdec1a502270e3cc6c"},
+            {K_256, IV_96, P_60, A, "522dc1f099567d07f47f37a32a84427d643a8cdcbfe5c0c97598a2bd2555d1aa8cb08e48590dbb3da7b08b1056828838c5f61e6393ba7a0abcc9f662", "76fc6ece0f4e1768cddf8853bb2d551b"},
+            {K_256, IV_64, P_60, A, "c3762df1ca787d32ae47c13bf19844cbaf1ae14d0b976afac52ff7d79bba9de0feb582d33934a4f0954cc2363bc73f7862ac430e64abe499f47c9b1f", "3a337dbf46a792c45e454913fe2ea8f2"},
+            {K_256, IV_480, P_60, A, "5a8def2f0c9e53f1f75d7853659e2a20eeb2b22aafde6419a058ab4f6f746bf40fc0c3b780f244452da3ebf1c5d82cdea2418997200ef82e44ae7e3f", "a44a8266ee1c8eb0c8b5d4cf5ae9f19a"},
+    };
+
+    @Test
+    public void encrypt_matchesTestVectors() throws Exception {
+        for (int i = 0; i < VECTORS.length; i++) {
+            String[] v = VECTORS[i];
+            byte[] expected = decode(v[4] + v[5]);
+            for (int chunk = 1; chunk <= 33; chunk++) {
+                assertArrayEquals("test case " + (i + 1) + " chunk " + chunk, expected, run(true, decode(v[0]), decode(v[1]), decode(v[3]), decode(v[2]), chunk));
+            }
+        }
+    }
+
+    @Test
+    public void decrypt_matchesTestVectors() throws Exception {
+        for (int i = 0; i < VECTORS.length; i++) {
+            String[] v = VECTORS[i];
+            byte[] expected = decode(v[2]);
+            for (int chunk = 1; chunk <= 33; chunk++) {
+                assertArrayEquals("test case " + (i + 1) + " chunk " + chunk, expected, run(false, decode(v[0]), decode(v[1]), decode(v[3]), decode(v[4] + v[5]), chunk));
+            }
+        }
+    }
+
+    @Test
+    public void decrypt_rejectsModifiedTag() throws Exception {
+        for (int i = 0; i < VECTORS.length; i++) {
+            String[] v = VECTORS[i];
+            byte[] sealed = decode(v[4] + v[5]);
+            sealed[sealed.length - 1] = (byte) (sealed[sealed.length - 1] ^ 1);
+            try {
+                run(false, decode(v[0]), decode(v[1]), decode(v[3]), sealed, sealed.length);
+                fail("test case " + (i + 1));
+            } catch (InvalidCipherTextException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void encrypt_matchesPlatformCipherForLongInput() throws Exception {
+        Random random = new Random(1);
+        for (int length : new int[] {1023, 1024, 65536 + 5, 1 << 20}) {
+            byte[] key = randomBytes(random, 32);
+            byte[] iv = randomBytes(random, 12);
+            byte[] aad = randomBytes(random, 20);
+            byte[] data = randomBytes(random, length);
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"), new GCMParameterSpec(128, iv));
+            cipher.updateAAD(aad);
+            byte[] sealed = cipher.doFinal(data);
+            assertArrayEquals("length " + length, sealed, run(true, key, iv, aad, data, 1000));
+            assertArrayEquals("length " + length, data, run(false, key, iv, aad, sealed, 1000));
+        }
+    }
+
+    @Test
+    public void inPlace_roundTrips() throws Exception {
+        String[] v = VECTORS[2];
+        byte[] data = decode(v[2]);
+        byte[] buffer = Arrays.copyOf(data, data.length + 16);
+        GCMBlockCipher cipher = new GCMBlockCipher(new PlatformAESEngine());
+        cipher.init(true, new AEADParameters(new KeyParameter(decode(v[0])), 128, decode(v[1]), null));
+        int length = cipher.processBytes(buffer, 0, data.length, buffer, 0);
+        length += cipher.doFinal(buffer, length);
+        assertArrayEquals(decode(v[4] + v[5]), buffer);
+        cipher.init(false, new AEADParameters(new KeyParameter(decode(v[0])), 128, decode(v[1]), null));
+        length = cipher.processBytes(buffer, 0, length, buffer, 0);
+        length += cipher.doFinal(buffer, length);
+        assertArrayEquals(data, Arrays.copyOf(buffer, length));
+    }
+
+    /**
+     * Runs the cipher over data fed in chunks of the given size.
+     */
+    private static byte[] run(boolean forEncryption, byte[] key, byte[] iv, byte[] aad, byte[] data, int chunk) throws InvalidCipherTextException {
+        GCMBlockCipher cipher = new GCMBlockCipher(new PlatformAESEngine());
+        cipher.init(forEncryption, new AEADParameters(new KeyParameter(key), 128, iv, aad));
+        byte[] out = new byte[cipher.getOutputSize(data.length)];
+        int length = 0;
+        for (int offset = 0; offset < data.length; offset += chunk) {
+            length += cipher.processBytes(data, offset, Math.min(chunk, data.length - offset), out, length);
+        }
+        length += cipher.doFinal(out, length);
+        assertEquals(out.length, length);
+        return out;
+    }
+
+    private static byte[] decode(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(i * 2, (i * 2) + 2), 16);
+        }
+        return bytes;
+    }
+
+    private static byte[] randomBytes(Random random, int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+}
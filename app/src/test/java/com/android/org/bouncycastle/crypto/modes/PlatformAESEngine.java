@@ -0,0 +1,45 @@
+package com.android.org.bouncycastle.crypto.modes;
+
+import com.android.org.bouncycastle.crypto.BlockCipher;
+import com.android.org.bouncycastle.crypto.CipherParameters;
+import com.android.org.bouncycastle.crypto.params.KeyParameter;
+
+import java.security.GeneralSecurityException;
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * AES block cipher backed by the platform's AES/ECB. The tests and benchmarks of the modes use
+ * it because the static tables of the AES engines in this tree were not decompiled.
+ */
+class PlatformAESEngine implements BlockCipher {
+    private Cipher cipher;
+
+    public String getAlgorithmName() {
+        return "AES";
+    }
+
+    public int getBlockSize() {
+        return 16;
+    }
+
+    public void init(boolean forEncryption, CipherParameters params) {
+        try {
+            cipher = Cipher.getInstance("AES/ECB/NoPadding");
+            cipher.init(forEncryption ? Cipher.ENCRYPT_MODE : Cipher.DECRYPT_MODE, new SecretKeySpec(((KeyParameter) params).getKey(), "AES"));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    public int processBlock(byte[] in, int inOff, byte[] out, int outOff) {
+        try {
+            return cipher.update(in, inOff, 16, out, outOff);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public void reset() {
+    }
+}
@@ -0,0 +1,66 @@
+package com.android.org.bouncycastle.crypto.signers;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures ECDSA signatures per second on P-256 and P-384: signing, verifying one at a time
+ * with verifySignature, and verifying a batch of BATCH with verifySignatures.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ECDSASignerBenchmark {
+    private static final int BATCH = 16;
+
+    @Param({"secp256r1", "secp384r1"})
+    public String curve;
+
+    private int next;
+    private ECDSASignerTest.Signed signed;
+
+    @Setup
+    public void setUp() throws Exception {
+        signed = new ECDSASignerTest.Signed(curve, BATCH);
+    }
+
+    @Benchmark
+    public BigInteger[] sign() {
+        next = (next + 1) % BATCH;
+        return signed.signer.generateSignature(signed.messages[next]);
+    }
+
+    @Benchmark
+    public boolean verify() {
+        next = (next + 1) % BATCH;
+        return signed.verifier.verifySignature(signed.messages[next], signed.r[next], signed.s[next]);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public boolean[] verifyBatch() {
+        return signed.verifier.verifySignatures(signed.messages, signed.r, signed.s);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(ECDSASignerBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,103 @@
+package com.android.org.bouncycastle.crypto.signers;
+
+import com.android.org.bouncycastle.asn1.x9.X9ECParameters;
+import com.android.org.bouncycastle.crypto.AsymmetricCipherKeyPair;
+import com.android.org.bouncycastle.crypto.ec.CustomNamedCurves;
+import com.android.org.bouncycastle.crypto.generators.ECKeyPairGenerator;
+import com.android.org.bouncycastle.crypto.params.ECDomainParameters;
+import com.android.org.bouncycastle.crypto.params.ECKeyGenerationParameters;
+import com.android.org.bouncycastle.crypto.params.ParametersWithRandom;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+
+import static org.junit.Assert.*;
+
+/**
+ * Signs and verifies on P-256 and P-384, and checks that verifySignatures gives the same result
+ * as verifySignature for valid signatures, modified messages and signatures, and r or s out of
+ * range.
+ */
+public class ECDSASignerTest {
+    private static final int COUNT = 8;
+
+    @Test
+    public void verifySignature_acceptsOwnSignatures() throws Exception {
+        for (String name : new String[] {"secp256r1", "secp384r1"}) {
+            Signed signed = new Signed(name, COUNT);
+            for (int i = 0; i < COUNT; i++) {
+                assertTrue(name + " " + i, signed.verifier.verifySignature(signed.messages[i], signed.r[i], signed.s[i]));
+            }
+        }
+    }
+
+    @Test
+    public void verifySignatures_matchesVerifySignature() throws Exception {
+        for (String name : new String[] {"secp256r1", "secp384r1"}) {
+            Signed signed = new Signed(name, COUNT);
+            BigInteger n = signed.n;
+            signed.messages[1] = "modified".getBytes("UTF-8");
+            signed.s[2] = signed.s[2].add(BigInteger.ONE).mod(n);
+            signed.r[3] = BigInteger.ZERO;
+            signed.s[4] = n;
+            signed.r[5] = n.add(signed.r[5]);
+            boolean[] expected = new boolean[COUNT];
+            for (int i = 0; i < COUNT; i++) {
+                expected[i] = signed.verifier.verifySignature(signed.messages[i], signed.r[i], signed.s[i]);
+            }
+            assertArrayEquals(new boolean[] {true, false, false, false, false, false, true, true}, expected);
+            assertArrayEquals(name, expected, signed.verifier.verifySignatures(signed.messages, signed.r, signed.s));
+        }
+    }
+
+    @Test
+    public void verifySignatures_acceptsEmptyBatch() throws Exception {
+        Signed signed = new Signed("secp256r1", 0);
+        assertEquals(0, signed.verifier.verifySignatures(new byte[0][], new BigInteger[0], new BigInteger[0]).length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void verifySignatures_rejectsMismatchedLengths() throws Exception {
+        Signed signed = new Signed("secp256r1", 2);
+        signed.verifier.verifySignatures(signed.messages, signed.r, new BigInteger[1]);
+    }
+
+    /**
+     * COUNT messages signed with a fresh key on the named curve, and a signer initialised to
+     * verify them.
+     */
+    static final class Signed {
+        final byte[][] messages;
+        final BigInteger n;
+        final BigInteger[] r;
+        final BigInteger[] s;
+        final ECDSASigner signer;
+        final ECDSASigner verifier;
+
+        Signed(String name, int count) throws Exception {
+            X9ECParameters x9 = CustomNamedCurves.getByName(name);
+            ECDomainParameters domain = new ECDomainParameters(x9.getCurve(), x9.getG(), x9.getN(), x9.getH());
+            SecureRandom random = SecureRandom.getInstance("SHA1PRNG");
+            random.setSeed(name.getBytes("UTF-8"));
+            ECKeyPairGenerator generator = new ECKeyPairGenerator();
+            generator.init(new ECKeyGenerationParameters(domain, random));
+            AsymmetricCipherKeyPair pair = generator.generateKeyPair();
+            n = domain.getN();
+            signer = new ECDSASigner();
+            signer.init(true, new ParametersWithRandom(pair.getPrivate(), random));
+            verifier = new ECDSASigner();
+            verifier.init(false, pair.getPublic());
+            messages = new byte[count][];
+            r = new BigInteger[count];
+            s = new BigInteger[count];
+            for (int i = 0; i < count; i++) {
+                messages[i] = new byte[32];
+                random.nextBytes(messages[i]);
+                BigInteger[] signature = signer.generateSignature(messages[i]);
+                r[i] = signature[0];
+                s[i] = signature[1];
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.android.org.bouncycastle.math.ec;
+
+import com.android.org.bouncycastle.crypto.ec.CustomNamedCurves;
+import com.android.org.bouncycastle.math.ec.custom.sec.SecP384R1Curve;
+import org.junit.Test;
+
+import java.math.BigInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that separately decoded copies of a generator share the comb table built for the
+ * first one, on the same curve instance and on another instance of the same curve.
+ */
+public class FixedPointUtilTest {
+    private static final BigInteger K = new BigInteger("31415926535897932384626433832795028841971693993751058209749445923078164062862");
+
+    @Test
+    public void precompute_sharesTableWithDecodedCopyOfGenerator() {
+        ECPoint g = CustomNamedCurves.getByName("secp256r1").getG();
+        ECCurve curve = g.getCurve();
+        ECPoint copy = curve.decodePoint(g.getEncoded(false));
+        FixedPointPreCompInfo info = FixedPointUtil.precompute(g, 5);
+        FixedPointPreCompInfo shared = FixedPointUtil.precompute(copy, 5);
+        assertEquals(info.getWidth(), shared.getWidth());
+        assertTableEquals(info.getPreComp(), shared.getPreComp(), curve);
+        assertEquals(new FixedPointCombMultiplier().multiply(g, K), new FixedPointCombMultiplier().multiply(copy, K));
+    }
+
+    @Test
+    public void precompute_createsSharedTableOnCallersCurve() {
+        ECPoint g = CustomNamedCurves.getByName("secp384r1").getG();
+        ECCurve other = new SecP384R1Curve();
+        ECPoint copy = other.decodePoint(g.getEncoded(false));
+        ECPoint[] table = FixedPointUtil.precompute(g, 6).getPreComp();
+        assertTableEquals(table, FixedPointUtil.precompute(copy, 6).getPreComp(), other);
+        assertEquals(new FixedPointCombMultiplier().multiply(g, K).normalize().getAffineXCoord().toBigInteger(), new FixedPointCombMultiplier().multiply(copy, K).normalize().getAffineXCoord().toBigInteger());
+    }
+
+    @Test
+    public void precompute_buildsLargerTableThanShared() {
+        ECPoint p = CustomNamedCurves.getByName("secp256r1").getG().twice().normalize();
+        ECPoint copy = p.getCurve().decodePoint(p.getEncoded(false));
+        assertEquals(16, FixedPointUtil.precompute(p, 4).getPreComp().length);
+        assertEquals(64, FixedPointUtil.precompute(copy, 6).getPreComp().length);
+    }
+
+    private static void assertTableEquals(ECPoint[] expected, ECPoint[] actual, ECCurve curve) {
+        assertEquals(expected.length, actual.length);
+        assertTrue(actual[0].isInfinity());
+        for (int i = 1; i < expected.length; i++) {
+            assertSame(curve, actual[i].getCurve());
+            assertEquals(expected[i].getAffineXCoord().toBigInteger(), actual[i].getAffineXCoord().toBigInteger());
+            assertEquals(expected[i].getAffineYCoord().toBigInteger(), actual[i].getAffineYCoord().toBigInteger());
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.android.org.conscrypt;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.security.MessageDigest;
+import java.security.cert.X509Certificate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.security.auth.x500.X500Principal;
+
+/**
+ * Measures the lookups a handshake makes against a system directory holding the JDK's cacerts
+ * roots, laid out as subject-hash files the way Android stores them: findIssuer and
+ * getTrustAnchor for a root in the store, and findIssuer for a root that is not.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class TrustedCertificateStoreBenchmark {
+    private static final int MISSING = 8;
+
+    private File addedDir;
+    private File deletedDir;
+    private X509Certificate[] missing;
+    private int next;
+    private File root;
+    private TrustedCertificateStore store;
+    private X509Certificate[] stored;
+    private File systemDir;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        root = File.createTempFile("keychain", "");
+        root.delete();
+        systemDir = new File(root, "cacerts");
+        addedDir = new File(root, "cacerts-added");
+        deletedDir = new File(root, "cacerts-removed");
+        systemDir.mkdirs();
+        addedDir.mkdirs();
+        deletedDir.mkdirs();
+        List<X509Certificate> roots = TrustedCertificateStoreTest.loadRoots();
+        missing = roots.subList(0, MISSING).toArray(new X509Certificate[MISSING]);
+        stored = roots.subList(MISSING, roots.size()).toArray(new X509Certificate[roots.size() - MISSING]);
+        Map<String, Integer> indexes = new HashMap();
+        for (X509Certificate cert : stored) {
+            String hash = subjectHash(cert.getSubjectX500Principal());
+            Integer index = indexes.get(hash);
+            indexes.put(hash, index == null ? 1 : index + 1);
+            FileOutputStream out = new FileOutputStream(new File(systemDir, hash + '.' + (index == null ? 0 : index)));
+            try {
+                out.write(cert.getEncoded());
+            } finally {
+                out.close();
+            }
+        }
+        store = new TrustedCertificateStore(systemDir, addedDir, deletedDir);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        for (File dir : new File[] {systemDir, addedDir, deletedDir}) {
+            for (File file : dir.listFiles()) {
+                file.delete();
+            }
+            dir.delete();
+        }
+        root.delete();
+    }
+
+    @Benchmark
+    public X509Certificate findIssuer() {
+        return store.findIssuer(stored[nextIndex(stored.length)]);
+    }
+
+    @Benchmark
+    public X509Certificate getTrustAnchor() {
+        return store.getTrustAnchor(stored[nextIndex(stored.length)]);
+    }
+
+    @Benchmark
+    public X509Certificate findIssuerMissing() {
+        return store.findIssuer(missing[nextIndex(MISSING)]);
+    }
+
+    private int nextIndex(int length) {
+        next = (next + 1) % length;
+        return next;
+    }
+
+    /**
+     * Returns the name OpenSSL's X509_NAME_hash_old gives the files of subject: the first four
+     * bytes of the MD5 of its DER encoding, little-endian, in hex.
+     */
+    static String subjectHash(X500Principal subject) throws Exception {
+        byte[] md5 = MessageDigest.getInstance("MD5").digest(subject.getEncoded());
+        int hash = (md5[0] & 255) | ((md5[1] & 255) << 8) | ((md5[2] & 255) << 16) | ((md5[3] & 255) << 24);
+        return String.format("%08x", hash);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(TrustedCertificateStoreBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,169 @@
+package com.android.org.conscrypt;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the in-memory index of TrustedCertificateStore against certificate files written
+ * straight into the system, added and deleted directories, as another process would. Uses
+ * self-signed roots from the JDK's cacerts, so each is its own issuer.
+ */
+public class TrustedCertificateStoreTest {
+    private File addedDir;
+    private List<X509Certificate> roots;
+    private File deletedDir;
+    private File root;
+    private TrustedCertificateStore store;
+    private File systemDir;
+
+    @Before
+    public void setUp() throws Exception {
+        root = File.createTempFile("keychain", "");
+        root.delete();
+        systemDir = new File(root, "cacerts");
+        addedDir = new File(root, "cacerts-added");
+        deletedDir = new File(root, "cacerts-removed");
+        systemDir.mkdirs();
+        addedDir.mkdirs();
+        deletedDir.mkdirs();
+        roots = loadRoots();
+        store = new TrustedCertificateStore(systemDir, addedDir, deletedDir);
+    }
+
+    @After
+    public void tearDown() {
+        for (File dir : new File[] {systemDir, addedDir, deletedDir}) {
+            for (File file : dir.listFiles()) {
+                file.delete();
+            }
+            dir.delete();
+        }
+        root.delete();
+    }
+
+    @Test
+    public void findIssuer_findsSystemCertificate() throws Exception {
+        X509Certificate ca = roots.get(0);
+        write(systemDir, "00000001.0", ca);
+        assertEquals(ca, store.findIssuer(ca));
+        assertEquals(ca, store.getTrustAnchor(ca));
+        assertEquals("system:00000001.0", store.getCertificateAlias(ca));
+        assertNull(store.findIssuer(roots.get(1)));
+    }
+
+    @Test
+    public void findIssuer_seesFilesAddedByAnotherProcess() throws Exception {
+        X509Certificate ca = roots.get(0);
+        assertNull(store.findIssuer(ca));
+        write(addedDir, "00000001.0", ca);
+        touch(addedDir);
+        assertEquals(ca, store.findIssuer(ca));
+        assertTrue(store.isUserAddedCertificate(ca));
+        assertEquals("user:00000001.0", store.getCertificateAlias(ca));
+    }
+
+    @Test
+    public void findIssuer_skipsDeletedSystemCertificate() throws Exception {
+        X509Certificate ca = roots.get(0);
+        write(systemDir, "00000001.0", ca);
+        assertEquals(ca, store.findIssuer(ca));
+        write(deletedDir, "00000001.0", ca);
+        touch(deletedDir);
+        assertNull(store.findIssuer(ca));
+        assertNull(store.getCertificateAlias(ca));
+        assertEquals("system:00000001.0", store.getCertificateAlias(ca, true));
+        assertTrue(store.findAllIssuers(ca).isEmpty());
+    }
+
+    @Test
+    public void findIssuer_skipsTombstones() throws Exception {
+        X509Certificate first = roots.get(0);
+        X509Certificate second = roots.get(1);
+        write(addedDir, "00000001.0", first);
+        write(addedDir, "00000001.1", second);
+        assertEquals(first, store.findIssuer(first));
+        assertEquals(second, store.findIssuer(second));
+        new FileOutputStream(new File(addedDir, "00000001.0")).close();
+        touch(addedDir);
+        assertNull(store.findIssuer(first));
+        assertEquals(second, store.findIssuer(second));
+        assertEquals(new File(addedDir, "00000001.1"), store.getCertificateFile(addedDir, second));
+    }
+
+    @Test
+    public void findIssuer_stopsAtFirstMissingIndex() throws Exception {
+        write(systemDir, "00000001.0", roots.get(0));
+        write(systemDir, "00000001.2", roots.get(1));
+        write(systemDir, "00000002.1", roots.get(2));
+        assertEquals(roots.get(0), store.findIssuer(roots.get(0)));
+        assertNull(store.findIssuer(roots.get(1)));
+        assertNull(store.findIssuer(roots.get(2)));
+    }
+
+    @Test
+    public void findAllIssuers_returnsUserAndSystemCertificates() throws Exception {
+        X509Certificate ca = roots.get(0);
+        write(systemDir, "00000001.0", ca);
+        write(addedDir, "00000001.0", ca);
+        assertEquals(Collections.singleton(ca), store.findAllIssuers(ca));
+        assertEquals("user:00000001.0", store.getCertificateAlias(ca));
+    }
+
+    /**
+     * Moves the modification time of dir forward, so a change is seen even when it happens
+     * within the timestamp granularity of the previous one.
+     */
+    private static void touch(File dir) {
+        dir.setLastModified(dir.lastModified() + 2000);
+    }
+
+    private static void write(File dir, String name, X509Certificate cert) throws Exception {
+        FileOutputStream out = new FileOutputStream(new File(dir, name));
+        try {
+            out.write(cert.getEncoded());
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Returns the self-signed roots of the JDK's cacerts, sorted by alias.
+     */
+    static List<X509Certificate> loadRoots() throws Exception {
+        KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+        InputStream in = new FileInputStream(new File(System.getProperty("java.home"), "lib/security/cacerts"));
+        try {
+            keyStore.load(in, "changeit".toCharArray());
+        } finally {
+            in.close();
+        }
+        List<String> aliases = Collections.list(keyStore.aliases());
+        Collections.sort(aliases);
+        List<X509Certificate> roots = new ArrayList();
+        for (String alias : aliases) {
+            X509Certificate cert = (X509Certificate) keyStore.getCertificate(alias);
+            if (cert != null && cert.getSubjectX500Principal().equals(cert.getIssuerX500Principal())) {
+                try {
+                    cert.verify(cert.getPublicKey());
+                } catch (Exception e) {
+                    continue;
+                }
+                roots.add(cert);
+            }
+        }
+        return roots;
+    }
+}
@@ -0,0 +1,199 @@
+package com.android.server.pm;
+
+import android.os.FileUtils;
+import android.util.Xml;
+import com.android.internal.util.FastXmlSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlSerializer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares reading and writing the package settings of a device with 500, 2000 and 5000
+ * packages as packages.xml and as packages.bin. The boot benchmarks parse the whole document
+ * and look at every attribute, as readLPw does; readOnePackage reads a single package through
+ * the store's per-package index. The write benchmarks store all packages after one of them
+ * changed, as writeLPr does after an install.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class PackageSettingsStoreBenchmark {
+    private static final int PERMISSIONS_PER_PACKAGE = 12;
+
+    @Param({"500", "2000", "5000"})
+    public int packages;
+
+    private int changed;
+    private File dir;
+    private PackageSettingsStore store;
+    private File storeFile;
+    private File xmlFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("packages").toFile();
+        xmlFile = new File(dir, "packages.xml");
+        storeFile = new File(dir, "packages.bin");
+        writeXml();
+        store = new PackageSettingsStore(storeFile);
+        writeStore();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        for (File file : dir.listFiles()) {
+            file.delete();
+        }
+        dir.delete();
+    }
+
+    @Benchmark
+    public int bootFromXml() throws Exception {
+        InputStream in = new BufferedInputStream(new FileInputStream(xmlFile));
+        try {
+            XmlPullParser parser = Xml.newPullParser();
+            parser.setInput(in, StandardCharsets.UTF_8.name());
+            return drain(parser);
+        } finally {
+            in.close();
+        }
+    }
+
+    @Benchmark
+    public int bootFromStore() throws Exception {
+        return drain(new PackageSettingsStore(storeFile).openDocument());
+    }
+
+    @Benchmark
+    public int readOnePackage() throws Exception {
+        return drain(new PackageSettingsStore(storeFile).openPackage(packageName(packages / 2), false));
+    }
+
+    @Benchmark
+    public void writeXml() throws IOException {
+        changed++;
+        FileOutputStream fstr = new FileOutputStream(xmlFile);
+        try {
+            BufferedOutputStream out = new BufferedOutputStream(fstr);
+            XmlSerializer serializer = new FastXmlSerializer();
+            serializer.setOutput(out, StandardCharsets.UTF_8.name());
+            serializer.startDocument(null, Boolean.valueOf(true));
+            serializer.startTag(null, "packages");
+            for (int i = 0; i < packages; i++) {
+                writePackage(serializer, i);
+            }
+            serializer.endTag(null, "packages");
+            serializer.endDocument();
+            out.flush();
+            FileUtils.sync(fstr);
+        } finally {
+            fstr.close();
+        }
+    }
+
+    @Benchmark
+    public int writeStore() throws IOException {
+        changed++;
+        PackageSettingsSerializer serializer = new PackageSettingsSerializer();
+        store.beginUpdate();
+        for (int i = 0; i < packages; i++) {
+            writePackage(serializer, i);
+            store.putRecord(PackageSettingsStore.KIND_PACKAGE, packageName(i), serializer.finishRecord());
+        }
+        return store.commitUpdate();
+    }
+
+    /**
+     * Writes a package the way writePackageLPr does, with the version of one package depending
+     * on how many writes were done so far.
+     */
+    private void writePackage(XmlSerializer serializer, int i) throws IOException {
+        String name = packageName(i);
+        serializer.startTag(null, "package");
+        serializer.attribute(null, "name", name);
+        serializer.attribute(null, "codePath", "/data/app/" + name + "-1");
+        serializer.attribute(null, "nativeLibraryPath", "/data/app/" + name + "-1/lib");
+        serializer.attribute(null, "primaryCpuAbi", "arm64-v8a");
+        serializer.attribute(null, "publicFlags", "944258884");
+        serializer.attribute(null, "privateFlags", "0");
+        serializer.attribute(null, "ft", "15a3c2b1e40");
+        serializer.attribute(null, "it", "15a3c2b1f12");
+        serializer.attribute(null, "ut", "15a3c2b1f12");
+        serializer.attribute(null, "version", Integer.toString(i == changed % packages ? changed : 1));
+        serializer.attribute(null, "userId", Integer.toString(10000 + i));
+        serializer.attribute(null, "installer", "com.android.vending");
+        serializer.startTag(null, "sigs");
+        serializer.attribute(null, "count", "1");
+        serializer.startTag(null, "cert");
+        serializer.attribute(null, "index", Integer.toString(i % 40));
+        serializer.endTag(null, "cert");
+        serializer.endTag(null, "sigs");
+        serializer.startTag(null, "perms");
+        for (int p = 0; p < PERMISSIONS_PER_PACKAGE; p++) {
+            serializer.startTag(null, "item");
+            serializer.attribute(null, "name", "android.permission.PERMISSION_" + ((i + p) % 60));
+            serializer.attribute(null, "granted", "true");
+            serializer.attribute(null, "flags", "0");
+            serializer.endTag(null, "item");
+        }
+        serializer.endTag(null, "perms");
+        serializer.startTag(null, "proper-signing-keyset");
+        serializer.attribute(null, "identifier", Integer.toString(1 + (i % 40)));
+        serializer.endTag(null, "proper-signing-keyset");
+        serializer.endTag(null, "package");
+    }
+
+    private static String packageName(int i) {
+        return "com.example.app" + i;
+    }
+
+    /**
+     * Reads every event and attribute value, returning a count so the work is not eliminated.
+     */
+    private static int drain(XmlPullParser parser) throws Exception {
+        int count = 0;
+        while (true) {
+            int type = parser.next();
+            if (type == XmlPullParser.END_DOCUMENT) {
+                return count;
+            }
+            if (type == XmlPullParser.START_TAG) {
+                for (int i = 0; i < parser.getAttributeCount(); i++) {
+                    count += parser.getAttributeValue(i).length();
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(PackageSettingsStoreBenchmark.class.getSimpleName()).build()).run();
+    }
+}
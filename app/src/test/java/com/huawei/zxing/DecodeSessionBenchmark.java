@@ -0,0 +1,83 @@
+package com.huawei.zxing;
+
+import android.graphics.Rect;
+import com.huawei.zxing.common.HybridBinarizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares decoding a stream of camera preview frames through the pooled DecodeSession with
+ * building a new luminance source, binarizer and matrix for every frame. Run with "-prof gc" to
+ * see the bytes allocated per frame.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class DecodeSessionBenchmark {
+    private static final int CROP = 600;
+    private static final int FRAME_HEIGHT = 720;
+    private static final int FRAME_WIDTH = 1280;
+    private static final int FRAMES = 8;
+
+    private byte[][] frames;
+    private int next;
+    private MultiFormatReader reader;
+    private Rect rect;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(1);
+        frames = new byte[FRAMES][];
+        for (int i = 0; i < FRAMES; i++) {
+            frames[i] = new byte[FRAME_WIDTH * FRAME_HEIGHT * 3 / 2];
+            random.nextBytes(frames[i]);
+        }
+        int left = (FRAME_WIDTH - CROP) / 2;
+        int top = (FRAME_HEIGHT - CROP) / 2;
+        rect = new Rect(left, top, left + CROP, top + CROP);
+        reader = new MultiFormatReader();
+        reader.setHints(null);
+    }
+
+    @Benchmark
+    public Result pooledSession() {
+        return reader.decode(nextFrame(), FRAME_WIDTH, FRAME_HEIGHT, rect);
+    }
+
+    @Benchmark
+    public Result newBuffersPerFrame() {
+        PlanarYUVLuminanceSource source = new PlanarYUVLuminanceSource(nextFrame(), FRAME_WIDTH, FRAME_HEIGHT, rect.left, rect.top, CROP, CROP, false);
+        try {
+            return reader.decodeWithState(new BinaryBitmap(new HybridBinarizer(source)));
+        } catch (NotFoundException e) {
+            return null;
+        }
+    }
+
+    private byte[] nextFrame() {
+        byte[] frame = frames[next];
+        next = (next + 1) % FRAMES;
+        return frame;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(DecodeSessionBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,101 @@
+package com.huawei.zxing;
+
+import com.huawei.zxing.common.BitMatrix;
+import com.huawei.zxing.common.HybridBinarizer;
+import com.huawei.zxing.qrcode.QRCodeWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures frames per second of MultiFormatReader with all readers enabled, decoding
+ * sequentially and on a parallel executor, for a frame holding a QR code and for a frame with
+ * no barcode, which is what most camera preview frames are.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class MultiFormatReaderBenchmark {
+    private static final int SIZE = 640;
+
+    @Param({"qr", "empty"})
+    public String frame;
+
+    @Param({"0", "2", "4"})
+    public int threads;
+
+    private ExecutorService executor;
+    private int[] pixels;
+    private MultiFormatReader reader;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        pixels = new int[SIZE * SIZE];
+        if ("qr".equals(frame)) {
+            BitMatrix matrix = new QRCodeWriter().encode("https://example.com/benchmark", BarcodeFormat.QR_CODE, SIZE / 2, SIZE / 2);
+            int offset = (SIZE - matrix.getWidth()) / 2;
+            for (int i = 0; i < pixels.length; i++) {
+                pixels[i] = 0xFFFFFFFF;
+            }
+            for (int y = 0; y < matrix.getHeight(); y++) {
+                for (int x = 0; x < matrix.getWidth(); x++) {
+                    if (matrix.get(x, y)) {
+                        pixels[(y + offset) * SIZE + x + offset] = 0xFF000000;
+                    }
+                }
+            }
+        } else {
+            Random random = new Random(1);
+            for (int i = 0; i < pixels.length; i++) {
+                int gray = random.nextInt(256);
+                pixels[i] = 0xFF000000 | (gray << 16) | (gray << 8) | gray;
+            }
+        }
+        reader = new MultiFormatReader();
+        reader.setHints(null);
+        if (threads > 0) {
+            executor = Executors.newFixedThreadPool(threads);
+            reader.setParallelExecutor(executor);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    @Benchmark
+    public Result decodeFrame() {
+        try {
+            return reader.decodeWithState(new BinaryBitmap(new HybridBinarizer(new RGBLuminanceSource(SIZE, SIZE, pixels))));
+        } catch (NotFoundException e) {
+            return null;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(MultiFormatReaderBenchmark.class.getSimpleName()).build()).run();
+    }
+}
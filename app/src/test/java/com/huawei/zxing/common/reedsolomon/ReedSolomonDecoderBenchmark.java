@@ -0,0 +1,97 @@
+package com.huawei.zxing.common.reedsolomon;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures ReedSolomonDecoder.decode on codewords of the QR, Data Matrix and 12-bit Aztec fields
+ * carrying 0 to 20 symbol errors. Each call decodes a fresh copy of one of several corrupted
+ * codewords, since decode corrects its input in place.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ReedSolomonDecoderBenchmark {
+    private static final int CODEWORDS = 16;
+    private static final int EC_SYMBOLS = 40;
+
+    @Param({"0", "5", "20"})
+    public int errors;
+
+    @Param({"qr", "dataMatrix", "aztec12"})
+    public String field;
+
+    private ReedSolomonDecoder decoder;
+    private int next;
+    private int[][] received;
+    private int[] work;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        GenericGF gf;
+        int length;
+        if ("qr".equals(field)) {
+            gf = GenericGF.QR_CODE_FIELD_256;
+            length = 255;
+        } else if ("dataMatrix".equals(field)) {
+            gf = GenericGF.DATA_MATRIX_FIELD_256;
+            length = 255;
+        } else {
+            gf = GenericGF.AZTEC_DATA_12;
+            length = 1000;
+        }
+        Random random = new Random(1);
+        ReedSolomonEncoder encoder = new ReedSolomonEncoder(gf);
+        received = new int[CODEWORDS][];
+        for (int i = 0; i < CODEWORDS; i++) {
+            int[] codeword = new int[length];
+            for (int j = 0; j < length - EC_SYMBOLS; j++) {
+                codeword[j] = random.nextInt(gf.getSize());
+            }
+            encoder.encode(codeword, EC_SYMBOLS);
+            boolean[] corrupted = new boolean[length];
+            for (int e = 0; e < errors; e++) {
+                int position;
+                do {
+                    position = random.nextInt(length);
+                } while (corrupted[position]);
+                corrupted[position] = true;
+                codeword[position] ^= 1 + random.nextInt(gf.getSize() - 1);
+            }
+            received[i] = codeword;
+        }
+        work = new int[length];
+        decoder = new ReedSolomonDecoder(gf);
+    }
+
+    @Benchmark
+    public int[] decode() throws ReedSolomonException {
+        int[] codeword = received[next];
+        next = (next + 1) % CODEWORDS;
+        System.arraycopy(codeword, 0, work, 0, codeword.length);
+        decoder.decode(work, EC_SYMBOLS);
+        return work;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(ReedSolomonDecoderBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,90 @@
+package com.huawei.zxing.qrcode.encoder;
+
+import com.huawei.zxing.WriterException;
+import com.huawei.zxing.common.BitArray;
+import com.huawei.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.huawei.zxing.qrcode.decoder.Version;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures choosing the mask of one symbol for every version from 1 to 40: building and scoring
+ * each of the eight masked matrices, against scoring them incrementally from one unmasked layout.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MaskPenaltyBenchmark {
+    @Param({"1", "2", "3", "4", "5", "6", "7", "8", "9", "10", "11", "12", "13", "14", "15", "16", "17", "18", "19", "20",
+            "21", "22", "23", "24", "25", "26", "27", "28", "29", "30", "31", "32", "33", "34", "35", "36", "37", "38", "39", "40"})
+    public int version;
+
+    private BitArray bits;
+    private ErrorCorrectionLevel ecLevel;
+    private ByteMatrix matrix;
+    private Version qrVersion;
+
+    @Setup(Level.Trial)
+    public void setUp() throws WriterException {
+        qrVersion = Version.getVersionForNumber(version);
+        ecLevel = ErrorCorrectionLevel.forBits(1);
+        int dimension = qrVersion.getDimensionForVersion();
+        matrix = new ByteMatrix(dimension, dimension);
+        MatrixUtil.clearMatrix(matrix);
+        MatrixUtil.embedBasicPatterns(qrVersion, matrix);
+        MatrixUtil.embedTypeInfo(ecLevel, 0, matrix);
+        MatrixUtil.maybeEmbedVersionInfo(qrVersion, matrix);
+        Random random = new Random(version);
+        bits = new BitArray();
+        for (int y = 0; y < dimension; y++) {
+            for (int x = 0; x < dimension; x++) {
+                if (matrix.get(x, y) == -1) {
+                    bits.appendBit(random.nextBoolean());
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public int rebuildEachMask() throws WriterException {
+        PackedMaskPenalty maskPenalty = new PackedMaskPenalty(matrix.getWidth());
+        int best = Integer.MAX_VALUE;
+        for (int maskPattern = 0; maskPattern < 8; maskPattern++) {
+            MatrixUtil.buildMatrix(bits, ecLevel, qrVersion, maskPattern, matrix);
+            best = Math.min(best, maskPenalty.calculate(matrix));
+        }
+        return best;
+    }
+
+    @Benchmark
+    public int incremental() throws WriterException {
+        PackedMaskPenalty maskPenalty = PackedMaskPenalty.forSymbol(bits, ecLevel, qrVersion, matrix);
+        int best = Integer.MAX_VALUE;
+        for (int maskPattern = 0; maskPattern < 8; maskPattern++) {
+            best = Math.min(best, maskPenalty.calculate(maskPattern));
+        }
+        return best;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(MaskPenaltyBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,94 @@
+package gov.nist.javax.sip.message;
+
+import gov.nist.javax.sip.header.Via;
+import gov.nist.javax.sip.parser.StringMsgParser;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks encodeAsBytes on lazily parsed messages: headers that were never parsed are copied as
+ * received, parsed headers are encoded again on every call, and received header order is kept.
+ */
+public class SIPMessageEncodingTest {
+    private static final String INVITE = "INVITE sip:bob@biloxi.example.com SIP/2.0\r\n"
+            + "Via: SIP/2.0/UDP pc33.atlanta.example.com;branch=z9hG4bK776asdhds\r\n"
+            + "Route: <sip:proxy.atlanta.example.com;lr>\r\n"
+            + "Max-Forwards: 70\r\n"
+            + "To: Bob <sip:bob@biloxi.example.com>\r\n"
+            + "From: Alice <sip:alice@atlanta.example.com>;tag=1928301774\r\n"
+            + "Call-ID: a84b4c76e66710@pc33.atlanta.example.com\r\n"
+            + "CSeq: 314159 INVITE\r\n"
+            + "Contact: <sip:alice@pc33.atlanta.example.com>\r\n"
+            + "Allow: INVITE, ACK, CANCEL\r\n"
+            + "Subject: lunch\r\n"
+            + "  tomorrow\r\n"
+            + "Content-Length: 0\r\n"
+            + "\r\n";
+
+    @Test
+    public void encodeAsBytes_copiesUnparsedHeadersAsReceived() throws Exception {
+        String encoded = encode(parse(true));
+        assertTrue(encoded, encoded.contains("Allow: INVITE, ACK, CANCEL\r\n"));
+        assertTrue(encoded, encoded.contains("Subject: lunch\r\n  tomorrow\r\n"));
+    }
+
+    @Test
+    public void encodeAsBytes_encodesHeadersAgainOnceParsed() throws Exception {
+        SIPMessage message = parse(true);
+        message.getHeader("Allow");
+        String encoded = encode(message);
+        assertTrue(encoded, encoded.contains("Allow: INVITE,ACK,CANCEL\r\n"));
+    }
+
+    @Test
+    public void encodeAsBytes_seesChangesMadeToHeaderObjects() throws Exception {
+        SIPMessage message = parse(true);
+        encode(message);
+        message.getTopmostVia().setBranch("z9hG4bK-retransmitted");
+        message.getFrom().setTag("changed");
+        String encoded = encode(message);
+        assertTrue(encoded, encoded.contains("branch=z9hG4bK-retransmitted"));
+        assertTrue(encoded, encoded.contains("tag=changed"));
+    }
+
+    @Test
+    public void encodeAsBytes_keepsReceivedHeaderOrder() throws Exception {
+        String eager = encode(parse(false));
+        SIPMessage message = parse(true);
+        assertEquals(eager, encode(message).replace("INVITE, ACK, CANCEL", "INVITE,ACK,CANCEL").replace("lunch\r\n  tomorrow", "lunch tomorrow"));
+        message.getHeader("Contact");
+        message.getHeader("Route");
+        assertEquals(eager, encode(message).replace("INVITE, ACK, CANCEL", "INVITE,ACK,CANCEL").replace("lunch\r\n  tomorrow", "lunch tomorrow"));
+    }
+
+    @Test
+    public void clone_sharesUnparsedHeadersButNotChanges() throws Exception {
+        SIPMessage message = parse(true);
+        SIPMessage forwarded = (SIPMessage) message.clone();
+        Via via = new Via();
+        via.setSentProtocol(message.getTopmostVia().getSentProtocol());
+        via.setHost("proxy.atlanta.example.com");
+        via.setBranch("z9hG4bK-proxy");
+        forwarded.addFirst(via);
+        String original = encode(message);
+        String copy = encode(forwarded);
+        assertFalse(original, original.contains("z9hG4bK-proxy"));
+        assertTrue(copy, copy.contains("SIP/2.0/UDP proxy.atlanta.example.com;branch=z9hG4bK-proxy"));
+        assertTrue(copy, copy.contains("Allow: INVITE, ACK, CANCEL\r\n"));
+        assertTrue(copy.indexOf("z9hG4bK-proxy") < copy.indexOf("z9hG4bK776asdhds"));
+    }
+
+    private static SIPMessage parse(boolean lazy) throws Exception {
+        byte[] bytes = INVITE.getBytes(StandardCharsets.UTF_8);
+        StringMsgParser parser = new StringMsgParser();
+        parser.setLazyParsing(lazy);
+        return parser.parseSIPMessage(bytes, 0, bytes.length);
+    }
+
+    private static String encode(SIPMessage message) {
+        return new String(message.encodeAsBytes("UDP"), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,98 @@
+package gov.nist.javax.sip.message;
+
+import gov.nist.javax.sip.header.MaxForwards;
+import gov.nist.javax.sip.header.Via;
+import gov.nist.javax.sip.parser.StringMsgParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a stateful proxy forwarding an INVITE: parse it, clone it, push a Via, decrement
+ * Max-Forwards and encode the copy; and retransmitting the forwarded copy, which encodes it
+ * again. Runs with lazy header parsing off and on.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class SIPMessageForwardingBenchmark {
+    private static final String INVITE = "INVITE sip:bob@biloxi.example.com SIP/2.0\r\n"
+            + "Via: SIP/2.0/UDP pc33.atlanta.example.com;branch=z9hG4bK776asdhds\r\n"
+            + "Max-Forwards: 70\r\n"
+            + "To: Bob <sip:bob@biloxi.example.com>\r\n"
+            + "From: Alice <sip:alice@atlanta.example.com>;tag=1928301774\r\n"
+            + "Call-ID: a84b4c76e66710@pc33.atlanta.example.com\r\n"
+            + "CSeq: 314159 INVITE\r\n"
+            + "Contact: <sip:alice@pc33.atlanta.example.com>\r\n"
+            + "Record-Route: <sip:edge.atlanta.example.com;lr>\r\n"
+            + "Allow: INVITE,ACK,CANCEL,OPTIONS,BYE,REFER,NOTIFY,MESSAGE,SUBSCRIBE,INFO\r\n"
+            + "Supported: replaces,timer\r\n"
+            + "Session-Expires: 1800\r\n"
+            + "User-Agent: Example/1.0\r\n"
+            + "Content-Type: application/sdp\r\n"
+            + "Content-Length: 142\r\n"
+            + "\r\n"
+            + "v=0\r\n"
+            + "o=alice 2890844526 2890844526 IN IP4 pc33.atlanta.example.com\r\n"
+            + "s=-\r\n"
+            + "c=IN IP4 192.0.2.101\r\n"
+            + "t=0 0\r\n"
+            + "m=audio 49172 RTP/AVP 0\r\n"
+            + "a=rtpmap:0 PCMU/8000\r\n";
+
+    @Param({"false", "true"})
+    public boolean lazy;
+
+    private byte[] bytes;
+    private SIPMessage forwarded;
+    private StringMsgParser parser;
+
+    @Setup
+    public void setUp() throws Exception {
+        bytes = INVITE.getBytes(StandardCharsets.UTF_8);
+        parser = new StringMsgParser();
+        parser.setLazyParsing(lazy);
+        forwarded = forward(parser.parseSIPMessage(bytes, 0, bytes.length));
+    }
+
+    @Benchmark
+    public byte[] forward() throws Exception {
+        return forward(parser.parseSIPMessage(bytes, 0, bytes.length)).encodeAsBytes("UDP");
+    }
+
+    @Benchmark
+    public byte[] retransmit() {
+        return forwarded.encodeAsBytes("UDP");
+    }
+
+    private static SIPMessage forward(SIPMessage received) throws Exception {
+        SIPMessage copy = (SIPMessage) received.clone();
+        Via via = new Via();
+        via.setSentProtocol(received.getTopmostVia().getSentProtocol());
+        via.setHost("proxy.biloxi.example.com");
+        via.setBranch("z9hG4bK-forwarded");
+        copy.addFirst(via);
+        ((MaxForwards) copy.getMaxForwards()).decrementMaxForwards();
+        return copy;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(SIPMessageForwardingBenchmark.class.getSimpleName()).build()).run();
+    }
+}
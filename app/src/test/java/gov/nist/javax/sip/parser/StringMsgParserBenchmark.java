@@ -0,0 +1,116 @@
+package gov.nist.javax.sip.parser;
+
+import gov.nist.javax.sip.message.SIPMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses an INVITE, a REGISTER and a 200 OK from bytes with and without lazy header parsing.
+ * parse reads the headers the transaction layer reads on every message; parseAndEncode also
+ * encodes the message again, as a proxy forwarding it does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class StringMsgParserBenchmark {
+    private static final String INVITE = "INVITE sip:bob@biloxi.example.com SIP/2.0\r\n"
+            + "Via: SIP/2.0/UDP pc33.atlanta.example.com;branch=z9hG4bK776asdhds\r\n"
+            + "Max-Forwards: 70\r\n"
+            + "To: Bob <sip:bob@biloxi.example.com>\r\n"
+            + "From: Alice <sip:alice@atlanta.example.com>;tag=1928301774\r\n"
+            + "Call-ID: a84b4c76e66710@pc33.atlanta.example.com\r\n"
+            + "CSeq: 314159 INVITE\r\n"
+            + "Contact: <sip:alice@pc33.atlanta.example.com>\r\n"
+            + "Route: <sip:proxy.atlanta.example.com;lr>\r\n"
+            + "Allow: INVITE,ACK,CANCEL,OPTIONS,BYE,REFER,NOTIFY,MESSAGE,SUBSCRIBE,INFO\r\n"
+            + "Supported: replaces,timer\r\n"
+            + "User-Agent: Example/1.0\r\n"
+            + "Content-Type: application/sdp\r\n"
+            + "Content-Length: 142\r\n"
+            + "\r\n"
+            + "v=0\r\n"
+            + "o=alice 2890844526 2890844526 IN IP4 pc33.atlanta.example.com\r\n"
+            + "s=-\r\n"
+            + "c=IN IP4 192.0.2.101\r\n"
+            + "t=0 0\r\n"
+            + "m=audio 49172 RTP/AVP 0\r\n"
+            + "a=rtpmap:0 PCMU/8000\r\n";
+    private static final String OK = "SIP/2.0 200 OK\r\n"
+            + "Via: SIP/2.0/UDP server10.biloxi.example.com;branch=z9hG4bKnashds8;received=192.0.2.3\r\n"
+            + "Via: SIP/2.0/UDP bigbox3.site3.atlanta.example.com;branch=z9hG4bK77ef4c2312983.1;received=192.0.2.2\r\n"
+            + "Via: SIP/2.0/UDP pc33.atlanta.example.com;branch=z9hG4bK776asdhds;received=192.0.2.1\r\n"
+            + "To: Bob <sip:bob@biloxi.example.com>;tag=a6c85cf\r\n"
+            + "From: Alice <sip:alice@atlanta.example.com>;tag=1928301774\r\n"
+            + "Call-ID: a84b4c76e66710@pc33.atlanta.example.com\r\n"
+            + "CSeq: 314159 INVITE\r\n"
+            + "Contact: <sip:bob@192.0.2.4>\r\n"
+            + "Record-Route: <sip:server10.biloxi.example.com;lr>, <sip:bigbox3.site3.atlanta.example.com;lr>\r\n"
+            + "Allow: INVITE,ACK,CANCEL,OPTIONS,BYE\r\n"
+            + "Content-Length: 0\r\n"
+            + "\r\n";
+    private static final String REGISTER = "REGISTER sip:registrar.biloxi.example.com SIP/2.0\r\n"
+            + "Via: SIP/2.0/UDP bobspc.biloxi.example.com:5060;branch=z9hG4bKnashds7\r\n"
+            + "Max-Forwards: 70\r\n"
+            + "To: Bob <sip:bob@biloxi.example.com>\r\n"
+            + "From: Bob <sip:bob@biloxi.example.com>;tag=456248\r\n"
+            + "Call-ID: 843817637684230@998sdasdh09\r\n"
+            + "CSeq: 1826 REGISTER\r\n"
+            + "Contact: <sip:bob@192.0.2.4>\r\n"
+            + "Expires: 7200\r\n"
+            + "Authorization: Digest username=\"bob\", realm=\"biloxi.example.com\", nonce=\"dcd98b7102dd2f0e8b11d0f600bfb0c093\", uri=\"sip:registrar.biloxi.example.com\", response=\"245f23415f11432b3434341c022\"\r\n"
+            + "User-Agent: Example/1.0\r\n"
+            + "Content-Length: 0\r\n"
+            + "\r\n";
+
+    @Param({"INVITE", "REGISTER", "OK"})
+    public String message;
+
+    @Param({"false", "true"})
+    public boolean lazy;
+
+    private byte[] bytes;
+    private StringMsgParser parser;
+
+    @Setup
+    public void setUp() {
+        String text = "INVITE".equals(message) ? INVITE : "REGISTER".equals(message) ? REGISTER : OK;
+        bytes = text.getBytes(StandardCharsets.UTF_8);
+        parser = new StringMsgParser();
+        parser.setLazyParsing(lazy);
+    }
+
+    @Benchmark
+    public Object parse() throws Exception {
+        SIPMessage sipMessage = parser.parseSIPMessage(bytes, 0, bytes.length);
+        sipMessage.getTopmostVia();
+        sipMessage.getCallId();
+        sipMessage.getCSeq();
+        return sipMessage.getTransactionId();
+    }
+
+    @Benchmark
+    public byte[] parseAndEncode() throws Exception {
+        return parser.parseSIPMessage(bytes, 0, bytes.length).encodeAsBytes("UDP");
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(StringMsgParserBenchmark.class.getSimpleName()).build()).run();
+    }
+}
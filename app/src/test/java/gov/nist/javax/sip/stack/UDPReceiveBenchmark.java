@@ -0,0 +1,150 @@
+package gov.nist.javax.sip.stack;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Timeout;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures packets per second received over loopback by UDPMessageProcessor. socket is the
+ * DatagramSocket path, which allocates an array of the receive buffer size per datagram and
+ * queues it on the shared message queue. channel is the UDP_CHANNEL_RECEIVE path, which reads
+ * into one direct buffer, copies each datagram into an array of its own length and queues it
+ * on the worker chosen by its Call-ID. Each invocation sends a batch of INVITEs from different
+ * calls and receives all of them; messages are not parsed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Timeout(time = 10)
+@Fork(1)
+public class UDPReceiveBenchmark {
+    private static final int BATCH = 16;
+    private static final int MAX_DATAGRAM_SIZE = 65535;
+    private static final int RECEIVE_BUFFER_SIZE = 262144;
+    private static final int WORKERS = 4;
+
+    @Param({"socket", "channel"})
+    public String receive;
+
+    private ByteBuffer buffer;
+    private DatagramChannel channel;
+    private ByteBuffer[] datagrams;
+    private LinkedList messageQueue;
+    private DatagramChannel sender;
+    private DatagramSocket socket;
+    private InetSocketAddress target;
+    private LinkedList[] workerQueues;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        InetSocketAddress local = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+        if ("channel".equals(receive)) {
+            channel = DatagramChannel.open();
+            socket = channel.socket();
+        } else {
+            socket = new DatagramSocket(null);
+        }
+        socket.setReceiveBufferSize(RECEIVE_BUFFER_SIZE);
+        socket.setSoTimeout(5000);
+        socket.bind(local);
+        target = new InetSocketAddress(InetAddress.getLoopbackAddress(), socket.getLocalPort());
+        sender = DatagramChannel.open();
+        sender.bind(local);
+        buffer = ByteBuffer.allocateDirect(MAX_DATAGRAM_SIZE);
+        messageQueue = new LinkedList();
+        workerQueues = new LinkedList[WORKERS];
+        for (int i = 0; i < WORKERS; i++) {
+            workerQueues[i] = new LinkedList();
+        }
+        datagrams = new ByteBuffer[BATCH];
+        for (int i = 0; i < BATCH; i++) {
+            datagrams[i] = ByteBuffer.wrap(invite(i).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        sender.close();
+        socket.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int receiveBatch() throws Exception {
+        for (ByteBuffer datagram : datagrams) {
+            datagram.rewind();
+            sender.send(datagram, target);
+        }
+        int received = 0;
+        if (channel != null) {
+            for (int i = 0; i < BATCH; i++) {
+                DatagramPacket packet = UDPMessageProcessor.receive(channel, buffer);
+                LinkedList queue = UDPMessageProcessor.getWorkerQueue(workerQueues, packet);
+                synchronized (queue) {
+                    queue.add(packet);
+                    queue.notify();
+                }
+                received += packet.getLength();
+            }
+            for (LinkedList queue : workerQueues) {
+                queue.clear();
+            }
+        } else {
+            for (int i = 0; i < BATCH; i++) {
+                int bufsize = socket.getReceiveBufferSize();
+                DatagramPacket packet = new DatagramPacket(new byte[bufsize], bufsize);
+                socket.receive(packet);
+                synchronized (messageQueue) {
+                    messageQueue.add(packet);
+                    messageQueue.notify();
+                }
+                received += packet.getLength();
+            }
+            messageQueue.clear();
+        }
+        return received;
+    }
+
+    private static String invite(int call) {
+        return "INVITE sip:bob@biloxi.example.com SIP/2.0\r\n"
+                + "Via: SIP/2.0/UDP pc33.atlanta.example.com;branch=z9hG4bK776asdhds" + call + "\r\n"
+                + "Max-Forwards: 70\r\n"
+                + "To: Bob <sip:bob@biloxi.example.com>\r\n"
+                + "From: Alice <sip:alice@atlanta.example.com>;tag=1928301774\r\n"
+                + "Call-ID: a84b4c76e66710-" + call + "@pc33.atlanta.example.com\r\n"
+                + "CSeq: 314159 INVITE\r\n"
+                + "Contact: <sip:alice@pc33.atlanta.example.com>\r\n"
+                + "Content-Length: 0\r\n"
+                + "\r\n";
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(UDPReceiveBenchmark.class.getSimpleName()).build()).run();
+    }
+}